@@ -0,0 +1,52 @@
+package exceptions.cache;
+
+import exceptions.application.ApplicationException;
+
+/**
+ * 缓存加载失败异常
+ * 表示加载器在加载某个（或某批）key时抛出了异常，原异常可通过getCause获取
+ */
+public class CacheLoadException extends ApplicationException {
+    /**
+     * 序列化版本号
+     */
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * 加载失败的key
+     */
+    private final Object key;
+    
+    /**
+     * 构造函数
+     *
+     * @param key   加载失败的key
+     * @param cause 原异常
+     */
+    public CacheLoadException(Object key, Throwable cause) {
+        /**
+         * @modifies:
+         *          \this.key;
+         * @effects:
+         *          message will be set using the constructor of the parent class;
+         *          \this.key = key;
+         *          the cause will be set to cause;
+         */
+        super(String.format("Failed to load key %s: %s", key, cause));
+        this.key = key;
+        this.initCause(cause);
+    }
+    
+    /**
+     * 获取加载失败的key
+     *
+     * @return 加载失败的key
+     */
+    public Object getKey() {
+        /**
+         * @effects:
+         *          \result = \this.key;
+         */
+        return this.key;
+    }
+}
@@ -0,0 +1,168 @@
+package helpers.thread;
+
+import helpers.application.ApplicationHelper;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 任务分发执行器帮助类
+ * <p>
+ * 用途：
+ * 1、为时间线、定时器等提供可替换的任务分发方式
+ * 2、有界线程池：线程数和排队数均有上限，排队已满时由投递者线程自己执行（自然限流）
+ * 3、虚拟线程执行器：每个任务一个虚拟线程（需要java 21及以上，低版本自动退化为每个任务一个普通线程）
+ * 4、同线程执行器：直接在投递者线程中执行，没有任何线程开销，适合执行时间极短的任务
+ * 5、共享线程池：全局共用的可伸缩线程池（守护线程，空闲线程自动回收），适合大量定时器共用
+ */
+public abstract class ExecutorHelper extends ApplicationHelper {
+    /**
+     * 同线程执行器
+     */
+    private static final Executor INLINE_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+    
+    /**
+     * 共享线程池空闲线程的存活时间（单位：ms）
+     */
+    private static final long SHARED_KEEP_ALIVE_TIME = 60000;
+    
+    /**
+     * 共享线程池（延迟创建）
+     */
+    private static volatile ExecutorService shared_executor = null;
+    
+    /**
+     * 获取同线程执行器
+     *
+     * @return 同线程执行器
+     */
+    public static Executor getInlineExecutor() {
+        /**
+         * @effects:
+         *          \result == an executor which runs the task in the caller thread;
+         */
+        return INLINE_EXECUTOR;
+    }
+    
+    /**
+     * 获取命名线程工厂
+     *
+     * @param name 线程名前缀
+     * @return 线程工厂
+     */
+    public static ThreadFactory getNamedThreadFactory(String name) {
+        /**
+         * @effects:
+         *          \result == a thread factory whose threads are named as "name-1", "name-2", ...;
+         */
+        return getNamedThreadFactory(name, false);
+    }
+    
+    /**
+     * 获取命名线程工厂
+     *
+     * @param name   线程名前缀
+     * @param daemon 是否为守护线程
+     * @return 线程工厂
+     */
+    public static ThreadFactory getNamedThreadFactory(String name, boolean daemon) {
+        /**
+         * @effects:
+         *          \result == a thread factory whose threads are named as "name-1", "name-2", ...;
+         *          the threads will be daemon threads if daemon is true;
+         */
+        return new ThreadFactory() {
+            private int count = 0;
+            
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                count += 1;
+                Thread thread = new Thread(r, String.format("%s-%s", name, count));
+                thread.setDaemon(daemon);
+                return thread;
+            }
+        };
+    }
+    
+    /**
+     * 获取共享线程池
+     *
+     * @return 共享线程池
+     */
+    public static ExecutorService getSharedExecutor() {
+        /**
+         * @modifies:
+         *          shared_executor;
+         * @effects:
+         *          shared_executor will be created at the first call;
+         *          \result == a global cached thread pool of daemon threads, idle threads will be recycled;
+         */
+        ExecutorService executor = shared_executor;
+        if (executor == null) {
+            synchronized (ExecutorHelper.class) {
+                executor = shared_executor;
+                if (executor == null) {
+                    executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, SHARED_KEEP_ALIVE_TIME, TimeUnit.MILLISECONDS,
+                            new SynchronousQueue<Runnable>(), getNamedThreadFactory("shared-worker", true));
+                    shared_executor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+    
+    /**
+     * 新建有界线程池
+     *
+     * @param thread_count   线程数
+     * @param queue_capacity 排队上限
+     * @param name           线程名前缀
+     * @return 有界线程池
+     */
+    public static ExecutorService newBoundedPoolExecutor(int thread_count, int queue_capacity, String name) {
+        /**
+         * @requires:
+         *          thread_count > 0;
+         *          queue_capacity > 0;
+         * @effects:
+         *          \result == a thread pool with thread_count threads and a queue of queue_capacity;
+         *          when the queue is full, the task will be run in the caller thread;
+         */
+        return new ThreadPoolExecutor(thread_count, thread_count, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queue_capacity), getNamedThreadFactory(name),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+    
+    /**
+     * 新建每任务一线程的执行器（优先使用虚拟线程）
+     *
+     * @param name 线程名前缀（仅退化为普通线程时使用）
+     * @return 执行器
+     */
+    public static ExecutorService newVirtualThreadExecutor(String name) {
+        /**
+         * @effects:
+         *          (virtual thread is supported) ==> \result == Executors.newVirtualThreadPerTaskExecutor();
+         *          (virtual thread is not supported) ==> \result == an executor which starts a new thread for every task;
+         */
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0, TimeUnit.MILLISECONDS,
+                    new SynchronousQueue<Runnable>(), getNamedThreadFactory(name));
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package interfaces.structure;
+
+import interfaces.application.ApplicationInterface;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 缓存加载接口
+ *
+ * @param <K> key类型
+ * @param <V> value类型
+ */
+public interface CacheLoader<K, V> extends ApplicationInterface {
+    /**
+     * 加载单个key
+     *
+     * @param key key
+     * @return 加载结果（为null表示不存在，不会被缓存）
+     * @throws Exception 加载失败
+     */
+    V load(K key) throws Exception;
+    
+    /**
+     * 批量加载（默认逐个调用load，后端支持批量查询时建议重写）
+     *
+     * @param keys key集合
+     * @return 加载结果（缺少的key表示不存在；额外返回的key也会被缓存）
+     * @throws Exception 加载失败
+     */
+    default Map<K, V> loadAll(Collection<? extends K> keys) throws Exception {
+        /**
+         * @effects:
+         *          \result == a map from each key in keys to its non-null loaded value;
+         */
+        Map<K, V> result = new HashMap<>();
+        for (K key : keys) {
+            V value = this.load(key);
+            if (value != null) result.put(key, value);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,15 @@
+package interfaces.structure;
+
+import interfaces.application.ApplicationInterface;
+
+/**
+ * 可后台清理过期数据的接口
+ */
+public interface ExpireSweepableInterface extends ApplicationInterface {
+    /**
+     * 增量清理过期数据
+     * @param budget 本次最多处理的条目数量
+     * @return 实际处理的条目数量（小于budget表示暂时没有可清理的数据）
+     */
+    int sweepExpired(int budget);
+}
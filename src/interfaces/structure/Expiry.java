@@ -0,0 +1,48 @@
+package interfaces.structure;
+
+import interfaces.application.ApplicationInterface;
+
+/**
+ * 单条数据有效期计算接口
+ * <p>
+ * 注：
+ * 1、所有时间单位均为ms，返回Long.MAX_VALUE表示无限期，返回值不大于0表示立即过期
+ * 2、current_duration为该条数据当前的剩余有效期（无限期时为Long.MAX_VALUE），返回它表示不改变有效期
+ * 3、只有实际写入了新value的操作才会调用expireAfterUpdate；putIfAbsent、computeIfAbsent命中已有数据，以及条件不满足的replace、remove(key, value)没有写入，按读取调用expireAfterRead
+ *
+ * @param <K> key类型
+ * @param <V> value类型
+ */
+public interface Expiry<K, V> extends ApplicationInterface {
+    /**
+     * 计算新插入数据的有效期
+     *
+     * @param key          key
+     * @param value        value
+     * @param current_time 当前时间（unix时间戳，单位：ms）
+     * @return 有效期
+     */
+    long expireAfterCreate(K key, V value, long current_time);
+    
+    /**
+     * 计算被覆盖数据的有效期
+     *
+     * @param key              key
+     * @param value            新value
+     * @param current_time     当前时间（unix时间戳，单位：ms）
+     * @param current_duration 当前的剩余有效期
+     * @return 有效期
+     */
+    long expireAfterUpdate(K key, V value, long current_time, long current_duration);
+    
+    /**
+     * 计算被读取数据的有效期
+     *
+     * @param key              key
+     * @param value            value
+     * @param current_time     当前时间（unix时间戳，单位：ms）
+     * @param current_duration 当前的剩余有效期
+     * @return 有效期
+     */
+    long expireAfterRead(K key, V value, long current_time, long current_duration);
+}
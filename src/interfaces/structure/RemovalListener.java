@@ -0,0 +1,21 @@
+package interfaces.structure;
+
+import interfaces.application.ApplicationInterface;
+import models.structure.removal.RemovalNotification;
+
+import java.util.List;
+
+/**
+ * 数据删除监听接口
+ *
+ * @param <K> key类型
+ * @param <V> value类型
+ */
+public interface RemovalListener<K, V> extends ApplicationInterface {
+    /**
+     * 处理一批删除通知（按删除的先后顺序排列）
+     *
+     * @param notifications 删除通知
+     */
+    void onRemoval(List<RemovalNotification<K, V>> notifications);
+}
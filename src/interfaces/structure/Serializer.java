@@ -0,0 +1,29 @@
+package interfaces.structure;
+
+import interfaces.application.ApplicationInterface;
+
+/**
+ * 对象序列化接口
+ * <p>
+ * 注：
+ * 1、用作key时，相等的对象必须序列化为相同的字节序列
+ *
+ * @param <T> 对象类型
+ */
+public interface Serializer<T> extends ApplicationInterface {
+    /**
+     * 序列化
+     *
+     * @param object 对象
+     * @return 字节序列
+     */
+    byte[] serialize(T object);
+    
+    /**
+     * 反序列化
+     *
+     * @param bytes 字节序列
+     * @return 对象
+     */
+    T deserialize(byte[] bytes);
+}
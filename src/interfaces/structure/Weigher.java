@@ -0,0 +1,20 @@
+package interfaces.structure;
+
+import interfaces.application.ApplicationInterface;
+
+/**
+ * 键值对权重计算接口（如估算占用的字节数）
+ *
+ * @param <K> key类型
+ * @param <V> value类型
+ */
+public interface Weigher<K, V> extends ApplicationInterface {
+    /**
+     * 计算键值对的权重
+     *
+     * @param key   key
+     * @param value value
+     * @return 权重（非负）
+     */
+    long weigh(K key, V value);
+}
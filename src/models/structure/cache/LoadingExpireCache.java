@@ -0,0 +1,510 @@
+package models.structure.cache;
+
+import exceptions.cache.CacheLoadException;
+import helpers.thread.ExecutorHelper;
+import interfaces.structure.CacheLoader;
+import models.application.ApplicationModel;
+import models.structure.map.HashExpireMap;
+import models.time.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 自动加载的超时缓存
+ * <p>
+ * 功能：
+ * 1、在HashExpireMap外包装一层，未命中时调用加载器（CacheLoader）加载并按统一的有效期写入
+ * 2、getAll批量获取，未命中的key合并为一次批量加载
+ * <p>
+ * 特性：
+ * 1、同一个key的并发加载会被合并：只有一个线程调用加载器，其余线程等待同一个结果，后端不会被同时击穿
+ * 2、可选提前刷新：写入后超过refresh_after仍被访问时，在线程池中异步重新加载，期间继续返回旧值，热点key不会因为过期而未命中
+ * 3、加载失败不会缓存，等待同一次加载的线程都会收到CacheLoadException；加载器抛出的Error（如OutOfMemoryError）不会被包装，原样抛给所有等待的线程
+ * <p>
+ * 注：
+ * 1、加载结果为null表示不存在，不会被缓存
+ * 2、加载过程中调用invalidate不会中止加载，但加载结果不会再被写入（已在等待这次加载的线程依然会收到结果）
+ * 3、通过getMap().enableMetrics()开启统计后，加载次数和耗时也会计入底层map的统计
+ *
+ * @param <K> key类型
+ * @param <V> value类型
+ */
+public class LoadingExpireCache<K, V> extends ApplicationModel {
+    /**
+     * 底层数据结构
+     */
+    private final HashExpireMap<K, V> map;
+    
+    /**
+     * 加载器
+     */
+    private final CacheLoader<K, V> loader;
+    
+    /**
+     * 有效期（单位：ms，不大于0表示无限期）
+     */
+    private final long expire_after;
+    
+    /**
+     * 写入后多久开始提前刷新（单位：ms，不大于0或不小于有效期表示不提前刷新）
+     */
+    private final long refresh_after;
+    
+    /**
+     * 执行提前刷新的线程池
+     */
+    private final Executor executor;
+    
+    /**
+     * 进行中的加载
+     */
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    
+    /**
+     * 构造函数
+     *
+     * @param map           底层数据结构
+     * @param loader        加载器
+     * @param expire_after  有效期（单位：ms，不大于0表示无限期）
+     * @param refresh_after 写入后多久开始提前刷新（单位：ms，不大于0表示不提前刷新）
+     * @param executor      执行提前刷新的线程池
+     */
+    public LoadingExpireCache(HashExpireMap<K, V> map, CacheLoader<K, V> loader, long expire_after, long refresh_after, Executor executor) {
+        /**
+         * @requires:
+         *          map != null;
+         *          loader != null;
+         *          executor != null;
+         * @modifies:
+         *          all the fields;
+         * @effects:
+         *          all the fields will be initialized with the arguments;
+         */
+        this.map = map;
+        this.loader = loader;
+        this.expire_after = expire_after;
+        this.refresh_after = refresh_after;
+        this.executor = executor;
+    }
+    
+    /**
+     * 构造函数（提前刷新在全局共享线程池中执行）
+     *
+     * @param loader        加载器
+     * @param expire_after  有效期（单位：ms，不大于0表示无限期）
+     * @param refresh_after 写入后多久开始提前刷新（单位：ms，不大于0表示不提前刷新）
+     */
+    public LoadingExpireCache(CacheLoader<K, V> loader, long expire_after, long refresh_after) {
+        /**
+         * @effects:
+         *          \this will be initialized with a new HashExpireMap and the shared executor;
+         */
+        this(new HashExpireMap<>(), loader, expire_after, refresh_after, ExecutorHelper.getSharedExecutor());
+    }
+    
+    /**
+     * 构造函数（不提前刷新）
+     *
+     * @param loader       加载器
+     * @param expire_after 有效期（单位：ms，不大于0表示无限期）
+     */
+    public LoadingExpireCache(CacheLoader<K, V> loader, long expire_after) {
+        /**
+         * @effects:
+         *          \this will be initialized without refreshing ahead;
+         */
+        this(loader, expire_after, 0);
+    }
+    
+    /**
+     * 获取值，未命中时加载
+     *
+     * @param key key
+     * @return 值（加载结果为null时为null）
+     * @throws CacheLoadException 加载失败
+     */
+    public V get(K key) throws CacheLoadException {
+        /**
+         * @modifies:
+         *          \this.map;
+         *          \this.loading;
+         * @effects:
+         *          (key is cached) ==> \result == the cached value, a refresh may be started in the background;
+         *          (key is being loaded) ==> \result == the result of that load;
+         *          otherwise, key will be loaded by the current thread, cached && \result == the loaded value;
+         */
+        V value = this.map.get(key);
+        if (value != null) {
+            this.refreshIfNeeded(key);
+            return value;
+        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = this.loading.putIfAbsent(key, future);
+        if (existing != null) return this.await(key, existing);
+        try {
+            value = this.map.peek(key);  // loaded by others between the miss and the registration
+            if (value == null) {
+                value = this.load(key);
+                if (value != null) this.putLoaded(key, value, future);
+            }
+            future.complete(value);
+            return value;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw new CacheLoadException(key, e);
+        } catch (Error error) {  // errors are not load failures, release the waiters and let it propagate as is
+            future.completeExceptionally(error);
+            throw error;
+        } finally {
+            this.loading.remove(key, future);
+        }
+    }
+    
+    /**
+     * 批量获取，未命中的key合并为一次批量加载
+     *
+     * @param keys key集合
+     * @return key -> 值（按keys的顺序，不包含不存在的key）
+     * @throws CacheLoadException 加载失败
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) throws CacheLoadException {
+        /**
+         * @modifies:
+         *          \this.map;
+         *          \this.loading;
+         * @effects:
+         *          the cached keys will be read directly;
+         *          the keys being loaded by others will be waited for;
+         *          the rest keys will be loaded with one loader.loadAll call and cached;
+         *          \result == the non-null values of keys, in the order of keys;
+         */
+        Map<K, V> found = new LinkedHashMap<>();
+        Map<K, CompletableFuture<V>> waiting = new LinkedHashMap<>();
+        Map<K, CompletableFuture<V>> owned = new LinkedHashMap<>();
+        for (K key : keys) {
+            if (found.containsKey(key) || waiting.containsKey(key) || owned.containsKey(key)) continue;
+            V value = this.map.get(key);
+            if (value != null) {
+                found.put(key, value);
+                this.refreshIfNeeded(key);
+                continue;
+            }
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> existing = this.loading.putIfAbsent(key, future);
+            if (existing != null) {
+                waiting.put(key, existing);
+            } else {
+                owned.put(key, future);
+            }
+        }
+        if (!owned.isEmpty()) this.loadAll(owned, found);
+        for (Map.Entry<K, CompletableFuture<V>> entry : waiting.entrySet()) {
+            V value = this.await(entry.getKey(), entry.getValue());
+            if (value != null) found.put(entry.getKey(), value);
+        }
+        Map<K, V> result = new LinkedHashMap<>();
+        for (K key : keys) {
+            V value = found.get(key);
+            if (value != null) result.put(key, value);
+        }
+        return result;
+    }
+    
+    /**
+     * 批量加载当前线程负责的key
+     *
+     * @param owned 当前线程负责的key -> 加载结果
+     * @param found 已获取的结果
+     * @throws CacheLoadException 加载失败
+     */
+    private void loadAll(Map<K, CompletableFuture<V>> owned, Map<K, V> found) throws CacheLoadException {
+        /**
+         * @modifies:
+         *          \this.map;
+         *          \this.loading;
+         *          found;
+         * @effects:
+         *          the keys in owned will be loaded together, cached and put into found;
+         *          the futures in owned will be completed and unregistered from \this.loading;
+         */
+        try {
+            List<K> missing = new ArrayList<>();
+            for (Map.Entry<K, CompletableFuture<V>> entry : owned.entrySet()) {
+                V value = this.map.peek(entry.getKey());  // loaded by others between the miss and the registration
+                if (value == null) {
+                    missing.add(entry.getKey());
+                } else {
+                    found.put(entry.getKey(), value);
+                    entry.getValue().complete(value);
+                }
+            }
+            Map<K, V> loaded = missing.isEmpty() ? null : this.loadAll(missing);
+            if (loaded != null) {
+                for (Map.Entry<K, V> entry : loaded.entrySet()) {
+                    if (entry.getValue() != null) this.putLoaded(entry.getKey(), entry.getValue(), owned.get(entry.getKey()));
+                }
+            }
+            for (K key : missing) {
+                V value = (loaded == null) ? null : loaded.get(key);
+                if (value != null) found.put(key, value);
+                owned.get(key).complete(value);
+            }
+        } catch (Exception e) {
+            for (CompletableFuture<V> future : owned.values()) future.completeExceptionally(e);
+            throw new CacheLoadException(owned.keySet(), e);
+        } catch (Error error) {
+            for (CompletableFuture<V> future : owned.values()) future.completeExceptionally(error);
+            throw error;
+        } finally {
+            for (Map.Entry<K, CompletableFuture<V>> entry : owned.entrySet()) this.loading.remove(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    /**
+     * 调用加载器加载单个key，并记录加载耗时
+     *
+     * @param key key
+     * @return 加载结果
+     * @throws Exception 加载失败
+     */
+    private V load(K key) throws Exception {
+        /**
+         * @effects:
+         *          \result == \this.loader.load(key);
+         *          the load time and whether it failed will be recorded into the statistics of \this.map;
+         */
+        long start_nanos = System.nanoTime();
+        boolean failed = true;
+        try {
+            V value = this.loader.load(key);
+            failed = false;
+            return value;
+        } finally {
+            this.map.recordLoad(System.nanoTime() - start_nanos, failed);
+        }
+    }
+    
+    /**
+     * 调用加载器批量加载，并记录加载耗时（一次批量加载计为一次加载）
+     *
+     * @param keys key集合
+     * @return key -> 加载结果
+     * @throws Exception 加载失败
+     */
+    private Map<K, V> loadAll(List<K> keys) throws Exception {
+        /**
+         * @effects:
+         *          \result == \this.loader.loadAll(keys);
+         *          the load time and whether it failed will be recorded into the statistics of \this.map;
+         */
+        long start_nanos = System.nanoTime();
+        boolean failed = true;
+        try {
+            Map<K, V> loaded = this.loader.loadAll(keys);
+            failed = false;
+            return loaded;
+        } finally {
+            this.map.recordLoad(System.nanoTime() - start_nanos, failed);
+        }
+    }
+    
+    /**
+     * 等待其他线程的加载结果
+     *
+     * @param key    key
+     * @param future 加载结果
+     * @return 值
+     * @throws CacheLoadException 加载失败或等待被中断
+     */
+    private V await(K key, CompletableFuture<V> future) throws CacheLoadException {
+        /**
+         * @effects:
+         *          \result == the result of future;
+         *          (future failed with an Error) ==> the Error will be thrown as is;
+         *          (future failed with an exception or the waiting is interrupted) ==> CacheLoadException will be thrown;
+         *          (future is cancelled, i.e. a refresh which was rejected by \this.executor) ==> key will be got again by \this.get;
+         */
+        try {
+            return future.get();
+        } catch (CancellationException e) {  // already unregistered from \this.loading, so it will not be picked up again
+            return this.get(key);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new CacheLoadException(key, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheLoadException(key, e);
+        }
+    }
+    
+    /**
+     * 命中时判断是否需要提前刷新，需要时在线程池中异步重新加载
+     *
+     * @param key key
+     */
+    private void refreshIfNeeded(K key) {
+        /**
+         * @modifies:
+         *          \this.loading;
+         * @effects:
+         *          (refreshing is enabled && key was written more than \this.refresh_after ago && key is not being loaded)
+         *              ==> key will be reloaded in \this.executor, the old value stays until the new one is written;
+         */
+        if ((this.refresh_after <= 0) || (this.expire_after <= this.refresh_after)) return;
+        Timestamp expire_time = this.map.getExpireTime(key);
+        if ((expire_time == null) || (expire_time.getTimestamp() - System.currentTimeMillis() > this.expire_after - this.refresh_after)) return;
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        if (this.loading.putIfAbsent(key, future) != null) return;
+        try {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        V value = load(key);
+                        if (value != null) putLoaded(key, value, future);
+                        future.complete(value);
+                    } catch (Exception e) {  // keep the old value, retry on the next hit
+                        future.completeExceptionally(e);
+                    } catch (Error error) {
+                        future.completeExceptionally(error);
+                        throw error;
+                    } finally {
+                        loading.remove(key, future);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {  // rejected, retry on the next hit; the waiters who picked up the future will load by themselves
+            this.loading.remove(key, future);
+            future.cancel(false);
+        }
+    }
+    
+    /**
+     * 获取已缓存的值（不加载）
+     *
+     * @param key key
+     * @return 值（未缓存时为null）
+     */
+    public V getIfPresent(K key) {
+        /**
+         * @effects:
+         *          \result == the cached value of key, or null if key is not cached;
+         */
+        return this.map.get(key);
+    }
+    
+    /**
+     * 写入加载结果（加载期间key被invalidate时不写入，避免旧数据覆盖删除）
+     *
+     * @param key    key
+     * @param value  value
+     * @param future 本次加载对应的结果（为null表示加载器额外返回的key，直接写入）
+     */
+    private void putLoaded(K key, V value, CompletableFuture<V> future) {
+        /**
+         * @modifies:
+         *          \this.map;
+         * @effects:
+         *          (future == null || future is still registered in \this.loading) ==> key will be cached with value;
+         *          otherwise, nothing will be changed;
+         */
+        synchronized (this.map) {
+            if ((future == null) || (this.loading.get(key) == future)) this.put(key, value);
+        }
+    }
+    
+    /**
+     * 手动写入
+     *
+     * @param key   key
+     * @param value value
+     */
+    public void put(K key, V value) {
+        /**
+         * @requires:
+         *          value != null;
+         * @modifies:
+         *          \this.map;
+         * @effects:
+         *          key will be cached with value for \this.expire_after;
+         */
+        if (this.expire_after > 0) {
+            this.map.put(key, value, this.expire_after);
+        } else {
+            this.map.put(key, value);
+        }
+    }
+    
+    /**
+     * 删除缓存
+     *
+     * @param key key
+     */
+    public void invalidate(K key) {
+        /**
+         * @modifies:
+         *          \this.map;
+         *          \this.loading;
+         * @effects:
+         *          key will be removed from the cache;
+         *          the load or refresh of key in progress will be unregistered, and its result will not be cached;
+         */
+        synchronized (this.map) {
+            this.loading.remove(key);
+            this.map.remove(key);
+        }
+    }
+    
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        /**
+         * @modifies:
+         *          \this.map;
+         *          \this.loading;
+         * @effects:
+         *          the cache will be cleared;
+         *          the loads and refreshes in progress will be unregistered, and their results will not be cached;
+         */
+        synchronized (this.map) {
+            this.loading.clear();
+            this.map.clear();
+        }
+    }
+    
+    /**
+     * 获取缓存的条目数量
+     *
+     * @return 条目数量
+     */
+    public int size() {
+        /**
+         * @effects:
+         *          \result == the number of the alive entries;
+         */
+        return this.map.size();
+    }
+    
+    /**
+     * 获取底层数据结构
+     *
+     * @return 底层数据结构
+     */
+    public HashExpireMap<K, V> getMap() {
+        /**
+         * @effects:
+         *          \result == \this.map;
+         */
+        return this.map;
+    }
+}
@@ -0,0 +1,58 @@
+package models.structure.eviction;
+
+import models.application.ApplicationModel;
+
+/**
+ * 淘汰策略基类
+ * <p>
+ * 特性：
+ * 1、记录key的插入、访问和删除，容量超限时由使用者调用evict选出被淘汰的key
+ * 2、只按key的数量决策，按权重限制容量时由使用者反复调用evict，直到总权重回到上限以内
+ * <p>
+ * 注：
+ * 1、淘汰策略本身不是线程安全的，需要由使用者进行同步
+ * 2、对未记录的key调用recordAccess视为插入，调用recordRemove则忽略
+ *
+ * @param <K> key类型
+ */
+public abstract class EvictionPolicy<K> extends ApplicationModel {
+    /**
+     * 记录新插入的key
+     *
+     * @param key key
+     */
+    public abstract void recordInsert(K key);
+    
+    /**
+     * 记录对已有key的访问（读取或覆盖）
+     *
+     * @param key key
+     */
+    public abstract void recordAccess(K key);
+    
+    /**
+     * 记录被删除（非淘汰）的key
+     *
+     * @param key key
+     */
+    public abstract void recordRemove(K key);
+    
+    /**
+     * 选出并移除一个被淘汰的key
+     *
+     * @return 被淘汰的key（没有记录任何key时为null）
+     */
+    public abstract K evict();
+    
+    /**
+     * 获取记录的key数量
+     *
+     * @return key数量
+     */
+    public abstract int size();
+    
+    /**
+     * 清空记录
+     */
+    public abstract void clear();
+}
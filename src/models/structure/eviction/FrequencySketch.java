@@ -0,0 +1,226 @@
+package models.structure.eviction;
+
+import models.application.ApplicationModel;
+
+import java.util.Arrays;
+
+/**
+ * 访问频率估计器（Count-Min Sketch）
+ * <p>
+ * 特性：
+ * 1、每个key在4行计数器中各占一个4位计数器（上限15），估计值取4个计数器中的最小值，只会高估不会低估
+ * 2、每个long存放16个计数器，计数器表占用的内存约为（容量 * 8）字节
+ * 3、累计增加次数达到容量的10倍时，所有计数器减半，使频率估计随时间衰减，过去的热点会逐渐冷却
+ * <p>
+ * 注：
+ * 1、频率估计器本身不是线程安全的，需要由使用者进行同步
+ * 2、扩容时会丢弃已有的计数
+ */
+public class FrequencySketch extends ApplicationModel {
+    /**
+     * 各行的哈希种子
+     */
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    
+    /**
+     * 减半时的掩码（清除每个计数器移入的高位）
+     */
+    private static final long RESET_MASK = 0x7777777777777777L;
+    
+    /**
+     * 每个计数器的最低位
+     */
+    private static final long ONE_MASK = 0x1111111111111111L;
+    
+    /**
+     * 最大容量
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    
+    /**
+     * 计数器表
+     */
+    private long[] table;
+    
+    /**
+     * 计数器表下标掩码
+     */
+    private int table_mask;
+    
+    /**
+     * 触发减半的累计增加次数
+     */
+    private int sample_size;
+    
+    /**
+     * 当前累计增加次数
+     */
+    private int size;
+    
+    /**
+     * 构造函数
+     *
+     * @param capacity 预计的key数量
+     */
+    public FrequencySketch(int capacity) {
+        /**
+         * @modifies:
+         *          all the fields;
+         * @effects:
+         *          the sketch will be initialized to fit capacity keys;
+         */
+        this.resize(Math.max(capacity, 16));
+    }
+    
+    /**
+     * 重建计数器表
+     *
+     * @param capacity 预计的key数量
+     */
+    private void resize(int capacity) {
+        /**
+         * @modifies:
+         *          all the fields;
+         * @effects:
+         *          \this.table will be replaced by an empty table with at least capacity longs (rounded up to a power of 2);
+         */
+        int length = 1;
+        while ((length < capacity) && (length < MAXIMUM_CAPACITY)) length <<= 1;
+        this.table = new long[length];
+        this.table_mask = length - 1;
+        this.sample_size = (int) Math.min(10L * length, Integer.MAX_VALUE);
+        this.size = 0;
+    }
+    
+    /**
+     * 保证容量（不足时扩容）
+     *
+     * @param capacity 预计的key数量
+     */
+    public void ensureCapacity(int capacity) {
+        /**
+         * @modifies:
+         *          all the fields;
+         * @effects:
+         *          (\this.table.length < capacity) ==> the table will be enlarged and all the counts will be dropped;
+         */
+        if ((this.table.length < capacity) && (this.table.length < MAXIMUM_CAPACITY)) this.resize(capacity);
+    }
+    
+    /**
+     * 对哈希值进行二次散列
+     *
+     * @param hash 原哈希值
+     * @return 散列后的哈希值
+     */
+    private static int spread(int hash) {
+        /**
+         * @effects:
+         *          \result == the mixed hash;
+         */
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+    
+    /**
+     * 获取某一行计数器所在的下标
+     *
+     * @param hash 散列后的哈希值
+     * @param row  行号
+     * @return 下标
+     */
+    private int indexOf(int hash, int row) {
+        /**
+         * @effects:
+         *          \result == the index of the long holding the counter of hash in row;
+         */
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += (h >>> 32);
+        return ((int) h) & this.table_mask;
+    }
+    
+    /**
+     * 估计访问频率
+     *
+     * @param key key
+     * @return 频率估计值（0~15）
+     */
+    public int frequency(Object key) {
+        /**
+         * @effects:
+         *          \result == the minimum of the 4 counters of key;
+         */
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = 15;
+        for (int row = 0; row < 4; row++) {
+            int offset = (start + row) << 2;
+            int count = (int) ((this.table[this.indexOf(hash, row)] >>> offset) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+    
+    /**
+     * 增加访问频率
+     *
+     * @param key key
+     */
+    public void increment(Object key) {
+        /**
+         * @modifies:
+         *          \this.table;
+         *          \this.size;
+         * @effects:
+         *          the 4 counters of key will be increased by 1 unless they are saturated;
+         *          the counters will be halved once \this.size reaches \this.sample_size;
+         */
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int row = 0; row < 4; row++) {
+            int index = this.indexOf(hash, row);
+            long mask = 0xfL << ((start + row) << 2);
+            if ((this.table[index] & mask) != mask) {
+                this.table[index] += 1L << ((start + row) << 2);
+                added = true;
+            }
+        }
+        if (added && (++this.size >= this.sample_size)) this.reset();
+    }
+    
+    /**
+     * 将所有计数器减半
+     */
+    private void reset() {
+        /**
+         * @modifies:
+         *          \this.table;
+         *          \this.size;
+         * @effects:
+         *          all the counters will be halved, \this.size will be adjusted accordingly;
+         */
+        int odd_count = 0;
+        for (int i = 0; i < this.table.length; i++) {
+            odd_count += Long.bitCount(this.table[i] & ONE_MASK);
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+        this.size = (this.size >>> 1) - (odd_count >>> 2);
+    }
+    
+    /**
+     * 清空计数
+     */
+    public void clear() {
+        /**
+         * @modifies:
+         *          \this.table;
+         *          \this.size;
+         * @effects:
+         *          all the counters will be set to 0;
+         */
+        Arrays.fill(this.table, 0L);
+        this.size = 0;
+    }
+}
@@ -0,0 +1,192 @@
+package models.structure.eviction;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 最不经常使用（LFU）淘汰策略
+ * <p>
+ * 特性：
+ * 1、淘汰访问次数最少的key，次数相同时淘汰其中最早达到该次数的key
+ * 2、插入、删除、淘汰为O(log F)（F为不同访问次数的种类数，通常很小），访问为O(1)~O(log F)
+ * <p>
+ * 注：
+ * 1、访问次数只增不减，曾经的热点数据即使不再被访问也很难被淘汰，访问分布会随时间变化的场景建议使用TinyLfuEvictionPolicy
+ *
+ * @param <K> key类型
+ */
+public class LfuEvictionPolicy<K> extends EvictionPolicy<K> {
+    /**
+     * key -> 访问次数
+     */
+    private final HashMap<K, Long> frequencies = new HashMap<>();
+    
+    /**
+     * 访问次数 -> 该次数下的key（按达到该次数的先后排列）
+     */
+    private final TreeMap<Long, LinkedHashSet<K>> buckets = new TreeMap<>();
+    
+    /**
+     * 将key放入某访问次数的分组
+     *
+     * @param key       key
+     * @param frequency 访问次数
+     */
+    private void link(K key, long frequency) {
+        /**
+         * @modifies:
+         *          \this.frequencies;
+         *          \this.buckets;
+         * @effects:
+         *          key will be appended to the bucket of frequency;
+         */
+        this.frequencies.put(key, frequency);
+        LinkedHashSet<K> bucket = this.buckets.get(frequency);
+        if (bucket == null) {
+            bucket = new LinkedHashSet<>();
+            this.buckets.put(frequency, bucket);
+        }
+        bucket.add(key);
+    }
+    
+    /**
+     * 将key移出某访问次数的分组
+     *
+     * @param key       key
+     * @param frequency 访问次数
+     */
+    private void unlink(K key, long frequency) {
+        /**
+         * @modifies:
+         *          \this.buckets;
+         * @effects:
+         *          key will be removed from the bucket of frequency;
+         *          the bucket will be dropped if it becomes empty;
+         */
+        LinkedHashSet<K> bucket = this.buckets.get(frequency);
+        bucket.remove(key);
+        if (bucket.isEmpty()) this.buckets.remove(frequency);
+    }
+    
+    /**
+     * 记录新插入的key
+     *
+     * @param key key
+     */
+    @Override
+    public void recordInsert(K key) {
+        /**
+         * @modifies:
+         *          \this.frequencies;
+         *          \this.buckets;
+         * @effects:
+         *          (key is recorded) ==> it will be treated as an access;
+         *          otherwise, key will be recorded with frequency 1;
+         */
+        if (this.frequencies.containsKey(key)) {
+            this.recordAccess(key);
+        } else {
+            this.link(key, 1);
+        }
+    }
+    
+    /**
+     * 记录对已有key的访问
+     *
+     * @param key key
+     */
+    @Override
+    public void recordAccess(K key) {
+        /**
+         * @modifies:
+         *          \this.frequencies;
+         *          \this.buckets;
+         * @effects:
+         *          (key is not recorded) ==> key will be recorded with frequency 1;
+         *          otherwise, the frequency of key will be increased by 1;
+         */
+        Long frequency = this.frequencies.get(key);
+        if (frequency == null) {
+            this.link(key, 1);
+        } else {
+            this.unlink(key, frequency);
+            this.link(key, frequency + 1);
+        }
+    }
+    
+    /**
+     * 记录被删除的key
+     *
+     * @param key key
+     */
+    @Override
+    public void recordRemove(K key) {
+        /**
+         * @modifies:
+         *          \this.frequencies;
+         *          \this.buckets;
+         * @effects:
+         *          key will be forgotten;
+         */
+        Long frequency = this.frequencies.remove(key);
+        if (frequency != null) this.unlink(key, frequency);
+    }
+    
+    /**
+     * 选出并移除访问次数最少的key
+     *
+     * @return 被淘汰的key
+     */
+    @Override
+    public K evict() {
+        /**
+         * @modifies:
+         *          \this.frequencies;
+         *          \this.buckets;
+         * @effects:
+         *          (no key is recorded) ==> \result == null;
+         *          otherwise, the oldest key with the lowest frequency will be forgotten && \result == the key;
+         */
+        Map.Entry<Long, LinkedHashSet<K>> lowest = this.buckets.firstEntry();
+        if (lowest == null) return null;
+        Iterator<K> iterator = lowest.getValue().iterator();
+        K key = iterator.next();
+        iterator.remove();
+        if (lowest.getValue().isEmpty()) this.buckets.remove(lowest.getKey());
+        this.frequencies.remove(key);
+        return key;
+    }
+    
+    /**
+     * 获取记录的key数量
+     *
+     * @return key数量
+     */
+    @Override
+    public int size() {
+        /**
+         * @effects:
+         *          \result == \this.frequencies.size();
+         */
+        return this.frequencies.size();
+    }
+    
+    /**
+     * 清空记录
+     */
+    @Override
+    public void clear() {
+        /**
+         * @modifies:
+         *          \this.frequencies;
+         *          \this.buckets;
+         * @effects:
+         *          all the records will be cleared;
+         */
+        this.frequencies.clear();
+        this.buckets.clear();
+    }
+}
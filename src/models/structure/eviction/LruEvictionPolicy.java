@@ -0,0 +1,120 @@
+package models.structure.eviction;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * 最近最少使用（LRU）淘汰策略
+ * <p>
+ * 特性：
+ * 1、淘汰最久未被访问的key
+ * 2、基于访问顺序的LinkedHashMap，所有操作均为O(1)
+ * <p>
+ * 注：
+ * 1、一次性的大范围扫描会把热点数据全部挤出，此类场景建议使用TinyLfuEvictionPolicy
+ *
+ * @param <K> key类型
+ */
+public class LruEvictionPolicy<K> extends EvictionPolicy<K> {
+    /**
+     * 按访问顺序排列的key（最久未访问的在前）
+     */
+    private final LinkedHashMap<K, Boolean> order = new LinkedHashMap<>(16, 0.75f, true);
+    
+    /**
+     * 记录新插入的key
+     *
+     * @param key key
+     */
+    @Override
+    public void recordInsert(K key) {
+        /**
+         * @modifies:
+         *          \this.order;
+         * @effects:
+         *          key will be moved to the most recently used position;
+         */
+        this.order.put(key, Boolean.TRUE);
+    }
+    
+    /**
+     * 记录对已有key的访问
+     *
+     * @param key key
+     */
+    @Override
+    public void recordAccess(K key) {
+        /**
+         * @modifies:
+         *          \this.order;
+         * @effects:
+         *          key will be moved to the most recently used position;
+         */
+        this.order.put(key, Boolean.TRUE);
+    }
+    
+    /**
+     * 记录被删除的key
+     *
+     * @param key key
+     */
+    @Override
+    public void recordRemove(K key) {
+        /**
+         * @modifies:
+         *          \this.order;
+         * @effects:
+         *          key will be removed from \this.order;
+         */
+        this.order.remove(key);
+    }
+    
+    /**
+     * 选出并移除最久未被访问的key
+     *
+     * @return 被淘汰的key
+     */
+    @Override
+    public K evict() {
+        /**
+         * @modifies:
+         *          \this.order;
+         * @effects:
+         *          (\this.order is empty) ==> \result == null;
+         *          otherwise, the least recently used key will be removed from \this.order && \result == the key;
+         */
+        Iterator<K> iterator = this.order.keySet().iterator();
+        if (!iterator.hasNext()) return null;
+        K key = iterator.next();
+        iterator.remove();
+        return key;
+    }
+    
+    /**
+     * 获取记录的key数量
+     *
+     * @return key数量
+     */
+    @Override
+    public int size() {
+        /**
+         * @effects:
+         *          \result == \this.order.size();
+         */
+        return this.order.size();
+    }
+    
+    /**
+     * 清空记录
+     */
+    @Override
+    public void clear() {
+        /**
+         * @modifies:
+         *          \this.order;
+         * @effects:
+         *          \this.order will be cleared;
+         */
+        this.order.clear();
+    }
+}
@@ -0,0 +1,416 @@
+package models.structure.eviction;
+
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * W-TinyLFU淘汰策略
+ * <p>
+ * 特性：
+ * 1、key分为三段：窗口段（约1%，LRU）、主区试用段和主区保护段（保护段约占主区80%，SLRU）
+ * 2、新key先进入窗口段，被挤出窗口段后进入试用段；试用段中的key再次被访问时晋升到保护段，保护段溢出的key降回试用段
+ * 3、淘汰时，刚被挤出窗口段的候选key与试用段最久未访问的key比较访问频率（由FrequencySketch估计），频率低者被淘汰
+ * 4、兼顾突发的新热点（窗口段）和长期热点（频率准入），一次性扫描不会挤出热点数据
+ * 5、所有操作均为O(1)
+ * <p>
+ * 注：
+ * 1、频率相同时淘汰候选key；候选key频率较高但不超过victim时，以很小的概率随机准入，防止针对哈希碰撞的攻击使热点永久驻留
+ *
+ * @param <K> key类型
+ */
+public class TinyLfuEvictionPolicy<K> extends EvictionPolicy<K> {
+    /**
+     * 窗口段占比（单位：%）
+     */
+    public static final int WINDOW_PERCENT = 1;
+    
+    /**
+     * 保护段占主区的比例（单位：%）
+     */
+    public static final int PROTECTED_PERCENT = 80;
+    
+    /**
+     * 触发随机准入的候选key频率下限
+     */
+    private static final int RANDOM_ADMIT_FREQUENCY = 6;
+    
+    /**
+     * 窗口段
+     */
+    private static final int WINDOW = 0;
+    
+    /**
+     * 试用段
+     */
+    private static final int PROBATION = 1;
+    
+    /**
+     * 保护段
+     */
+    private static final int PROTECTED = 2;
+    
+    /**
+     * 链表节点
+     *
+     * @param <K> key类型
+     */
+    private static class Node<K> {
+        /**
+         * key
+         */
+        private final K key;
+        
+        /**
+         * 所在段
+         */
+        private int segment;
+        
+        /**
+         * 前驱节点
+         */
+        private Node<K> previous;
+        
+        /**
+         * 后继节点
+         */
+        private Node<K> next;
+        
+        /**
+         * 构造函数
+         *
+         * @param key key
+         */
+        private Node(K key) {
+            /**
+             * @modifies:
+             *          \this.key;
+             *          \this.previous;
+             *          \this.next;
+             * @effects:
+             *          \this will be initialized as a node linked to itself;
+             */
+            this.key = key;
+            this.previous = this;
+            this.next = this;
+        }
+    }
+    
+    /**
+     * key -> 节点
+     */
+    private final HashMap<K, Node<K>> nodes = new HashMap<>();
+    
+    /**
+     * 各段的哨兵节点（环形链表，哨兵之后为最久未访问的节点）
+     */
+    private final Node<K>[] heads;
+    
+    /**
+     * 各段的节点数量
+     */
+    private final int[] sizes = new int[3];
+    
+    /**
+     * 访问频率估计器
+     */
+    private final FrequencySketch sketch;
+    
+    /**
+     * 刚被挤出窗口段、尚未经过准入比较的节点
+     */
+    private Node<K> candidate = null;
+    
+    /**
+     * 构造函数
+     *
+     * @param expected_size 预计的key数量（用于初始化频率估计器，不足时会自动扩容）
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TinyLfuEvictionPolicy(int expected_size) {
+        /**
+         * @modifies:
+         *          \this.heads;
+         *          \this.sketch;
+         * @effects:
+         *          \this will be initialized with three empty segments;
+         */
+        this.heads = new Node[]{new Node<>(null), new Node<>(null), new Node<>(null)};
+        this.sketch = new FrequencySketch(expected_size);
+    }
+    
+    /**
+     * 构造函数
+     */
+    public TinyLfuEvictionPolicy() {
+        /**
+         * @effects:
+         *          \this will be initialized with a small sketch, which will grow along with the keys;
+         */
+        this(16);
+    }
+    
+    /**
+     * 将节点追加到某段的末尾（最近访问）
+     *
+     * @param node    节点
+     * @param segment 段
+     */
+    private void linkLast(Node<K> node, int segment) {
+        /**
+         * @modifies:
+         *          node;
+         *          \this.heads[segment];
+         *          \this.sizes[segment];
+         * @effects:
+         *          node will be appended to segment;
+         */
+        Node<K> head = this.heads[segment];
+        node.segment = segment;
+        node.previous = head.previous;
+        node.next = head;
+        head.previous.next = node;
+        head.previous = node;
+        this.sizes[segment]++;
+    }
+    
+    /**
+     * 将节点从所在段中摘除
+     *
+     * @param node 节点
+     */
+    private void unlink(Node<K> node) {
+        /**
+         * @modifies:
+         *          node;
+         *          \this.sizes[node.segment];
+         *          \this.candidate;
+         * @effects:
+         *          node will be removed from its segment;
+         */
+        node.previous.next = node.next;
+        node.next.previous = node.previous;
+        node.previous = node;
+        node.next = node;
+        this.sizes[node.segment]--;
+        if (this.candidate == node) this.candidate = null;
+    }
+    
+    /**
+     * 获取某段最久未访问的节点
+     *
+     * @param segment 段
+     * @return 节点（段为空时为null）
+     */
+    private Node<K> first(int segment) {
+        /**
+         * @effects:
+         *          (segment is empty) ==> \result == null;
+         *          otherwise, \result == the least recently used node of segment;
+         */
+        Node<K> head = this.heads[segment];
+        return (head.next == head) ? null : head.next;
+    }
+    
+    /**
+     * 将窗口段溢出的节点移入试用段
+     */
+    private void balanceWindow() {
+        /**
+         * @modifies:
+         *          the segments;
+         *          \this.candidate;
+         * @effects:
+         *          the overflowed nodes of the window will be moved to the end of the probation;
+         *          the last of them will become \this.candidate;
+         */
+        int quota = Math.max(1, this.nodes.size() * WINDOW_PERCENT / 100);
+        while (this.sizes[WINDOW] > quota) {
+            Node<K> node = this.first(WINDOW);
+            this.unlink(node);
+            this.linkLast(node, PROBATION);
+            this.candidate = node;
+        }
+    }
+    
+    /**
+     * 将保护段溢出的节点降回试用段
+     */
+    private void balanceProtected() {
+        /**
+         * @modifies:
+         *          the segments;
+         * @effects:
+         *          the overflowed nodes of the protected segment will be moved to the end of the probation;
+         */
+        int quota = Math.max(1, (this.nodes.size() - this.sizes[WINDOW]) * PROTECTED_PERCENT / 100);
+        while (this.sizes[PROTECTED] > quota) {
+            Node<K> node = this.first(PROTECTED);
+            this.unlink(node);
+            this.linkLast(node, PROBATION);
+        }
+    }
+    
+    /**
+     * 记录新插入的key
+     *
+     * @param key key
+     */
+    @Override
+    public void recordInsert(K key) {
+        /**
+         * @modifies:
+         *          \this.nodes;
+         *          the segments;
+         *          \this.sketch;
+         * @effects:
+         *          (key is recorded) ==> it will be treated as an access;
+         *          otherwise, key will be appended to the window && the overflowed window nodes will be moved to the probation;
+         *          the frequency of key will be increased;
+         */
+        if (this.nodes.containsKey(key)) {
+            this.recordAccess(key);
+            return;
+        }
+        this.sketch.increment(key);
+        Node<K> node = new Node<>(key);
+        this.nodes.put(key, node);
+        this.linkLast(node, WINDOW);
+        this.sketch.ensureCapacity(this.nodes.size());
+        this.balanceWindow();
+    }
+    
+    /**
+     * 记录对已有key的访问
+     *
+     * @param key key
+     */
+    @Override
+    public void recordAccess(K key) {
+        /**
+         * @modifies:
+         *          the segments;
+         *          \this.sketch;
+         * @effects:
+         *          (key is not recorded) ==> it will be treated as an insert;
+         *          (key is in the probation) ==> key will be promoted to the protected segment;
+         *          otherwise, key will be moved to the end of its segment;
+         *          the frequency of key will be increased;
+         */
+        Node<K> node = this.nodes.get(key);
+        if (node == null) {
+            this.recordInsert(key);
+            return;
+        }
+        this.sketch.increment(key);
+        int segment = (node.segment == PROBATION) ? PROTECTED : node.segment;
+        this.unlink(node);
+        this.linkLast(node, segment);
+        if (segment == PROTECTED) this.balanceProtected();
+    }
+    
+    /**
+     * 记录被删除的key
+     *
+     * @param key key
+     */
+    @Override
+    public void recordRemove(K key) {
+        /**
+         * @modifies:
+         *          \this.nodes;
+         *          the segments;
+         * @effects:
+         *          key will be forgotten (its frequency is kept in the sketch);
+         */
+        Node<K> node = this.nodes.remove(key);
+        if (node != null) this.unlink(node);
+    }
+    
+    /**
+     * 判断候选节点是否可以替换victim
+     *
+     * @param candidate 候选节点
+     * @param victim    victim
+     * @return 是否准入候选节点
+     */
+    private boolean admit(Node<K> candidate, Node<K> victim) {
+        /**
+         * @effects:
+         *          (frequency(candidate) > frequency(victim)) ==> \result == true;
+         *          (frequency(candidate) < RANDOM_ADMIT_FREQUENCY) ==> \result == false;
+         *          otherwise, \result == true with the probability of 1/128;
+         */
+        int candidate_frequency = this.sketch.frequency(candidate.key);
+        int victim_frequency = this.sketch.frequency(victim.key);
+        if (candidate_frequency > victim_frequency) return true;
+        if (candidate_frequency < RANDOM_ADMIT_FREQUENCY) return false;
+        return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+    }
+    
+    /**
+     * 选出并移除一个被淘汰的key
+     *
+     * @return 被淘汰的key
+     */
+    @Override
+    public K evict() {
+        /**
+         * @modifies:
+         *          \this.nodes;
+         *          the segments;
+         *          \this.candidate;
+         * @effects:
+         *          (no key is recorded) ==> \result == null;
+         *          (there is a candidate) ==> the one of the candidate and the least recently used probation key with lower frequency will be evicted;
+         *          otherwise, the least recently used key of the probation, the protected segment and the window will be evicted in turn;
+         */
+        Node<K> victim = this.first(PROBATION);
+        if (victim == null) victim = this.first(PROTECTED);
+        if (victim == null) victim = this.first(WINDOW);
+        if (victim == null) return null;
+        Node<K> candidate = this.candidate;
+        this.candidate = null;
+        if ((candidate != null) && (candidate != victim) && !this.admit(candidate, victim)) victim = candidate;
+        this.nodes.remove(victim.key);
+        this.unlink(victim);
+        return victim.key;
+    }
+    
+    /**
+     * 获取记录的key数量
+     *
+     * @return key数量
+     */
+    @Override
+    public int size() {
+        /**
+         * @effects:
+         *          \result == \this.nodes.size();
+         */
+        return this.nodes.size();
+    }
+    
+    /**
+     * 清空记录
+     */
+    @Override
+    public void clear() {
+        /**
+         * @modifies:
+         *          \this.nodes;
+         *          the segments;
+         *          \this.sketch;
+         *          \this.candidate;
+         * @effects:
+         *          all the records and the frequencies will be cleared;
+         */
+        this.nodes.clear();
+        for (int i = 0; i < this.heads.length; i++) {
+            this.heads[i].previous = this.heads[i];
+            this.heads[i].next = this.heads[i];
+            this.sizes[i] = 0;
+        }
+        this.sketch.clear();
+        this.candidate = null;
+    }
+}
@@ -0,0 +1,89 @@
+package models.structure.expiry;
+
+import interfaces.structure.Expiry;
+import models.application.ApplicationModel;
+
+/**
+ * 访问后超时策略（滑动有效期）
+ * <p>
+ * 特性：
+ * 1、插入、覆盖、读取后均重新计算有效期，一段时间内没有被读写的数据才会过期
+ * 2、读取时的续期只是在时间轮中摘除并重新挂入条目，为O(1)
+ *
+ * @param <K> key类型
+ * @param <V> value类型
+ */
+public class ExpireAfterAccess<K, V> extends ApplicationModel implements Expiry<K, V> {
+    /**
+     * 有效期（单位：ms）
+     */
+    private final long duration;
+    
+    /**
+     * 构造函数
+     *
+     * @param duration 有效期（单位：ms）
+     */
+    public ExpireAfterAccess(long duration) {
+        /**
+         * @modifies:
+         *          \this.duration;
+         * @effects:
+         *          \this.duration = duration;
+         */
+        this.duration = duration;
+    }
+    
+    /**
+     * 计算新插入数据的有效期
+     *
+     * @param key          key
+     * @param value        value
+     * @param current_time 当前时间
+     * @return 有效期
+     */
+    @Override
+    public long expireAfterCreate(K key, V value, long current_time) {
+        /**
+         * @effects:
+         *          \result == \this.duration;
+         */
+        return this.duration;
+    }
+    
+    /**
+     * 计算被覆盖数据的有效期
+     *
+     * @param key              key
+     * @param value            新value
+     * @param current_time     当前时间
+     * @param current_duration 当前的剩余有效期
+     * @return 有效期
+     */
+    @Override
+    public long expireAfterUpdate(K key, V value, long current_time, long current_duration) {
+        /**
+         * @effects:
+         *          \result == \this.duration;
+         */
+        return this.duration;
+    }
+    
+    /**
+     * 计算被读取数据的有效期
+     *
+     * @param key              key
+     * @param value            value
+     * @param current_time     当前时间
+     * @param current_duration 当前的剩余有效期
+     * @return 有效期
+     */
+    @Override
+    public long expireAfterRead(K key, V value, long current_time, long current_duration) {
+        /**
+         * @effects:
+         *          \result == \this.duration;
+         */
+        return this.duration;
+    }
+}
@@ -0,0 +1,238 @@
+package models.structure.histogram;
+
+import models.application.ApplicationModel;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 延迟直方图
+ * <p>
+ * 特性：
+ * 1、对数-线性分桶（每个2的幂区间再等分为8段），相对误差不超过12.5%，与HdrHistogram思路一致
+ * 2、桶数量固定（不足500个），记录操作无锁且无对象分配
+ * 3、可以在记录的同时并发读取（读取结果为近似一致的快照）
+ * <p>
+ * 用途：
+ * 1、记录唤醒误差、触发延迟、执行耗时等非负的时间数据（单位由使用者自定，一般为ns）
+ */
+public class LatencyHistogram extends ApplicationModel {
+    /**
+     * 每个2的幂区间的分段数（取对数）
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    
+    /**
+     * 每个2的幂区间的分段数
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    
+    /**
+     * 直接按值分桶的上限
+     */
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT * 2;
+    
+    /**
+     * 桶数量
+     */
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - (SUB_BUCKET_BITS + 1)) * SUB_BUCKET_COUNT;
+    
+    /**
+     * 桶计数
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    
+    /**
+     * 总数
+     */
+    private final AtomicLong total_count = new AtomicLong();
+    
+    /**
+     * 总和
+     */
+    private final AtomicLong total_sum = new AtomicLong();
+    
+    /**
+     * 最大值
+     */
+    private final AtomicLong max_value = new AtomicLong();
+    
+    /**
+     * 获取值所在的桶
+     *
+     * @param value 值
+     * @return 桶下标
+     */
+    private static int getBucketIndex(long value) {
+        /**
+         * @requires:
+         *          value >= 0;
+         * @effects:
+         *          (value < LINEAR_LIMIT) ==> \result == value;
+         *          otherwise, \result == the log-linear bucket of value;
+         */
+        if (value < LINEAR_LIMIT) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1));
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT + sub;
+    }
+    
+    /**
+     * 获取桶的上界（包含）
+     *
+     * @param index 桶下标
+     * @return 上界
+     */
+    private static long getBucketUpperBound(int index) {
+        /**
+         * @effects:
+         *          \result == the largest value which falls into the bucket;
+         */
+        if (index < LINEAR_LIMIT) return index;
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKET_COUNT + SUB_BUCKET_BITS + 1;
+        long sub = (index - LINEAR_LIMIT) % SUB_BUCKET_COUNT;
+        long lower = (1L << exponent) + (sub << (exponent - SUB_BUCKET_BITS));
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+    
+    /**
+     * 记录一个值
+     *
+     * @param value 值（负数按0记录）
+     */
+    public void record(long value) {
+        /**
+         * @modifies:
+         *          \this.counts;
+         *          \this.total_count;
+         *          \this.total_sum;
+         *          \this.max_value;
+         * @effects:
+         *          max(value, 0) will be recorded;
+         */
+        if (value < 0) value = 0;
+        this.counts.incrementAndGet(getBucketIndex(value));
+        this.total_count.incrementAndGet();
+        this.total_sum.addAndGet(value);
+        long max = this.max_value.get();
+        while ((value > max) && !this.max_value.compareAndSet(max, value)) max = this.max_value.get();
+    }
+    
+    /**
+     * 获取记录总数
+     *
+     * @return 记录总数
+     */
+    public long getCount() {
+        /**
+         * @effects:
+         *          \result == \this.total_count;
+         */
+        return this.total_count.get();
+    }
+    
+    /**
+     * 获取最大值
+     *
+     * @return 最大值
+     */
+    public long getMax() {
+        /**
+         * @effects:
+         *          \result == \this.max_value;
+         */
+        return this.max_value.get();
+    }
+    
+    /**
+     * 获取平均值
+     *
+     * @return 平均值（无记录时为0）
+     */
+    public double getMean() {
+        /**
+         * @effects:
+         *          (\this.total_count == 0) ==> \result == 0;
+         *          otherwise, \result == \this.total_sum / \this.total_count;
+         */
+        long count = this.total_count.get();
+        return (count == 0) ? 0 : (double) this.total_sum.get() / count;
+    }
+    
+    /**
+     * 获取分位数
+     *
+     * @param percentile 百分位（0-100）
+     * @return 分位数（所在桶的上界，不超过最大值；无记录时为0）
+     */
+    public long getPercentile(double percentile) {
+        /**
+         * @effects:
+         *          (\this.total_count == 0) ==> \result == 0;
+         *          otherwise, \result == the upper bound of the bucket where the percentile falls, but no more than \this.max_value;
+         */
+        long count = this.total_count.get();
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100.0 * count);
+        if (rank < 1) rank = 1;
+        long accumulated = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            accumulated += this.counts.get(i);
+            if (accumulated >= rank) return Math.min(getBucketUpperBound(i), this.max_value.get());
+        }
+        return this.max_value.get();
+    }
+    
+    /**
+     * 复制当前记录
+     *
+     * @return 新的直方图（与当前直方图互不影响）
+     */
+    public LatencyHistogram copy() {
+        /**
+         * @effects:
+         *          \result == a new histogram with the same records as \this;
+         */
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < BUCKET_COUNT; i++) histogram.counts.set(i, this.counts.get(i));
+        histogram.total_count.set(this.total_count.get());
+        histogram.total_sum.set(this.total_sum.get());
+        histogram.max_value.set(this.max_value.get());
+        return histogram;
+    }
+    
+    /**
+     * 清空记录
+     */
+    public void reset() {
+        /**
+         * @modifies:
+         *          \this.counts;
+         *          \this.total_count;
+         *          \this.total_sum;
+         *          \this.max_value;
+         * @effects:
+         *          all the records will be cleared;
+         */
+        for (int i = 0; i < BUCKET_COUNT; i++) this.counts.set(i, 0);
+        this.total_count.set(0);
+        this.total_sum.set(0);
+        this.max_value.set(0);
+    }
+    
+    /**
+     * 转为字符串
+     *
+     * @return 字符串
+     */
+    @Override
+    public String toString() {
+        /**
+         * @effects:
+         *          \result will be the summary of the histogram;
+         */
+        return String.format("count=%s, mean=%.1f, p50=%s, p90=%s, p99=%s, p999=%s, max=%s",
+                this.getCount(), this.getMean(), this.getPercentile(50), this.getPercentile(90),
+                this.getPercentile(99), this.getPercentile(99.9), this.getMax());
+    }
+}
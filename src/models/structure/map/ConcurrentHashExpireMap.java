@@ -0,0 +1,859 @@
+package models.structure.map;
+
+import interfaces.structure.ExpireSweepableInterface;
+import models.thread.circulation.ExpireSweepThread;
+import models.time.Timestamp;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 支持超时功能的并发Map
+ * <p>
+ * 特性：
+ * 1、与HashExpireMap的超时用法一致（put时可指定有效期或超时时间点，不指定则无限期）
+ * 2、基于ConcurrentHashMap实现，读操作完全无锁，写操作只锁定对应的哈希槽，吞吐量随cpu核数扩展
+ * 3、每个键值对单独记录超时时间，过期的键值对在被访问到时惰性删除，也可以调用removeExpiredKeys统一清理
+ * 4、所有复合操作（putIfAbsent、replace、compute、merge等）均为原子操作，过期的键值对视为不存在
+ * 5、可选后台清理：由全局共享的ExpireSweepThread分批遍历清理过期数据，没有人访问的map也能及时释放内存
+ * <p>
+ * 注：
+ * 1、与ConcurrentHashMap相同，不支持null作为key或value
+ * 2、size、containsValue及各集合视图需要遍历全部数据，且为弱一致性（与ConcurrentHashMap的迭代器一致）
+ * 3、compute、merge等方法新建的键值对为无限期，替换已有键值对时保留其原有的超时时间
+ *
+ * @param <K> key类型
+ * @param <V> value类型
+ */
+public class ConcurrentHashExpireMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>, ExpireSweepableInterface {
+    /**
+     * 无限期对应的超时时间
+     */
+    private static final long NEVER_EXPIRE = Long.MAX_VALUE;
+    
+    /**
+     * 带超时时间的value
+     *
+     * @param <V> value类型
+     */
+    private static class ExpireValue<V> {
+        /**
+         * value
+         */
+        private final V value;
+        
+        /**
+         * 超时时间（unix时间戳，单位：ms）
+         */
+        private final long expire_time;
+        
+        /**
+         * 构造函数
+         *
+         * @param value       value
+         * @param expire_time 超时时间
+         */
+        private ExpireValue(V value, long expire_time) {
+            /**
+             * @modifies:
+             *          \this.value;
+             *          \this.expire_time;
+             * @effects:
+             *          \this.value = value;
+             *          \this.expire_time = expire_time;
+             */
+            this.value = value;
+            this.expire_time = expire_time;
+        }
+        
+        /**
+         * 是否已超时
+         *
+         * @param present 当前时间
+         * @return 是否已超时
+         */
+        private boolean isExpired(long present) {
+            /**
+             * @effects:
+             *          \result == (\this.expire_time <= present);
+             */
+            return this.expire_time <= present;
+        }
+    }
+    
+    /**
+     * 数据
+     */
+    private final ConcurrentHashMap<K, ExpireValue<V>> data;
+    
+    /**
+     * 键值对集合视图
+     */
+    private final EntrySetView entry_set = new EntrySetView();
+    
+    /**
+     * 后台清理的遍历位置（受自身监视器保护）
+     */
+    private Iterator<Map.Entry<K, ExpireValue<V>>> sweep_cursor = null;
+    
+    /**
+     * 构造函数
+     *
+     * @param initial_capacity  初始容量
+     * @param concurrency_level 预计的并发写线程数
+     * @param background_sweep  是否由后台清理线程（ExpireSweepThread.getDefault()）清理过期数据
+     */
+    public ConcurrentHashExpireMap(int initial_capacity, int concurrency_level, boolean background_sweep) {
+        /**
+         * @modifies:
+         *          \this.data;
+         * @effects:
+         *          \this.data will be initialized with the arguments;
+         *          (background_sweep) ==> \this will be registered into the default ExpireSweepThread;
+         */
+        this.data = new ConcurrentHashMap<>(initial_capacity, 0.75f, concurrency_level);
+        if (background_sweep) ExpireSweepThread.getDefault().register(this);
+    }
+    
+    /**
+     * 构造函数
+     *
+     * @param initial_capacity  初始容量
+     * @param concurrency_level 预计的并发写线程数
+     */
+    public ConcurrentHashExpireMap(int initial_capacity, int concurrency_level) {
+        /**
+         * @effects:
+         *          it will be initialized with the arguments, without background sweeping;
+         */
+        this(initial_capacity, concurrency_level, false);
+    }
+    
+    /**
+     * 构造函数
+     *
+     * @param background_sweep 是否由后台清理线程（ExpireSweepThread.getDefault()）清理过期数据
+     */
+    public ConcurrentHashExpireMap(boolean background_sweep) {
+        /**
+         * @effects:
+         *          it will be initialized with the default capacity;
+         */
+        this(16, 1, background_sweep);
+    }
+    
+    /**
+     * 构造函数
+     */
+    public ConcurrentHashExpireMap() {
+        /**
+         * @effects:
+         *          it will be initialized with the default capacity, without background sweeping;
+         */
+        this(false);
+    }
+    
+    /**
+     * 将超时时间戳转换为内部表示
+     *
+     * @param expire_time 超时时间（null表示无限期）
+     * @return 内部表示
+     */
+    private static long toExpireTime(Timestamp expire_time) {
+        /**
+         * @effects:
+         *          (expire_time == null) ==> \result == NEVER_EXPIRE;
+         *          otherwise, \result == expire_time.timestamp;
+         */
+        return (expire_time == null) ? NEVER_EXPIRE : expire_time.getTimestamp();
+    }
+    
+    /**
+     * 获取未过期的value对象，过期时顺便删除
+     *
+     * @param key key
+     * @return value对象（不存在或已过期时为null）
+     */
+    private ExpireValue<V> getAlive(Object key) {
+        /**
+         * @modifies:
+         *          \this.data;
+         * @effects:
+         *          (the key exists and not expired) ==> \result == the value object;
+         *          (the key has expired) ==> the key will be removed && \result == null;
+         *          otherwise, \result == null;
+         */
+        ExpireValue<V> value = this.data.get(key);
+        if (value == null) return null;
+        if (value.isExpired(System.currentTimeMillis())) {
+            this.data.remove(key, value);
+            return null;
+        }
+        return value;
+    }
+    
+    /**
+     * 清空所有超时的key
+     *
+     * @return 删除的数量
+     */
+    public int removeExpiredKeys() {
+        /**
+         * @modifies:
+         *          \this.data;
+         * @effects:
+         *          all the expired keys will be removed;
+         *          \result == the number of the keys removed;
+         */
+        long present = System.currentTimeMillis();
+        int count = 0;
+        for (Map.Entry<K, ExpireValue<V>> entry : this.data.entrySet()) {
+            if (entry.getValue().isExpired(present) && this.data.remove(entry.getKey(), entry.getValue())) count++;
+        }
+        return count;
+    }
+    
+    /**
+     * 增量清理超时的key（由后台清理线程调用）
+     *
+     * @param budget 本次最多检查的key数量
+     * @return 实际检查的key数量
+     */
+    @Override
+    public int sweepExpired(int budget) {
+        /**
+         * @modifies:
+         *          \this.data;
+         *          \this.sweep_cursor;
+         * @effects:
+         *          at most budget keys will be checked from the last position, and the expired ones will be removed;
+         *          the position will be reset when the end of \this.data is reached;
+         *          \result == the number of the keys checked;
+         */
+        long present = System.currentTimeMillis();
+        int count = 0;
+        synchronized (this) {
+            if (this.sweep_cursor == null) this.sweep_cursor = this.data.entrySet().iterator();
+            while (count < budget) {
+                if (!this.sweep_cursor.hasNext()) {
+                    this.sweep_cursor = null;
+                    break;
+                }
+                Map.Entry<K, ExpireValue<V>> entry = this.sweep_cursor.next();
+                count++;
+                if (entry.getValue().isExpired(present)) this.data.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * 获取某键对应值
+     *
+     * @param key key
+     * @return 对应值
+     */
+    @Override
+    public V get(Object key) {
+        /**
+         * @effects:
+         *          (the key exists and not expired) ==> \result == the value;
+         *          otherwise, \result == null;
+         */
+        ExpireValue<V> value = this.getAlive(key);
+        return (value == null) ? null : value.value;
+    }
+    
+    /**
+     * 判断是否包含key
+     *
+     * @param key key
+     * @return 是否包含
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        /**
+         * @effects:
+         *          \result == (the key exists and not expired);
+         */
+        return this.getAlive(key) != null;
+    }
+    
+    /**
+     * 获取某键的超时时间
+     *
+     * @param key key
+     * @return 超时时间（不存在、已过期或无限期时为null）
+     */
+    public Timestamp getExpireTime(Object key) {
+        /**
+         * @effects:
+         *          (the key exists, not expired and has an expire time) ==> \result == the expire time;
+         *          otherwise, \result == null;
+         */
+        ExpireValue<V> value = this.getAlive(key);
+        if ((value == null) || (value.expire_time == NEVER_EXPIRE)) return null;
+        return new Timestamp(value.expire_time);
+    }
+    
+    /**
+     * 将key键值设定为value，expire_time时超时
+     *
+     * @param key         key
+     * @param value       value
+     * @param expire_time 超时时间（null表示无限期）
+     * @return 原有的值（不存在或已过期时为null）
+     */
+    public V put(K key, V value, Timestamp expire_time) {
+        /**
+         * @requires:
+         *          key != null;
+         *          value != null;
+         * @modifies:
+         *          \this.data;
+         * @effects:
+         *          the key will be set to the value, and it will expire at expire_time;
+         *          \result == the previous alive value;
+         */
+        ExpireValue<V> previous = this.data.put(key, new ExpireValue<>(value, toExpireTime(expire_time)));
+        return ((previous == null) || previous.isExpired(System.currentTimeMillis())) ? null : previous.value;
+    }
+    
+    /**
+     * 将key键值设定为value，expire_after毫秒后超时
+     *
+     * @param key          key
+     * @param value        value
+     * @param expire_after 超时期限
+     * @return 原有的值（不存在或已过期时为null）
+     */
+    public V put(K key, V value, long expire_after) {
+        /**
+         * @effects:
+         *          the key will be set to the value, and it will expire after expire_after ms;
+         *          \result == the previous alive value;
+         */
+        return this.put(key, value, new Timestamp().getOffseted(expire_after));
+    }
+    
+    /**
+     * 将key键值设定为value（无限期）
+     *
+     * @param key   key
+     * @param value value
+     * @return 原有的值（不存在或已过期时为null）
+     */
+    @Override
+    public V put(K key, V value) {
+        /**
+         * @effects:
+         *          the key will be set to the value without expiring;
+         *          \result == the previous alive value;
+         */
+        return this.put(key, value, (Timestamp) null);
+    }
+    
+    /**
+     * 空缺时赋值，expire_time时超时
+     *
+     * @param key         key
+     * @param value       value
+     * @param expire_time 超时时间（null表示无限期）
+     * @return 已有的值（不存在或已过期时为null，此时赋值成功）
+     */
+    public V putIfAbsent(K key, V value, Timestamp expire_time) {
+        /**
+         * @requires:
+         *          key != null;
+         *          value != null;
+         * @modifies:
+         *          \this.data;
+         * @effects:
+         *          (the key is absent or expired) ==> the key will be set to the value atomically && \result == null;
+         *          otherwise, \result == the existing value;
+         */
+        ExpireValue<V> created = new ExpireValue<>(value, toExpireTime(expire_time));
+        while (true) {
+            ExpireValue<V> existing = this.data.putIfAbsent(key, created);
+            if (existing == null) return null;
+            if (!existing.isExpired(System.currentTimeMillis())) return existing.value;
+            if (this.data.replace(key, existing, created)) return null;
+        }
+    }
+    
+    /**
+     * 空缺时赋值，expire_after毫秒后超时
+     *
+     * @param key          key
+     * @param value        value
+     * @param expire_after 超时期限
+     * @return 已有的值（不存在或已过期时为null，此时赋值成功）
+     */
+    public V putIfAbsent(K key, V value, long expire_after) {
+        /**
+         * @effects:
+         *          (the key is absent or expired) ==> the key will be set to the value, and it will expire after expire_after ms && \result == null;
+         *          otherwise, \result == the existing value;
+         */
+        return this.putIfAbsent(key, value, new Timestamp().getOffseted(expire_after));
+    }
+    
+    /**
+     * 空缺时赋值（无限期）
+     *
+     * @param key   key
+     * @param value value
+     * @return 已有的值（不存在或已过期时为null，此时赋值成功）
+     */
+    @Override
+    public V putIfAbsent(K key, V value) {
+        /**
+         * @effects:
+         *          (the key is absent or expired) ==> the key will be set to the value without expiring && \result == null;
+         *          otherwise, \result == the existing value;
+         */
+        return this.putIfAbsent(key, value, (Timestamp) null);
+    }
+    
+    /**
+     * 删除指定的key
+     *
+     * @param key key
+     * @return key原本的value（不存在或已过期时为null）
+     */
+    @Override
+    public V remove(Object key) {
+        /**
+         * @modifies:
+         *          \this.data;
+         * @effects:
+         *          the key will be removed;
+         *          \result == the previous alive value;
+         */
+        ExpireValue<V> previous = this.data.remove(key);
+        return ((previous == null) || previous.isExpired(System.currentTimeMillis())) ? null : previous.value;
+    }
+    
+    /**
+     * 删除键值对
+     *
+     * @param key   key
+     * @param value value
+     * @return 是否删除
+     */
+    @Override
+    public boolean remove(Object key, Object value) {
+        /**
+         * @modifies:
+         *          \this.data;
+         * @effects:
+         *          (the key is alive and mapped to the value) ==> the key will be removed atomically && \result == true;
+         *          otherwise, \result == false;
+         */
+        if (value == null) return false;
+        while (true) {
+            ExpireValue<V> existing = this.getAlive(key);
+            if ((existing == null) || !existing.value.equals(value)) return false;
+            if (this.data.remove(key, existing)) return true;
+        }
+    }
+    
+    /**
+     * 替换键值对（保留原有的超时时间）
+     *
+     * @param key      key
+     * @param oldValue 旧value
+     * @param newValue 新value
+     * @return 是否替换成功
+     */
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        /**
+         * @modifies:
+         *          \this.data;
+         * @effects:
+         *          (the key is alive and mapped to oldValue) ==> the value will be replaced atomically, keeping the expire time && \result == true;
+         *          otherwise, \result == false;
+         */
+        if ((oldValue == null) || (newValue == null)) throw new NullPointerException();
+        while (true) {
+            ExpireValue<V> existing = this.getAlive(key);
+            if ((existing == null) || !existing.value.equals(oldValue)) return false;
+            if (this.data.replace(key, existing, new ExpireValue<>(newValue, existing.expire_time))) return true;
+        }
+    }
+    
+    /**
+     * 值替换（保留原有的超时时间）
+     *
+     * @param key   key
+     * @param value value
+     * @return 原有的值（不存在或已过期时为null，此时不替换）
+     */
+    @Override
+    public V replace(K key, V value) {
+        /**
+         * @modifies:
+         *          \this.data;
+         * @effects:
+         *          (the key is alive) ==> the value will be replaced atomically, keeping the expire time && \result == the previous value;
+         *          otherwise, \result == null;
+         */
+        if (value == null) throw new NullPointerException();
+        while (true) {
+            ExpireValue<V> existing = this.getAlive(key);
+            if (existing == null) return null;
+            if (this.data.replace(key, existing, new ExpireValue<>(value, existing.expire_time))) return existing.value;
+        }
+    }
+    
+    /**
+     * 取出value对象中的value
+     *
+     * @param value value对象
+     * @return value（value对象为null时为null）
+     */
+    private static <V> V unwrap(ExpireValue<V> value) {
+        /**
+         * @effects:
+         *          \result == ((value == null) ? null : value.value);
+         */
+        return (value == null) ? null : value.value;
+    }
+    
+    /**
+     * 不存在或已过期时计算并赋值（无限期）
+     *
+     * @param key              key
+     * @param mapping_function 计算函数
+     * @return 当前的值（计算结果为null时为null）
+     */
+    @Override
+    public V computeIfAbsent(K key, final Function<? super K, ? extends V> mapping_function) {
+        /**
+         * @requires:
+         *          key != null;
+         * @modifies:
+         *          \this.data;
+         * @effects:
+         *          (the key is alive) ==> \result == the existing value;
+         *          (the key is absent or expired) ==> the computed value will be set without expiring atomically && \result == the computed value;
+         *          (the computed value is null) ==> the expired value will be removed && \result == null;
+         */
+        if (mapping_function == null) throw new NullPointerException();
+        ExpireValue<V> alive = this.getAlive(key);
+        if (alive != null) return alive.value;
+        return unwrap(this.data.compute(key, new BiFunction<K, ExpireValue<V>, ExpireValue<V>>() {
+            @Override
+            public ExpireValue<V> apply(K k, ExpireValue<V> existing) {
+                if ((existing != null) && !existing.isExpired(System.currentTimeMillis())) return existing;
+                V value = mapping_function.apply(k);
+                return (value == null) ? null : new ExpireValue<V>(value, NEVER_EXPIRE);
+            }
+        }));
+    }
+    
+    /**
+     * 存在且未过期时重新计算（保留原有的超时时间）
+     *
+     * @param key                key
+     * @param remapping_function 计算函数
+     * @return 新的值（不存在、已过期或计算结果为null时为null）
+     */
+    @Override
+    public V computeIfPresent(K key, final BiFunction<? super K, ? super V, ? extends V> remapping_function) {
+        /**
+         * @requires:
+         *          key != null;
+         * @modifies:
+         *          \this.data;
+         * @effects:
+         *          (the key is alive) ==> the value will be recomputed atomically, keeping the expire time && \result == the new value;
+         *          (the new value is null or the key has expired) ==> the key will be removed && \result == null;
+         *          (the key is absent) ==> \result == null;
+         */
+        if (remapping_function == null) throw new NullPointerException();
+        return unwrap(this.data.computeIfPresent(key, new BiFunction<K, ExpireValue<V>, ExpireValue<V>>() {
+            @Override
+            public ExpireValue<V> apply(K k, ExpireValue<V> existing) {
+                if (existing.isExpired(System.currentTimeMillis())) return null;
+                V value = remapping_function.apply(k, existing.value);
+                return (value == null) ? null : new ExpireValue<V>(value, existing.expire_time);
+            }
+        }));
+    }
+    
+    /**
+     * 重新计算（已过期视为不存在；替换时保留原有的超时时间，新建时为无限期）
+     *
+     * @param key                key
+     * @param remapping_function 计算函数
+     * @return 新的值（计算结果为null时为null）
+     */
+    @Override
+    public V compute(K key, final BiFunction<? super K, ? super V, ? extends V> remapping_function) {
+        /**
+         * @requires:
+         *          key != null;
+         * @modifies:
+         *          \this.data;
+         * @effects:
+         *          the value will be recomputed from the alive value (null if absent or expired) atomically;
+         *          (the key is alive) ==> the expire time will be kept;
+         *          otherwise, the new value will not expire;
+         *          (the new value is null) ==> the key will be removed;
+         *          \result == the new value;
+         */
+        if (remapping_function == null) throw new NullPointerException();
+        return unwrap(this.data.compute(key, new BiFunction<K, ExpireValue<V>, ExpireValue<V>>() {
+            @Override
+            public ExpireValue<V> apply(K k, ExpireValue<V> existing) {
+                boolean alive = (existing != null) && !existing.isExpired(System.currentTimeMillis());
+                V value = remapping_function.apply(k, alive ? existing.value : null);
+                if (value == null) return null;
+                return new ExpireValue<V>(value, alive ? existing.expire_time : NEVER_EXPIRE);
+            }
+        }));
+    }
+    
+    /**
+     * 合并（已过期视为不存在；替换时保留原有的超时时间，新建时为无限期）
+     *
+     * @param key                key
+     * @param value              value
+     * @param remapping_function 合并函数
+     * @return 新的值（合并结果为null时为null）
+     */
+    @Override
+    public V merge(K key, final V value, final BiFunction<? super V, ? super V, ? extends V> remapping_function) {
+        /**
+         * @requires:
+         *          key != null;
+         *          value != null;
+         * @modifies:
+         *          \this.data;
+         * @effects:
+         *          (the key is alive) ==> the value will be merged atomically, keeping the expire time;
+         *          otherwise, the key will be set to value without expiring;
+         *          (the merged value is null) ==> the key will be removed;
+         *          \result == the new value;
+         */
+        if ((value == null) || (remapping_function == null)) throw new NullPointerException();
+        return unwrap(this.data.compute(key, new BiFunction<K, ExpireValue<V>, ExpireValue<V>>() {
+            @Override
+            public ExpireValue<V> apply(K k, ExpireValue<V> existing) {
+                if ((existing == null) || existing.isExpired(System.currentTimeMillis())) return new ExpireValue<V>(value, NEVER_EXPIRE);
+                V merged = remapping_function.apply(existing.value, value);
+                return (merged == null) ? null : new ExpireValue<V>(merged, existing.expire_time);
+            }
+        }));
+    }
+    
+    /**
+     * 获取大小（需要遍历）
+     *
+     * @return 大小
+     */
+    @Override
+    public int size() {
+        /**
+         * @effects:
+         *          \result == the number of the alive keys;
+         */
+        long present = System.currentTimeMillis();
+        int count = 0;
+        for (ExpireValue<V> value : this.data.values()) {
+            if (!value.isExpired(present)) count++;
+        }
+        return count;
+    }
+    
+    /**
+     * 检测是否为空
+     *
+     * @return 是否为空
+     */
+    @Override
+    public boolean isEmpty() {
+        /**
+         * @effects:
+         *          \result == (there is no alive key);
+         */
+        long present = System.currentTimeMillis();
+        for (ExpireValue<V> value : this.data.values()) {
+            if (!value.isExpired(present)) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * 清空数据结构
+     */
+    @Override
+    public void clear() {
+        /**
+         * @modifies:
+         *          \this.data;
+         * @effects:
+         *          \this.data will be cleared;
+         */
+        this.data.clear();
+    }
+    
+    /**
+     * 返回entry集合
+     *
+     * @return entry集合（弱一致性视图，不含已过期的键值对）
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        /**
+         * @effects:
+         *          \result == the view of the alive entries;
+         */
+        return this.entry_set;
+    }
+    
+    /**
+     * 键值对集合视图
+     */
+    private class EntrySetView extends AbstractSet<Entry<K, V>> {
+        /**
+         * 获取迭代器
+         *
+         * @return 迭代器
+         */
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            /**
+             * @effects:
+             *          \result == an iterator which skips the expired entries;
+             */
+            return new EntryIterator();
+        }
+        
+        /**
+         * 获取大小
+         *
+         * @return 大小
+         */
+        @Override
+        public int size() {
+            /**
+             * @effects:
+             *          \result == ConcurrentHashExpireMap.this.size();
+             */
+            return ConcurrentHashExpireMap.this.size();
+        }
+        
+        /**
+         * 清空
+         */
+        @Override
+        public void clear() {
+            /**
+             * @effects:
+             *          ConcurrentHashExpireMap.this will be cleared;
+             */
+            ConcurrentHashExpireMap.this.clear();
+        }
+    }
+    
+    /**
+     * 键值对迭代器（跳过已过期的键值对）
+     */
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+        /**
+         * 内部迭代器
+         */
+        private final Iterator<Entry<K, ExpireValue<V>>> iterator = data.entrySet().iterator();
+        
+        /**
+         * 下一个键值对
+         */
+        private Entry<K, ExpireValue<V>> next_entry = null;
+        
+        /**
+         * 上一个返回的键值对
+         */
+        private Entry<K, ExpireValue<V>> last_entry = null;
+        
+        /**
+         * 是否还有下一个
+         *
+         * @return 是否还有下一个
+         */
+        @Override
+        public boolean hasNext() {
+            /**
+             * @modifies:
+             *          \this.next_entry;
+             * @effects:
+             *          \this.next_entry will be moved to the next alive entry;
+             *          \result == (\this.next_entry != null);
+             */
+            if (this.next_entry != null) return true;
+            long present = System.currentTimeMillis();
+            while (this.iterator.hasNext()) {
+                Entry<K, ExpireValue<V>> entry = this.iterator.next();
+                if (!entry.getValue().isExpired(present)) {
+                    this.next_entry = entry;
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        /**
+         * 获取下一个
+         *
+         * @return 下一个键值对
+         */
+        @Override
+        public Entry<K, V> next() {
+            /**
+             * @modifies:
+             *          \this.next_entry;
+             *          \this.last_entry;
+             * @effects:
+             *          \result == the next alive entry, whose setValue will write through and keep the expire time;
+             *          exceptional behavior(NoSuchElementException):
+             *          there is no more alive entry;
+             */
+            if (!this.hasNext()) throw new NoSuchElementException();
+            this.last_entry = this.next_entry;
+            this.next_entry = null;
+            K key = this.last_entry.getKey();
+            V value = this.last_entry.getValue().value;
+            return new SimpleEntry<K, V>(key, value) {
+                @Override
+                public V setValue(V value) {
+                    V previous = super.setValue(value);
+                    ConcurrentHashExpireMap.this.replace(key, value);
+                    return previous;
+                }
+            };
+        }
+        
+        /**
+         * 删除上一个返回的键值对
+         */
+        @Override
+        public void remove() {
+            /**
+             * @modifies:
+             *          data;
+             * @effects:
+             *          the last entry returned will be removed if it is not changed;
+             *          exceptional behavior(IllegalStateException):
+             *          next() has not been called, or remove() has already been called after the last next();
+             */
+            if (this.last_entry == null) throw new IllegalStateException();
+            data.remove(this.last_entry.getKey(), this.last_entry.getValue());
+            this.last_entry = null;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package models.structure.map;
+
+import interfaces.structure.Serializer;
+import models.application.ApplicationModel;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 超时Map的快照
+ * <p>
+ * 功能：
+ * 1、保存某一时刻所有键值对及其超时时间（绝对时间戳），可写入二进制文件，重启后读取并恢复到新的map中
+ * <p>
+ * 特性：
+ * 1、文件通过FileChannel分块流式读写，不会一次性在内存中构造整个文件
+ * 2、先写入临时文件，完成后原子替换目标文件，写入中途失败不会破坏已有的快照
+ * 3、读取时直接跳过已过期的记录；记录长度为负数或超过文件剩余长度时视为文件损坏，不会按错误的长度分配内存
+ * <p>
+ * 文件格式（大端）：
+ * 1、文件头：魔数（int）、版本（int）、生成时间（long）
+ * 2、记录：超时时间（long，Long.MAX_VALUE表示无限期）、key长度（int）、value长度（int）、key、value
+ * 3、结束标记：超时时间（long）为0、key长度（int）为-1
+ *
+ * @param <K> key类型
+ * @param <V> value类型
+ */
+public class ExpireMapSnapshot<K, V> extends ApplicationModel {
+    /**
+     * 魔数
+     */
+    private static final int MAGIC = 0x48454d53;
+    
+    /**
+     * 版本
+     */
+    private static final int VERSION = 1;
+    
+    /**
+     * 无限期
+     */
+    public static final long NEVER_EXPIRE = Long.MAX_VALUE;
+    
+    /**
+     * 读写缓冲区大小
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    /**
+     * 记录头长度
+     */
+    private static final int RECORD_HEADER_SIZE = 16;
+    
+    /**
+     * key数组
+     */
+    private Object[] keys;
+    
+    /**
+     * value数组
+     */
+    private Object[] values;
+    
+    /**
+     * 超时时间数组
+     */
+    private long[] expire_times;
+    
+    /**
+     * 键值对数量
+     */
+    private int size = 0;
+    
+    /**
+     * 生成时间（unix时间戳，单位：ms）
+     */
+    private final long created_time;
+    
+    /**
+     * 构造函数
+     *
+     * @param capacity     预计的键值对数量
+     * @param created_time 生成时间
+     */
+    ExpireMapSnapshot(int capacity, long created_time) {
+        /**
+         * @modifies:
+         *          all the fields;
+         * @effects:
+         *          an empty snapshot with the capacity will be initialized;
+         */
+        int length = Math.max(capacity, 16);
+        this.keys = new Object[length];
+        this.values = new Object[length];
+        this.expire_times = new long[length];
+        this.created_time = created_time;
+    }
+    
+    /**
+     * 追加键值对
+     *
+     * @param key         key
+     * @param value       value
+     * @param expire_time 超时时间（Long.MAX_VALUE表示无限期）
+     */
+    void add(K key, V value, long expire_time) {
+        /**
+         * @modifies:
+         *          the arrays;
+         *          \this.size;
+         * @effects:
+         *          the entry will be appended, and the arrays will be enlarged if needed;
+         */
+        if (this.size == this.keys.length) {
+            int length = this.size * 2;
+            this.keys = Arrays.copyOf(this.keys, length);
+            this.values = Arrays.copyOf(this.values, length);
+            this.expire_times = Arrays.copyOf(this.expire_times, length);
+        }
+        this.keys[this.size] = key;
+        this.values[this.size] = value;
+        this.expire_times[this.size] = expire_time;
+        this.size++;
+    }
+    
+    /**
+     * 获取键值对数量
+     *
+     * @return 键值对数量
+     */
+    public int size() {
+        /**
+         * @effects:
+         *          \result == \this.size;
+         */
+        return this.size;
+    }
+    
+    /**
+     * 获取生成时间
+     *
+     * @return 生成时间（unix时间戳，单位：ms）
+     */
+    public long getCreatedTime() {
+        /**
+         * @effects:
+         *          \result == \this.created_time;
+         */
+        return this.created_time;
+    }
+    
+    /**
+     * 获取第index个key
+     *
+     * @param index 下标
+     * @return key
+     */
+    @SuppressWarnings("unchecked")
+    public K getKey(int index) {
+        /**
+         * @requires:
+         *          0 <= index < \this.size;
+         * @effects:
+         *          \result == the index-th key;
+         */
+        return (K) this.keys[index];
+    }
+    
+    /**
+     * 获取第index个value
+     *
+     * @param index 下标
+     * @return value
+     */
+    @SuppressWarnings("unchecked")
+    public V getValue(int index) {
+        /**
+         * @requires:
+         *          0 <= index < \this.size;
+         * @effects:
+         *          \result == the index-th value;
+         */
+        return (V) this.values[index];
+    }
+    
+    /**
+     * 获取第index个超时时间
+     *
+     * @param index 下标
+     * @return 超时时间（unix时间戳，单位：ms；Long.MAX_VALUE表示无限期）
+     */
+    public long getExpireTime(int index) {
+        /**
+         * @requires:
+         *          0 <= index < \this.size;
+         * @effects:
+         *          \result == the index-th expire time;
+         */
+        return this.expire_times[index];
+    }
+    
+    /**
+     * 将缓冲区中的数据全部写入通道
+     *
+     * @param channel 通道
+     * @param buffer  缓冲区
+     * @throws IOException 写入失败
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        /**
+         * @modifies:
+         *          buffer;
+         * @effects:
+         *          all the data in buffer will be written into channel, and buffer will be cleared;
+         */
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+    
+    /**
+     * 写入文件
+     *
+     * @param file             文件
+     * @param key_serializer   key序列化器
+     * @param value_serializer value序列化器
+     * @return 写入的键值对数量（不含已过期的）
+     * @throws IOException 写入失败
+     */
+    public int write(Path file, Serializer<K> key_serializer, Serializer<V> value_serializer) throws IOException {
+        /**
+         * @modifies:
+         *          file;
+         * @effects:
+         *          the alive entries will be written into a temporary file, which will then replace file atomically;
+         *          \result == the number of the entries written;
+         *          (failed) ==> IOException will be thrown, file is not changed;
+         */
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        long present = System.currentTimeMillis();
+        int count = 0;
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                buffer.putInt(MAGIC).putInt(VERSION).putLong(this.created_time);
+                for (int i = 0; i < this.size; i++) {
+                    if (this.expire_times[i] <= present) continue;
+                    byte[] key_bytes = key_serializer.serialize(this.getKey(i));
+                    byte[] value_bytes = value_serializer.serialize(this.getValue(i));
+                    if (buffer.remaining() < RECORD_HEADER_SIZE) flush(channel, buffer);
+                    buffer.putLong(this.expire_times[i]).putInt(key_bytes.length).putInt(value_bytes.length);
+                    for (byte[] bytes : new byte[][]{key_bytes, value_bytes}) {
+                        int offset = 0;
+                        while (offset < bytes.length) {
+                            if (!buffer.hasRemaining()) flush(channel, buffer);
+                            int length = Math.min(buffer.remaining(), bytes.length - offset);
+                            buffer.put(bytes, offset, length);
+                            offset += length;
+                        }
+                    }
+                    count++;
+                }
+                if (buffer.remaining() < 12) flush(channel, buffer);
+                buffer.putLong(0).putInt(-1);
+                flush(channel, buffer);
+                channel.force(false);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return count;
+    }
+    
+    /**
+     * 保证缓冲区中至少有length字节可读
+     *
+     * @param channel 通道
+     * @param buffer  缓冲区（读模式）
+     * @param length  字节数
+     * @throws IOException 读取失败或文件不完整
+     */
+    private static void require(FileChannel channel, ByteBuffer buffer, int length) throws IOException {
+        /**
+         * @modifies:
+         *          buffer;
+         * @effects:
+         *          more data will be read from channel until at least length bytes are remaining in buffer;
+         *          (the end of channel is reached before that) ==> EOFException will be thrown;
+         */
+        if (buffer.remaining() >= length) return;
+        buffer.compact();
+        while (buffer.position() < length) {
+            if (channel.read(buffer) < 0) throw new EOFException("Snapshot file is truncated");
+        }
+        buffer.flip();
+    }
+    
+    /**
+     * 获取尚未读取的字节数（缓冲区中的加上通道中的）
+     *
+     * @param channel 通道
+     * @param buffer  缓冲区（读模式）
+     * @return 尚未读取的字节数
+     * @throws IOException 读取失败
+     */
+    private static long remaining(FileChannel channel, ByteBuffer buffer) throws IOException {
+        /**
+         * @effects:
+         *          \result == the number of the bytes remaining in buffer and channel;
+         */
+        return buffer.remaining() + channel.size() - channel.position();
+    }
+    
+    /**
+     * 从缓冲区读取字节数组（可超过缓冲区大小）
+     *
+     * @param channel 通道
+     * @param buffer  缓冲区（读模式）
+     * @param length  字节数
+     * @return 字节数组
+     * @throws IOException 读取失败或文件不完整
+     */
+    private static byte[] readBytes(FileChannel channel, ByteBuffer buffer, int length) throws IOException {
+        /**
+         * @modifies:
+         *          buffer;
+         * @effects:
+         *          \result == the next length bytes;
+         */
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            if (!buffer.hasRemaining()) require(channel, buffer, 1);
+            int count = Math.min(buffer.remaining(), length - offset);
+            buffer.get(bytes, offset, count);
+            offset += count;
+        }
+        return bytes;
+    }
+    
+    /**
+     * 读取文件（跳过已过期的记录）
+     *
+     * @param file             文件
+     * @param key_serializer   key序列化器
+     * @param value_serializer value序列化器
+     * @param <K>              key类型
+     * @param <V>              value类型
+     * @return 快照
+     * @throws IOException 读取失败或文件格式错误
+     */
+    public static <K, V> ExpireMapSnapshot<K, V> read(Path file, Serializer<K> key_serializer, Serializer<V> value_serializer) throws IOException {
+        /**
+         * @effects:
+         *          \result == the snapshot containing the records in file which are not expired;
+         *          (file can not be read or is broken) ==> IOException will be thrown;
+         *          (a record length is negative or longer than the rest of file) ==> IOException will be thrown before allocating it;
+         */
+        long present = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.flip();
+            require(channel, buffer, 16);
+            if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) throw new IOException("Not a snapshot file: " + file);
+            ExpireMapSnapshot<K, V> snapshot = new ExpireMapSnapshot<>((int) Math.min(channel.size() / 64, 1 << 20), buffer.getLong());
+            while (true) {
+                require(channel, buffer, 12);
+                long expire_time = buffer.getLong();
+                int key_length = buffer.getInt();
+                if ((key_length == -1) && (expire_time == 0)) break;
+                if (key_length < 0) throw new IOException("Snapshot file is corrupt");
+                require(channel, buffer, 4);
+                int value_length = buffer.getInt();
+                if ((value_length < 0) || ((long) key_length + value_length > remaining(channel, buffer))) throw new IOException("Snapshot file is corrupt");
+                byte[] key_bytes = readBytes(channel, buffer, key_length);
+                byte[] value_bytes = readBytes(channel, buffer, value_length);
+                if (expire_time <= present) continue;
+                snapshot.add(key_serializer.deserialize(key_bytes), value_serializer.deserialize(value_bytes), expire_time);
+            }
+            return snapshot;
+        }
+    }
+}
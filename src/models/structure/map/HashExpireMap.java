@@ -1,10 +1,28 @@
 package models.structure.map;
 
 import interfaces.application.ApplicationInterface;
-import models.structure.object.TimeBasedObject;
+import interfaces.structure.ExpireSweepableInterface;
+import interfaces.structure.Expiry;
+import interfaces.structure.RemovalListener;
+import interfaces.structure.Serializer;
+import interfaces.structure.Weigher;
+import models.structure.eviction.EvictionPolicy;
+import models.structure.eviction.TinyLfuEvictionPolicy;
+import models.structure.metrics.CacheMetrics;
+import models.structure.metrics.CacheMetricsSnapshot;
+import models.structure.removal.RemovalNotification.RemovalCause;
+import models.structure.removal.RemovalNotifier;
+import models.structure.wheel.HierarchicalTimingWheel;
+import models.structure.wheel.TimingWheel;
+import models.structure.wheel.TimingWheelEntry;
+import helpers.thread.ExecutorHelper;
+import models.thread.circulation.ExpireSweepThread;
 import models.time.Timestamp;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -15,72 +33,228 @@ import java.util.function.Function;
  * 特性：
  * 1、支持超时功能，即一个键值对只有一定的有效期（也可以设置为无限有效期），过期后自动删除
  * 2、采用局部+整体增量维护算法，理论上性能可靠且资源占用低
- * 3、对核心操作均进行了线程安全保护
+ * 3、超时时间记录在多层时间轮中，put（含覆盖已有key、刷新有效期）和remove均为O(1)，不随数据量增长而变慢
+ * 4、对核心操作均进行了线程安全保护，批量操作（带有效期的putAll、getAll）只加一次锁
+ * 5、可选后台清理：由全局共享的ExpireSweepThread增量清理过期数据，前台的size、keySet、forEach等操作不再顺带清理，没有人访问的map也能及时释放内存
+ * 6、可选单条有效期策略（Expiry）：未显式指定有效期的写入以及读取时按策略计算有效期，可实现访问后超时（滑动有效期）等，续期为时间轮上的O(1)摘除和挂入
+ * 7、可选容量上限：按条目数或自定义权重（Weigher，如估算的字节数）限制容量，超出时先清理过期数据，再按淘汰策略（EvictionPolicy，默认W-TinyLFU）淘汰
+ * 8、可选删除监听（RemovalListener）：超时、淘汰、覆盖、显式删除均会带上原因通知，通知在线程池中分批异步交付，不占用调用者的时间
+ * 9、支持快照（ExpireMapSnapshot）：可将数据连同绝对超时时间写入文件，重启后跳过已过期的数据批量恢复，避免冷启动
+ * 10、可通过enableMetrics开启运行统计（命中、未命中、超时、淘汰、加载耗时、条目存活时间），getMetricsSnapshot无需加锁即可读取，未开启时几乎没有额外开销
  * <p>
  * 注：
  * 1、该类目前尚未经过大量生产环境测试，如果遇到bug请联系作者
  * 2、该类大部分方法规格与父类HashMap一致（之所以重写只是因为需要进行数据同步性维护），故大部分方法将省略规格
+ * 3、该类所有操作共用一把锁，多线程高并发读写时请使用ConcurrentHashExpireMap
+ * 4、开启后台清理时，get、containsKey等按key访问的操作依然精确，但size、keySet、forEach等整体操作可能包含至多一个清理周期内刚过期的数据；
+ *    后台清理每次只从时间轮中取出有限数量的key，一轮用完工作量（即超时速度超过清理速度）时，下一次写入或整体操作会在前台整体清理一次积压的过期数据；
+ *    由于清理线程会在锁内删除数据，此时keySet、entrySet、values视图的迭代器遍历的是创建时的副本（通过迭代器删除及setValue依然会写回map），不会与清理线程冲突
+ * 5、通过keySet、entrySet、values等视图及其迭代器删除数据与remove等效；通过entry的setValue修改数据时有效期、权重和淘汰记录不会同步更新，请使用put修改
  *
  * @param <K> key类型
  * @param <V> value类型
  */
-public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInterface {
+public class HashExpireMap<K, V> extends HashMap<K, V> implements ExpireSweepableInterface {
     /**
-     * 带时间的key对象
+     * 超时时间轮（首次设置有限期的key时创建）
      */
-    private class TimeBasedKey extends TimeBasedObject<K> {
-        /**
-         * 构造函数
-         *
-         * @param key         key值
-         * @param expire_time 超时时间(null为无穷)
-         */
-        public TimeBasedKey(K key, Timestamp expire_time) {
-            super(key);
-            setTimestamp(expire_time);
-        }
-        
-        /**
-         * 获取key值
-         *
-         * @return key值
-         */
-        public K getKey() {
-            return super.getObject();
-        }
-    }
+    private TimingWheel<K> key_wheel = null;
+    
+    /**
+     * key -> 时间轮条目映射（仅包含有限期的key）
+     */
+    private final HashMap<K, TimingWheelEntry<K>> key_map;
+    
+    /**
+     * 已从时间轮中取出、尚未删除的超时key
+     */
+    private final ArrayDeque<K> expired_keys;
+    
+    /**
+     * 是否由后台清理线程清理过期数据
+     */
+    private final boolean background_sweep;
+    
+    /**
+     * 后台清理是否跟不上（上一次增量清理用完了工作量，此时由前台操作整体清理一次）
+     */
+    private volatile boolean sweep_lagging = false;
+    
+    /**
+     * 容量上限（总权重，Long.MAX_VALUE表示不限制）
+     */
+    private final long maximum_weight;
+    
+    /**
+     * 淘汰策略（不限制容量时为null）
+     */
+    private final EvictionPolicy<K> eviction_policy;
+    
+    /**
+     * 权重计算器（为null时每个键值对权重为1）
+     */
+    private final Weigher<? super K, ? super V> weigher;
+    
+    /**
+     * key -> 权重（仅在设置了权重计算器时使用）
+     */
+    private final HashMap<K, Long> weight_map;
+    
+    /**
+     * 当前总权重（仅在限制容量时统计）
+     */
+    private long total_weight = 0;
+    
+    /**
+     * 有效期策略（为null时只使用put时显式指定的有效期）
+     */
+    private final Expiry<? super K, ? super V> expiry;
     
     /**
-     * 超时对象队列
+     * 删除通知分发器（未设置删除监听时为null）
      */
-    private final PriorityQueue<TimeBasedKey> key_queue;
+    private RemovalNotifier<K, V> removal_notifier = null;
     
     /**
-     * key -> 超时对象映射
+     * 运行统计（未开启统计时为null）
      */
-    private final HashMap<K, TimeBasedKey> key_map;
+    private volatile CacheMetrics metrics = null;
+    
+    /**
+     * key -> 写入时间（仅在开启统计时记录，用于统计存活时间）
+     */
+    private HashMap<K, Long> created_times = null;
+    
+    /**
+     * 键集合视图（首次获取时创建）
+     */
+    private Set<K> key_set_view = null;
+    
+    /**
+     * entry集合视图（首次获取时创建）
+     */
+    private Set<Entry<K, V>> entry_set_view = null;
+    
+    /**
+     * 值集合视图（首次获取时创建）
+     */
+    private Collection<V> values_view = null;
     
     /**
      * 构造函数
      */
     public HashExpireMap() {
-        this.key_queue = new PriorityQueue<>(new Comparator<TimeBasedKey>() {
-            @Override
-            public int compare(TimeBasedKey o1, TimeBasedKey o2) {
-                Timestamp timestamp1 = o1.getTimestamp();
-                Timestamp timestamp2 = o2.getTimestamp();
-                if ((timestamp1 == null) && (timestamp2 == null)) {
-                    return 0;
-                } else if (timestamp1 == null) {
-                    return 1;
-                } else if (timestamp2 == null) {
-                    return -1;
-                } else {
-                    return Timestamp.compare(timestamp1, timestamp2);
-                }
-            }
-        });
+        this(false);
+    }
+    
+    /**
+     * 构造函数
+     *
+     * @param background_sweep 是否由后台清理线程（ExpireSweepThread.getDefault()）清理过期数据
+     */
+    public HashExpireMap(boolean background_sweep) {
+        this(Long.MAX_VALUE, null, null, background_sweep);
+    }
+    
+    /**
+     * 构造函数（按有效期策略计算有效期）
+     *
+     * @param expiry 有效期策略（如ExpireAfterAccess）
+     */
+    public HashExpireMap(Expiry<? super K, ? super V> expiry) {
+        this(Long.MAX_VALUE, null, null, expiry, false);
+    }
+    
+    /**
+     * 构造函数（按条目数限制容量，使用W-TinyLFU淘汰策略）
+     *
+     * @param maximum_size 最大条目数
+     */
+    public HashExpireMap(long maximum_size) {
+        this(maximum_size, new TinyLfuEvictionPolicy<>((int) Math.min(maximum_size, 1 << 20)), null, false);
+    }
+    
+    /**
+     * 构造函数（按条目数限制容量）
+     *
+     * @param maximum_size    最大条目数
+     * @param eviction_policy 淘汰策略
+     */
+    public HashExpireMap(long maximum_size, EvictionPolicy<K> eviction_policy) {
+        this(maximum_size, eviction_policy, null, false);
+    }
+    
+    /**
+     * 构造函数
+     *
+     * @param maximum_weight   容量上限（总权重，Long.MAX_VALUE表示不限制）
+     * @param eviction_policy  淘汰策略（为null且限制容量时使用W-TinyLFU）
+     * @param weigher          权重计算器（为null时每个键值对权重为1）
+     * @param background_sweep 是否由后台清理线程（ExpireSweepThread.getDefault()）清理过期数据
+     */
+    public HashExpireMap(long maximum_weight, EvictionPolicy<K> eviction_policy, Weigher<? super K, ? super V> weigher, boolean background_sweep) {
+        this(maximum_weight, eviction_policy, weigher, null, background_sweep);
+    }
+    
+    /**
+     * 构造函数
+     *
+     * @param maximum_weight   容量上限（总权重，Long.MAX_VALUE表示不限制）
+     * @param eviction_policy  淘汰策略（为null且限制容量时使用W-TinyLFU）
+     * @param weigher          权重计算器（为null时每个键值对权重为1）
+     * @param expiry           有效期策略（为null时只使用put时显式指定的有效期）
+     * @param background_sweep 是否由后台清理线程（ExpireSweepThread.getDefault()）清理过期数据
+     */
+    public HashExpireMap(long maximum_weight, EvictionPolicy<K> eviction_policy, Weigher<? super K, ? super V> weigher,
+                         Expiry<? super K, ? super V> expiry, boolean background_sweep) {
+        if (maximum_weight < 0) throw new IllegalArgumentException("maximum_weight must not be negative");
         this.key_map = new HashMap<>();
+        this.expired_keys = new ArrayDeque<>();
+        this.background_sweep = background_sweep;
+        this.maximum_weight = maximum_weight;
+        if (maximum_weight == Long.MAX_VALUE) {
+            this.eviction_policy = null;
+        } else {
+            this.eviction_policy = (eviction_policy == null) ? new TinyLfuEvictionPolicy<>() : eviction_policy;
+        }
+        this.weigher = weigher;
+        this.weight_map = ((weigher == null) || (this.eviction_policy == null)) ? null : new HashMap<>();
+        this.expiry = expiry;
+        if (background_sweep) ExpireSweepThread.getDefault().register(this);
+    }
+    
+    /**
+     * 将Object类型的key转为K（只用于按key查找的方法，key不属于本map时后续操作均不会命中）
+     *
+     * @param key key
+     * @return key
+     */
+    @SuppressWarnings("unchecked")
+    private K asKey(Object key) {
+        return (K) key;
+    }
+    
+    /**
+     * 从时间轮中取出已超时的key
+     *
+     * @param present 时间节点
+     * @param limit   最多取出的key数量（其余的留在时间轮中）
+     */
+    private void collectExpiredKeys(Timestamp present, int limit) {
+        if ((this.key_wheel == null) || (this.key_wheel.getNextAdvanceTime() > present.getTimestamp())) return;
+        this.expired_keys.addAll(this.key_wheel.advance(present.getTimestamp(), limit));
+    }
+    
+    /**
+     * 删除一个已从时间轮中取出的key（期间被重新设置过的key不删除）
+     *
+     * @param key     key
+     * @param present 时间节点
+     */
+    private void removeCollectedKey(K key, Timestamp present) {
+        TimingWheelEntry<K> entry = this.key_map.get(key);
+        if ((entry == null) || entry.isScheduled() || (entry.getDeadline() > present.getTimestamp())) return;
+        this.removeEntry(key, RemovalCause.EXPIRED);
     }
     
     /**
@@ -88,11 +262,35 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      */
     protected synchronized void removeExpiredKeys() {
         Timestamp present = new Timestamp();
-        while (!this.key_queue.isEmpty()) {
-            TimeBasedKey key_object = this.key_queue.peek();
-            if (key_object == null) continue;
-            if (!checkExpired(key_object.getKey())) break;
+        this.collectExpiredKeys(present, Integer.MAX_VALUE);
+        while (!this.expired_keys.isEmpty()) this.removeCollectedKey(this.expired_keys.poll(), present);
+        this.sweep_lagging = false;
+    }
+    
+    /**
+     * 前台操作时清空所有超时的key（开启后台清理时，只在后台清理跟不上时清理）
+     */
+    private void removeExpiredKeysInForeground() {
+        if (!this.background_sweep || this.sweep_lagging) this.removeExpiredKeys();
+    }
+    
+    /**
+     * 增量清理超时的key（由后台清理线程调用，每次从时间轮中最多取出budget个key，不会在锁内一次性取出全部积压）
+     *
+     * @param budget 本次最多处理的key数量
+     * @return 实际处理的key数量
+     */
+    @Override
+    public synchronized int sweepExpired(int budget) {
+        Timestamp present = new Timestamp();
+        if (this.expired_keys.isEmpty()) this.collectExpiredKeys(present, budget);
+        int count = 0;
+        while ((count < budget) && !this.expired_keys.isEmpty()) {
+            count++;
+            this.removeCollectedKey(this.expired_keys.poll(), present);
         }
+        this.sweep_lagging = (count >= budget);
+        return count;
     }
     
     /**
@@ -113,16 +311,298 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 是否删除
      */
     protected synchronized boolean checkExpired(K key, Timestamp present) {
-        TimeBasedKey key_object = this.key_map.get(key);
-        Timestamp timestamp = key_object.getTimestamp();
-        if ((timestamp == null) || (Timestamp.compare(timestamp, present) > 0)) {  // not expired
+        TimingWheelEntry<K> entry = this.key_map.get(key);
+        if ((entry == null) || (entry.getDeadline() > present.getTimestamp())) {  // not expired
             return false;
         } else {  // has expired
-            this.remove(key_object.getKey());
+            this.removeEntry(key, RemovalCause.EXPIRED);
             return true;
         }
     }
     
+    /**
+     * 摘除key的超时记录
+     *
+     * @param key key
+     */
+    private void unlinkExpireTime(Object key) {
+        TimingWheelEntry<K> entry = this.key_map.remove(key);
+        if (entry != null) this.key_wheel.remove(entry);
+    }
+    
+    /**
+     * 获取key的剩余有效期
+     *
+     * @param key     key
+     * @param present 当前时间
+     * @return 剩余有效期（无限期时为Long.MAX_VALUE）
+     */
+    private long getRemainingDuration(Object key, long present) {
+        TimingWheelEntry<K> entry = this.key_map.get(key);
+        return (entry == null) ? Long.MAX_VALUE : entry.getDeadline() - present;
+    }
+    
+    /**
+     * 将有效期转换为超时时间
+     *
+     * @param present  当前时间
+     * @param duration 有效期（Long.MAX_VALUE表示无限期）
+     * @return 超时时间（无限期时为null）
+     */
+    private static Timestamp toExpireTime(long present, long duration) {
+        if (duration >= Long.MAX_VALUE - present) return null;
+        return new Timestamp(present + Math.max(duration, 0));
+    }
+    
+    /**
+     * 按有效期策略重新设置key的超时时间
+     *
+     * @param key      key
+     * @param present  当前时间
+     * @param duration 有效期（Long.MAX_VALUE表示无限期）
+     */
+    private void rescheduleExpireTime(K key, long present, long duration) {
+        Timestamp expire_time = toExpireTime(present, duration);
+        TimingWheelEntry<K> entry = this.key_map.get(key);
+        if ((entry != null) && (expire_time != null) && (entry.getDeadline() == expire_time.getTimestamp())) return;
+        this.unlinkExpireTime(key);
+        if (expire_time == null) return;
+        if (this.key_wheel == null) this.key_wheel = new HierarchicalTimingWheel<>();
+        this.key_map.put(key, this.key_wheel.add(expire_time.getTimestamp(), key));
+    }
+    
+    /**
+     * 读取到key后更新淘汰记录，并按有效期策略续期
+     *
+     * @param key     key
+     * @param value   读取到的value
+     * @param present 当前时间
+     */
+    private void recordRead(K key, V value, long present) {
+        if (this.eviction_policy != null) this.eviction_policy.recordAccess(key);
+        if (this.expiry == null) return;
+        long current_duration = this.getRemainingDuration(key, present);
+        long duration = this.expiry.expireAfterRead(key, value, present, current_duration);
+        if (duration != current_duration) this.rescheduleExpireTime(key, present, duration);
+    }
+    
+    /**
+     * 写入key后更新权重和淘汰记录，超出容量时淘汰
+     *
+     * @param key     key
+     * @param value   写入的value
+     * @param existed 写入前key是否存在
+     */
+    private void recordWrite(K key, V value, boolean existed) {
+        if (this.eviction_policy == null) return;
+        if (this.weigher == null) {
+            if (!existed) this.total_weight++;
+        } else {
+            long weight = Math.max(this.weigher.weigh(key, value), 0);
+            Long previous = this.weight_map.put(key, weight);
+            this.total_weight += weight - ((previous == null) ? 0 : previous);
+            if (weight > this.maximum_weight) {  // can never fit, drop it instead of flushing the others
+                this.removeEntry(key, RemovalCause.EVICTED);
+                return;
+            }
+        }
+        if (existed) {
+            this.eviction_policy.recordAccess(key);
+        } else {
+            this.eviction_policy.recordInsert(key);
+        }
+        this.evictIfNeeded();
+    }
+    
+    /**
+     * 删除key后更新权重和淘汰记录
+     *
+     * @param key key
+     */
+    private void recordRemove(Object key) {
+        if (this.eviction_policy == null) return;
+        if (this.weigher == null) {
+            this.total_weight--;
+        } else {
+            Long weight = this.weight_map.remove(key);
+            if (weight != null) this.total_weight -= weight;
+        }
+        this.eviction_policy.recordRemove(this.asKey(key));
+    }
+    
+    /**
+     * 由父类方法修改key后同步超时记录、权重和淘汰记录，并发出删除通知
+     * （key原本存在且value未变时视为一次读取，如putIfAbsent、computeIfAbsent命中，replace、remove(key, value)条件不满足）
+     *
+     * @param key      key
+     * @param existed  修改前key是否存在
+     * @param previous 修改前的value
+     */
+    private void afterUpdate(K key, boolean existed, V previous) {
+        if (super.containsKey(key)) {
+            V value = super.get(key);
+            if (existed && (value == previous)) {  // nothing written, keep the deadline of expire-after-write
+                this.recordRead(key, value, System.currentTimeMillis());
+                return;
+            }
+            if (existed && (value != previous) && (this.removal_notifier != null)) this.removal_notifier.notify(key, previous, RemovalCause.REPLACED);
+            if (this.expiry != null) {
+                long present = System.currentTimeMillis();
+                long duration = existed ? this.expiry.expireAfterUpdate(key, value, present, this.getRemainingDuration(key, present))
+                        : this.expiry.expireAfterCreate(key, value, present);
+                this.rescheduleExpireTime(key, present, duration);
+            }
+            if (!existed) this.recordCreate(key);
+            this.recordWrite(key, value, existed);
+        } else if (existed) {
+            this.unlinkExpireTime(key);
+            this.afterRemove(key, previous, RemovalCause.EXPLICIT);
+        }
+    }
+    
+    /**
+     * 超出容量时先清理过期数据，再按淘汰策略淘汰，直到回到容量以内
+     */
+    private void evictIfNeeded() {
+        if (this.total_weight <= this.maximum_weight) return;
+        this.removeExpiredKeys();
+        while (this.total_weight > this.maximum_weight) {
+            K victim = this.eviction_policy.evict();
+            if (victim == null) break;
+            this.removeEntry(victim, RemovalCause.EVICTED);
+        }
+    }
+    
+    /**
+     * 获取容量上限
+     *
+     * @return 容量上限（总权重，Long.MAX_VALUE表示不限制）
+     */
+    public long getMaximumWeight() {
+        return this.maximum_weight;
+    }
+    
+    /**
+     * 获取当前总权重
+     *
+     * @return 当前总权重（不限制容量时为当前条目数）
+     */
+    public synchronized long getTotalWeight() {
+        return (this.eviction_policy == null) ? super.size() : this.total_weight;
+    }
+    
+    /**
+     * 设置删除监听（在全局共享线程池中交付通知）
+     *
+     * @param listener 删除监听（为null表示取消监听）
+     */
+    public void setRemovalListener(RemovalListener<K, V> listener) {
+        this.setRemovalListener(listener, ExecutorHelper.getSharedExecutor());
+    }
+    
+    /**
+     * 设置删除监听
+     *
+     * @param listener 删除监听（为null表示取消监听）
+     * @param executor 交付通知的线程池（ExecutorHelper.getInlineExecutor()表示在删除数据的线程中同步交付）
+     */
+    public synchronized void setRemovalListener(RemovalListener<K, V> listener, Executor executor) {
+        this.removal_notifier = (listener == null) ? null : new RemovalNotifier<>(listener, executor);
+    }
+    
+    /**
+     * 记录新key的写入时间（仅在开启统计时）
+     *
+     * @param key key
+     */
+    private void recordCreate(K key) {
+        if (this.metrics != null) this.created_times.put(key, System.currentTimeMillis());
+    }
+    
+    /**
+     * 记录key被删除时的原因和存活时间（仅在开启统计时）
+     *
+     * @param key   key
+     * @param cause 删除原因
+     */
+    private void recordLifetime(Object key, RemovalCause cause) {
+        CacheMetrics metrics = this.metrics;
+        if (metrics == null) return;
+        if (cause == RemovalCause.EXPIRED) {
+            metrics.recordExpired();
+        } else if (cause == RemovalCause.EVICTED) {
+            metrics.recordEvicted();
+        }
+        Long created_time = this.created_times.remove(key);
+        if (created_time != null) metrics.recordLifetime(System.currentTimeMillis() - created_time);
+    }
+    
+    /**
+     * 开启运行统计（开启前已存在的条目不计入存活时间）
+     */
+    public synchronized void enableMetrics() {
+        if (this.metrics != null) return;
+        this.created_times = new HashMap<>();
+        this.metrics = new CacheMetrics();
+    }
+    
+    /**
+     * 关闭运行统计
+     */
+    public synchronized void disableMetrics() {
+        this.metrics = null;
+        this.created_times = null;
+    }
+    
+    /**
+     * 记录一次加载（供LoadingExpireCache等在map外加载数据的调用者使用，未开启统计时忽略）
+     *
+     * @param load_time 加载耗时（单位：ns）
+     * @param failed    是否失败
+     */
+    public void recordLoad(long load_time, boolean failed) {
+        CacheMetrics metrics = this.metrics;
+        if (metrics != null) metrics.recordLoad(load_time, failed);
+    }
+    
+    /**
+     * 获取运行统计快照（无需加锁）
+     *
+     * @return 快照（未开启统计时为null）
+     */
+    public CacheMetricsSnapshot getMetricsSnapshot() {
+        CacheMetrics metrics = this.metrics;
+        return (metrics == null) ? null : metrics.getSnapshot();
+    }
+    
+    /**
+     * 删除指定的key并发出删除通知
+     *
+     * @param key   key
+     * @param cause 删除原因
+     * @return key原本的value
+     */
+    private V removeEntry(Object key, RemovalCause cause) {
+        this.unlinkExpireTime(key);
+        boolean existed = ((this.eviction_policy != null) || (this.removal_notifier != null) || (this.metrics != null)) && super.containsKey(key);
+        V value = super.remove(key);
+        if (existed) this.afterRemove(key, value, cause);
+        return value;
+    }
+    
+    /**
+     * 删除key后更新权重、淘汰记录和统计，并发出删除通知（超时记录由调用者摘除）
+     *
+     * @param key   key
+     * @param value key原本的value
+     * @param cause 删除原因
+     */
+    private void afterRemove(Object key, V value, RemovalCause cause) {
+        this.recordRemove(key);
+        this.recordLifetime(key, cause);
+        if (this.removal_notifier != null) this.removal_notifier.notify(this.asKey(key), value, cause);
+    }
+    
     /**
      * 删除指定的key
      *
@@ -131,9 +611,7 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      */
     @Override
     public synchronized V remove(Object key) {
-        TimeBasedKey key_object = this.key_map.remove(key);
-        this.key_queue.remove(key_object);
-        return super.remove(key);
+        return this.removeEntry(key, RemovalCause.EXPLICIT);
     }
     
     /**
@@ -141,9 +619,19 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      */
     @Override
     public synchronized void clear() {
+        if (this.removal_notifier != null) {
+            for (Entry<K, V> entry : super.entrySet()) this.removal_notifier.notify(entry.getKey(), entry.getValue(), RemovalCause.EXPLICIT);
+        }
+        if (this.metrics != null) {
+            for (K key : super.keySet()) this.recordLifetime(key, RemovalCause.EXPLICIT);
+        }
         super.clear();
         this.key_map.clear();
-        this.key_queue.clear();
+        this.expired_keys.clear();
+        if (this.key_wheel != null) this.key_wheel.clear();
+        if (this.eviction_policy != null) this.eviction_policy.clear();
+        if (this.weight_map != null) this.weight_map.clear();
+        this.total_weight = 0;
     }
     
     /**
@@ -153,7 +641,7 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      */
     @Override
     public synchronized boolean isEmpty() {
-        this.removeExpiredKeys();
+        this.removeExpiredKeysInForeground();
         return super.isEmpty();
     }
     
@@ -166,8 +654,20 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      */
     @Override
     public synchronized V get(Object key) {
-        this.checkExpired((K) key);
-        return super.get(key);
+        Timestamp present = new Timestamp();
+        this.checkExpired(this.asKey(key), present);
+        V value = super.get(key);
+        boolean found = (value != null) || super.containsKey(key);
+        if (((this.eviction_policy != null) || (this.expiry != null)) && found) this.recordRead(this.asKey(key), value, present.getTimestamp());
+        CacheMetrics metrics = this.metrics;
+        if (metrics != null) {
+            if (found) {
+                metrics.recordHit();
+            } else {
+                metrics.recordMiss();
+            }
+        }
+        return value;
     }
     
     /**
@@ -178,9 +678,134 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 返回值
      */
     @Override
-    public V getOrDefault(Object key, V defaultValue) {
-        this.checkExpired((K) key);
-        return super.getOrDefault(key, defaultValue);
+    public synchronized V getOrDefault(Object key, V defaultValue) {
+        Timestamp present = new Timestamp();
+        this.checkExpired(this.asKey(key), present);
+        boolean found = super.containsKey(key);
+        if (((this.eviction_policy != null) || (this.expiry != null)) && found) this.recordRead(this.asKey(key), super.get(key), present.getTimestamp());
+        CacheMetrics metrics = this.metrics;
+        if (metrics != null) {
+            if (found) {
+                metrics.recordHit();
+            } else {
+                metrics.recordMiss();
+            }
+        }
+        return found ? super.get(key) : defaultValue;
+    }
+    
+    /**
+     * 获取某键对应值（不计入命中统计，也不更新淘汰记录和有效期）
+     *
+     * @param key key
+     * @return 对应值
+     */
+    public synchronized V peek(Object key) {
+        this.checkExpired(this.asKey(key));
+        return super.get(key);
+    }
+    
+    /**
+     * 获取某键的超时时间
+     *
+     * @param key key
+     * @return 超时时间（不存在、已过期或无限期时为null）
+     */
+    public synchronized Timestamp getExpireTime(Object key) {
+        this.checkExpired(this.asKey(key));
+        TimingWheelEntry<K> entry = this.key_map.get(key);
+        return (entry == null) ? null : new Timestamp(entry.getDeadline());
+    }
+    
+    /**
+     * 判断批量写入时能否跳过put直接写入（不限制容量且没有删除监听）
+     *
+     * @return 能否直接写入
+     */
+    private boolean canPutDirectly() {
+        return (this.eviction_policy == null) && (this.removal_notifier == null);
+    }
+    
+    /**
+     * 直接写入键值对（仅在canPutDirectly时使用，调用者需持有锁）
+     *
+     * @param key         key
+     * @param value       value
+     * @param expire_time 超时时间（Long.MAX_VALUE表示无限期）
+     */
+    private void putDirectly(K key, V value, long expire_time) {
+        this.unlinkExpireTime(key);
+        if (expire_time != Long.MAX_VALUE) {
+            if (this.key_wheel == null) this.key_wheel = new HierarchicalTimingWheel<>();
+            this.key_map.put(key, this.key_wheel.add(expire_time, key));
+        }
+        if ((super.put(key, value) == null) && (this.metrics != null)) this.recordCreate(key);
+    }
+    
+    /**
+     * 生成快照（只在锁内复制引用，序列化和写文件在锁外进行）
+     *
+     * @return 快照（不含已过期的数据）
+     */
+    public synchronized ExpireMapSnapshot<K, V> snapshot() {
+        long present = System.currentTimeMillis();
+        ExpireMapSnapshot<K, V> snapshot = new ExpireMapSnapshot<>(super.size(), present);
+        for (Entry<K, V> entry : super.entrySet()) {
+            TimingWheelEntry<K> wheel_entry = this.key_map.get(entry.getKey());
+            long expire_time = (wheel_entry == null) ? ExpireMapSnapshot.NEVER_EXPIRE : wheel_entry.getDeadline();
+            if (expire_time > present) snapshot.add(entry.getKey(), entry.getValue(), expire_time);
+        }
+        return snapshot;
+    }
+    
+    /**
+     * 从快照批量恢复数据（只加一次锁，已过期的数据直接跳过；与已有key冲突时以快照为准）
+     *
+     * @param snapshot 快照
+     * @return 恢复的键值对数量
+     */
+    public synchronized int restore(ExpireMapSnapshot<K, V> snapshot) {
+        long present = System.currentTimeMillis();
+        boolean direct = this.canPutDirectly();
+        int count = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            long expire_time = snapshot.getExpireTime(i);
+            if (expire_time <= present) continue;
+            K key = snapshot.getKey(i);
+            count++;
+            if (!direct) {  // bounded or listened maps keep their bookkeeping through put
+                this.put(key, snapshot.getValue(i), (expire_time == ExpireMapSnapshot.NEVER_EXPIRE) ? null : new Timestamp(expire_time));
+                continue;
+            }
+            this.putDirectly(key, snapshot.getValue(i), expire_time);
+        }
+        return count;
+    }
+    
+    /**
+     * 将快照写入文件（写入临时文件后原子替换）
+     *
+     * @param file             文件
+     * @param key_serializer   key序列化器
+     * @param value_serializer value序列化器
+     * @return 写入的键值对数量
+     * @throws IOException 写入失败
+     */
+    public int saveSnapshot(Path file, Serializer<K> key_serializer, Serializer<V> value_serializer) throws IOException {
+        return this.snapshot().write(file, key_serializer, value_serializer);
+    }
+    
+    /**
+     * 从快照文件恢复数据（在锁外读取和反序列化，再批量恢复）
+     *
+     * @param file             文件
+     * @param key_serializer   key序列化器
+     * @param value_serializer value序列化器
+     * @return 恢复的键值对数量
+     * @throws IOException 读取失败或文件格式错误
+     */
+    public int loadSnapshot(Path file, Serializer<K> key_serializer, Serializer<V> value_serializer) throws IOException {
+        return this.restore(ExpireMapSnapshot.read(file, key_serializer, value_serializer));
     }
     
     /**
@@ -204,15 +829,23 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 设置的值
      */
     public synchronized V put(K key, V value, Timestamp expire_time) {
-        this.remove(key);
-        TimeBasedKey key_object = new TimeBasedKey(key, expire_time);
-        this.key_queue.add(key_object);
-        this.key_map.put(key, key_object);
-        return super.put(key, value);
+        if (this.sweep_lagging) this.removeExpiredKeys();  // the background sweeper falls behind the writes
+        if (this.removal_notifier != null) this.checkExpired(key);  // an expired old value is reported as expired, not replaced
+        this.unlinkExpireTime(key);
+        if (expire_time != null) {
+            if (this.key_wheel == null) this.key_wheel = new HierarchicalTimingWheel<>();
+            this.key_map.put(key, this.key_wheel.add(expire_time.getTimestamp(), key));
+        }
+        boolean existed = ((this.eviction_policy != null) || (this.removal_notifier != null) || (this.metrics != null)) && super.containsKey(key);
+        V previous = super.put(key, value);
+        if (existed && (previous != value) && (this.removal_notifier != null)) this.removal_notifier.notify(key, previous, RemovalCause.REPLACED);
+        if (!existed) this.recordCreate(key);
+        this.recordWrite(key, value, existed);
+        return previous;
     }
     
     /**
-     * 将key键值设定为value（无限期）
+     * 将key键值设定为value（按有效期策略计算有效期，未设置有效期策略时为无限期）
      *
      * @param key   key
      * @param value value
@@ -220,7 +853,13 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      */
     @Override
     public synchronized V put(K key, V value) {
-        return this.put(key, value, null);
+        if (this.expiry == null) return this.put(key, value, null);
+        Timestamp present = new Timestamp();
+        this.checkExpired(key, present);
+        long current_time = present.getTimestamp();
+        long duration = super.containsKey(key) ? this.expiry.expireAfterUpdate(key, value, current_time, this.getRemainingDuration(key, current_time))
+                : this.expiry.expireAfterCreate(key, value, current_time);
+        return this.put(key, value, toExpireTime(current_time, duration));
     }
     
     /**
@@ -231,9 +870,13 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 设置的值
      */
     @Override
-    public V putIfAbsent(K key, V value) {
+    public synchronized V putIfAbsent(K key, V value) {
         this.checkExpired(key);
-        return super.putIfAbsent(key, value);
+        V previous = super.get(key);
+        boolean existed = (previous != null) || super.containsKey(key);
+        V result = super.putIfAbsent(key, value);
+        this.afterUpdate(key, existed, previous);
+        return result;
     }
     
     /**
@@ -243,8 +886,9 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      */
     @Override
     public synchronized Set<K> keySet() {
-        this.removeExpiredKeys();
-        return super.keySet();
+        this.removeExpiredKeysInForeground();
+        if (this.key_set_view == null) this.key_set_view = new KeySetView();
+        return this.key_set_view;
     }
     
     /**
@@ -254,8 +898,9 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      */
     @Override
     public synchronized Set<Entry<K, V>> entrySet() {
-        this.removeExpiredKeys();
-        return super.entrySet();
+        this.removeExpiredKeysInForeground();
+        if (this.entry_set_view == null) this.entry_set_view = new EntrySetView();
+        return this.entry_set_view;
     }
     
     /**
@@ -264,11 +909,23 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 哈希值
      */
     @Override
-    public int hashCode() {
-        this.removeExpiredKeys();
+    public synchronized int hashCode() {
+        this.removeExpiredKeysInForeground();
         return super.hashCode();
     }
     
+    /**
+     * 判断是否相等
+     *
+     * @param o 比较对象
+     * @return 是否相等
+     */
+    @Override
+    public synchronized boolean equals(Object o) {
+        this.removeExpiredKeysInForeground();
+        return super.equals(o);
+    }
+    
     /**
      * 判断是否包含key
      *
@@ -276,8 +933,8 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 是否包含
      */
     @Override
-    public boolean containsKey(Object key) {
-        this.checkExpired((K) key);
+    public synchronized boolean containsKey(Object key) {
+        this.checkExpired(this.asKey(key));
         return super.containsKey(key);
     }
     
@@ -288,8 +945,8 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 是否包含
      */
     @Override
-    public boolean containsValue(Object value) {
-        this.removeExpiredKeys();
+    public synchronized boolean containsValue(Object value) {
+        this.removeExpiredKeysInForeground();
         return super.containsValue(value);
     }
     
@@ -299,9 +956,10 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 值集合
      */
     @Override
-    public Collection<V> values() {
-        this.removeExpiredKeys();
-        return super.values();
+    public synchronized Collection<V> values() {
+        this.removeExpiredKeysInForeground();
+        if (this.values_view == null) this.values_view = new ValuesView();
+        return this.values_view;
     }
     
     /**
@@ -310,8 +968,8 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 大小
      */
     @Override
-    public int size() {
-        this.removeExpiredKeys();
+    public synchronized int size() {
+        this.removeExpiredKeysInForeground();
         return super.size();
     }
     
@@ -321,9 +979,65 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @param m m
      */
     @Override
-    public void putAll(Map<? extends K, ? extends V> m) {
-        this.removeExpiredKeys();
-        super.putAll(m);
+    public synchronized void putAll(Map<? extends K, ? extends V> m) {
+        this.removeExpiredKeysInForeground();
+        for (Entry<? extends K, ? extends V> entry : m.entrySet()) this.put(entry.getKey(), entry.getValue());
+    }
+    
+    /**
+     * 全部设置，expire_after毫秒后超时（只加一次锁，所有key共用同一个超时时间）
+     *
+     * @param m            m
+     * @param expire_after 超时期限
+     */
+    public synchronized void putAll(Map<? extends K, ? extends V> m, long expire_after) {
+        this.putAll(m, new Timestamp().getOffseted(expire_after));
+    }
+    
+    /**
+     * 全部设置，expire_time时超时（只加一次锁，所有key共用同一个超时时间）
+     *
+     * @param m           m
+     * @param expire_time 超时时间（null表示无限期）
+     */
+    public synchronized void putAll(Map<? extends K, ? extends V> m, Timestamp expire_time) {
+        this.removeExpiredKeysInForeground();
+        if (!this.canPutDirectly()) {  // bounded or listened maps keep their bookkeeping through put
+            for (Entry<? extends K, ? extends V> entry : m.entrySet()) this.put(entry.getKey(), entry.getValue(), expire_time);
+            return;
+        }
+        long deadline = (expire_time == null) ? Long.MAX_VALUE : expire_time.getTimestamp();
+        for (Entry<? extends K, ? extends V> entry : m.entrySet()) this.putDirectly(entry.getKey(), entry.getValue(), deadline);
+    }
+    
+    /**
+     * 批量获取（只加一次锁，所有key以同一时间为节点判断是否超时）
+     *
+     * @param keys key集合
+     * @return key -> 对应值（按keys的顺序，不包含不存在或已超时的key）
+     */
+    public synchronized Map<K, V> getAll(Collection<? extends K> keys) {
+        Timestamp present = new Timestamp();
+        boolean tracking = (this.eviction_policy != null) || (this.expiry != null);
+        CacheMetrics metrics = this.metrics;
+        Map<K, V> result = new LinkedHashMap<>();
+        for (K key : keys) {
+            this.checkExpired(key, present);
+            V value = super.get(key);
+            boolean found = (value != null) || super.containsKey(key);
+            if (found) {
+                if (tracking) this.recordRead(key, value, present.getTimestamp());
+                result.put(key, value);
+            }
+            if (metrics != null) {
+                if (found) {
+                    metrics.recordHit();
+                } else {
+                    metrics.recordMiss();
+                }
+            }
+        }
+        return result;
     }
     
     /**
@@ -334,9 +1048,13 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 是否删除
      */
     @Override
-    public boolean remove(Object key, Object value) {
-        this.checkExpired((K) key);
-        return super.remove(key, value);
+    public synchronized boolean remove(Object key, Object value) {
+        this.checkExpired(this.asKey(key));
+        V previous = super.get(key);
+        boolean existed = (previous != null) || super.containsKey(key);
+        boolean result = super.remove(key, value);
+        this.afterUpdate(this.asKey(key), existed, previous);
+        return result;
     }
     
     /**
@@ -348,9 +1066,13 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 是否替换成功
      */
     @Override
-    public boolean replace(K key, V oldValue, V newValue) {
+    public synchronized boolean replace(K key, V oldValue, V newValue) {
         this.checkExpired(key);
-        return super.replace(key, oldValue, newValue);
+        V previous = super.get(key);
+        boolean existed = (previous != null) || super.containsKey(key);
+        boolean result = super.replace(key, oldValue, newValue);
+        this.afterUpdate(key, existed, previous);
+        return result;
     }
     
     /**
@@ -361,9 +1083,13 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 计算值
      */
     @Override
-    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    public synchronized V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
         this.checkExpired(key);
-        return super.compute(key, remappingFunction);
+        V previous = super.get(key);
+        boolean existed = (previous != null) || super.containsKey(key);
+        V result = super.compute(key, remappingFunction);
+        this.afterUpdate(key, existed, previous);
+        return result;
     }
     
     /**
@@ -374,9 +1100,13 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 计算值
      */
     @Override
-    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+    public synchronized V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
         this.checkExpired(key);
-        return super.computeIfAbsent(key, mappingFunction);
+        V previous = super.get(key);
+        boolean existed = (previous != null) || super.containsKey(key);
+        V result = super.computeIfAbsent(key, mappingFunction);
+        this.afterUpdate(key, existed, previous);
+        return result;
     }
     
     /**
@@ -387,9 +1117,13 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 计算值
      */
     @Override
-    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    public synchronized V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
         this.checkExpired(key);
-        return super.computeIfPresent(key, remappingFunction);
+        V previous = super.get(key);
+        boolean existed = (previous != null) || super.containsKey(key);
+        V result = super.computeIfPresent(key, remappingFunction);
+        this.afterUpdate(key, existed, previous);
+        return result;
     }
     
     /**
@@ -401,9 +1135,13 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 合并值
      */
     @Override
-    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+    public synchronized V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
         this.checkExpired(key);
-        return super.merge(key, value, remappingFunction);
+        V previous = super.get(key);
+        boolean existed = (previous != null) || super.containsKey(key);
+        V result = super.merge(key, value, remappingFunction);
+        this.afterUpdate(key, existed, previous);
+        return result;
     }
     
     /**
@@ -414,9 +1152,13 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 替换值
      */
     @Override
-    public V replace(K key, V value) {
+    public synchronized V replace(K key, V value) {
         this.checkExpired(key);
-        return super.replace(key, value);
+        V previous = super.get(key);
+        boolean existed = (previous != null) || super.containsKey(key);
+        V result = super.replace(key, value);
+        this.afterUpdate(key, existed, previous);
+        return result;
     }
     
     /**
@@ -425,8 +1167,8 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @param action 枚举函数接口
      */
     @Override
-    public void forEach(BiConsumer<? super K, ? super V> action) {
-        this.removeExpiredKeys();
+    public synchronized void forEach(BiConsumer<? super K, ? super V> action) {
+        this.removeExpiredKeysInForeground();
         super.forEach(action);
     }
     
@@ -436,9 +1178,28 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @param function 替换函数接口
      */
     @Override
-    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
-        this.removeExpiredKeys();
-        super.replaceAll(function);
+    public synchronized void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        this.removeExpiredKeysInForeground();
+        final RemovalNotifier<K, V> notifier = this.removal_notifier;
+        if (notifier == null) {
+            super.replaceAll(function);
+        } else {
+            super.replaceAll(new BiFunction<K, V, V>() {
+                @Override
+                public V apply(K key, V value) {
+                    V replacement = function.apply(key, value);
+                    if (replacement != value) notifier.notify(key, value, RemovalCause.REPLACED);
+                    return replacement;
+                }
+            });
+        }
+        if ((this.eviction_policy == null) || (this.weigher == null)) return;
+        for (Entry<K, V> entry : super.entrySet()) {
+            long weight = Math.max(this.weigher.weigh(entry.getKey(), entry.getValue()), 0);
+            Long previous = this.weight_map.put(entry.getKey(), weight);
+            this.total_weight += weight - ((previous == null) ? 0 : previous);
+        }
+        this.evictIfNeeded();
     }
     
     /**
@@ -458,8 +1219,224 @@ public class HashExpireMap<K, V> extends HashMap<K, V> implements ApplicationInt
      * @return 字符串
      */
     @Override
-    public String toString() {
-        this.removeExpiredKeys();
+    public synchronized String toString() {
+        this.removeExpiredKeysInForeground();
         return super.toString();
     }
+    
+    /**
+     * entry迭代器（通过迭代器删除时与remove一样同步超时记录、淘汰记录和统计，并发出删除通知）
+     * <p>
+     * 开启后台清理时遍历创建时的副本，否则直接遍历父类的entry集合
+     */
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+        /**
+         * 父类entry集合（或其副本）的迭代器
+         */
+        private final Iterator<Entry<K, V>> iterator;
+        
+        /**
+         * 是否遍历副本
+         */
+        private final boolean snapshot;
+        
+        /**
+         * 上一个返回的entry
+         */
+        private Entry<K, V> last_entry = null;
+        
+        /**
+         * 构造函数
+         */
+        private EntryIterator() {
+            synchronized (HashExpireMap.this) {
+                removeExpiredKeysInForeground();
+                this.snapshot = background_sweep;
+                if (!this.snapshot) {
+                    this.iterator = HashExpireMap.super.entrySet().iterator();
+                    return;
+                }
+                ArrayList<Entry<K, V>> entries = new ArrayList<>(HashExpireMap.super.size());
+                for (Entry<K, V> entry : HashExpireMap.super.entrySet()) {
+                    final K key = entry.getKey();
+                    entries.add(new AbstractMap.SimpleEntry<K, V>(key, entry.getValue()) {
+                        @Override
+                        public V setValue(V value) {
+                            V previous = super.setValue(value);
+                            HashExpireMap.this.replace(key, value);
+                            return previous;
+                        }
+                    });
+                }
+                this.iterator = entries.iterator();
+            }
+        }
+        
+        /**
+         * 是否还有下一个
+         *
+         * @return 是否还有下一个
+         */
+        @Override
+        public boolean hasNext() {
+            return this.iterator.hasNext();
+        }
+        
+        /**
+         * 获取下一个
+         *
+         * @return 下一个entry
+         */
+        @Override
+        public Entry<K, V> next() {
+            this.last_entry = this.iterator.next();
+            return this.last_entry;
+        }
+        
+        /**
+         * 删除上一个返回的entry
+         */
+        @Override
+        public void remove() {
+            if (this.last_entry == null) throw new IllegalStateException();
+            synchronized (HashExpireMap.this) {
+                K key = this.last_entry.getKey();
+                if (this.snapshot) {  // removes it only if it is not changed since the snapshot
+                    if (HashExpireMap.super.containsKey(key) && (HashExpireMap.super.get(key) == this.last_entry.getValue())) removeEntry(key, RemovalCause.EXPLICIT);
+                } else {
+                    this.iterator.remove();
+                    unlinkExpireTime(key);
+                    afterRemove(key, this.last_entry.getValue(), RemovalCause.EXPLICIT);
+                }
+            }
+            this.last_entry = null;
+        }
+    }
+    
+    /**
+     * 键集合视图（删除操作均经过HashExpireMap.remove）
+     */
+    private class KeySetView extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            final EntryIterator iterator = new EntryIterator();
+            return new Iterator<K>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+                
+                @Override
+                public K next() {
+                    return iterator.next().getKey();
+                }
+                
+                @Override
+                public void remove() {
+                    iterator.remove();
+                }
+            };
+        }
+        
+        @Override
+        public int size() {
+            return HashExpireMap.this.size();
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            return HashExpireMap.this.containsKey(o);
+        }
+        
+        @Override
+        public boolean remove(Object o) {
+            synchronized (HashExpireMap.this) {
+                if (!HashExpireMap.this.containsKey(o)) return false;
+                removeEntry(o, RemovalCause.EXPLICIT);
+                return true;
+            }
+        }
+        
+        @Override
+        public void clear() {
+            HashExpireMap.this.clear();
+        }
+    }
+    
+    /**
+     * entry集合视图（删除操作均经过HashExpireMap.remove）
+     */
+    private class EntrySetView extends AbstractSet<Entry<K, V>> {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+        
+        @Override
+        public int size() {
+            return HashExpireMap.this.size();
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            synchronized (HashExpireMap.this) {
+                return HashExpireMap.this.containsKey(entry.getKey()) && Objects.equals(HashExpireMap.super.get(entry.getKey()), entry.getValue());
+            }
+        }
+        
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return HashExpireMap.this.remove(entry.getKey(), entry.getValue());
+        }
+        
+        @Override
+        public void clear() {
+            HashExpireMap.this.clear();
+        }
+    }
+    
+    /**
+     * 值集合视图（删除操作均经过HashExpireMap.remove）
+     */
+    private class ValuesView extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            final EntryIterator iterator = new EntryIterator();
+            return new Iterator<V>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+                
+                @Override
+                public V next() {
+                    return iterator.next().getValue();
+                }
+                
+                @Override
+                public void remove() {
+                    iterator.remove();
+                }
+            };
+        }
+        
+        @Override
+        public int size() {
+            return HashExpireMap.this.size();
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            return HashExpireMap.this.containsValue(o);
+        }
+        
+        @Override
+        public void clear() {
+            HashExpireMap.this.clear();
+        }
+    }
 }
@@ -0,0 +1,642 @@
+package models.structure.map;
+
+import interfaces.structure.ExpireSweepableInterface;
+import models.application.ApplicationModel;
+import models.thread.circulation.ExpireSweepThread;
+import models.time.Timestamp;
+
+import java.util.Arrays;
+
+/**
+ * 以long为key、支持超时功能的哈希表
+ * <p>
+ * 特性：
+ * 1、与HashExpireMap的超时用法一致（put时可指定有效期或超时时间点，不指定则无限期）
+ * 2、开放寻址（线性探测）+ 并行数组存储key、value和超时时间，key和超时时间均为原生long，每个键值对没有任何额外对象
+ * 3、get、containsKey、remove以及覆盖已有key的put均不分配内存；删除采用向后移位，不留墓碑，探测链不会随删除变长
+ * 4、过期的键值对在被访问到时惰性删除，扩容时顺便丢弃，也可以调用removeExpiredKeys统一清理
+ * 5、可选后台清理：由全局共享的ExpireSweepThread分批扫描清理过期数据
+ * 6、对所有操作均进行了线程安全保护
+ * <p>
+ * 注：
+ * 1、不支持null作为value
+ * 2、int类型的key可以直接使用本类（自动拓宽为long）
+ * 3、size需要遍历全部数据以清理过期数据（开启后台清理时不清理，可能包含至多一个清理周期内刚过期的数据）；
+ *    记录了最早超时时间的下界，尚无数据可能过期时直接跳过遍历
+ *
+ * @param <V> value类型
+ */
+public class LongHashExpireMap<V> extends ApplicationModel implements ExpireSweepableInterface {
+    /**
+     * 无限期
+     */
+    private static final long NEVER_EXPIRE = Long.MAX_VALUE;
+    
+    /**
+     * 最大负载因子
+     */
+    private static final float LOAD_FACTOR = 0.5f;
+    
+    /**
+     * 最大容量
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    
+    /**
+     * key数组
+     */
+    private long[] keys;
+    
+    /**
+     * value数组（null表示空槽）
+     */
+    private Object[] values;
+    
+    /**
+     * 超时时间数组（unix时间戳，单位：ms）
+     */
+    private long[] expire_times;
+    
+    /**
+     * 下标掩码
+     */
+    private int mask;
+    
+    /**
+     * 扩容阈值
+     */
+    private int threshold;
+    
+    /**
+     * 键值对数量（含尚未清理的过期数据）
+     */
+    private int size = 0;
+    
+    /**
+     * 有限期的键值对数量
+     */
+    private int expiring_count = 0;
+    
+    /**
+     * 最早超时时间的下界（unix时间戳，单位：ms；早于该时间不会有数据过期）
+     */
+    private long min_expire_time = NEVER_EXPIRE;
+    
+    /**
+     * 后台清理的扫描位置
+     */
+    private int sweep_cursor = 0;
+    
+    /**
+     * 是否由后台清理线程清理过期数据
+     */
+    private final boolean background_sweep;
+    
+    /**
+     * 构造函数
+     *
+     * @param initial_capacity 初始容量
+     * @param background_sweep 是否由后台清理线程（ExpireSweepThread.getDefault()）清理过期数据
+     */
+    public LongHashExpireMap(int initial_capacity, boolean background_sweep) {
+        /**
+         * @modifies:
+         *          all the fields;
+         * @effects:
+         *          the arrays will be allocated to hold initial_capacity entries without resizing;
+         *          (background_sweep) ==> \this will be registered into the default ExpireSweepThread;
+         */
+        this.allocate(tableSizeFor((int) Math.min((long) (Math.max(initial_capacity, 1) / LOAD_FACTOR) + 1, MAXIMUM_CAPACITY)));
+        this.background_sweep = background_sweep;
+        if (background_sweep) ExpireSweepThread.getDefault().register(this);
+    }
+    
+    /**
+     * 构造函数
+     *
+     * @param initial_capacity 初始容量
+     */
+    public LongHashExpireMap(int initial_capacity) {
+        /**
+         * @effects:
+         *          it will be initialized with initial_capacity, without background sweeping;
+         */
+        this(initial_capacity, false);
+    }
+    
+    /**
+     * 构造函数
+     */
+    public LongHashExpireMap() {
+        /**
+         * @effects:
+         *          it will be initialized with the default capacity, without background sweeping;
+         */
+        this(16, false);
+    }
+    
+    /**
+     * 获取不小于指定值的2的幂
+     *
+     * @param capacity 指定值
+     * @return 2的幂
+     */
+    private static int tableSizeFor(int capacity) {
+        /**
+         * @effects:
+         *          \result == the minimum power of 2 which is not less than capacity (and not greater than MAXIMUM_CAPACITY);
+         */
+        int size = 2;
+        while ((size < capacity) && (size < MAXIMUM_CAPACITY)) size <<= 1;
+        return size;
+    }
+    
+    /**
+     * 分配数组
+     *
+     * @param capacity 槽数（2的幂）
+     */
+    private void allocate(int capacity) {
+        /**
+         * @modifies:
+         *          \this.keys;
+         *          \this.values;
+         *          \this.expire_times;
+         *          \this.mask;
+         *          \this.threshold;
+         * @effects:
+         *          empty arrays with capacity slots will be allocated;
+         */
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.expire_times = new long[capacity];
+        this.mask = capacity - 1;
+        this.threshold = (capacity >= MAXIMUM_CAPACITY) ? Integer.MAX_VALUE : (int) (capacity * LOAD_FACTOR);
+    }
+    
+    /**
+     * 计算key的起始槽位
+     *
+     * @param key key
+     * @return 槽位
+     */
+    private int slotOf(long key) {
+        /**
+         * @effects:
+         *          \result == the mixed hash of key masked by \this.mask;
+         */
+        long hash = key * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ (hash >>> 32)) & this.mask;
+    }
+    
+    /**
+     * 查找key所在的槽位
+     *
+     * @param key key
+     * @return 槽位（不存在时为-1）
+     */
+    private int indexOf(long key) {
+        /**
+         * @effects:
+         *          (key exists) ==> \result == the slot of key;
+         *          otherwise, \result == -1;
+         */
+        for (int index = this.slotOf(key); this.values[index] != null; index = (index + 1) & this.mask) {
+            if (this.keys[index] == key) return index;
+        }
+        return -1;
+    }
+    
+    /**
+     * 删除某槽位的键值对（后续探测链上的键值对向前移位填补空槽）
+     *
+     * @param index 槽位
+     */
+    private void removeAt(int index) {
+        /**
+         * @modifies:
+         *          the arrays;
+         *          \this.size;
+         *          \this.expiring_count;
+         * @effects:
+         *          the entry at index will be removed;
+         *          the following entries in the same probe chain will be shifted backward, so that no tombstone is left;
+         */
+        if (this.expire_times[index] != NEVER_EXPIRE) this.expiring_count--;
+        this.size--;
+        int hole = index;
+        int next = index;
+        while (true) {
+            next = (next + 1) & this.mask;
+            if (this.values[next] == null) break;
+            int home = this.slotOf(this.keys[next]);
+            if (((next - home) & this.mask) >= ((next - hole) & this.mask)) {  // home is not between hole and next
+                this.keys[hole] = this.keys[next];
+                this.values[hole] = this.values[next];
+                this.expire_times[hole] = this.expire_times[next];
+                hole = next;
+            }
+        }
+        this.values[hole] = null;
+    }
+    
+    /**
+     * 获取未过期的key所在的槽位，过期时顺便删除
+     *
+     * @param key     key
+     * @param present 当前时间
+     * @return 槽位（不存在或已过期时为-1）
+     */
+    private int indexOfAlive(long key, long present) {
+        /**
+         * @modifies:
+         *          the arrays;
+         * @effects:
+         *          (key exists and not expired) ==> \result == the slot of key;
+         *          (key has expired) ==> key will be removed && \result == -1;
+         *          otherwise, \result == -1;
+         */
+        int index = this.indexOf(key);
+        if ((index >= 0) && (this.expire_times[index] <= present)) {
+            this.removeAt(index);
+            return -1;
+        }
+        return index;
+    }
+    
+    /**
+     * 获取某键对应值
+     *
+     * @param key key
+     * @return 对应值（不存在或已过期时为null）
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V get(long key) {
+        /**
+         * @modifies:
+         *          the arrays;
+         * @effects:
+         *          (key exists and not expired) ==> \result == the value;
+         *          otherwise, \result == null, and the expired key will be removed;
+         */
+        int index = this.indexOfAlive(key, System.currentTimeMillis());
+        return (index < 0) ? null : (V) this.values[index];
+    }
+    
+    /**
+     * 判断是否包含key
+     *
+     * @param key key
+     * @return 是否包含（已过期视为不包含）
+     */
+    public synchronized boolean containsKey(long key) {
+        /**
+         * @modifies:
+         *          the arrays;
+         * @effects:
+         *          \result == (key exists and not expired);
+         */
+        return this.indexOfAlive(key, System.currentTimeMillis()) >= 0;
+    }
+    
+    /**
+     * 获取某键的超时时间
+     *
+     * @param key key
+     * @return 超时时间（unix时间戳，单位：ms；不存在或已过期时为-1，无限期时为Long.MAX_VALUE）
+     */
+    public synchronized long getExpireTime(long key) {
+        /**
+         * @modifies:
+         *          the arrays;
+         * @effects:
+         *          (key exists and not expired) ==> \result == the expire time;
+         *          otherwise, \result == -1;
+         */
+        int index = this.indexOfAlive(key, System.currentTimeMillis());
+        return (index < 0) ? -1 : this.expire_times[index];
+    }
+    
+    /**
+     * 将key键值设定为value，expire_time时超时
+     *
+     * @param key         key
+     * @param value       value
+     * @param expire_time 超时时间（unix时间戳，单位：ms；Long.MAX_VALUE表示无限期）
+     * @return 原有的值（不存在或已过期时为null）
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V putUntil(long key, V value, long expire_time) {
+        /**
+         * @requires:
+         *          value != null;
+         * @modifies:
+         *          the arrays;
+         *          \this.size;
+         *          \this.expiring_count;
+         *          \this.min_expire_time;
+         * @effects:
+         *          key will be mapped to value until expire_time;
+         *          (the table is too full) ==> the table will be enlarged, dropping the expired entries;
+         *          \result == the previous alive value of key, or null;
+         */
+        if (value == null) throw new NullPointerException();
+        long present = System.currentTimeMillis();
+        if (expire_time < this.min_expire_time) this.min_expire_time = expire_time;
+        int index = this.slotOf(key);
+        while (this.values[index] != null) {
+            if (this.keys[index] == key) {
+                V previous = (this.expire_times[index] <= present) ? null : (V) this.values[index];
+                if (this.expire_times[index] != NEVER_EXPIRE) this.expiring_count--;
+                if (expire_time != NEVER_EXPIRE) this.expiring_count++;
+                this.values[index] = value;
+                this.expire_times[index] = expire_time;
+                return previous;
+            }
+            index = (index + 1) & this.mask;
+        }
+        this.keys[index] = key;
+        this.values[index] = value;
+        this.expire_times[index] = expire_time;
+        this.size++;
+        if (expire_time != NEVER_EXPIRE) this.expiring_count++;
+        if (this.size > this.threshold) this.rehash(present);
+        return null;
+    }
+    
+    /**
+     * 将key键值设定为value，expire_after毫秒后超时
+     *
+     * @param key          key
+     * @param value        value
+     * @param expire_after 有效期（单位：ms）
+     * @return 原有的值（不存在或已过期时为null）
+     */
+    public V put(long key, V value, long expire_after) {
+        /**
+         * @effects:
+         *          key will be mapped to value for expire_after ms;
+         */
+        long present = System.currentTimeMillis();
+        return this.putUntil(key, value, (expire_after >= NEVER_EXPIRE - present) ? NEVER_EXPIRE : present + expire_after);
+    }
+    
+    /**
+     * 将key键值设定为value，expire_time时超时
+     *
+     * @param key         key
+     * @param value       value
+     * @param expire_time 超时时间（null表示无限期）
+     * @return 原有的值（不存在或已过期时为null）
+     */
+    public V put(long key, V value, Timestamp expire_time) {
+        /**
+         * @effects:
+         *          key will be mapped to value until expire_time;
+         */
+        return this.putUntil(key, value, (expire_time == null) ? NEVER_EXPIRE : expire_time.getTimestamp());
+    }
+    
+    /**
+     * 将key键值设定为value（无限期）
+     *
+     * @param key   key
+     * @param value value
+     * @return 原有的值（不存在或已过期时为null）
+     */
+    public V put(long key, V value) {
+        /**
+         * @effects:
+         *          key will be mapped to value without expiring;
+         */
+        return this.putUntil(key, value, NEVER_EXPIRE);
+    }
+    
+    /**
+     * 删除指定的key
+     *
+     * @param key key
+     * @return 原有的值（不存在或已过期时为null）
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(long key) {
+        /**
+         * @modifies:
+         *          the arrays;
+         *          \this.size;
+         *          \this.expiring_count;
+         * @effects:
+         *          key will be removed;
+         *          \result == the previous alive value of key, or null;
+         */
+        int index = this.indexOf(key);
+        if (index < 0) return null;
+        V previous = (this.expire_times[index] <= System.currentTimeMillis()) ? null : (V) this.values[index];
+        this.removeAt(index);
+        return previous;
+    }
+    
+    /**
+     * 重建哈希表（丢弃过期数据，必要时扩容）
+     *
+     * @param present 当前时间
+     */
+    private void rehash(long present) {
+        /**
+         * @modifies:
+         *          the arrays;
+         *          \this.size;
+         *          \this.expiring_count;
+         *          \this.sweep_cursor;
+         *          \this.min_expire_time;
+         * @effects:
+         *          all the alive entries will be moved into new arrays, which are doubled if still too full;
+         *          \this.min_expire_time == the earliest expire time of the alive entries;
+         */
+        long[] old_keys = this.keys;
+        Object[] old_values = this.values;
+        long[] old_expire_times = this.expire_times;
+        int alive = 0;
+        for (int i = 0; i < old_values.length; i++) {
+            if ((old_values[i] != null) && (old_expire_times[i] > present)) alive++;
+        }
+        int capacity = old_values.length;
+        if ((alive > capacity * LOAD_FACTOR / 2) && (capacity < MAXIMUM_CAPACITY)) capacity <<= 1;
+        this.allocate(capacity);
+        this.size = 0;
+        this.expiring_count = 0;
+        this.sweep_cursor = 0;
+        this.min_expire_time = NEVER_EXPIRE;
+        for (int i = 0; i < old_values.length; i++) {
+            if ((old_values[i] == null) || (old_expire_times[i] <= present)) continue;
+            int index = this.slotOf(old_keys[i]);
+            while (this.values[index] != null) index = (index + 1) & this.mask;
+            this.keys[index] = old_keys[i];
+            this.values[index] = old_values[i];
+            this.expire_times[index] = old_expire_times[i];
+            this.size++;
+            if (old_expire_times[i] != NEVER_EXPIRE) this.expiring_count++;
+            if (old_expire_times[i] < this.min_expire_time) this.min_expire_time = old_expire_times[i];
+        }
+    }
+    
+    /**
+     * 清空所有超时的key
+     *
+     * @return 删除的数量
+     */
+    public synchronized int removeExpiredKeys() {
+        /**
+         * @modifies:
+         *          the arrays;
+         *          \this.size;
+         *          \this.expiring_count;
+         *          \this.min_expire_time;
+         * @effects:
+         *          (no entry can have expired) ==> \result == 0, without scanning;
+         *          otherwise, all the expired keys will be removed, and \this.min_expire_time will be recomputed;
+         *          \result == the number of the keys removed;
+         */
+        long present = System.currentTimeMillis();
+        if ((this.expiring_count == 0) || (present < this.min_expire_time)) return 0;
+        int count = 0;
+        long min_expire_time = NEVER_EXPIRE;
+        for (int i = 0; i < this.values.length; i++) {
+            while ((this.values[i] != null) && (this.expire_times[i] <= present)) {  // the slot may be refilled by the shifted entry
+                this.removeAt(i);
+                count++;
+            }
+            if ((this.values[i] != null) && (this.expire_times[i] < min_expire_time)) min_expire_time = this.expire_times[i];
+        }
+        this.min_expire_time = min_expire_time;
+        return count;
+    }
+    
+    /**
+     * 增量清理超时的key（由后台清理线程调用）
+     *
+     * @param budget 本次最多扫描的槽位数量
+     * @return 实际扫描的槽位数量
+     */
+    @Override
+    public synchronized int sweepExpired(int budget) {
+        /**
+         * @modifies:
+         *          the arrays;
+         *          \this.sweep_cursor;
+         * @effects:
+         *          (there is no entry with an expire time, or no entry can have expired) ==> \result == 0;
+         *          otherwise, at most budget slots will be scanned from the last position, and the expired entries will be removed;
+         *          the position will be reset when the end of the table is reached;
+         *          \result == the number of the slots scanned;
+         */
+        long present = System.currentTimeMillis();
+        if ((this.expiring_count == 0) || (present < this.min_expire_time)) return 0;
+        int count = 0;
+        while (count < budget) {
+            if (this.sweep_cursor >= this.values.length) {
+                this.sweep_cursor = 0;
+                break;
+            }
+            int index = this.sweep_cursor;
+            if ((this.values[index] != null) && (this.expire_times[index] <= present)) {
+                this.removeAt(index);  // check the same slot again, it may be refilled by the shifted entry
+            } else {
+                this.sweep_cursor++;
+            }
+            count++;
+        }
+        return count;
+    }
+    
+    /**
+     * 获取大小
+     *
+     * @return 键值对数量
+     */
+    public synchronized int size() {
+        /**
+         * @modifies:
+         *          the arrays;
+         * @effects:
+         *          (!\this.background_sweep) ==> all the expired keys will be removed;
+         *          \result == \this.size;
+         */
+        if (!this.background_sweep) this.removeExpiredKeys();
+        return this.size;
+    }
+    
+    /**
+     * 检测是否为空
+     *
+     * @return 是否为空
+     */
+    public boolean isEmpty() {
+        /**
+         * @effects:
+         *          \result == (\this.size() == 0);
+         */
+        return this.size() == 0;
+    }
+    
+    /**
+     * 获取所有未过期的key
+     *
+     * @return key数组（快照）
+     */
+    public synchronized long[] keys() {
+        /**
+         * @effects:
+         *          \result == the keys which are not expired;
+         */
+        long present = System.currentTimeMillis();
+        long[] result = new long[this.size];
+        int count = 0;
+        for (int i = 0; i < this.values.length; i++) {
+            if ((this.values[i] != null) && (this.expire_times[i] > present)) result[count++] = this.keys[i];
+        }
+        return (count == result.length) ? result : Arrays.copyOf(result, count);
+    }
+    
+    /**
+     * 清空数据结构
+     */
+    public synchronized void clear() {
+        /**
+         * @modifies:
+         *          the arrays;
+         *          \this.size;
+         *          \this.expiring_count;
+         *          \this.sweep_cursor;
+         *          \this.min_expire_time;
+         * @effects:
+         *          all the entries will be removed, the capacity is kept;
+         */
+        Arrays.fill(this.values, null);
+        this.size = 0;
+        this.expiring_count = 0;
+        this.sweep_cursor = 0;
+        this.min_expire_time = NEVER_EXPIRE;
+    }
+    
+    /**
+     * 转为字符串
+     *
+     * @return 字符串
+     */
+    @Override
+    public synchronized String toString() {
+        /**
+         * @effects:
+         *          \result == "{key=value, ...}" of the alive entries;
+         */
+        long present = System.currentTimeMillis();
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < this.values.length; i++) {
+            if ((this.values[i] == null) || (this.expire_times[i] <= present)) continue;
+            if (builder.length() > 1) builder.append(", ");
+            builder.append(this.keys[i]).append('=').append(this.values[i]);
+        }
+        return builder.append('}').toString();
+    }
+}
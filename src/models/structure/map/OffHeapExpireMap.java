@@ -0,0 +1,930 @@
+package models.structure.map;
+
+import interfaces.structure.ExpireSweepableInterface;
+import interfaces.structure.Serializer;
+import models.application.ApplicationModel;
+import models.thread.circulation.ExpireSweepThread;
+import models.time.Timestamp;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * 堆外存储的超时Map
+ * <p>
+ * 特性：
+ * 1、与HashExpireMap的超时用法一致（put时可指定有效期或超时时间点，不指定则无限期）
+ * 2、key和value经序列化器（Serializer）序列化后，与超时时间一起以记录的形式追加写入堆外段（direct buffer或内存映射文件）
+ * 3、堆内只保留每个段的索引（两个int数组：记录偏移和key哈希），不随条目数增加对象数量，GC扫描和老年代压力与数据量无关
+ * 4、按key哈希分为多个段，每个段独立加锁，不同段的操作互不阻塞
+ * 5、删除和覆盖只会使旧记录失效，段空间不足时整理（丢弃失效和过期的记录），仍不足时扩容
+ * 6、过期的键值对在被访问到时惰性删除，也可以调用removeExpiredKeys统一清理，或开启后台清理
+ * <p>
+ * 注：
+ * 1、不支持null作为key或value；key按序列化后的字节判等，相等的key必须序列化为相同的字节序列
+ * 2、每次get都会反序列化出一个新的value对象
+ * 3、单个段最大1GB；整理或扩容后旧段的堆外内存在其ByteBuffer对象被回收时释放
+ * 4、使用内存映射文件时，文件在映射后立即删除，不作为持久化存储
+ *
+ * @param <K> key类型
+ * @param <V> value类型
+ */
+public class OffHeapExpireMap<K, V> extends ApplicationModel implements ExpireSweepableInterface {
+    /**
+     * 无限期
+     */
+    private static final long NEVER_EXPIRE = Long.MAX_VALUE;
+    
+    /**
+     * 记录头长度（超时时间8字节 + key长度4字节 + value长度4字节）
+     */
+    private static final int HEADER_SIZE = 16;
+    
+    /**
+     * 单个段的最大容量
+     */
+    private static final int MAXIMUM_SEGMENT_BYTES = 1 << 30;
+    
+    /**
+     * 默认段数
+     */
+    public static final int DEFAULT_SEGMENT_COUNT = 16;
+    
+    /**
+     * 默认每段的初始容量（单位：字节）
+     */
+    public static final int DEFAULT_SEGMENT_BYTES = 1 << 20;
+    
+    /**
+     * 存储段
+     */
+    private class Segment {
+        /**
+         * 数据区
+         */
+        private ByteBuffer data;
+        
+        /**
+         * 写入位置
+         */
+        private int write_offset = 0;
+        
+        /**
+         * 失效记录占用的字节数
+         */
+        private int garbage_bytes = 0;
+        
+        /**
+         * 索引：记录偏移 + 1（0表示空槽）
+         */
+        private int[] offsets;
+        
+        /**
+         * 索引：key哈希
+         */
+        private int[] hashes;
+        
+        /**
+         * 索引下标掩码
+         */
+        private int mask;
+        
+        /**
+         * 条目数量（含尚未清理的过期数据）
+         */
+        private int size = 0;
+        
+        /**
+         * 后台清理的扫描位置
+         */
+        private int sweep_cursor = 0;
+        
+        /**
+         * 构造函数
+         *
+         * @param capacity 初始容量（单位：字节）
+         */
+        private Segment(int capacity) {
+            /**
+             * @modifies:
+             *          \this.data;
+             *          \this.offsets;
+             *          \this.hashes;
+             *          \this.mask;
+             * @effects:
+             *          an empty segment with capacity bytes and a small index will be initialized;
+             */
+            this.data = allocateBuffer(capacity);
+            this.offsets = new int[16];
+            this.hashes = new int[16];
+            this.mask = 15;
+        }
+        
+        /**
+         * 获取记录长度
+         *
+         * @param offset 记录偏移
+         * @return 记录长度
+         */
+        private int recordSize(int offset) {
+            /**
+             * @effects:
+             *          \result == the total length of the record at offset;
+             */
+            return HEADER_SIZE + this.data.getInt(offset + 8) + this.data.getInt(offset + 12);
+        }
+        
+        /**
+         * 判断记录的key是否与给定key相同
+         *
+         * @param offset    记录偏移
+         * @param key_bytes key序列化结果
+         * @return 是否相同
+         */
+        private boolean keyEquals(int offset, byte[] key_bytes) {
+            /**
+             * @effects:
+             *          \result == (the key bytes of the record at offset equal key_bytes);
+             */
+            if (this.data.getInt(offset + 8) != key_bytes.length) return false;
+            int position = offset + HEADER_SIZE;
+            for (int i = 0; i < key_bytes.length; i++) {
+                if (this.data.get(position + i) != key_bytes[i]) return false;
+            }
+            return true;
+        }
+        
+        /**
+         * 查找key所在的索引槽位
+         *
+         * @param hash      key哈希
+         * @param key_bytes key序列化结果
+         * @return 槽位（不存在时为-1）
+         */
+        private int indexOf(int hash, byte[] key_bytes) {
+            /**
+             * @effects:
+             *          (key exists) ==> \result == the index slot of key;
+             *          otherwise, \result == -1;
+             */
+            for (int index = hash & this.mask; this.offsets[index] != 0; index = (index + 1) & this.mask) {
+                if ((this.hashes[index] == hash) && this.keyEquals(this.offsets[index] - 1, key_bytes)) return index;
+            }
+            return -1;
+        }
+        
+        /**
+         * 获取未过期的key所在的索引槽位，过期时顺便删除
+         *
+         * @param hash      key哈希
+         * @param key_bytes key序列化结果
+         * @param present   当前时间
+         * @return 槽位（不存在或已过期时为-1）
+         */
+        private int indexOfAlive(int hash, byte[] key_bytes, long present) {
+            /**
+             * @modifies:
+             *          \this;
+             * @effects:
+             *          (key exists and not expired) ==> \result == the index slot of key;
+             *          (key has expired) ==> key will be removed && \result == -1;
+             *          otherwise, \result == -1;
+             */
+            int index = this.indexOf(hash, key_bytes);
+            if ((index >= 0) && (this.data.getLong(this.offsets[index] - 1) <= present)) {
+                this.removeAt(index);
+                return -1;
+            }
+            return index;
+        }
+        
+        /**
+         * 读取记录的value
+         *
+         * @param offset 记录偏移
+         * @return value序列化结果
+         */
+        private byte[] readValue(int offset) {
+            /**
+             * @effects:
+             *          \result == a copy of the value bytes of the record at offset;
+             */
+            int key_length = this.data.getInt(offset + 8);
+            byte[] bytes = new byte[this.data.getInt(offset + 12)];
+            ByteBuffer source = this.data.duplicate();
+            source.position(offset + HEADER_SIZE + key_length);
+            source.get(bytes);
+            return bytes;
+        }
+        
+        /**
+         * 删除某索引槽位的条目（后续探测链上的槽位向前移位填补空槽）
+         *
+         * @param index 槽位
+         */
+        private void removeAt(int index) {
+            /**
+             * @modifies:
+             *          \this;
+             * @effects:
+             *          the record of index will become garbage;
+             *          the index slot will be removed, the following slots in the same probe chain will be shifted backward;
+             */
+            this.garbage_bytes += this.recordSize(this.offsets[index] - 1);
+            this.size--;
+            int hole = index;
+            int next = index;
+            while (true) {
+                next = (next + 1) & this.mask;
+                if (this.offsets[next] == 0) break;
+                int home = this.hashes[next] & this.mask;
+                if (((next - home) & this.mask) >= ((next - hole) & this.mask)) {  // home is not between hole and next
+                    this.offsets[hole] = this.offsets[next];
+                    this.hashes[hole] = this.hashes[next];
+                    hole = next;
+                }
+            }
+            this.offsets[hole] = 0;
+        }
+        
+        /**
+         * 在索引中插入槽位（必要时扩大索引）
+         *
+         * @param hash   key哈希
+         * @param offset 记录偏移
+         */
+        private void insertIndex(int hash, int offset) {
+            /**
+             * @modifies:
+             *          \this.offsets;
+             *          \this.hashes;
+             *          \this.mask;
+             *          \this.size;
+             * @effects:
+             *          a slot pointing to offset will be inserted;
+             *          the index will be doubled when it is more than half full;
+             */
+            if ((this.size + 1) * 2 > this.offsets.length) {
+                int[] old_offsets = this.offsets;
+                int[] old_hashes = this.hashes;
+                this.offsets = new int[old_offsets.length * 2];
+                this.hashes = new int[old_offsets.length * 2];
+                this.mask = this.offsets.length - 1;
+                this.sweep_cursor = 0;
+                for (int i = 0; i < old_offsets.length; i++) {
+                    if (old_offsets[i] != 0) this.placeIndex(old_hashes[i], old_offsets[i]);
+                }
+            }
+            this.placeIndex(hash, offset + 1);
+            this.size++;
+        }
+        
+        /**
+         * 将槽位放入索引中第一个空位
+         *
+         * @param hash       key哈希
+         * @param offset_one 记录偏移 + 1
+         */
+        private void placeIndex(int hash, int offset_one) {
+            /**
+             * @modifies:
+             *          \this.offsets;
+             *          \this.hashes;
+             * @effects:
+             *          the slot will be placed at the first empty position of its probe chain;
+             */
+            int index = hash & this.mask;
+            while (this.offsets[index] != 0) index = (index + 1) & this.mask;
+            this.offsets[index] = offset_one;
+            this.hashes[index] = hash;
+        }
+        
+        /**
+         * 保证数据区有足够的剩余空间（不足时整理，仍不足时扩容）
+         *
+         * @param length 需要的字节数
+         * @param present 当前时间
+         */
+        private void ensureSpace(int length, long present) {
+            /**
+             * @modifies:
+             *          \this;
+             * @effects:
+             *          (there is not enough space) ==> the expired entries will be removed, and the alive records will be compacted
+             *              into a new buffer, which is enlarged if needed;
+             *          (the record can not fit even in a segment of the maximum size) ==> IllegalStateException will be thrown;
+             */
+            if (this.write_offset + length <= this.data.capacity()) return;
+            this.removeExpired(present);
+            long required = (long) (this.write_offset - this.garbage_bytes) + length;
+            if (required > MAXIMUM_SEGMENT_BYTES) throw new IllegalStateException("Off-heap segment is full");
+            long capacity = this.data.capacity();
+            while ((capacity < MAXIMUM_SEGMENT_BYTES) && (required > capacity - capacity / 4)) capacity <<= 1;  // keep room for the following writes
+            ByteBuffer target = allocateBuffer((int) capacity);
+            int position = 0;
+            ByteBuffer source = this.data.duplicate();
+            for (int i = 0; i < this.offsets.length; i++) {
+                if (this.offsets[i] == 0) continue;
+                int offset = this.offsets[i] - 1;
+                int size = this.recordSize(offset);
+                source.limit(offset + size).position(offset);
+                target.position(position);
+                target.put(source);
+                source.limit(source.capacity());
+                this.offsets[i] = position + 1;
+                position += size;
+            }
+            this.data = target;
+            this.write_offset = position;
+            this.garbage_bytes = 0;
+        }
+        
+        /**
+         * 追加一条记录
+         *
+         * @param expire_time 超时时间
+         * @param key_bytes   key序列化结果
+         * @param value_bytes value序列化结果
+         * @return 记录偏移
+         */
+        private int append(long expire_time, byte[] key_bytes, byte[] value_bytes) {
+            /**
+             * @modifies:
+             *          \this.data;
+             *          \this.write_offset;
+             * @effects:
+             *          a record will be written at \this.write_offset;
+             *          \result == the offset of the record;
+             */
+            int offset = this.write_offset;
+            ByteBuffer target = this.data.duplicate();
+            target.position(offset);
+            target.putLong(expire_time).putInt(key_bytes.length).putInt(value_bytes.length).put(key_bytes).put(value_bytes);
+            this.write_offset = target.position();
+            return offset;
+        }
+        
+        /**
+         * 写入键值对
+         *
+         * @param hash        key哈希
+         * @param key_bytes   key序列化结果
+         * @param value_bytes value序列化结果
+         * @param expire_time 超时时间
+         * @param present     当前时间
+         * @return 原有的value序列化结果（不存在或已过期时为null）
+         */
+        private byte[] put(int hash, byte[] key_bytes, byte[] value_bytes, long expire_time, long present) {
+            /**
+             * @modifies:
+             *          \this;
+             * @effects:
+             *          the old record of key will become garbage, and a new record will be appended;
+             *          \result == the previous alive value bytes of key, or null;
+             */
+            byte[] previous = null;
+            int index = this.indexOfAlive(hash, key_bytes, present);
+            if (index >= 0) {
+                previous = this.readValue(this.offsets[index] - 1);
+                this.removeAt(index);
+            }
+            this.ensureSpace(HEADER_SIZE + key_bytes.length + value_bytes.length, present);
+            this.insertIndex(hash, this.append(expire_time, key_bytes, value_bytes));
+            return previous;
+        }
+        
+        /**
+         * 删除所有过期的条目
+         *
+         * @param present 当前时间
+         * @return 删除的数量
+         */
+        private int removeExpired(long present) {
+            /**
+             * @modifies:
+             *          \this;
+             * @effects:
+             *          all the expired entries will be removed;
+             *          \result == the number of the entries removed;
+             */
+            int count = 0;
+            for (int i = 0; i < this.offsets.length; i++) {
+                while ((this.offsets[i] != 0) && (this.data.getLong(this.offsets[i] - 1) <= present)) {  // the slot may be refilled by the shifted one
+                    this.removeAt(i);
+                    count++;
+                }
+            }
+            return count;
+        }
+        
+        /**
+         * 增量删除过期的条目
+         *
+         * @param budget  本次最多扫描的槽位数量
+         * @param present 当前时间
+         * @return 实际扫描的槽位数量
+         */
+        private int sweep(int budget, long present) {
+            /**
+             * @modifies:
+             *          \this;
+             * @effects:
+             *          at most budget index slots will be scanned from the last position, and the expired entries will be removed;
+             *          the position will be reset when the end of the index is reached;
+             *          \result == the number of the slots scanned;
+             */
+            int count = 0;
+            while (count < budget) {
+                if (this.sweep_cursor >= this.offsets.length) {
+                    this.sweep_cursor = 0;
+                    break;
+                }
+                int index = this.sweep_cursor;
+                if ((this.offsets[index] != 0) && (this.data.getLong(this.offsets[index] - 1) <= present)) {
+                    this.removeAt(index);  // check the same slot again, it may be refilled by the shifted one
+                } else {
+                    this.sweep_cursor++;
+                }
+                count++;
+            }
+            return count;
+        }
+        
+        /**
+         * 清空
+         */
+        private void clear() {
+            /**
+             * @modifies:
+             *          \this;
+             * @effects:
+             *          all the entries will be dropped, the buffer is kept;
+             */
+            Arrays.fill(this.offsets, 0);
+            this.size = 0;
+            this.write_offset = 0;
+            this.garbage_bytes = 0;
+            this.sweep_cursor = 0;
+        }
+    }
+    
+    /**
+     * key序列化器
+     */
+    private final Serializer<K> key_serializer;
+    
+    /**
+     * value序列化器
+     */
+    private final Serializer<V> value_serializer;
+    
+    /**
+     * 内存映射文件所在目录（为null时使用direct buffer）
+     */
+    private final Path mapped_directory;
+    
+    /**
+     * 存储段
+     */
+    private final Segment[] segments;
+    
+    /**
+     * 段下标移位
+     */
+    private final int segment_shift;
+    
+    /**
+     * 是否由后台清理线程清理过期数据
+     */
+    private final boolean background_sweep;
+    
+    /**
+     * 后台清理的当前段
+     */
+    private int sweep_segment = 0;
+    
+    /**
+     * 构造函数
+     *
+     * @param key_serializer   key序列化器
+     * @param value_serializer value序列化器
+     * @param segment_count    段数（会向上取整到2的幂）
+     * @param segment_bytes    每段的初始容量（单位：字节）
+     * @param mapped_directory 内存映射文件所在目录（为null时使用direct buffer）
+     * @param background_sweep 是否由后台清理线程（ExpireSweepThread.getDefault()）清理过期数据
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public OffHeapExpireMap(Serializer<K> key_serializer, Serializer<V> value_serializer, int segment_count, int segment_bytes,
+                            Path mapped_directory, boolean background_sweep) {
+        /**
+         * @requires:
+         *          key_serializer != null;
+         *          value_serializer != null;
+         *          segment_count > 0;
+         *          segment_bytes > 0;
+         * @modifies:
+         *          all the fields;
+         * @effects:
+         *          the segments will be allocated;
+         *          (background_sweep) ==> \this will be registered into the default ExpireSweepThread;
+         */
+        this.key_serializer = key_serializer;
+        this.value_serializer = value_serializer;
+        this.mapped_directory = mapped_directory;
+        this.background_sweep = background_sweep;
+        int count = 1;
+        int bits = 0;
+        while (count < segment_count) {
+            count <<= 1;
+            bits++;
+        }
+        this.segment_shift = 32 - bits;
+        this.segments = (Segment[]) new OffHeapExpireMap.Segment[count];
+        int capacity = Math.max(Math.min(segment_bytes, MAXIMUM_SEGMENT_BYTES), HEADER_SIZE);
+        for (int i = 0; i < count; i++) this.segments[i] = new Segment(capacity);
+        if (background_sweep) ExpireSweepThread.getDefault().register(this);
+    }
+    
+    /**
+     * 构造函数（使用direct buffer和默认容量）
+     *
+     * @param key_serializer   key序列化器
+     * @param value_serializer value序列化器
+     */
+    public OffHeapExpireMap(Serializer<K> key_serializer, Serializer<V> value_serializer) {
+        /**
+         * @effects:
+         *          it will be initialized with the default segments in direct buffers, without background sweeping;
+         */
+        this(key_serializer, value_serializer, DEFAULT_SEGMENT_COUNT, DEFAULT_SEGMENT_BYTES, null, false);
+    }
+    
+    /**
+     * 分配段的数据区
+     *
+     * @param capacity 容量（单位：字节）
+     * @return 数据区
+     */
+    private ByteBuffer allocateBuffer(int capacity) {
+        /**
+         * @effects:
+         *          (\this.mapped_directory == null) ==> \result == a new direct buffer;
+         *          otherwise, \result == a buffer mapped from a new temporary file in \this.mapped_directory, the file is deleted after mapping;
+         *          (the file can not be mapped) ==> UncheckedIOException will be thrown;
+         */
+        if (this.mapped_directory == null) return ByteBuffer.allocateDirect(capacity);
+        try {
+            Path file = Files.createTempFile(this.mapped_directory, "offheap-", ".segment");
+            try (RandomAccessFile random_access_file = new RandomAccessFile(file.toFile(), "rw")) {
+                random_access_file.setLength(capacity);
+                return random_access_file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * 计算key序列化结果的哈希
+     *
+     * @param key_bytes key序列化结果
+     * @return 哈希
+     */
+    private static int hashOf(byte[] key_bytes) {
+        /**
+         * @effects:
+         *          \result == the mixed hash of key_bytes;
+         */
+        int hash = Arrays.hashCode(key_bytes) * 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+    
+    /**
+     * 获取哈希对应的段
+     *
+     * @param hash 哈希
+     * @return 段
+     */
+    private Segment segmentOf(int hash) {
+        /**
+         * @effects:
+         *          \result == the segment chosen by the high bits of hash;
+         */
+        return (this.segment_shift == 32) ? this.segments[0] : this.segments[hash >>> this.segment_shift];
+    }
+    
+    /**
+     * 获取某键对应值
+     *
+     * @param key key
+     * @return 对应值（不存在或已过期时为null）
+     */
+    public V get(K key) {
+        /**
+         * @modifies:
+         *          the segment of key;
+         * @effects:
+         *          (key exists and not expired) ==> \result == the deserialized value;
+         *          otherwise, \result == null, and the expired key will be removed;
+         */
+        byte[] key_bytes = this.key_serializer.serialize(key);
+        int hash = hashOf(key_bytes);
+        Segment segment = this.segmentOf(hash);
+        byte[] value_bytes;
+        synchronized (segment) {
+            int index = segment.indexOfAlive(hash, key_bytes, System.currentTimeMillis());
+            if (index < 0) return null;
+            value_bytes = segment.readValue(segment.offsets[index] - 1);
+        }
+        return this.value_serializer.deserialize(value_bytes);
+    }
+    
+    /**
+     * 判断是否包含key
+     *
+     * @param key key
+     * @return 是否包含（已过期视为不包含）
+     */
+    public boolean containsKey(K key) {
+        /**
+         * @modifies:
+         *          the segment of key;
+         * @effects:
+         *          \result == (key exists and not expired);
+         */
+        byte[] key_bytes = this.key_serializer.serialize(key);
+        int hash = hashOf(key_bytes);
+        Segment segment = this.segmentOf(hash);
+        synchronized (segment) {
+            return segment.indexOfAlive(hash, key_bytes, System.currentTimeMillis()) >= 0;
+        }
+    }
+    
+    /**
+     * 获取某键的超时时间
+     *
+     * @param key key
+     * @return 超时时间（不存在、已过期或无限期时为null）
+     */
+    public Timestamp getExpireTime(K key) {
+        /**
+         * @modifies:
+         *          the segment of key;
+         * @effects:
+         *          (key exists, not expired and has an expire time) ==> \result == the expire time;
+         *          otherwise, \result == null;
+         */
+        byte[] key_bytes = this.key_serializer.serialize(key);
+        int hash = hashOf(key_bytes);
+        Segment segment = this.segmentOf(hash);
+        long expire_time;
+        synchronized (segment) {
+            int index = segment.indexOfAlive(hash, key_bytes, System.currentTimeMillis());
+            if (index < 0) return null;
+            expire_time = segment.data.getLong(segment.offsets[index] - 1);
+        }
+        return (expire_time == NEVER_EXPIRE) ? null : new Timestamp(expire_time);
+    }
+    
+    /**
+     * 将key键值设定为value，expire_time时超时
+     *
+     * @param key         key
+     * @param value       value
+     * @param expire_time 超时时间（null表示无限期）
+     * @return 原有的值（不存在或已过期时为null）
+     */
+    public V put(K key, V value, Timestamp expire_time) {
+        /**
+         * @requires:
+         *          key != null;
+         *          value != null;
+         * @modifies:
+         *          the segment of key;
+         * @effects:
+         *          key will be mapped to value until expire_time;
+         *          \result == the previous alive value of key, or null;
+         */
+        return this.putUntil(key, value, (expire_time == null) ? NEVER_EXPIRE : expire_time.getTimestamp());
+    }
+    
+    /**
+     * 将key键值设定为value，expire_after毫秒后超时
+     *
+     * @param key          key
+     * @param value        value
+     * @param expire_after 有效期（单位：ms）
+     * @return 原有的值（不存在或已过期时为null）
+     */
+    public V put(K key, V value, long expire_after) {
+        /**
+         * @effects:
+         *          key will be mapped to value for expire_after ms;
+         */
+        long present = System.currentTimeMillis();
+        return this.putUntil(key, value, (expire_after >= NEVER_EXPIRE - present) ? NEVER_EXPIRE : present + expire_after);
+    }
+    
+    /**
+     * 将key键值设定为value（无限期）
+     *
+     * @param key   key
+     * @param value value
+     * @return 原有的值（不存在或已过期时为null）
+     */
+    public V put(K key, V value) {
+        /**
+         * @effects:
+         *          key will be mapped to value without expiring;
+         */
+        return this.putUntil(key, value, NEVER_EXPIRE);
+    }
+    
+    /**
+     * 将key键值设定为value，expire_time时超时
+     *
+     * @param key         key
+     * @param value       value
+     * @param expire_time 超时时间（unix时间戳，单位：ms；Long.MAX_VALUE表示无限期）
+     * @return 原有的值（不存在或已过期时为null）
+     */
+    private V putUntil(K key, V value, long expire_time) {
+        /**
+         * @modifies:
+         *          the segment of key;
+         * @effects:
+         *          key will be mapped to value until expire_time;
+         *          \result == the previous alive value of key, or null;
+         */
+        if ((key == null) || (value == null)) throw new NullPointerException();
+        byte[] key_bytes = this.key_serializer.serialize(key);
+        byte[] value_bytes = this.value_serializer.serialize(value);
+        int hash = hashOf(key_bytes);
+        Segment segment = this.segmentOf(hash);
+        byte[] previous;
+        synchronized (segment) {
+            previous = segment.put(hash, key_bytes, value_bytes, expire_time, System.currentTimeMillis());
+        }
+        return (previous == null) ? null : this.value_serializer.deserialize(previous);
+    }
+    
+    /**
+     * 删除指定的key
+     *
+     * @param key key
+     * @return 原有的值（不存在或已过期时为null）
+     */
+    public V remove(K key) {
+        /**
+         * @modifies:
+         *          the segment of key;
+         * @effects:
+         *          key will be removed;
+         *          \result == the previous alive value of key, or null;
+         */
+        byte[] key_bytes = this.key_serializer.serialize(key);
+        int hash = hashOf(key_bytes);
+        Segment segment = this.segmentOf(hash);
+        byte[] previous;
+        synchronized (segment) {
+            int index = segment.indexOfAlive(hash, key_bytes, System.currentTimeMillis());
+            if (index < 0) return null;
+            previous = segment.readValue(segment.offsets[index] - 1);
+            segment.removeAt(index);
+        }
+        return this.value_serializer.deserialize(previous);
+    }
+    
+    /**
+     * 清空所有超时的key
+     *
+     * @return 删除的数量
+     */
+    public int removeExpiredKeys() {
+        /**
+         * @modifies:
+         *          \this.segments;
+         * @effects:
+         *          all the expired keys will be removed, one segment at a time;
+         *          \result == the number of the keys removed;
+         */
+        long present = System.currentTimeMillis();
+        int count = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                count += segment.removeExpired(present);
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * 增量清理超时的key（由后台清理线程调用）
+     *
+     * @param budget 本次最多扫描的索引槽位数量
+     * @return 实际扫描的槽位数量
+     */
+    @Override
+    public synchronized int sweepExpired(int budget) {
+        /**
+         * @modifies:
+         *          \this.segments;
+         *          \this.sweep_segment;
+         * @effects:
+         *          the segments will be swept in turn from the last position, scanning at most budget slots in total;
+         *          \result == the number of the slots scanned;
+         */
+        long present = System.currentTimeMillis();
+        int count = 0;
+        for (int visited = 0; (visited < this.segments.length) && (count < budget); visited++) {
+            Segment segment = this.segments[this.sweep_segment];
+            int scanned;
+            synchronized (segment) {
+                scanned = segment.sweep(budget - count, present);
+            }
+            count += scanned;
+            if (count < budget) this.sweep_segment = (this.sweep_segment + 1) & (this.segments.length - 1);  // this segment is finished
+        }
+        return count;
+    }
+    
+    /**
+     * 获取大小
+     *
+     * @return 键值对数量
+     */
+    public int size() {
+        /**
+         * @modifies:
+         *          \this.segments;
+         * @effects:
+         *          (!\this.background_sweep) ==> all the expired keys will be removed;
+         *          \result == the number of the entries;
+         */
+        if (!this.background_sweep) this.removeExpiredKeys();
+        int size = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * 检测是否为空
+     *
+     * @return 是否为空
+     */
+    public boolean isEmpty() {
+        /**
+         * @effects:
+         *          \result == (\this.size() == 0);
+         */
+        return this.size() == 0;
+    }
+    
+    /**
+     * 获取已分配的堆外内存总量
+     *
+     * @return 字节数
+     */
+    public long getOffHeapBytes() {
+        /**
+         * @effects:
+         *          \result == the sum of the capacities of the segment buffers;
+         */
+        long bytes = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                bytes += segment.data.capacity();
+            }
+        }
+        return bytes;
+    }
+    
+    /**
+     * 清空数据结构
+     */
+    public void clear() {
+        /**
+         * @modifies:
+         *          \this.segments;
+         * @effects:
+         *          all the entries will be removed, the buffers are kept;
+         */
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package models.structure.metrics;
+
+import models.application.ApplicationModel;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存运行统计
+ * <p>
+ * 统计内容：
+ * 1、命中、未命中的次数
+ * 2、超时删除、淘汰的条目数
+ * 3、加载成功、失败的次数及加载耗时（单位：ns）
+ * 4、已删除条目的存活时间（从写入到删除，覆盖不算删除；单位：ms）
+ * <p>
+ * 注：
+ * 1、计数器使用LongAdder，多个线程同时记录时几乎没有竞争，读取快照时不需要持有缓存的锁
+ * 2、缓存未开启统计时不持有该对象，热路径上只有一次空判断
+ */
+public class CacheMetrics extends ApplicationModel {
+    /**
+     * 命中次数
+     */
+    private final LongAdder hit_count = new LongAdder();
+    
+    /**
+     * 未命中次数
+     */
+    private final LongAdder miss_count = new LongAdder();
+    
+    /**
+     * 超时删除的条目数
+     */
+    private final LongAdder expired_count = new LongAdder();
+    
+    /**
+     * 淘汰的条目数
+     */
+    private final LongAdder evicted_count = new LongAdder();
+    
+    /**
+     * 加载成功次数
+     */
+    private final LongAdder load_success_count = new LongAdder();
+    
+    /**
+     * 加载失败次数
+     */
+    private final LongAdder load_failure_count = new LongAdder();
+    
+    /**
+     * 加载耗时总和（单位：ns）
+     */
+    private final LongAdder total_load_time = new LongAdder();
+    
+    /**
+     * 已删除条目的数量（仅包含写入时间已知的条目）
+     */
+    private final LongAdder removed_count = new LongAdder();
+    
+    /**
+     * 已删除条目的存活时间总和（单位：ms）
+     */
+    private final LongAdder total_lifetime = new LongAdder();
+    
+    /**
+     * 开始统计的时间（System.nanoTime）
+     */
+    private volatile long start_nanos = System.nanoTime();
+    
+    /**
+     * 记录一次命中
+     */
+    public void recordHit() {
+        /**
+         * @modifies:
+         *          \this.hit_count;
+         * @effects:
+         *          \this.hit_count will be increased;
+         */
+        this.hit_count.increment();
+    }
+    
+    /**
+     * 记录一次未命中
+     */
+    public void recordMiss() {
+        /**
+         * @modifies:
+         *          \this.miss_count;
+         * @effects:
+         *          \this.miss_count will be increased;
+         */
+        this.miss_count.increment();
+    }
+    
+    /**
+     * 记录一个条目被超时删除
+     */
+    public void recordExpired() {
+        /**
+         * @modifies:
+         *          \this.expired_count;
+         * @effects:
+         *          \this.expired_count will be increased;
+         */
+        this.expired_count.increment();
+    }
+    
+    /**
+     * 记录一个条目被淘汰
+     */
+    public void recordEvicted() {
+        /**
+         * @modifies:
+         *          \this.evicted_count;
+         * @effects:
+         *          \this.evicted_count will be increased;
+         */
+        this.evicted_count.increment();
+    }
+    
+    /**
+     * 记录一次加载
+     *
+     * @param load_time 加载耗时（单位：ns）
+     * @param failed    是否失败
+     */
+    public void recordLoad(long load_time, boolean failed) {
+        /**
+         * @modifies:
+         *          \this.load_success_count;
+         *          \this.load_failure_count;
+         *          \this.total_load_time;
+         * @effects:
+         *          (failed) ==> \this.load_failure_count will be increased;
+         *          otherwise, \this.load_success_count will be increased;
+         *          load_time will be added to \this.total_load_time;
+         */
+        if (failed) {
+            this.load_failure_count.increment();
+        } else {
+            this.load_success_count.increment();
+        }
+        this.total_load_time.add(Math.max(load_time, 0));
+    }
+    
+    /**
+     * 记录一个条目被删除时的存活时间
+     *
+     * @param lifetime 存活时间（单位：ms）
+     */
+    public void recordLifetime(long lifetime) {
+        /**
+         * @modifies:
+         *          \this.removed_count;
+         *          \this.total_lifetime;
+         * @effects:
+         *          \this.removed_count will be increased;
+         *          lifetime will be added to \this.total_lifetime;
+         */
+        this.removed_count.increment();
+        this.total_lifetime.add(Math.max(lifetime, 0));
+    }
+    
+    /**
+     * 生成快照
+     *
+     * @return 快照
+     */
+    public CacheMetricsSnapshot getSnapshot() {
+        /**
+         * @effects:
+         *          \result == a new snapshot of the current statistics;
+         */
+        return new CacheMetricsSnapshot(System.nanoTime() - this.start_nanos, this.hit_count.sum(), this.miss_count.sum(),
+                this.expired_count.sum(), this.evicted_count.sum(), this.load_success_count.sum(), this.load_failure_count.sum(),
+                this.total_load_time.sum(), this.removed_count.sum(), this.total_lifetime.sum());
+    }
+    
+    /**
+     * 清空统计
+     */
+    public void reset() {
+        /**
+         * @modifies:
+         *          all the fields;
+         * @effects:
+         *          all the statistics will be cleared, and the statistics will start again from now;
+         */
+        this.hit_count.reset();
+        this.miss_count.reset();
+        this.expired_count.reset();
+        this.evicted_count.reset();
+        this.load_success_count.reset();
+        this.load_failure_count.reset();
+        this.total_load_time.reset();
+        this.removed_count.reset();
+        this.total_lifetime.reset();
+        this.start_nanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,297 @@
+package models.structure.metrics;
+
+import models.application.ApplicationModel;
+
+/**
+ * 缓存运行统计快照
+ * <p>
+ * 生成后不再变化，可以在任意线程中读取
+ */
+public class CacheMetricsSnapshot extends ApplicationModel {
+    /**
+     * 统计时长（单位：ns）
+     */
+    private final long elapsed_time;
+    
+    /**
+     * 命中次数
+     */
+    private final long hit_count;
+    
+    /**
+     * 未命中次数
+     */
+    private final long miss_count;
+    
+    /**
+     * 超时删除的条目数
+     */
+    private final long expired_count;
+    
+    /**
+     * 淘汰的条目数
+     */
+    private final long evicted_count;
+    
+    /**
+     * 加载成功次数
+     */
+    private final long load_success_count;
+    
+    /**
+     * 加载失败次数
+     */
+    private final long load_failure_count;
+    
+    /**
+     * 加载耗时总和（单位：ns）
+     */
+    private final long total_load_time;
+    
+    /**
+     * 已删除条目的数量（仅包含写入时间已知的条目）
+     */
+    private final long removed_count;
+    
+    /**
+     * 已删除条目的存活时间总和（单位：ms）
+     */
+    private final long total_lifetime;
+    
+    /**
+     * 构造函数
+     *
+     * @param elapsed_time       统计时长
+     * @param hit_count          命中次数
+     * @param miss_count         未命中次数
+     * @param expired_count      超时删除的条目数
+     * @param evicted_count      淘汰的条目数
+     * @param load_success_count 加载成功次数
+     * @param load_failure_count 加载失败次数
+     * @param total_load_time    加载耗时总和
+     * @param removed_count      已删除条目的数量
+     * @param total_lifetime     已删除条目的存活时间总和
+     */
+    CacheMetricsSnapshot(long elapsed_time, long hit_count, long miss_count, long expired_count, long evicted_count,
+                         long load_success_count, long load_failure_count, long total_load_time, long removed_count, long total_lifetime) {
+        /**
+         * @modifies:
+         *          all the fields;
+         * @effects:
+         *          all the fields will be initialized with the arguments;
+         */
+        this.elapsed_time = elapsed_time;
+        this.hit_count = hit_count;
+        this.miss_count = miss_count;
+        this.expired_count = expired_count;
+        this.evicted_count = evicted_count;
+        this.load_success_count = load_success_count;
+        this.load_failure_count = load_failure_count;
+        this.total_load_time = total_load_time;
+        this.removed_count = removed_count;
+        this.total_lifetime = total_lifetime;
+    }
+    
+    /**
+     * 获取统计时长（单位：ns）
+     *
+     * @return 统计时长
+     */
+    public long getElapsedTime() {
+        /**
+         * @effects:
+         *          \result == \this.elapsed_time;
+         */
+        return elapsed_time;
+    }
+    
+    /**
+     * 获取命中次数
+     *
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        /**
+         * @effects:
+         *          \result == \this.hit_count;
+         */
+        return hit_count;
+    }
+    
+    /**
+     * 获取未命中次数
+     *
+     * @return 未命中次数
+     */
+    public long getMissCount() {
+        /**
+         * @effects:
+         *          \result == \this.miss_count;
+         */
+        return miss_count;
+    }
+    
+    /**
+     * 获取超时删除的条目数
+     *
+     * @return 超时删除的条目数
+     */
+    public long getExpiredCount() {
+        /**
+         * @effects:
+         *          \result == \this.expired_count;
+         */
+        return expired_count;
+    }
+    
+    /**
+     * 获取淘汰的条目数
+     *
+     * @return 淘汰的条目数
+     */
+    public long getEvictedCount() {
+        /**
+         * @effects:
+         *          \result == \this.evicted_count;
+         */
+        return evicted_count;
+    }
+    
+    /**
+     * 获取加载成功次数
+     *
+     * @return 加载成功次数
+     */
+    public long getLoadSuccessCount() {
+        /**
+         * @effects:
+         *          \result == \this.load_success_count;
+         */
+        return load_success_count;
+    }
+    
+    /**
+     * 获取加载失败次数
+     *
+     * @return 加载失败次数
+     */
+    public long getLoadFailureCount() {
+        /**
+         * @effects:
+         *          \result == \this.load_failure_count;
+         */
+        return load_failure_count;
+    }
+    
+    /**
+     * 获取加载耗时总和（单位：ns）
+     *
+     * @return 加载耗时总和
+     */
+    public long getTotalLoadTime() {
+        /**
+         * @effects:
+         *          \result == \this.total_load_time;
+         */
+        return total_load_time;
+    }
+    
+    /**
+     * 获取已删除条目的数量（仅包含写入时间已知的条目）
+     *
+     * @return 已删除条目的数量
+     */
+    public long getRemovedCount() {
+        /**
+         * @effects:
+         *          \result == \this.removed_count;
+         */
+        return removed_count;
+    }
+    
+    /**
+     * 获取已删除条目的存活时间总和（单位：ms）
+     *
+     * @return 已删除条目的存活时间总和
+     */
+    public long getTotalLifetime() {
+        /**
+         * @effects:
+         *          \result == \this.total_lifetime;
+         */
+        return total_lifetime;
+    }
+    
+    /**
+     * 获取请求次数
+     *
+     * @return 请求次数（命中次数 + 未命中次数）
+     */
+    public long getRequestCount() {
+        /**
+         * @effects:
+         *          \result == \this.hit_count + \this.miss_count;
+         */
+        return this.hit_count + this.miss_count;
+    }
+    
+    /**
+     * 获取命中率
+     *
+     * @return 命中率（没有请求时为1）
+     */
+    public double getHitRate() {
+        /**
+         * @effects:
+         *          (no request) ==> \result == 1;
+         *          otherwise, \result == \this.hit_count / (\this.hit_count + \this.miss_count);
+         */
+        long request_count = this.getRequestCount();
+        return (request_count == 0) ? 1 : (double) this.hit_count / request_count;
+    }
+    
+    /**
+     * 获取平均加载耗时（单位：ns）
+     *
+     * @return 平均加载耗时（没有加载时为0）
+     */
+    public double getAverageLoadTime() {
+        /**
+         * @effects:
+         *          (no load) ==> \result == 0;
+         *          otherwise, \result == \this.total_load_time / (the number of the loads);
+         */
+        long load_count = this.load_success_count + this.load_failure_count;
+        return (load_count == 0) ? 0 : (double) this.total_load_time / load_count;
+    }
+    
+    /**
+     * 获取已删除条目的平均存活时间（单位：ms）
+     *
+     * @return 平均存活时间（没有删除时为0）
+     */
+    public double getAverageLifetime() {
+        /**
+         * @effects:
+         *          (\this.removed_count == 0) ==> \result == 0;
+         *          otherwise, \result == \this.total_lifetime / \this.removed_count;
+         */
+        return (this.removed_count == 0) ? 0 : (double) this.total_lifetime / this.removed_count;
+    }
+    
+    /**
+     * 转为字符串
+     *
+     * @return 字符串
+     */
+    @Override
+    public String toString() {
+        /**
+         * @effects:
+         *          \result will be the summary of the snapshot;
+         */
+        return String.format("hit=%s, miss=%s, hit_rate=%.3f, expired=%s, evicted=%s, load_success=%s, load_failure=%s, average_load_time=%.0fns, average_lifetime=%.0fms",
+                this.hit_count, this.miss_count, this.getHitRate(), this.expired_count, this.evicted_count,
+                this.load_success_count, this.load_failure_count, this.getAverageLoadTime(), this.getAverageLifetime());
+    }
+}
@@ -0,0 +1,132 @@
+package models.structure.queue;
+
+import models.application.ApplicationModel;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 多生产者单消费者无锁队列
+ * <p>
+ * 特性：
+ * 1、入队只有一次原子交换（getAndSet），生产者之间不会互相重试，没有锁
+ * 2、出队只允许同一个消费者线程调用，不需要任何原子操作
+ * 3、同一生产者入队的元素按先后顺序出队
+ * <p>
+ * 注：
+ * 1、poll和isEmpty只能由消费者线程调用
+ * 2、生产者完成入队前，消费者可能短暂地看到队列为空，需要配合唤醒机制使用
+ *
+ * @param <T> 元素类型
+ */
+public class MpscLinkedQueue<T> extends ApplicationModel {
+    /**
+     * 队列节点
+     *
+     * @param <T> 元素类型
+     */
+    private static class Node<T> {
+        /**
+         * 元素
+         */
+        private T value;
+        
+        /**
+         * 后继节点
+         */
+        private volatile Node<T> next = null;
+        
+        /**
+         * 构造函数
+         *
+         * @param value 元素
+         */
+        private Node(T value) {
+            /**
+             * @modifies:
+             *          \this.value;
+             * @effects:
+             *          \this.value = value;
+             */
+            this.value = value;
+        }
+    }
+    
+    /**
+     * 队头（哨兵节点，仅消费者访问）
+     */
+    private Node<T> head;
+    
+    /**
+     * 队尾
+     */
+    private final AtomicReference<Node<T>> tail;
+    
+    /**
+     * 构造函数
+     */
+    public MpscLinkedQueue() {
+        /**
+         * @modifies:
+         *          \this.head;
+         *          \this.tail;
+         * @effects:
+         *          \this.head and \this.tail will be initialized to the same empty node;
+         */
+        Node<T> stub = new Node<>(null);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+    }
+    
+    /**
+     * 入队（任意线程）
+     *
+     * @param value 元素
+     */
+    public void offer(T value) {
+        /**
+         * @requires:
+         *          value != null;
+         * @modifies:
+         *          \this.tail;
+         * @effects:
+         *          value will be appended to the end of the queue;
+         */
+        Node<T> node = new Node<>(value);
+        Node<T> previous = this.tail.getAndSet(node);
+        previous.next = node;
+    }
+    
+    /**
+     * 出队（仅消费者线程）
+     *
+     * @return 队头元素（队列为空时为null）
+     */
+    public T poll() {
+        /**
+         * @modifies:
+         *          \this.head;
+         * @effects:
+         *          (the queue is not empty) ==> the first element will be removed && \result == the first element;
+         *          otherwise, \result == null;
+         */
+        Node<T> next = this.head.next;
+        if (next == null) return null;
+        T value = next.value;
+        next.value = null;
+        this.head = next;
+        return value;
+    }
+    
+    /**
+     * 是否为空（仅消费者线程）
+     *
+     * @return 是否为空
+     */
+    public boolean isEmpty() {
+        /**
+         * @effects:
+         *          \result == (there is no element linked after \this.head);
+         */
+        return this.head.next == null;
+    }
+}
@@ -0,0 +1,135 @@
+package models.structure.removal;
+
+import models.application.ApplicationModel;
+
+/**
+ * 数据删除通知
+ *
+ * @param <K> key类型
+ * @param <V> value类型
+ */
+public class RemovalNotification<K, V> extends ApplicationModel {
+    /**
+     * 删除原因
+     */
+    public enum RemovalCause {
+        /**
+         * 被显式删除（remove、clear等）
+         */
+        EXPLICIT,
+        /**
+         * value被覆盖（put、replace等）
+         */
+        REPLACED,
+        /**
+         * 超时
+         */
+        EXPIRED,
+        /**
+         * 超出容量被淘汰
+         */
+        EVICTED
+    }
+    
+    /**
+     * key
+     */
+    private final K key;
+    
+    /**
+     * 被删除的value
+     */
+    private final V value;
+    
+    /**
+     * 删除原因
+     */
+    private final RemovalCause cause;
+    
+    /**
+     * 构造函数
+     *
+     * @param key   key
+     * @param value 被删除的value
+     * @param cause 删除原因
+     */
+    public RemovalNotification(K key, V value, RemovalCause cause) {
+        /**
+         * @modifies:
+         *          \this.key;
+         *          \this.value;
+         *          \this.cause;
+         * @effects:
+         *          all the fields will be initialized with the arguments;
+         */
+        this.key = key;
+        this.value = value;
+        this.cause = cause;
+    }
+    
+    /**
+     * 获取key
+     *
+     * @return key
+     */
+    public K getKey() {
+        /**
+         * @effects:
+         *          \result == \this.key;
+         */
+        return key;
+    }
+    
+    /**
+     * 获取被删除的value
+     *
+     * @return 被删除的value
+     */
+    public V getValue() {
+        /**
+         * @effects:
+         *          \result == \this.value;
+         */
+        return value;
+    }
+    
+    /**
+     * 获取删除原因
+     *
+     * @return 删除原因
+     */
+    public RemovalCause getCause() {
+        /**
+         * @effects:
+         *          \result == \this.cause;
+         */
+        return cause;
+    }
+    
+    /**
+     * 是否由容量或超时自动删除
+     *
+     * @return 是否自动删除
+     */
+    public boolean wasEvicted() {
+        /**
+         * @effects:
+         *          \result == (\this.cause == EXPIRED || \this.cause == EVICTED);
+         */
+        return (this.cause == RemovalCause.EXPIRED) || (this.cause == RemovalCause.EVICTED);
+    }
+    
+    /**
+     * 转为字符串
+     *
+     * @return 字符串
+     */
+    @Override
+    public String toString() {
+        /**
+         * @effects:
+         *          \result == "key=value (cause)";
+         */
+        return String.format("%s=%s (%s)", this.key, this.value, this.cause);
+    }
+}
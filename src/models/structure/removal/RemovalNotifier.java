@@ -0,0 +1,171 @@
+package models.structure.removal;
+
+import interfaces.structure.RemovalListener;
+import models.application.ApplicationModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 删除通知分发器
+ * <p>
+ * 特性：
+ * 1、数据结构只负责把通知放入队列（无锁，不调用监听器），监听器在线程池中执行，不占用调用者的时间
+ * 2、同一时刻最多只有一个分发任务，通知按产生的先后顺序分批交给监听器；分发期间新产生的通知会在下一批中一并交付
+ * 3、监听器抛出的异常会被打印，不影响后续的通知
+ *
+ * @param <K> key类型
+ * @param <V> value类型
+ */
+public class RemovalNotifier<K, V> extends ApplicationModel {
+    /**
+     * 默认每批最多交付的通知数量
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    
+    /**
+     * 监听器
+     */
+    private final RemovalListener<K, V> listener;
+    
+    /**
+     * 执行监听器的线程池
+     */
+    private final Executor executor;
+    
+    /**
+     * 每批最多交付的通知数量
+     */
+    private final int max_batch_size;
+    
+    /**
+     * 待交付的通知
+     */
+    private final ConcurrentLinkedQueue<RemovalNotification<K, V>> pending = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * 是否已有分发任务
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    
+    /**
+     * 分发任务
+     */
+    private final Runnable drain_task = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+    
+    /**
+     * 构造函数
+     *
+     * @param listener       监听器
+     * @param executor       执行监听器的线程池
+     * @param max_batch_size 每批最多交付的通知数量
+     */
+    public RemovalNotifier(RemovalListener<K, V> listener, Executor executor, int max_batch_size) {
+        /**
+         * @requires:
+         *          listener != null;
+         *          executor != null;
+         *          max_batch_size > 0;
+         * @modifies:
+         *          \this.listener;
+         *          \this.executor;
+         *          \this.max_batch_size;
+         * @effects:
+         *          all the fields will be initialized with the arguments;
+         */
+        this.listener = listener;
+        this.executor = executor;
+        this.max_batch_size = max_batch_size;
+    }
+    
+    /**
+     * 构造函数
+     *
+     * @param listener 监听器
+     * @param executor 执行监听器的线程池
+     */
+    public RemovalNotifier(RemovalListener<K, V> listener, Executor executor) {
+        /**
+         * @effects:
+         *          \this will be initialized with the default batch size;
+         */
+        this(listener, executor, DEFAULT_MAX_BATCH_SIZE);
+    }
+    
+    /**
+     * 发出删除通知
+     *
+     * @param key   key
+     * @param value 被删除的value
+     * @param cause 删除原因
+     */
+    public void notify(K key, V value, RemovalNotification.RemovalCause cause) {
+        /**
+         * @modifies:
+         *          \this.pending;
+         *          \this.scheduled;
+         * @effects:
+         *          a notification will be queued;
+         *          a drain task will be submitted to \this.executor if there is none;
+         */
+        this.pending.offer(new RemovalNotification<>(key, value, cause));
+        this.schedule();
+    }
+    
+    /**
+     * 没有分发任务时提交分发任务
+     */
+    private void schedule() {
+        /**
+         * @modifies:
+         *          \this.scheduled;
+         * @effects:
+         *          (there is no drain task) ==> a drain task will be submitted to \this.executor;
+         *          (the executor rejects the task) ==> the notifications will be delivered in the current thread;
+         */
+        if (!this.scheduled.compareAndSet(false, true)) return;
+        try {
+            this.executor.execute(this.drain_task);
+        } catch (RuntimeException e) {  // rejected, deliver in place rather than dropping the notifications
+            this.drain();
+        }
+    }
+    
+    /**
+     * 分批交付所有待交付的通知
+     */
+    private void drain() {
+        /**
+         * @modifies:
+         *          \this.pending;
+         *          \this.scheduled;
+         * @effects:
+         *          all the pending notifications will be delivered to \this.listener in batches;
+         *          \this.scheduled will be reset, and a new drain task will be submitted if more notifications arrive meanwhile;
+         */
+        try {
+            while (true) {
+                List<RemovalNotification<K, V>> batch = new ArrayList<>();
+                RemovalNotification<K, V> notification;
+                while ((batch.size() < this.max_batch_size) && ((notification = this.pending.poll()) != null)) batch.add(notification);
+                if (batch.isEmpty()) break;
+                try {
+                    this.listener.onRemoval(batch);
+                } catch (Throwable throwable) {
+                    throwable.printStackTrace();
+                }
+            }
+        } finally {
+            this.scheduled.set(false);
+        }
+        if (!this.pending.isEmpty()) this.schedule();
+    }
+}
@@ -0,0 +1,47 @@
+package models.structure.serializer;
+
+import interfaces.structure.Serializer;
+import models.application.ApplicationModel;
+
+/**
+ * 长整数序列化器（8字节大端）
+ */
+public class LongSerializer extends ApplicationModel implements Serializer<Long> {
+    /**
+     * 序列化
+     *
+     * @param object 长整数
+     * @return 字节序列
+     */
+    @Override
+    public byte[] serialize(Long object) {
+        /**
+         * @effects:
+         *          \result == the 8 big-endian bytes of object;
+         */
+        long value = object;
+        byte[] bytes = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+    
+    /**
+     * 反序列化
+     *
+     * @param bytes 字节序列
+     * @return 长整数
+     */
+    @Override
+    public Long deserialize(byte[] bytes) {
+        /**
+         * @effects:
+         *          \result == the long decoded from the 8 big-endian bytes;
+         */
+        long value = 0;
+        for (int i = 0; i < 8; i++) value = (value << 8) | (bytes[i] & 0xff);
+        return value;
+    }
+}
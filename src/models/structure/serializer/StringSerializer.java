@@ -0,0 +1,41 @@
+package models.structure.serializer;
+
+import interfaces.structure.Serializer;
+import models.application.ApplicationModel;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 字符串序列化器（UTF-8）
+ */
+public class StringSerializer extends ApplicationModel implements Serializer<String> {
+    /**
+     * 序列化
+     *
+     * @param object 字符串
+     * @return 字节序列
+     */
+    @Override
+    public byte[] serialize(String object) {
+        /**
+         * @effects:
+         *          \result == the UTF-8 bytes of object;
+         */
+        return object.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * 反序列化
+     *
+     * @param bytes 字节序列
+     * @return 字符串
+     */
+    @Override
+    public String deserialize(byte[] bytes) {
+        /**
+         * @effects:
+         *          \result == the string decoded from bytes in UTF-8;
+         */
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
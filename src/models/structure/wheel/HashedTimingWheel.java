@@ -0,0 +1,272 @@
+package models.structure.wheel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 哈希时间轮
+ * <p>
+ * 特性：
+ * 1、按到期tick对桶数量取模存放条目，新增和摘除均为O(1)
+ * 2、每推进一个tick只检查一个桶，超过一圈的条目会留在桶内等待下一圈
+ * 3、推进跨度超过一圈时最多扫描一圈，不会因为长时间停顿而空转
+ * <p>
+ * 注：
+ * 1、适用于到期时间大多落在一圈以内的场景，长周期定时任务较多时建议使用多层时间轮
+ *
+ * @param <T> 包裹对象类型
+ */
+public class HashedTimingWheel<T> extends TimingWheel<T> {
+    /**
+     * 默认tick时长（单位：ms）
+     */
+    public static final long DEFAULT_TICK_DURATION = 1;
+    
+    /**
+     * 默认桶数量
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 1024;
+    
+    /**
+     * tick时长
+     */
+    private final long tick_duration;
+    
+    /**
+     * 桶
+     */
+    private final TimingWheelBucket<T>[] buckets;
+    
+    /**
+     * 桶下标掩码
+     */
+    private final int mask;
+    
+    /**
+     * 已处理到的tick
+     */
+    private long current_tick;
+    
+    /**
+     * 条目数量
+     */
+    private int size = 0;
+    
+    /**
+     * 构造函数
+     *
+     * @param tick_duration tick时长（单位：ms）
+     * @param wheel_size    桶数量（会向上取整到2的幂）
+     * @param start_time    起始时间
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HashedTimingWheel(long tick_duration, int wheel_size, long start_time) {
+        /**
+         * @requires:
+         *          tick_duration > 0;
+         *          wheel_size > 0;
+         * @modifies:
+         *          \this.tick_duration;
+         *          \this.buckets;
+         *          \this.mask;
+         *          \this.current_tick;
+         * @effects:
+         *          a wheel with at least wheel_size buckets will be initialized, starting from start_time;
+         */
+        int actual_size = 1;
+        while (actual_size < wheel_size) actual_size <<= 1;
+        this.tick_duration = tick_duration;
+        this.buckets = new TimingWheelBucket[actual_size];
+        for (int i = 0; i < actual_size; i++) this.buckets[i] = new TimingWheelBucket<>(this, 0);
+        this.mask = actual_size - 1;
+        this.current_tick = start_time / tick_duration;
+    }
+    
+    /**
+     * 构造函数（使用默认参数，从当前时间开始）
+     */
+    public HashedTimingWheel() {
+        /**
+         * @effects:
+         *          a wheel with the default tick duration and wheel size will be initialized, starting from now;
+         */
+        this(DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE, System.currentTimeMillis());
+    }
+    
+    /**
+     * 获取到期tick（向上取整，确保不会提前到期）
+     *
+     * @param deadline 到期时间
+     * @return 到期tick
+     */
+    private long getDeadlineTick(long deadline) {
+        /**
+         * @effects:
+         *          \result == ceil(deadline / \this.tick_duration);
+         */
+        return (deadline + this.tick_duration - 1) / this.tick_duration;
+    }
+    
+    /**
+     * 新增条目
+     *
+     * @param deadline 到期时间（unix时间戳，单位：ms）
+     * @param object   包裹对象
+     * @return 时间轮条目
+     */
+    @Override
+    public TimingWheelEntry<T> add(long deadline, T object) {
+        /**
+         * @modifies:
+         *          \this.buckets;
+         *          \this.size;
+         * @effects:
+         *          a new entry will be put into the bucket of its deadline tick;
+         *          the entry which has already expired will be put into the bucket of the next tick;
+         */
+        TimingWheelEntry<T> entry = new TimingWheelEntry<>(deadline, object);
+        long tick = Math.max(this.getDeadlineTick(deadline), this.current_tick + 1);
+        this.buckets[(int) (tick & this.mask)].add(entry);
+        this.size++;
+        return entry;
+    }
+    
+    /**
+     * 摘除条目
+     *
+     * @param entry 时间轮条目
+     * @return 是否摘除成功
+     */
+    @Override
+    public boolean remove(TimingWheelEntry<T> entry) {
+        /**
+         * @modifies:
+         *          \this.buckets;
+         *          \this.size;
+         * @effects:
+         *          (entry is in \this) ==> entry will be unlinked && \result == true;
+         *          (entry is not in \this) ==> \result == false;
+         */
+        if ((entry == null) || (entry.bucket == null) || (entry.bucket.getOwner() != this)) return false;
+        entry.bucket.remove(entry);
+        this.size--;
+        return true;
+    }
+    
+    /**
+     * 推进时间轮
+     *
+     * @param present 当前时间（unix时间戳，单位：ms）
+     * @param limit   本次最多取出的条目数量
+     * @return 已到期的对象列表
+     */
+    @Override
+    public List<T> advance(long present, int limit) {
+        /**
+         * @requires:
+         *          limit > 0;
+         * @modifies:
+         *          \this.buckets;
+         *          \this.size;
+         *          \this.current_tick;
+         * @effects:
+         *          the entries whose deadline tick is not later than the tick of present will be taken out, at most limit ones;
+         *          \result will be the objects of the entries taken out, in the order of ticks;
+         *          (the limit is reached in a tick) ==> \this.current_tick will stay before that tick, so the rest of it will be scanned next time;
+         *          otherwise, \this.current_tick = max(\old(\this.current_tick), tick of present);
+         */
+        List<T> result = new ArrayList<>();
+        long target_tick = present / this.tick_duration;
+        if (target_tick <= this.current_tick) return result;
+        long first_tick = this.current_tick + 1;
+        long steps = Math.min(target_tick - this.current_tick, this.buckets.length);
+        for (long tick = first_tick; tick < first_tick + steps; tick++) {
+            TimingWheelEntry<T> entry = this.buckets[(int) (tick & this.mask)].getHead();
+            while (entry != null) {
+                TimingWheelEntry<T> next = entry.next;
+                if (this.getDeadlineTick(entry.getDeadline()) <= target_tick) {
+                    if (result.size() >= limit) {
+                        this.current_tick = tick - 1;  // the bucket is not finished, scan it again next time
+                        return result;
+                    }
+                    entry.bucket.remove(entry);
+                    this.size--;
+                    result.add(entry.getObject());
+                }
+                entry = next;
+            }
+        }
+        this.current_tick = target_tick;
+        return result;
+    }
+    
+    /**
+     * 获取下一次需要推进的时间
+     *
+     * @return 下一次需要推进的时间
+     */
+    @Override
+    public long getNextAdvanceTime() {
+        /**
+         * @effects:
+         *          (\this is empty) ==> \result == Long.MAX_VALUE;
+         *          (\this is not empty) ==> \result == the beginning time of the next tick;
+         */
+        if (this.size == 0) return Long.MAX_VALUE;
+        return (this.current_tick + 1) * this.tick_duration;
+    }
+    
+    /**
+     * 获取条目数量
+     *
+     * @return 条目数量
+     */
+    @Override
+    public int size() {
+        /**
+         * @effects:
+         *          \result == \this.size;
+         */
+        return this.size;
+    }
+    
+    /**
+     * 清空时间轮
+     */
+    @Override
+    public void clear() {
+        /**
+         * @modifies:
+         *          \this.buckets;
+         *          \this.size;
+         * @effects:
+         *          all the entries will be unlinked;
+         */
+        for (TimingWheelBucket<T> bucket : this.buckets) bucket.clear();
+        this.size = 0;
+    }
+    
+    /**
+     * 取出全部条目
+     *
+     * @return 全部条目的对象列表
+     */
+    @Override
+    public List<T> drain() {
+        /**
+         * @modifies:
+         *          \this.buckets;
+         *          \this.size;
+         * @effects:
+         *          all the entries will be unlinked;
+         *          \result will be the objects of all the entries;
+         */
+        List<T> result = new ArrayList<>();
+        for (TimingWheelBucket<T> bucket : this.buckets) {
+            TimingWheelEntry<T> entry;
+            while ((entry = bucket.poll()) != null) result.add(entry.getObject());
+        }
+        this.size = 0;
+        return result;
+    }
+}
@@ -0,0 +1,412 @@
+package models.structure.wheel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多层时间轮
+ * <p>
+ * 特性：
+ * 1、按层级划分（默认为ms/s/min/h四层），每层桶数量固定，内存占用有上界
+ * 2、条目按到期时间放入能容纳它的最低一层，时间推进到上层桶的起点时整桶向下层级联
+ * 3、新增、摘除均为O(1)，到期取出的均摊代价为O(1)
+ * 4、低层为空时直接跳到下一次级联的时间点，长周期定时任务不会导致逐tick空转
+ * 5、超出最高层范围的条目放在溢出桶内，每经过最高层一圈重新分配一次
+ *
+ * @param <T> 包裹对象类型
+ */
+public class HierarchicalTimingWheel<T> extends TimingWheel<T> {
+    /**
+     * 默认tick时长（单位：ms）
+     */
+    public static final long DEFAULT_TICK_DURATION = 1;
+    
+    /**
+     * 默认各层桶数量（ms/s/min/h）
+     */
+    private static final int[] DEFAULT_WHEEL_SIZES = {1000, 60, 60, 24};
+    
+    /**
+     * tick时长
+     */
+    private final long tick_duration;
+    
+    /**
+     * 各层桶数量
+     */
+    private final int[] wheel_sizes;
+    
+    /**
+     * 各层单个桶覆盖的tick数（level_ticks[levels]为最高层一圈的tick数）
+     */
+    private final long[] level_ticks;
+    
+    /**
+     * 各层的桶
+     */
+    private final TimingWheelBucket<T>[][] buckets;
+    
+    /**
+     * 溢出桶（层级为levels）
+     */
+    private final TimingWheelBucket<T> overflow;
+    
+    /**
+     * 各层条目数量（包括溢出桶）
+     */
+    private final int[] level_counts;
+    
+    /**
+     * 已处理到的tick
+     */
+    private long current_tick;
+    
+    /**
+     * 条目数量
+     */
+    private int size = 0;
+    
+    /**
+     * 构造函数
+     *
+     * @param tick_duration tick时长（单位：ms）
+     * @param start_time    起始时间
+     * @param wheel_sizes   各层桶数量（从低到高）
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HierarchicalTimingWheel(long tick_duration, long start_time, int... wheel_sizes) {
+        /**
+         * @requires:
+         *          tick_duration > 0;
+         *          wheel_sizes.length > 0;
+         *          (\forall int size; wheel_sizes.contains(size); size > 1);
+         * @modifies:
+         *          \this.tick_duration;
+         *          \this.wheel_sizes;
+         *          \this.level_ticks;
+         *          \this.buckets;
+         *          \this.overflow;
+         *          \this.level_counts;
+         *          \this.current_tick;
+         * @effects:
+         *          a wheel with the given levels will be initialized, starting from start_time;
+         */
+        int levels = wheel_sizes.length;
+        this.tick_duration = tick_duration;
+        this.wheel_sizes = wheel_sizes.clone();
+        this.level_ticks = new long[levels + 1];
+        this.level_ticks[0] = 1;
+        for (int i = 0; i < levels; i++) this.level_ticks[i + 1] = this.level_ticks[i] * wheel_sizes[i];
+        this.buckets = new TimingWheelBucket[levels][];
+        for (int i = 0; i < levels; i++) {
+            this.buckets[i] = new TimingWheelBucket[wheel_sizes[i]];
+            for (int j = 0; j < wheel_sizes[i]; j++) this.buckets[i][j] = new TimingWheelBucket<>(this, i);
+        }
+        this.overflow = new TimingWheelBucket<>(this, levels);
+        this.level_counts = new int[levels + 1];
+        this.current_tick = start_time / tick_duration;
+    }
+    
+    /**
+     * 构造函数（ms/s/min/h四层，从当前时间开始）
+     */
+    public HierarchicalTimingWheel() {
+        /**
+         * @effects:
+         *          a wheel with the default tick duration and levels will be initialized, starting from now;
+         */
+        this(DEFAULT_TICK_DURATION, System.currentTimeMillis(), DEFAULT_WHEEL_SIZES);
+    }
+    
+    /**
+     * 获取到期tick（向上取整，确保不会提前到期）
+     *
+     * @param deadline 到期时间
+     * @return 到期tick
+     */
+    private long getDeadlineTick(long deadline) {
+        /**
+         * @effects:
+         *          \result == ceil(deadline / \this.tick_duration);
+         */
+        return (deadline + this.tick_duration - 1) / this.tick_duration;
+    }
+    
+    /**
+     * 将条目放入合适的桶
+     *
+     * @param entry 时间轮条目
+     */
+    private void place(TimingWheelEntry<T> entry) {
+        /**
+         * @requires:
+         *          entry.bucket == null;
+         * @modifies:
+         *          \this.buckets;
+         *          \this.overflow;
+         *          \this.level_counts;
+         * @effects:
+         *          entry will be put into the lowest level whose block contains both its deadline tick and the next tick to process;
+         *          (no such level) ==> entry will be put into \this.overflow;
+         */
+        long next_tick = this.current_tick + 1;
+        long tick = Math.max(this.getDeadlineTick(entry.getDeadline()), next_tick);
+        for (int level = 0; level < this.wheel_sizes.length; level++) {
+            long block = this.level_ticks[level + 1];
+            if (tick / block == next_tick / block) {
+                this.buckets[level][(int) ((tick / this.level_ticks[level]) % this.wheel_sizes[level])].add(entry);
+                this.level_counts[level]++;
+                return;
+            }
+        }
+        this.overflow.add(entry);
+        this.level_counts[this.wheel_sizes.length]++;
+    }
+    
+    /**
+     * 新增条目
+     *
+     * @param deadline 到期时间（unix时间戳，单位：ms）
+     * @param object   包裹对象
+     * @return 时间轮条目
+     */
+    @Override
+    public TimingWheelEntry<T> add(long deadline, T object) {
+        /**
+         * @modifies:
+         *          \this.buckets;
+         *          \this.overflow;
+         *          \this.level_counts;
+         *          \this.size;
+         * @effects:
+         *          a new entry will be placed into the wheel;
+         *          the entry which has already expired will be taken out in the next tick;
+         */
+        TimingWheelEntry<T> entry = new TimingWheelEntry<>(deadline, object);
+        this.place(entry);
+        this.size++;
+        return entry;
+    }
+    
+    /**
+     * 摘除条目
+     *
+     * @param entry 时间轮条目
+     * @return 是否摘除成功
+     */
+    @Override
+    public boolean remove(TimingWheelEntry<T> entry) {
+        /**
+         * @modifies:
+         *          \this.buckets;
+         *          \this.overflow;
+         *          \this.level_counts;
+         *          \this.size;
+         * @effects:
+         *          (entry is in \this) ==> entry will be unlinked && \result == true;
+         *          (entry is not in \this) ==> \result == false;
+         */
+        if ((entry == null) || (entry.bucket == null) || (entry.bucket.getOwner() != this)) return false;
+        this.level_counts[entry.bucket.getLevel()]--;
+        entry.bucket.remove(entry);
+        this.size--;
+        return true;
+    }
+    
+    /**
+     * 获取最低的非空层级
+     *
+     * @return 最低的非空层级（全空时为-1）
+     */
+    private int getLowestLevel() {
+        /**
+         * @effects:
+         *          \result == the lowest level whose count is positive, -1 if there is none;
+         */
+        for (int level = 0; level < this.level_counts.length; level++) {
+            if (this.level_counts[level] > 0) return level;
+        }
+        return -1;
+    }
+    
+    /**
+     * 获取下一个需要处理的tick
+     *
+     * @return 下一个需要处理的tick（全空时为Long.MAX_VALUE）
+     */
+    private long getNextTick() {
+        /**
+         * @effects:
+         *          (\this is empty) ==> \result == Long.MAX_VALUE;
+         *          (the lowest level is 0) ==> \result == the tick of the next non-empty bucket in level 0;
+         *          (the lowest level is above 0) ==> \result == the next tick on which the lowest level cascades;
+         */
+        int level = this.getLowestLevel();
+        if (level < 0) return Long.MAX_VALUE;
+        if (level == 0) {
+            long block_end = (this.current_tick / this.level_ticks[1] + 1) * this.level_ticks[1];
+            for (long tick = this.current_tick + 1; tick < block_end; tick++) {
+                if (!this.buckets[0][(int) (tick % this.wheel_sizes[0])].isEmpty()) return tick;
+            }
+            return this.current_tick + 1;
+        }
+        return (this.current_tick / this.level_ticks[level] + 1) * this.level_ticks[level];
+    }
+    
+    /**
+     * 将某一层中指定tick起点的桶向下级联
+     *
+     * @param level 层级
+     * @param tick  tick
+     */
+    private void cascade(int level, long tick) {
+        /**
+         * @modifies:
+         *          \this.buckets;
+         *          \this.overflow;
+         *          \this.level_counts;
+         * @effects:
+         *          all the entries in the bucket of the tick at the level will be placed into the wheel again;
+         */
+        TimingWheelBucket<T> bucket = (level == this.wheel_sizes.length) ? this.overflow
+                : this.buckets[level][(int) ((tick / this.level_ticks[level]) % this.wheel_sizes[level])];
+        TimingWheelBucket<T> temp = new TimingWheelBucket<>(this, level);
+        TimingWheelEntry<T> entry;
+        while ((entry = bucket.poll()) != null) {
+            this.level_counts[level]--;
+            temp.add(entry);
+        }
+        while ((entry = temp.poll()) != null) this.place(entry);
+    }
+    
+    /**
+     * 推进时间轮
+     *
+     * @param present 当前时间（unix时间戳，单位：ms）
+     * @param limit   本次最多取出的条目数量
+     * @return 已到期的对象列表
+     */
+    @Override
+    public List<T> advance(long present, int limit) {
+        /**
+         * @requires:
+         *          limit > 0;
+         * @modifies:
+         *          \this.buckets;
+         *          \this.overflow;
+         *          \this.level_counts;
+         *          \this.size;
+         *          \this.current_tick;
+         * @effects:
+         *          the entries whose deadline tick is not later than the tick of present will be taken out, at most limit ones;
+         *          \result will be the objects of the entries taken out, in the order of ticks;
+         *          (the limit is reached in a tick) ==> \this.current_tick will stay before that tick, so the rest of it will be taken out next time;
+         *          otherwise, \this.current_tick = max(\old(\this.current_tick), tick of present);
+         */
+        List<T> result = new ArrayList<>();
+        long target_tick = present / this.tick_duration;
+        while (this.current_tick < target_tick) {
+            long tick = this.getNextTick();
+            if (tick > target_tick) break;
+            this.current_tick = tick - 1;
+            for (int level = this.wheel_sizes.length; level > 0; level--) {
+                if (tick % this.level_ticks[level] == 0) this.cascade(level, tick);
+            }
+            TimingWheelBucket<T> bucket = this.buckets[0][(int) (tick % this.wheel_sizes[0])];
+            TimingWheelEntry<T> entry;
+            while ((entry = bucket.poll()) != null) {
+                this.level_counts[0]--;
+                this.size--;
+                result.add(entry.getObject());
+                if ((result.size() >= limit) && !bucket.isEmpty()) return result;  // the tick is not finished, keep current_tick before it
+            }
+            this.current_tick = tick;
+            if (result.size() >= limit) return result;
+        }
+        this.current_tick = Math.max(this.current_tick, target_tick);
+        return result;
+    }
+    
+    /**
+     * 获取下一次需要推进的时间
+     *
+     * @return 下一次需要推进的时间
+     */
+    @Override
+    public long getNextAdvanceTime() {
+        /**
+         * @effects:
+         *          (\this is empty) ==> \result == Long.MAX_VALUE;
+         *          (\this is not empty) ==> \result == the beginning time of the next tick to process;
+         */
+        long tick = this.getNextTick();
+        if (tick == Long.MAX_VALUE) return Long.MAX_VALUE;
+        return tick * this.tick_duration;
+    }
+    
+    /**
+     * 获取条目数量
+     *
+     * @return 条目数量
+     */
+    @Override
+    public int size() {
+        /**
+         * @effects:
+         *          \result == \this.size;
+         */
+        return this.size;
+    }
+    
+    /**
+     * 清空时间轮
+     */
+    @Override
+    public void clear() {
+        /**
+         * @modifies:
+         *          \this.buckets;
+         *          \this.overflow;
+         *          \this.level_counts;
+         *          \this.size;
+         * @effects:
+         *          all the entries will be unlinked;
+         */
+        for (TimingWheelBucket<T>[] level_buckets : this.buckets) {
+            for (TimingWheelBucket<T> bucket : level_buckets) bucket.clear();
+        }
+        this.overflow.clear();
+        for (int i = 0; i < this.level_counts.length; i++) this.level_counts[i] = 0;
+        this.size = 0;
+    }
+    
+    /**
+     * 取出全部条目
+     *
+     * @return 全部条目的对象列表
+     */
+    @Override
+    public List<T> drain() {
+        /**
+         * @modifies:
+         *          \this.buckets;
+         *          \this.overflow;
+         *          \this.level_counts;
+         *          \this.size;
+         * @effects:
+         *          all the entries will be unlinked;
+         *          \result will be the objects of all the entries;
+         */
+        List<T> result = new ArrayList<>();
+        TimingWheelEntry<T> entry;
+        for (TimingWheelBucket<T>[] level_buckets : this.buckets) {
+            for (TimingWheelBucket<T> bucket : level_buckets) {
+                while ((entry = bucket.poll()) != null) result.add(entry.getObject());
+            }
+        }
+        while ((entry = this.overflow.poll()) != null) result.add(entry.getObject());
+        for (int i = 0; i < this.level_counts.length; i++) this.level_counts[i] = 0;
+        this.size = 0;
+        return result;
+    }
+}
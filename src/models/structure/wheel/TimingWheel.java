@@ -0,0 +1,103 @@
+package models.structure.wheel;
+
+import models.application.ApplicationModel;
+
+import java.util.List;
+
+/**
+ * 时间轮基类
+ * <p>
+ * 特性：
+ * 1、按到期时间存放条目，由外部以当前时间推进，推进时取出所有已到期的条目
+ * 2、条目可以O(1)摘除
+ * 3、推进时可以限制取出的数量，未取出的已到期条目留在时间轮中，getNextAdvanceTime不会晚于它们的到期时间
+ * <p>
+ * 注：
+ * 1、时间轮本身不是线程安全的，需要由使用者进行同步
+ * 2、条目不会早于到期时间被取出，但可能晚于到期时间最多一个tick
+ *
+ * @param <T> 包裹对象类型
+ */
+public abstract class TimingWheel<T> extends ApplicationModel {
+    /**
+     * 新增条目
+     *
+     * @param deadline 到期时间（unix时间戳，单位：ms）
+     * @param object   包裹对象
+     * @return 时间轮条目
+     */
+    public abstract TimingWheelEntry<T> add(long deadline, T object);
+    
+    /**
+     * 摘除条目
+     *
+     * @param entry 时间轮条目
+     * @return 是否摘除成功（条目已到期取出或已被摘除时为false）
+     */
+    public abstract boolean remove(TimingWheelEntry<T> entry);
+    
+    /**
+     * 推进时间轮
+     *
+     * @param present 当前时间（unix时间戳，单位：ms）
+     * @return 已到期的对象列表
+     */
+    public List<T> advance(long present) {
+        /**
+         * @modifies:
+         *          \this;
+         * @effects:
+         *          all the entries expired at present will be taken out;
+         *          \result will be the objects of the entries taken out, in the order of ticks;
+         */
+        return this.advance(present, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * 推进时间轮（限量，超出部分留待下次推进时取出）
+     *
+     * @param present 当前时间（unix时间戳，单位：ms）
+     * @param limit   本次最多取出的条目数量
+     * @return 已到期的对象列表（长度不超过limit）
+     */
+    public abstract List<T> advance(long present, int limit);
+    
+    /**
+     * 获取下一次需要推进的时间
+     *
+     * @return 下一次需要推进的时间（时间轮为空时为Long.MAX_VALUE）
+     */
+    public abstract long getNextAdvanceTime();
+    
+    /**
+     * 获取条目数量
+     *
+     * @return 条目数量
+     */
+    public abstract int size();
+    
+    /**
+     * 清空时间轮
+     */
+    public abstract void clear();
+    
+    /**
+     * 取出全部条目
+     *
+     * @return 全部条目的对象列表
+     */
+    public abstract List<T> drain();
+    
+    /**
+     * 是否为空
+     *
+     * @return 是否为空
+     */
+    public boolean isEmpty() {
+        /**
+         * @effects:
+         *          \result == (\this.size() == 0);
+         */
+        return this.size() == 0;
+    }
+}
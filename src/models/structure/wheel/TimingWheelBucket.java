@@ -0,0 +1,192 @@
+package models.structure.wheel;
+
+import models.application.ApplicationModel;
+
+/**
+ * 时间轮桶（双向链表）
+ *
+ * @param <T> 包裹对象类型
+ */
+class TimingWheelBucket<T> extends ApplicationModel {
+    /**
+     * 所属时间轮
+     */
+    private final TimingWheel<T> owner;
+    
+    /**
+     * 所在层级（单层时间轮恒为0）
+     */
+    private final int level;
+    
+    /**
+     * 头节点
+     */
+    private TimingWheelEntry<T> head;
+    
+    /**
+     * 尾节点
+     */
+    private TimingWheelEntry<T> tail;
+    
+    /**
+     * 构造函数
+     *
+     * @param owner 所属时间轮
+     * @param level 所在层级
+     */
+    TimingWheelBucket(TimingWheel<T> owner, int level) {
+        /**
+         * @modifies:
+         *          \this.owner;
+         *          \this.level;
+         * @effects:
+         *          \this.owner == owner;
+         *          \this.level == level;
+         */
+        this.owner = owner;
+        this.level = level;
+    }
+    
+    /**
+     * 获取所属时间轮
+     *
+     * @return 所属时间轮
+     */
+    TimingWheel<T> getOwner() {
+        /**
+         * @effects:
+         *          \result == \this.owner;
+         */
+        return owner;
+    }
+    
+    /**
+     * 获取所在层级
+     *
+     * @return 所在层级
+     */
+    int getLevel() {
+        /**
+         * @effects:
+         *          \result == \this.level;
+         */
+        return level;
+    }
+    
+    /**
+     * 尾部追加条目
+     *
+     * @param entry 条目
+     */
+    void add(TimingWheelEntry<T> entry) {
+        /**
+         * @requires:
+         *          entry.bucket == null;
+         * @modifies:
+         *          \this.head;
+         *          \this.tail;
+         *          entry;
+         * @effects:
+         *          entry will be appended to the tail of the bucket;
+         */
+        entry.bucket = this;
+        entry.prev = this.tail;
+        entry.next = null;
+        if (this.tail == null) {
+            this.head = entry;
+        } else {
+            this.tail.next = entry;
+        }
+        this.tail = entry;
+    }
+    
+    /**
+     * 摘除条目
+     *
+     * @param entry 条目
+     */
+    void remove(TimingWheelEntry<T> entry) {
+        /**
+         * @requires:
+         *          entry.bucket == \this;
+         * @modifies:
+         *          \this.head;
+         *          \this.tail;
+         *          entry;
+         * @effects:
+         *          entry will be unlinked from the bucket;
+         */
+        if (entry.prev == null) {
+            this.head = entry.next;
+        } else {
+            entry.prev.next = entry.next;
+        }
+        if (entry.next == null) {
+            this.tail = entry.prev;
+        } else {
+            entry.next.prev = entry.prev;
+        }
+        entry.bucket = null;
+        entry.prev = null;
+        entry.next = null;
+    }
+    
+    /**
+     * 取出头部条目
+     *
+     * @return 头部条目（为空时返回null）
+     */
+    TimingWheelEntry<T> poll() {
+        /**
+         * @modifies:
+         *          \this.head;
+         *          \this.tail;
+         * @effects:
+         *          (\this is empty) ==> \result == null;
+         *          (\this is not empty) ==> \result == \old(\this.head) && \result will be unlinked;
+         */
+        TimingWheelEntry<T> entry = this.head;
+        if (entry != null) this.remove(entry);
+        return entry;
+    }
+    
+    /**
+     * 获取头部条目
+     *
+     * @return 头部条目
+     */
+    TimingWheelEntry<T> getHead() {
+        /**
+         * @effects:
+         *          \result == \this.head;
+         */
+        return head;
+    }
+    
+    /**
+     * 是否为空
+     *
+     * @return 是否为空
+     */
+    boolean isEmpty() {
+        /**
+         * @effects:
+         *          \result == (\this.head == null);
+         */
+        return this.head == null;
+    }
+    
+    /**
+     * 清空桶
+     */
+    void clear() {
+        /**
+         * @modifies:
+         *          \this.head;
+         *          \this.tail;
+         * @effects:
+         *          all the entries will be unlinked;
+         */
+        while (this.poll() != null) ;
+    }
+}
@@ -0,0 +1,97 @@
+package models.structure.wheel;
+
+import models.application.ApplicationModel;
+
+/**
+ * 时间轮条目
+ * <p>
+ * 特性：
+ * 1、以双向链表节点的形式挂在时间轮的桶内，摘除操作为O(1)
+ * 2、到期时间使用long格式的unix时间戳（单位：ms）
+ *
+ * @param <T> 包裹对象类型
+ */
+public class TimingWheelEntry<T> extends ApplicationModel {
+    /**
+     * 包裹对象
+     */
+    private final T object;
+    
+    /**
+     * 到期时间
+     */
+    private final long deadline;
+    
+    /**
+     * 所在的桶（null表示不在时间轮内）
+     */
+    TimingWheelBucket<T> bucket;
+    
+    /**
+     * 前驱节点
+     */
+    TimingWheelEntry<T> prev;
+    
+    /**
+     * 后继节点
+     */
+    TimingWheelEntry<T> next;
+    
+    /**
+     * 构造函数
+     *
+     * @param deadline 到期时间
+     * @param object   包裹对象
+     */
+    TimingWheelEntry(long deadline, T object) {
+        /**
+         * @modifies:
+         *          \this.deadline;
+         *          \this.object;
+         * @effects:
+         *          \this.deadline == deadline;
+         *          \this.object == object;
+         */
+        this.deadline = deadline;
+        this.object = object;
+    }
+    
+    /**
+     * 获取包裹对象
+     *
+     * @return 包裹对象
+     */
+    public T getObject() {
+        /**
+         * @effects:
+         *          \result == \this.object;
+         */
+        return object;
+    }
+    
+    /**
+     * 获取到期时间
+     *
+     * @return 到期时间
+     */
+    public long getDeadline() {
+        /**
+         * @effects:
+         *          \result == \this.deadline;
+         */
+        return deadline;
+    }
+    
+    /**
+     * 是否仍在时间轮内
+     *
+     * @return 是否仍在时间轮内
+     */
+    public boolean isScheduled() {
+        /**
+         * @effects:
+         *          \result == (\this.bucket != null);
+         */
+        return this.bucket != null;
+    }
+}
@@ -3,6 +3,7 @@ package models.thread;
 import events.thread.ThreadExceptionEvent;
 import interfaces.application.ApplicationInterface;
 import interfaces.application.ConditionCheckInterface;
+import models.thread.action.PrecisionSleeper;
 import models.time.Timestamp;
 
 /**
@@ -12,7 +13,7 @@ import models.time.Timestamp;
  * 1、提供全局容错机制，出现异常抛出即可，将触发exceptionCaught事件
  * <p>
  * 建议：
- * 1、强烈推荐使用sleepUntil，可以有效避免长时间的累积误差，精度较高（大概每10次才会出现一个肉眼可见的误差）且cpu占用很低（不像一般的while循环等待，在100线程时完全不卡）
+ * 1、强烈推荐使用sleepUntil，可以有效避免长时间的累积误差，精度较高且cpu占用很低（默认仅在最后0.5ms内yield/自旋，可通过setDefaultSleeper调整）
  */
 public abstract class ApplicationThread extends Thread implements ApplicationInterface {
     /**
@@ -50,13 +51,43 @@ public abstract class ApplicationThread extends Thread implements ApplicationInt
     public abstract void exceptionCaught(ThreadExceptionEvent e);
     
     /**
-     * 等待型sleep时间余量（建议不低于20）
+     * 全局默认高精度等待器
      */
-    private static final long SLEEP_UNTIL_TIME_LEFT = 50;
+    private static volatile PrecisionSleeper default_sleeper = new PrecisionSleeper();
+    
+    /**
+     * 获取全局默认高精度等待器（可用于查看唤醒误差直方图）
+     *
+     * @return 全局默认高精度等待器
+     */
+    public static PrecisionSleeper getDefaultSleeper() {
+        /**
+         * @effects:
+         *          \result == default_sleeper;
+         */
+        return default_sleeper;
+    }
+    
+    /**
+     * 设置全局默认高精度等待器（可用于调整yield/自旋余量）
+     *
+     * @param sleeper 高精度等待器
+     */
+    public static void setDefaultSleeper(PrecisionSleeper sleeper) {
+        /**
+         * @requires:
+         *          sleeper != null;
+         * @modifies:
+         *          default_sleeper;
+         * @effects:
+         *          default_sleeper == sleeper;
+         */
+        default_sleeper = sleeper;
+    }
     
     /**
      * 高精度等待型sleep
-     * 不大量占用系统资源且能实现高精度（误差约0.1ms不到）
+     * 基于parkNanos等待，仅在最后很短的余量内yield/自旋，不大量占用系统资源且能实现高精度
      *
      * @param timestamp 目标时间戳
      * @throws InterruptedException 中断异常
@@ -64,16 +95,14 @@ public abstract class ApplicationThread extends Thread implements ApplicationInt
     public static void sleepUntil(Timestamp timestamp) throws InterruptedException {
         /**
          * @effects:
-         *          wait until the timestamp arrive;
+         *          wait until the timestamp arrive, using default_sleeper;
          */
-        long wait_time = timestamp.getTimestamp() - System.currentTimeMillis() - SLEEP_UNTIL_TIME_LEFT;
-        if (wait_time < 0) wait_time = 0;
-        sleep(wait_time);
-        while (System.currentTimeMillis() < timestamp.getTimestamp()) sleep(0, 100);
+        default_sleeper.sleepUntil(timestamp);
     }
     
     /**
      * 条件等待型sleep
+     * 每1ms轮询一次；需要及时响应且减少轮询时请使用ConditionRegistry
      *
      * @param check 条件接口
      * @throws InterruptedException 中断异常
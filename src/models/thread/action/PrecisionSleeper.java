@@ -0,0 +1,173 @@
+package models.thread.action;
+
+import models.structure.histogram.LatencyHistogram;
+import models.thread.ApplicationThreadModel;
+import models.time.Timestamp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 高精度等待器
+ * <p>
+ * 特性：
+ * 1、基于System.nanoTime计时，基于LockSupport.parkNanos等待，等待期间几乎不占用cpu
+ * 2、距离目标时间较近时先yield、最后自旋，可分别设定yield和自旋的时间余量
+ * 3、自适应：持续统计parkNanos的实际超时量，并相应地提前结束park，尽量把尾部的yield/自旋控制在设定的余量之内
+ * 4、记录每次唤醒相对目标时间的误差（单位：ns），可通过getJitterHistogram查看，用于权衡精度与cpu占用
+ * <p>
+ * 建议：
+ * 1、余量越大精度越高，但cpu占用也越高；对精度要求不高时可以将两个余量都设为0，此时完全依靠park
+ */
+public class PrecisionSleeper extends ApplicationThreadModel {
+    /**
+     * 默认yield余量（单位：ns）
+     */
+    public static final long DEFAULT_YIELD_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+    
+    /**
+     * 默认自旋余量（单位：ns）
+     */
+    public static final long DEFAULT_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    
+    /**
+     * park超时量统计的平滑系数（取对数，即新值权重为1/8）
+     */
+    private static final int OVERSHOOT_SMOOTHING_BITS = 3;
+    
+    /**
+     * yield余量
+     */
+    private final long yield_nanos;
+    
+    /**
+     * 自旋余量
+     */
+    private final long spin_nanos;
+    
+    /**
+     * parkNanos平均超时量（估计值，不需要严格同步）
+     */
+    private volatile long park_overshoot = 0;
+    
+    /**
+     * 唤醒误差直方图
+     */
+    private final LatencyHistogram jitter_histogram = new LatencyHistogram();
+    
+    /**
+     * 构造函数
+     *
+     * @param yield_nanos yield余量（单位：ns）
+     * @param spin_nanos  自旋余量（单位：ns）
+     */
+    public PrecisionSleeper(long yield_nanos, long spin_nanos) {
+        /**
+         * @requires:
+         *          yield_nanos >= spin_nanos >= 0;
+         * @modifies:
+         *          \this.yield_nanos;
+         *          \this.spin_nanos;
+         * @effects:
+         *          \this.yield_nanos == yield_nanos;
+         *          \this.spin_nanos == spin_nanos;
+         */
+        this.yield_nanos = yield_nanos;
+        this.spin_nanos = spin_nanos;
+    }
+    
+    /**
+     * 构造函数（使用默认余量）
+     */
+    public PrecisionSleeper() {
+        /**
+         * @effects:
+         *          \this.yield_nanos == DEFAULT_YIELD_NANOS;
+         *          \this.spin_nanos == DEFAULT_SPIN_NANOS;
+         */
+        this(DEFAULT_YIELD_NANOS, DEFAULT_SPIN_NANOS);
+    }
+    
+    /**
+     * 等待直到nanoTime到达目标值
+     *
+     * @param deadline_nanos 目标nanoTime
+     * @throws InterruptedException 中断异常
+     */
+    public void sleepUntilNanos(long deadline_nanos) throws InterruptedException {
+        /**
+         * @modifies:
+         *          \this.park_overshoot;
+         *          \this.jitter_histogram;
+         * @effects:
+         *          wait until System.nanoTime() >= deadline_nanos;
+         *          the wake-up error will be recorded into \this.jitter_histogram;
+         *          exceptional behavior(InterruptedException):
+         *          the thread is interrupted while waiting;
+         */
+        while (true) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            long remaining = deadline_nanos - System.nanoTime();
+            if (remaining <= 0) break;
+            long park_time = remaining - this.yield_nanos - this.park_overshoot;
+            if (park_time > 0) {
+                long before = System.nanoTime();
+                LockSupport.parkNanos(park_time);
+                long overshoot = Math.max(0, System.nanoTime() - before - park_time);
+                this.park_overshoot += (overshoot - this.park_overshoot) >> OVERSHOOT_SMOOTHING_BITS;
+            } else if (remaining > this.spin_nanos) {
+                Thread.yield();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        this.jitter_histogram.record(System.nanoTime() - deadline_nanos);
+    }
+    
+    /**
+     * 等待直到系统时间到达目标时间戳
+     *
+     * @param timestamp 目标时间戳
+     * @throws InterruptedException 中断异常
+     */
+    public void sleepUntil(Timestamp timestamp) throws InterruptedException {
+        /**
+         * @effects:
+         *          wait until System.currentTimeMillis() >= timestamp;
+         *          exceptional behavior(InterruptedException):
+         *          the thread is interrupted while waiting;
+         */
+        long wait_millis = timestamp.getTimestamp() - System.currentTimeMillis();
+        if (wait_millis > 0) this.sleepUntilNanos(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait_millis));
+        while (System.currentTimeMillis() < timestamp.getTimestamp()) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            Thread.yield();
+        }
+    }
+    
+    /**
+     * 获取唤醒误差直方图（单位：ns）
+     *
+     * @return 唤醒误差直方图
+     */
+    public LatencyHistogram getJitterHistogram() {
+        /**
+         * @effects:
+         *          \result == \this.jitter_histogram;
+         */
+        return jitter_histogram;
+    }
+    
+    /**
+     * 获取parkNanos平均超时量估计值（单位：ns）
+     *
+     * @return parkNanos平均超时量估计值
+     */
+    public long getParkOvershoot() {
+        /**
+         * @effects:
+         *          \result == \this.park_overshoot;
+         */
+        return park_overshoot;
+    }
+}
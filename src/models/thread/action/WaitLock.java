@@ -3,21 +3,34 @@ package models.thread.action;
 import interfaces.application.AttachedObjectInterface;
 import models.thread.ApplicationThreadModel;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * 等待锁
+ * <p>
+ * 特性：
+ * 1、锁定后调用tryWait的线程会等待，直到解锁；未锁定时tryWait只读取一次volatile状态，不加锁也不登记
+ * 2、等待线程park在自身上，解锁时逐个unpark所有登记的等待线程，被唤醒的线程只重新读取状态，不会争抢同一个monitor
+ * 3、每次解锁对应一个新的代，等待线程每次被唤醒都会重新检查开始等待时的代是否已经过去，与登记顺序无关，
+ *    因此解锁前已在等待的线程一定会被放行，即使随后立即重新锁定、且有新的等待线程登记在前也不会漏掉唤醒
+ * 4、支持可中断等待、不可中断等待和限时等待，可通过getWaitingCount获取等待中的线程数
  *
  * @param <T> 附加对象类型
  */
 public class WaitLock<T> extends ApplicationThreadModel implements AttachedObjectInterface<T> {
     /**
-     * 是否为锁定状态
+     * 状态：最低位为1表示锁定，其余位为代（每次解锁加1）
      */
-    private boolean locked = false;
+    private final AtomicInteger state = new AtomicInteger();
     
     /**
-     * 锁定对象
+     * 等待中的线程
      */
-    private final Object lock_object = new Object();
+    private final Set<Thread> waiters = ConcurrentHashMap.newKeySet();
     
     /**
      * 附加对象
@@ -52,6 +65,81 @@ public class WaitLock<T> extends ApplicationThreadModel implements AttachedObjec
         this(null);
     }
     
+    /**
+     * 判断是否为锁定状态
+     *
+     * @param state 状态
+     * @return 是否为锁定状态
+     */
+    private static boolean isLocked(int state) {
+        /**
+         * @effects:
+         *          \result == (the lowest bit of state is 1);
+         */
+        return (state & 1) != 0;
+    }
+    
+    /**
+     * 判断开始等待时处于某状态的线程能否通过（放行条件：未锁定，或者已经不是开始等待时的代）
+     *
+     * @param waiting_state 开始等待时的状态（锁定状态）
+     * @return 能否通过
+     */
+    private boolean isPassed(int waiting_state) {
+        /**
+         * @effects:
+         *          \result == (\this.state is unlocked or its generation differs from that of waiting_state);
+         */
+        int state = this.state.get();
+        return !isLocked(state) || ((state >>> 1) != (waiting_state >>> 1));
+    }
+    
+    /**
+     * 等待（每次被唤醒后都重新检查状态）
+     *
+     * @param interruptible 是否响应中断
+     * @param deadline      截止时间（System.nanoTime，不限时为Long.MAX_VALUE）
+     * @return 是否在截止时间前被放行
+     * @throws InterruptedException 中断异常（仅在响应中断时抛出）
+     */
+    private boolean await(boolean interruptible, long deadline) throws InterruptedException {
+        /**
+         * @modifies:
+         *          \this.waiters;
+         * @effects:
+         *          (unlocked) ==> \result == true immediately;
+         *          otherwise, the current thread will be registered and park until the generation it started waiting in has passed, or deadline;
+         *          \result == whether it is passed before deadline;
+         *          (interrupted while waiting && interruptible) ==> InterruptedException will be thrown;
+         *          (interrupted while waiting && !interruptible) ==> the interruption is kept until the waiting ends;
+         */
+        int waiting_state = this.state.get();
+        if (!isLocked(waiting_state)) return true;
+        if (interruptible && Thread.interrupted()) throw new InterruptedException();
+        Thread current = Thread.currentThread();
+        boolean interrupted = false;
+        this.waiters.add(current);
+        try {
+            while (!this.isPassed(waiting_state)) {  // registered before checking, so an unlock after the check always unparks this thread
+                if (deadline == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) return false;
+                    LockSupport.parkNanos(this, remaining);
+                }
+                if (Thread.interrupted()) {
+                    if (interruptible) throw new InterruptedException();
+                    interrupted = true;
+                }
+            }
+            return true;
+        } finally {
+            this.waiters.remove(current);
+            if (interrupted) current.interrupt();
+        }
+    }
+    
     /**
      * 尝试等待
      *
@@ -60,45 +148,106 @@ public class WaitLock<T> extends ApplicationThreadModel implements AttachedObjec
     public void tryWait() throws InterruptedException {
         /**
          * @effects:
-         *          (\ this.locked) ==> wait until \this.lock_object be notifyAll();
+         *          (locked) ==> wait until unlocked;
+         *          (interrupted while waiting) ==> InterruptedException will be thrown;
          */
-        if (this.locked) {
-            synchronized (this.lock_object) {
-                if (this.locked) {
-                    this.lock_object.wait();
-                }
-            }
+        this.await(true, Long.MAX_VALUE);
+    }
+    
+    /**
+     * 尝试等待（限时）
+     *
+     * @param timeout 最长等待时间
+     * @param unit    时间单位
+     * @return 是否在超时前被放行
+     * @throws InterruptedException 中断异常
+     */
+    public boolean tryWait(long timeout, TimeUnit unit) throws InterruptedException {
+        /**
+         * @effects:
+         *          (locked) ==> wait until unlocked or timeout;
+         *          \result == whether it is passed before timeout;
+         *          (interrupted while waiting) ==> InterruptedException will be thrown;
+         */
+        long nanos = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + nanos;
+        if ((nanos > 0) && (deadline == Long.MAX_VALUE)) deadline--;  // Long.MAX_VALUE means no deadline
+        return this.await(true, deadline);
+    }
+    
+    /**
+     * 尝试等待（不响应中断，被中断时等待结束后保留中断状态）
+     */
+    public void tryWaitUninterruptibly() {
+        /**
+         * @effects:
+         *          (locked) ==> wait until unlocked, the interruption is kept until the waiting ends;
+         */
+        try {
+            this.await(false, Long.MAX_VALUE);
+        } catch (InterruptedException e) {  // never thrown when not interruptible
+            Thread.currentThread().interrupt();
         }
     }
     
     /**
      * 锁定对象
      */
-    public synchronized void lock() {
+    public void lock() {
         /**
          * @modifies:
-         *          \this.locked;
+         *          \this.state;
          * @effects:
-         *          \this.locked == true;
+         *          it will be locked, the generation is not changed;
          */
-        this.locked = true;
+        while (true) {
+            int state = this.state.get();
+            if (isLocked(state) || this.state.compareAndSet(state, state | 1)) return;
+        }
     }
     
     /**
      * 解锁对象
      */
-    public synchronized void unlock() {
+    public void unlock() {
         /**
          * @modifies:
-         *          \this.locked;
+         *          \this.state;
          * @effects:
-         *          \this.locked == false;
-         *          \this.lock_object will be notified all;
+         *          (locked) ==> it will be unlocked with the generation increased, and all the threads waiting will be unparked to check again;
          */
-        this.locked = false;
-        synchronized (this.lock_object) {
-            this.lock_object.notifyAll();
+        while (true) {
+            int state = this.state.get();
+            if (!isLocked(state)) return;
+            if (this.state.compareAndSet(state, state + 1)) break;
         }
+        for (Thread waiter : this.waiters) LockSupport.unpark(waiter);
+    }
+    
+    /**
+     * 判断是否为锁定状态
+     *
+     * @return 是否为锁定状态
+     */
+    public boolean isLocked() {
+        /**
+         * @effects:
+         *          \result == whether it is locked;
+         */
+        return isLocked(this.state.get());
+    }
+    
+    /**
+     * 获取等待中的线程数（估计值）
+     *
+     * @return 等待中的线程数
+     */
+    public int getWaitingCount() {
+        /**
+         * @effects:
+         *          \result == the estimated number of the threads waiting;
+         */
+        return this.waiters.size();
     }
     
     /**
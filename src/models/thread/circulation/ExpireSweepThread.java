@@ -0,0 +1,204 @@
+package models.thread.circulation;
+
+import events.thread.ThreadExceptionEvent;
+import events.thread.ThreadTriggerEvent;
+import helpers.thread.ExecutorHelper;
+import interfaces.structure.ExpireSweepableInterface;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 过期数据后台清理线程
+ * <p>
+ * 功能：
+ * 1、定时轮流清理已登记的数据结构（如HashExpireMap、ConcurrentHashExpireMap）中的过期数据
+ * <p>
+ * 特性：
+ * 1、基于TimerThread，清理在定时线程内执行，上一轮未完成时跳过本轮
+ * 2、每轮的总工作量及每个数据结构的工作量均有上限，单轮耗时可控
+ * 3、数据结构以弱引用登记，不会因为登记而无法被回收；已被回收的数据结构会自动注销
+ * 4、多个数据结构轮流清理，工作量不足时下一轮从上次中断的位置继续
+ * 5、注销与清理并发时不会丢失注销（清理中暂时取出的数据结构在放回前后都会检查是否仍处于登记状态）
+ * <p>
+ * 注：
+ * 1、一般使用getDefault获取全局共享的清理线程（守护线程，首次获取时自动启动）
+ */
+public class ExpireSweepThread extends TimerThread {
+    /**
+     * 默认清理间隔（单位：ms）
+     */
+    public static final long DEFAULT_INTERVAL = 100;
+    
+    /**
+     * 默认每轮总工作量
+     */
+    public static final int DEFAULT_PASS_BUDGET = 10000;
+    
+    /**
+     * 默认每个数据结构每轮的工作量
+     */
+    public static final int DEFAULT_TARGET_BUDGET = 1000;
+    
+    /**
+     * 全局共享的清理线程（延迟创建）
+     */
+    private static volatile ExpireSweepThread default_sweeper = null;
+    
+    /**
+     * 获取全局共享的清理线程
+     *
+     * @return 清理线程
+     */
+    public static ExpireSweepThread getDefault() {
+        /**
+         * @modifies:
+         *          default_sweeper;
+         * @effects:
+         *          default_sweeper will be created and started as a daemon thread at the first call;
+         *          \result == default_sweeper;
+         */
+        ExpireSweepThread sweeper = default_sweeper;
+        if (sweeper == null) {
+            synchronized (ExpireSweepThread.class) {
+                sweeper = default_sweeper;
+                if (sweeper == null) {
+                    sweeper = new ExpireSweepThread(DEFAULT_INTERVAL, DEFAULT_PASS_BUDGET, DEFAULT_TARGET_BUDGET);
+                    sweeper.setName("expire-sweeper");
+                    sweeper.setDaemon(true);
+                    sweeper.start();
+                    default_sweeper = sweeper;
+                }
+            }
+        }
+        return sweeper;
+    }
+    
+    /**
+     * 已登记的数据结构
+     */
+    private final ConcurrentLinkedQueue<WeakReference<ExpireSweepableInterface>> targets = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * 处于登记状态的弱引用（清理时暂时从队列中取出的引用依然在其中，注销时先从这里删除）
+     */
+    private final Set<WeakReference<ExpireSweepableInterface>> registered = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * 每轮总工作量
+     */
+    private final int pass_budget;
+    
+    /**
+     * 每个数据结构每轮的工作量
+     */
+    private final int target_budget;
+    
+    /**
+     * 构造函数
+     *
+     * @param interval      清理间隔（单位：ms）
+     * @param pass_budget   每轮总工作量
+     * @param target_budget 每个数据结构每轮的工作量
+     */
+    public ExpireSweepThread(long interval, int pass_budget, int target_budget) {
+        /**
+         * @requires:
+         *          interval > 0;
+         *          pass_budget > 0;
+         *          target_budget > 0;
+         * @modifies:
+         *          \this.pass_budget;
+         *          \this.target_budget;
+         * @effects:
+         *          it will be initialized as a timer running in its own thread, skipping the overrun passes;
+         */
+        super(interval, false, ExecutorHelper.getInlineExecutor(), OverrunPolicy.SKIP);
+        this.pass_budget = pass_budget;
+        this.target_budget = target_budget;
+    }
+    
+    /**
+     * 登记数据结构
+     *
+     * @param target 数据结构
+     */
+    public void register(ExpireSweepableInterface target) {
+        /**
+         * @modifies:
+         *          \this.targets;
+         *          \this.registered;
+         * @effects:
+         *          a weak reference of target will be added into \this.registered and \this.targets;
+         */
+        WeakReference<ExpireSweepableInterface> reference = new WeakReference<>(target);
+        this.registered.add(reference);
+        this.targets.add(reference);
+    }
+    
+    /**
+     * 注销数据结构
+     *
+     * @param target 数据结构
+     */
+    public void unregister(ExpireSweepableInterface target) {
+        /**
+         * @modifies:
+         *          \this.registered;
+         *          \this.targets;
+         * @effects:
+         *          target and all the collected references will be removed from \this.registered first, then from \this.targets;
+         *          a reference being swept at the same time will not be put back into \this.targets;
+         */
+        Iterator<WeakReference<ExpireSweepableInterface>> iterator = this.registered.iterator();
+        while (iterator.hasNext()) {
+            ExpireSweepableInterface item = iterator.next().get();
+            if ((item == null) || (item == target)) iterator.remove();
+        }
+        iterator = this.targets.iterator();
+        while (iterator.hasNext()) {
+            if (!this.registered.contains(iterator.next())) iterator.remove();
+        }
+    }
+    
+    /**
+     * 清理一轮
+     *
+     * @param e 触发事件
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void trigger(ThreadTriggerEvent e) {
+        /**
+         * @modifies:
+         *          \this.targets;
+         *          \this.registered;
+         * @effects:
+         *          the registered targets will be swept in turn, until all of them are visited once or \this.pass_budget is used up;
+         *          the targets visited will be moved to the end of \this.targets, the collected and unregistered ones will be dropped;
+         *          (exception thrown while sweeping) ==> \this.exceptionCaught() will be executed;
+         */
+        int remaining = this.pass_budget;
+        int count = this.targets.size();
+        for (int i = 0; (i < count) && (remaining > 0); i++) {
+            WeakReference<ExpireSweepableInterface> reference = this.targets.poll();
+            if (reference == null) break;
+            ExpireSweepableInterface target = reference.get();
+            if (target == null) {
+                this.registered.remove(reference);
+                continue;
+            }
+            if (!this.registered.contains(reference)) continue;
+            try {
+                remaining -= target.sweepExpired(Math.min(remaining, this.target_budget));
+            } catch (Throwable throwable) {
+                this.exceptionCaught(new ThreadExceptionEvent(this, throwable));
+            }
+            this.targets.add(reference);
+            if (!this.registered.contains(reference)) this.targets.remove(reference);  // unregistered while it was out of the queue
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package models.thread.circulation;
 
-import events.thread.ThreadBeforeTriggerEvent;
 import events.thread.ThreadExceptionEvent;
 import events.thread.ThreadTriggerEvent;
-import events.thread.ThreadTriggerWithReturnValueEvent;
+import helpers.thread.ExecutorHelper;
 import interfaces.event.TriggerInterface;
-import models.thread.trigger.TriggerThread;
+import models.thread.metrics.SchedulerMetrics;
+import models.thread.metrics.SchedulerMetricsSnapshot;
 import models.time.Timestamp;
 
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * 等间隔定时任务
  * <p>
@@ -18,9 +25,44 @@ import models.time.Timestamp;
  * 1、系统资源占用低
  * 2、精度较高，且不存在累积误差
  * 3、适合用于等间隔触发的同一定时任务
- * 4、由于每次触发都开启独立线程，故即便运行速度较慢也完全不会影响后续的触发时间
+ * 4、每次触发都投递到分发执行器（默认为共享线程池）中执行，线程可复用，不会因触发频率高而频繁创建线程
+ * 5、上一次触发尚未执行完时的处理方式可通过OverrunPolicy配置，无论哪种方式都不会影响后续的触发时间
+ * 6、可通过enableMetrics开启运行统计，通过getMetricsSnapshot获取快照（跳过的触发计为取消），未开启时几乎没有额外开销
+ * <p>
+ * 注：
+ * 1、使用同线程执行器时触发器直接在定时线程中执行，执行时间过长会推迟后续的触发
  */
 public abstract class TimerThread extends SimpleCirculationThread implements TriggerInterface {
+    /**
+     * 上一次触发尚未执行完时的处理方式
+     */
+    public enum OverrunPolicy {
+        /**
+         * 并发执行（与上一次触发同时执行）
+         */
+        CONCURRENT,
+        
+        /**
+         * 跳过本次触发
+         */
+        SKIP,
+        
+        /**
+         * 排队，待之前的触发执行完后依次执行
+         */
+        QUEUE,
+        
+        /**
+         * 合并，待之前的触发执行完后只执行排队中最新的一次
+         */
+        COALESCE
+    }
+    
+    /**
+     * 默认的处理方式
+     */
+    public static final OverrunPolicy DEFAULT_OVERRUN_POLICY = OverrunPolicy.CONCURRENT;
+    
     /**
      * 基础时间戳
      */
@@ -32,14 +74,88 @@ public abstract class TimerThread extends SimpleCirculationThread implements Tri
     private long time_span;
     
     /**
-     * 对象自身
+     * 是否立刻触发
      */
-    private final TimerThread self = this;
+    private boolean trigger_at_once;
     
     /**
-     * 是否立刻触发
+     * 分发执行器
      */
-    private boolean trigger_at_once;
+    private final Executor dispatcher;
+    
+    /**
+     * 上一次触发尚未执行完时的处理方式
+     */
+    private final OverrunPolicy overrun_policy;
+    
+    /**
+     * 正在执行的触发数量
+     */
+    private final AtomicLong running_count = new AtomicLong();
+    
+    /**
+     * 触发时上一次触发尚未执行完的次数
+     */
+    private final AtomicLong overrun_count = new AtomicLong();
+    
+    /**
+     * 是否有串行执行任务正在执行（QUEUE/COALESCE）
+     */
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    
+    /**
+     * 排队中的触发时间戳（QUEUE）
+     */
+    private final ConcurrentLinkedQueue<Timestamp> queued = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * 排队中最新的触发时间戳（COALESCE）
+     */
+    private final AtomicReference<Timestamp> coalesced = new AtomicReference<>();
+    
+    /**
+     * 运行统计（未开启时为null）
+     */
+    private volatile SchedulerMetrics metrics = null;
+    
+    /**
+     * 构造函数
+     *
+     * @param time_span       时间间隔
+     * @param trigger_at_once 是否立刻触发
+     * @param dispatcher      分发执行器
+     * @param overrun_policy  上一次触发尚未执行完时的处理方式
+     */
+    public TimerThread(long time_span, boolean trigger_at_once, Executor dispatcher, OverrunPolicy overrun_policy) {
+        /**
+         * @modifies:
+         *          \this.time_span;
+         *          \this.trigger_at_once;
+         *          \this.dispatcher;
+         *          \this.overrun_policy;
+         * @effects:
+         *          all the fields will be initialized with the arguments;
+         */
+        this.time_span = time_span;
+        this.trigger_at_once = trigger_at_once;
+        this.dispatcher = dispatcher;
+        this.overrun_policy = overrun_policy;
+    }
+    
+    /**
+     * 构造函数（使用共享线程池）
+     *
+     * @param time_span       时间间隔
+     * @param trigger_at_once 是否立刻触发
+     * @param overrun_policy  上一次触发尚未执行完时的处理方式
+     */
+    public TimerThread(long time_span, boolean trigger_at_once, OverrunPolicy overrun_policy) {
+        /**
+         * @effects:
+         *          it will be initialized with the shared executor;
+         */
+        this(time_span, trigger_at_once, ExecutorHelper.getSharedExecutor(), overrun_policy);
+    }
     
     /**
      * 构造函数
@@ -55,9 +171,9 @@ public abstract class TimerThread extends SimpleCirculationThread implements Tri
          * @effects:
          *          \this.time_span = time_span;
          *          \this.trigger_at_once = trigger_at_once;
+         *          the shared executor and DEFAULT_OVERRUN_POLICY will be used;
          */
-        this.time_span = time_span;
-        this.trigger_at_once = trigger_at_once;
+        this(time_span, trigger_at_once, DEFAULT_OVERRUN_POLICY);
     }
     
     /**
@@ -129,36 +245,229 @@ public abstract class TimerThread extends SimpleCirculationThread implements Tri
      * @param timestamp 时间戳
      */
     protected void callTrigger(Timestamp timestamp) {
+        /**
+         * @modifies:
+         *          \this.overrun_count;
+         *          \this.queued;
+         *          \this.coalesced;
+         * @effects:
+         *          (the previous triggers are still running) ==> \this.overrun_count will be increased;
+         *          (\this.overrun_policy == CONCURRENT) ==> the trigger will be dispatched at once;
+         *          (\this.overrun_policy == SKIP) ==> the trigger will be dispatched only if no trigger is running;
+         *          (\this.overrun_policy == QUEUE) ==> the timestamp will be queued, and all the queued triggers will be run one by one;
+         *          (\this.overrun_policy == COALESCE) ==> the timestamp will replace the pending one, and only the latest pending trigger will be run;
+         *          (\this.metrics != null) ==> the triggers skipped or replaced will be recorded as cancelled;
+         */
+        boolean overrun = this.running_count.get() > 0;
+        if (overrun) this.overrun_count.incrementAndGet();
+        switch (this.overrun_policy) {
+            case SKIP:
+                if (overrun) {
+                    SchedulerMetrics metrics = this.metrics;
+                    if (metrics != null) metrics.recordCancel();
+                    return;
+                }
+                this.dispatch(timestamp);
+                break;
+            case QUEUE:
+                this.queued.add(timestamp);
+                this.drain();
+                break;
+            case COALESCE:
+                if (this.coalesced.getAndSet(timestamp) != null) {
+                    SchedulerMetrics metrics = this.metrics;
+                    if (metrics != null) metrics.recordCancel();
+                }
+                this.drain();
+                break;
+            default:
+                this.dispatch(timestamp);
+                break;
+        }
+    }
+    
+    /**
+     * 投递一次触发
+     *
+     * @param timestamp 时间戳
+     */
+    private void dispatch(Timestamp timestamp) {
+        /**
+         * @modifies:
+         *          \this.running_count;
+         * @effects:
+         *          the trigger will be run in \this.dispatcher;
+         */
+        this.running_count.incrementAndGet();
+        try {
+            this.dispatcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runTrigger(timestamp);
+                    } finally {
+                        running_count.decrementAndGet();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            this.running_count.decrementAndGet();
+            this.exceptionCaught(new ThreadExceptionEvent(this, e));
+        }
+    }
+    
+    /**
+     * 投递串行执行任务（QUEUE/COALESCE）
+     */
+    private void drain() {
+        /**
+         * @modifies:
+         *          \this.draining;
+         *          \this.running_count;
+         * @effects:
+         *          (no draining task is running) ==> a draining task will be dispatched, which runs the pending triggers one by one until nothing is pending;
+         */
+        if (!this.draining.compareAndSet(false, true)) return;
+        this.running_count.incrementAndGet();
+        try {
+            this.dispatcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            Timestamp timestamp = pollPending();
+                            if (timestamp == null) {
+                                draining.set(false);
+                                if (!hasPending() || !draining.compareAndSet(false, true)) break;
+                                continue;
+                            }
+                            runTrigger(timestamp);
+                        }
+                    } finally {
+                        running_count.decrementAndGet();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            this.running_count.decrementAndGet();
+            this.draining.set(false);
+            this.exceptionCaught(new ThreadExceptionEvent(this, e));
+        }
+    }
+    
+    /**
+     * 取出下一个待执行的触发时间戳
+     *
+     * @return 时间戳（没有时为null）
+     */
+    private Timestamp pollPending() {
+        /**
+         * @modifies:
+         *          \this.queued;
+         *          \this.coalesced;
+         * @effects:
+         *          (\this.overrun_policy == QUEUE) ==> \result == the head of \this.queued, and it will be removed;
+         *          otherwise, \result == \this.coalesced, and it will be set to null;
+         */
+        if (this.overrun_policy == OverrunPolicy.QUEUE) return this.queued.poll();
+        return this.coalesced.getAndSet(null);
+    }
+    
+    /**
+     * 是否有待执行的触发
+     *
+     * @return 是否有待执行的触发
+     */
+    private boolean hasPending() {
+        /**
+         * @effects:
+         *          \result == whether there is any pending trigger;
+         */
+        if (this.overrun_policy == OverrunPolicy.QUEUE) return !this.queued.isEmpty();
+        return this.coalesced.get() != null;
+    }
+    
+    /**
+     * 执行触发器
+     *
+     * @param timestamp 时间戳
+     */
+    private void runTrigger(Timestamp timestamp) {
         /**
          * @effects:
-         *          open a new empty TriggerThread to trigger the trigger interface;
-         */
-        (new TriggerThread() {
-            @Override
-            public void beforeTrigger(ThreadBeforeTriggerEvent e) {
-                /**
-                 * @effects:
-                 *          nothing to do before trigger;
-                 */
-            }
-            
-            @Override
-            public void trigger(ThreadTriggerWithReturnValueEvent e) {
-                /**
-                 * @effects:
-                 *          call the method trigger of the self (\this of the outer class);
-                 */
-                self.trigger(new ThreadTriggerEvent(self, timestamp));
-            }
-            
-            @Override
-            public void exceptionCaught(ThreadExceptionEvent e) {
-                /**
-                 * @effects:
-                 *          nothing to do when exception throw out of the trigger function;
-                 */
-            }
-        }).start();
+         *          call the method trigger of \this;
+         *          the exception thrown out of the trigger function will be ignored;
+         *          (\this.metrics != null) ==> the lateness and the execution time will be recorded;
+         */
+        SchedulerMetrics metrics = this.metrics;
+        long lateness = (metrics != null) ? System.currentTimeMillis() - timestamp.getTimestamp() : 0;
+        long start_nanos = (metrics != null) ? System.nanoTime() : 0;
+        boolean failed = false;
+        try {
+            this.trigger(new ThreadTriggerEvent(this, timestamp));
+        } catch (Throwable e) {
+            /**
+             * nothing to do when exception throw out of the trigger function;
+             */
+            failed = true;
+        }
+        if (metrics != null) metrics.recordFire(TimeUnit.MILLISECONDS.toNanos(lateness), System.nanoTime() - start_nanos, failed);
+    }
+    
+    /**
+     * 获取触发时上一次触发尚未执行完的次数
+     *
+     * @return 次数
+     */
+    public long getOverrunCount() {
+        /**
+         * @effects:
+         *          \result == \this.overrun_count;
+         */
+        return this.overrun_count.get();
+    }
+    
+    /**
+     * 开启运行统计
+     */
+    public void enableMetrics() {
+        /**
+         * @modifies:
+         *          \this.metrics;
+         * @effects:
+         *          (\this.metrics == null) ==> \this.metrics will be initialized to a new SchedulerMetrics;
+         */
+        if (this.metrics == null) this.metrics = new SchedulerMetrics();
+    }
+    
+    /**
+     * 关闭运行统计（已有的统计数据将被丢弃）
+     */
+    public void disableMetrics() {
+        /**
+         * @modifies:
+         *          \this.metrics;
+         * @effects:
+         *          \this.metrics = null;
+         */
+        this.metrics = null;
+    }
+    
+    /**
+     * 获取运行统计快照
+     *
+     * @return 快照（未开启统计时为null）
+     */
+    public SchedulerMetricsSnapshot getMetricsSnapshot() {
+        /**
+         * @effects:
+         *          (\this.metrics == null) ==> \result == null;
+         *          otherwise, \result == the snapshot of \this.metrics, the pending count is the number of the triggers waiting for the running ones;
+         */
+        SchedulerMetrics metrics = this.metrics;
+        if (metrics == null) return null;
+        long pending_count = (this.overrun_policy == OverrunPolicy.QUEUE) ? this.queued.size() : ((this.coalesced.get() != null) ? 1 : 0);
+        return metrics.getSnapshot(pending_count, 1);
     }
     
     /**
@@ -0,0 +1,237 @@
+package models.thread.condition;
+
+import interfaces.application.ConditionCheckInterface;
+import models.thread.ApplicationThreadModel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 条件注册中心
+ * <p>
+ * 功能：
+ * 1、等待者按key登记等待的条件，状态持有者在状态改变后调用signal(key)，只有对应key下的等待者会被唤醒并重新检查条件
+ * 2、可以配合ConditionWatcherThread使用，由一个线程托管大量待触发的条件
+ * 3、轮询仅作为可选的兜底手段（指数退避），默认不轮询
+ * <p>
+ * 注：
+ * 1、状态持有者必须在修改状态之后再调用signal，否则等待者可能错过这次变化
+ * 2、条件检查在key对应的监视器内执行，检查函数应尽量简单
+ */
+public class ConditionRegistry extends ApplicationThreadModel {
+    /**
+     * 全局默认注册中心
+     */
+    private static final ConditionRegistry default_registry = new ConditionRegistry();
+    
+    /**
+     * 获取全局默认注册中心
+     *
+     * @return 全局默认注册中心
+     */
+    public static ConditionRegistry getDefault() {
+        /**
+         * @effects:
+         *          \result == default_registry;
+         */
+        return default_registry;
+    }
+    
+    /**
+     * 条件监视器
+     */
+    private static class ConditionMonitor {
+        /**
+         * 等待者数量（受monitors保护）
+         */
+        private int waiters = 0;
+    }
+    
+    /**
+     * key -> 监视器（仅保存有等待者的key）
+     */
+    private final HashMap<Object, ConditionMonitor> monitors = new HashMap<>();
+    
+    /**
+     * 托管线程
+     */
+    private final CopyOnWriteArrayList<ConditionWatcherThread> watchers = new CopyOnWriteArrayList<>();
+    
+    /**
+     * 获取并登记监视器
+     *
+     * @param key key
+     * @return 监视器
+     */
+    private ConditionMonitor acquire(Object key) {
+        /**
+         * @modifies:
+         *          \this.monitors;
+         * @effects:
+         *          the monitor of the key will be created if not exists;
+         *          the waiter count of the monitor will be increased;
+         *          \result == the monitor;
+         */
+        synchronized (this.monitors) {
+            ConditionMonitor monitor = this.monitors.get(key);
+            if (monitor == null) {
+                monitor = new ConditionMonitor();
+                this.monitors.put(key, monitor);
+            }
+            monitor.waiters++;
+            return monitor;
+        }
+    }
+    
+    /**
+     * 注销监视器
+     *
+     * @param key     key
+     * @param monitor 监视器
+     */
+    private void release(Object key, ConditionMonitor monitor) {
+        /**
+         * @modifies:
+         *          \this.monitors;
+         * @effects:
+         *          the waiter count of the monitor will be decreased;
+         *          the monitor will be removed when there is no waiter;
+         */
+        synchronized (this.monitors) {
+            if (--monitor.waiters == 0) this.monitors.remove(key);
+        }
+    }
+    
+    /**
+     * 等待条件成立
+     *
+     * @param key          key
+     * @param check        条件
+     * @param min_interval 兜底轮询的初始间隔（单位：ms，不超过0表示不轮询）
+     * @param max_interval 兜底轮询的最大间隔（单位：ms）
+     * @param timeout      超时时间（单位：ms，不超过0表示不超时）
+     * @return 条件是否成立（超时时为false）
+     * @throws InterruptedException 中断异常
+     */
+    public boolean await(Object key, ConditionCheckInterface check, long min_interval, long max_interval, long timeout) throws InterruptedException {
+        /**
+         * @effects:
+         *          wait until check.checkCondition() == true, it will be checked again whenever the key is signaled;
+         *          (min_interval > 0) ==> it will also be checked by polling, the interval starts from min_interval and doubles up to max_interval;
+         *          \result == whether the condition is satisfied before timeout;
+         *          exceptional behavior(InterruptedException):
+         *          the thread is interrupted while waiting;
+         */
+        long deadline = (timeout > 0) ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+        long interval = min_interval;
+        ConditionMonitor monitor = this.acquire(key);
+        try {
+            synchronized (monitor) {
+                while (!check.checkCondition()) {
+                    long wait_time = (interval > 0) ? interval : 0;
+                    if (deadline != Long.MAX_VALUE) {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) return false;
+                        wait_time = (wait_time > 0) ? Math.min(wait_time, remaining) : remaining;
+                    }
+                    monitor.wait(wait_time);
+                    if (interval > 0) interval = Math.min(interval * 2, Math.max(max_interval, min_interval));
+                }
+                return true;
+            }
+        } finally {
+            this.release(key, monitor);
+        }
+    }
+    
+    /**
+     * 等待条件成立（不轮询、不超时）
+     *
+     * @param key   key
+     * @param check 条件
+     * @throws InterruptedException 中断异常
+     */
+    public void await(Object key, ConditionCheckInterface check) throws InterruptedException {
+        /**
+         * @effects:
+         *          wait until check.checkCondition() == true, it will be checked again only when the key is signaled;
+         *          exceptional behavior(InterruptedException):
+         *          the thread is interrupted while waiting;
+         */
+        this.await(key, check, 0, 0, 0);
+    }
+    
+    /**
+     * 发出状态改变信号
+     *
+     * @param key key
+     */
+    public void signal(Object key) {
+        /**
+         * @effects:
+         *          all the waiters and watchers of the key will check their conditions again;
+         */
+        ConditionMonitor monitor;
+        synchronized (this.monitors) {
+            monitor = this.monitors.get(key);
+        }
+        if (monitor != null) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+        for (ConditionWatcherThread watcher : this.watchers) watcher.signal(key);
+    }
+    
+    /**
+     * 发出全局状态改变信号
+     */
+    public void signalAll() {
+        /**
+         * @effects:
+         *          all the waiters and watchers will check their conditions again;
+         */
+        List<ConditionMonitor> monitors;
+        synchronized (this.monitors) {
+            monitors = new ArrayList<>(this.monitors.values());
+        }
+        for (ConditionMonitor monitor : monitors) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+        for (ConditionWatcherThread watcher : this.watchers) watcher.signalAll();
+    }
+    
+    /**
+     * 登记托管线程
+     *
+     * @param watcher 托管线程
+     */
+    void addWatcher(ConditionWatcherThread watcher) {
+        /**
+         * @modifies:
+         *          \this.watchers;
+         * @effects:
+         *          watcher will be added into \this.watchers;
+         */
+        this.watchers.addIfAbsent(watcher);
+    }
+    
+    /**
+     * 注销托管线程
+     *
+     * @param watcher 托管线程
+     */
+    void removeWatcher(ConditionWatcherThread watcher) {
+        /**
+         * @modifies:
+         *          \this.watchers;
+         * @effects:
+         *          watcher will be removed from \this.watchers;
+         */
+        this.watchers.remove(watcher);
+    }
+}
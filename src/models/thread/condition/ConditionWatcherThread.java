@@ -0,0 +1,426 @@
+package models.thread.condition;
+
+import events.thread.ThreadExceptionEvent;
+import events.thread.ThreadTriggerEvent;
+import helpers.thread.ExecutorHelper;
+import interfaces.application.ConditionCheckInterface;
+import interfaces.event.TriggerInterface;
+import models.thread.ApplicationThreadModel;
+import models.thread.circulation.SimpleCirculationThread;
+import models.time.Timestamp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 条件托管线程
+ * <p>
+ * 功能：
+ * 1、一个线程托管大量待触发的条件，条件成立时执行对应的触发器（一次性）
+ * 2、仅在注册中心对相应key发出信号时才重新检查该key下的条件，没有信号时线程处于阻塞状态
+ * 3、可选的兜底轮询（指数退避），用于状态持有者无法发出信号的情况
+ * <p>
+ * 注：
+ * 1、触发器默认在本线程内执行，执行时间较长时请传入分发执行器；分发执行器拒绝执行时触发器改为在本线程内执行，不会丢失
+ * 2、触发事件的附加对象为条件对应的key
+ */
+public class ConditionWatcherThread extends SimpleCirculationThread {
+    /**
+     * 托管条件
+     */
+    public class Watch extends ApplicationThreadModel {
+        /**
+         * key
+         */
+        private final Object key;
+        
+        /**
+         * 条件
+         */
+        private final ConditionCheckInterface condition;
+        
+        /**
+         * 触发器
+         */
+        private final TriggerInterface trigger;
+        
+        /**
+         * 当前轮询间隔（不超过0表示不轮询，受lock_object保护）
+         */
+        private long poll_interval;
+        
+        /**
+         * 下一次轮询时间（受lock_object保护）
+         */
+        private long next_poll_time;
+        
+        /**
+         * 是否已结束（已触发或已取消）
+         */
+        private volatile boolean done = false;
+        
+        /**
+         * 构造函数
+         *
+         * @param key       key
+         * @param condition 条件
+         * @param trigger   触发器
+         */
+        private Watch(Object key, ConditionCheckInterface condition, TriggerInterface trigger) {
+            /**
+             * @modifies:
+             *          \this.key;
+             *          \this.condition;
+             *          \this.trigger;
+             *          \this.poll_interval;
+             *          \this.next_poll_time;
+             * @effects:
+             *          the watch will be initialized with the polling settings of the outer thread;
+             */
+            this.key = key;
+            this.condition = condition;
+            this.trigger = trigger;
+            this.poll_interval = min_poll_interval;
+            this.next_poll_time = System.currentTimeMillis() + min_poll_interval;
+        }
+        
+        /**
+         * 取消托管
+         *
+         * @return 是否取消成功（已触发或已取消时为false）
+         */
+        public boolean cancel() {
+            /**
+             * @modifies:
+             *          \this.done;
+             *          pending;
+             * @effects:
+             *          (\this is not done) ==> \this will be removed from the pending watches && \result == true;
+             *          otherwise, \result == false;
+             */
+            synchronized (lock_object) {
+                if (this.done) return false;
+                this.done = true;
+                removePending(this);
+                return true;
+            }
+        }
+        
+        /**
+         * 是否已结束
+         *
+         * @return 是否已结束
+         */
+        public boolean isDone() {
+            /**
+             * @effects:
+             *          \result == \this.done;
+             */
+            return this.done;
+        }
+    }
+    
+    /**
+     * 对象自身
+     */
+    private final ConditionWatcherThread self = this;
+    
+    /**
+     * 注册中心
+     */
+    private final ConditionRegistry registry;
+    
+    /**
+     * 分发执行器
+     */
+    private final Executor dispatcher;
+    
+    /**
+     * 兜底轮询的初始间隔（单位：ms，不超过0表示不轮询）
+     */
+    private final long min_poll_interval;
+    
+    /**
+     * 兜底轮询的最大间隔（单位：ms）
+     */
+    private final long max_poll_interval;
+    
+    /**
+     * 锁定对象
+     */
+    private final Object lock_object = new Object();
+    
+    /**
+     * key -> 托管条件列表（受lock_object保护）
+     */
+    private final HashMap<Object, List<Watch>> pending = new HashMap<>();
+    
+    /**
+     * 收到信号的key（受lock_object保护）
+     */
+    private HashSet<Object> signaled = new HashSet<>();
+    
+    /**
+     * 是否收到全局信号（受lock_object保护）
+     */
+    private boolean all_signaled = false;
+    
+    /**
+     * 构造函数
+     *
+     * @param registry          注册中心
+     * @param dispatcher        分发执行器
+     * @param min_poll_interval 兜底轮询的初始间隔（单位：ms，不超过0表示不轮询）
+     * @param max_poll_interval 兜底轮询的最大间隔（单位：ms）
+     */
+    public ConditionWatcherThread(ConditionRegistry registry, Executor dispatcher, long min_poll_interval, long max_poll_interval) {
+        /**
+         * @modifies:
+         *          \this.registry;
+         *          \this.dispatcher;
+         *          \this.min_poll_interval;
+         *          \this.max_poll_interval;
+         * @effects:
+         *          all the fields will be initialized with the arguments;
+         */
+        this.registry = registry;
+        this.dispatcher = dispatcher;
+        this.min_poll_interval = min_poll_interval;
+        this.max_poll_interval = Math.max(min_poll_interval, max_poll_interval);
+    }
+    
+    /**
+     * 构造函数（触发器在本线程内执行，不轮询）
+     *
+     * @param registry 注册中心
+     */
+    public ConditionWatcherThread(ConditionRegistry registry) {
+        /**
+         * @effects:
+         *          it will be initialized with the registry, the inline executor and no polling;
+         */
+        this(registry, ExecutorHelper.getInlineExecutor(), 0, 0);
+    }
+    
+    /**
+     * 新增托管条件
+     *
+     * @param key       key
+     * @param condition 条件
+     * @param trigger   触发器
+     * @return 托管条件
+     */
+    public Watch watch(Object key, ConditionCheckInterface condition, TriggerInterface trigger) {
+        /**
+         * @modifies:
+         *          \this.pending;
+         *          \this.signaled;
+         * @effects:
+         *          a new watch will be added into \this.pending, and it will be checked in the next round;
+         *          \result == the new watch;
+         */
+        Watch watch = new Watch(key, condition, trigger);
+        synchronized (this.lock_object) {
+            List<Watch> watches = this.pending.get(key);
+            if (watches == null) {
+                watches = new ArrayList<>();
+                this.pending.put(key, watches);
+            }
+            watches.add(watch);
+            this.signaled.add(key);
+            this.lock_object.notifyAll();
+        }
+        return watch;
+    }
+    
+    /**
+     * 从等待列表中删除托管条件（需持有lock_object）
+     *
+     * @param watch 托管条件
+     */
+    private void removePending(Watch watch) {
+        /**
+         * @modifies:
+         *          \this.pending;
+         * @effects:
+         *          watch will be removed from \this.pending;
+         */
+        List<Watch> watches = this.pending.get(watch.key);
+        if (watches == null) return;
+        watches.remove(watch);
+        if (watches.isEmpty()) this.pending.remove(watch.key);
+    }
+    
+    /**
+     * 收到信号
+     *
+     * @param key key
+     */
+    void signal(Object key) {
+        /**
+         * @modifies:
+         *          \this.signaled;
+         * @effects:
+         *          (key is watched) ==> key will be added into \this.signaled and the thread will be woken up;
+         */
+        synchronized (this.lock_object) {
+            if (this.pending.containsKey(key) && this.signaled.add(key)) this.lock_object.notifyAll();
+        }
+    }
+    
+    /**
+     * 收到全局信号
+     */
+    void signalAll() {
+        /**
+         * @modifies:
+         *          \this.all_signaled;
+         * @effects:
+         *          \this.all_signaled = true and the thread will be woken up;
+         */
+        synchronized (this.lock_object) {
+            this.all_signaled = true;
+            this.lock_object.notifyAll();
+        }
+    }
+    
+    /**
+     * 轮询开始前
+     */
+    @Override
+    public void beforeCirculation() {
+        /**
+         * @effects:
+         *          \this will be registered into \this.registry;
+         */
+        this.registry.addWatcher(this);
+    }
+    
+    /**
+     * 轮询结束后
+     */
+    @Override
+    public void afterCirculation() {
+        /**
+         * @effects:
+         *          \this will be removed from \this.registry;
+         */
+        this.registry.removeWatcher(this);
+    }
+    
+    /**
+     * 轮询
+     *
+     * @throws Throwable 任意异常类
+     */
+    @Override
+    public void circulation() throws Throwable {
+        /**
+         * @modifies:
+         *          \this.pending;
+         *          \this.signaled;
+         *          \this.all_signaled;
+         * @effects:
+         *          wait until some key is signaled or some watch need polling;
+         *          check all the watches of the signaled keys and the polling watches which are due;
+         *          the watches whose conditions are satisfied will be removed, and their triggers will be dispatched;
+         *          (the dispatcher rejects a trigger) ==> it will be executed in \this thread instead;
+         */
+        List<Watch> candidates = new ArrayList<>();
+        synchronized (this.lock_object) {
+            long next_poll_time = Long.MAX_VALUE;
+            if (this.signaled.isEmpty() && !this.all_signaled && this.permitContinue()) {
+                for (List<Watch> watches : this.pending.values()) {
+                    for (Watch watch : watches) {
+                        if (watch.poll_interval > 0) next_poll_time = Math.min(next_poll_time, watch.next_poll_time);
+                    }
+                }
+                if (next_poll_time == Long.MAX_VALUE) {
+                    this.lock_object.wait();
+                } else {
+                    long wait_time = next_poll_time - System.currentTimeMillis();
+                    if (wait_time > 0) this.lock_object.wait(wait_time);
+                }
+            }
+            long present = System.currentTimeMillis();
+            for (List<Watch> watches : this.pending.values()) {
+                boolean signaled = this.all_signaled || this.signaled.contains(watches.get(0).key);
+                for (Watch watch : watches) {
+                    if (signaled) {
+                        candidates.add(watch);
+                    } else if ((watch.poll_interval > 0) && (watch.next_poll_time <= present)) {
+                        candidates.add(watch);
+                        watch.poll_interval = Math.min(watch.poll_interval * 2, this.max_poll_interval);
+                        watch.next_poll_time = present + watch.poll_interval;
+                    }
+                }
+            }
+            this.signaled = new HashSet<>();
+            this.all_signaled = false;
+        }
+        for (Watch watch : candidates) {
+            boolean satisfied;
+            try {
+                satisfied = watch.condition.checkCondition();
+            } catch (Throwable e) {
+                this.exceptionCaught(new ThreadExceptionEvent(this, e));
+                continue;
+            }
+            if (!satisfied) continue;
+            synchronized (this.lock_object) {
+                if (watch.done) continue;
+                watch.done = true;
+                this.removePending(watch);
+            }
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        watch.trigger.trigger(new ThreadTriggerEvent<>(self, new Timestamp(), watch.key));
+                    } catch (Throwable e) {
+                        self.exceptionCaught(new ThreadExceptionEvent(self, e));
+                    }
+                }
+            };
+            try {
+                this.dispatcher.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();  // the watch is already removed, so the trigger must not be lost
+            }
+        }
+    }
+    
+    /**
+     * 退出线程
+     */
+    @Override
+    public void exitGracefully() {
+        /**
+         * @effects:
+         *          \super.exitGracefully will be executed;
+         *          Then, the lock will be notified to all;
+         */
+        super.exitGracefully();
+        synchronized (this.lock_object) {
+            this.lock_object.notifyAll();
+        }
+    }
+    
+    /**
+     * 异常处理
+     *
+     * @param e 异常被触发事件
+     */
+    @Override
+    public void exceptionCaught(ThreadExceptionEvent e) {
+        /**
+         * @effects:
+         *          print the stack trace of the exception to the stderr;
+         */
+        e.getThrowable().printStackTrace();
+    }
+}
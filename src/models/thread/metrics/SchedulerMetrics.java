@@ -0,0 +1,146 @@
+package models.thread.metrics;
+
+import models.structure.histogram.LatencyHistogram;
+import models.thread.ApplicationThreadModel;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 调度器运行统计
+ * <p>
+ * 统计内容：
+ * 1、触发延迟（实际开始执行时间与目标时间之差）和执行耗时的直方图（单位：ns）
+ * 2、触发、失败（触发器抛出异常）、取消的次数
+ * 3、分发线程的忙碌时间，用于计算利用率
+ * <p>
+ * 注：
+ * 1、计数器使用LongAdder，直方图无锁，多个分发线程同时记录时几乎没有竞争
+ * 2、调度器未开启统计时不持有该对象，热路径上只有一次空判断
+ */
+public class SchedulerMetrics extends ApplicationThreadModel {
+    /**
+     * 触发延迟直方图
+     */
+    private final LatencyHistogram lateness_histogram = new LatencyHistogram();
+    
+    /**
+     * 执行耗时直方图
+     */
+    private final LatencyHistogram execution_histogram = new LatencyHistogram();
+    
+    /**
+     * 触发次数
+     */
+    private final LongAdder fired_count = new LongAdder();
+    
+    /**
+     * 失败次数
+     */
+    private final LongAdder failed_count = new LongAdder();
+    
+    /**
+     * 取消次数
+     */
+    private final LongAdder cancelled_count = new LongAdder();
+    
+    /**
+     * 忙碌时间总和（单位：ns）
+     */
+    private final LongAdder busy_time = new LongAdder();
+    
+    /**
+     * 开始统计的时间（System.nanoTime）
+     */
+    private volatile long start_nanos = System.nanoTime();
+    
+    /**
+     * 记录一次触发
+     *
+     * @param lateness  触发延迟（单位：ns）
+     * @param execution 执行耗时（单位：ns）
+     * @param failed    是否失败
+     */
+    public void recordFire(long lateness, long execution, boolean failed) {
+        /**
+         * @modifies:
+         *          \this.lateness_histogram;
+         *          \this.execution_histogram;
+         *          \this.fired_count;
+         *          \this.failed_count;
+         *          \this.busy_time;
+         * @effects:
+         *          the lateness and the execution time will be recorded;
+         *          \this.fired_count will be increased;
+         *          (failed) ==> \this.failed_count will be increased;
+         */
+        this.lateness_histogram.record(lateness);
+        this.execution_histogram.record(execution);
+        this.fired_count.increment();
+        if (failed) this.failed_count.increment();
+        this.busy_time.add(Math.max(execution, 0));
+    }
+    
+    /**
+     * 记录一次取消
+     */
+    public void recordCancel() {
+        /**
+         * @modifies:
+         *          \this.cancelled_count;
+         * @effects:
+         *          \this.cancelled_count will be increased;
+         */
+        this.cancelled_count.increment();
+    }
+    
+    /**
+     * 记录多次取消
+     *
+     * @param count 取消次数
+     */
+    public void recordCancel(long count) {
+        /**
+         * @modifies:
+         *          \this.cancelled_count;
+         * @effects:
+         *          \this.cancelled_count will be increased by count;
+         */
+        this.cancelled_count.add(count);
+    }
+    
+    /**
+     * 生成快照
+     *
+     * @param pending_count       等待中的任务数量
+     * @param dispatcher_capacity 分发线程数（未知时为1，此时利用率即为平均同时执行的触发器数量）
+     * @return 快照
+     */
+    public SchedulerMetricsSnapshot getSnapshot(long pending_count, int dispatcher_capacity) {
+        /**
+         * @effects:
+         *          \result == a new snapshot of the current statistics;
+         */
+        return new SchedulerMetricsSnapshot(System.nanoTime() - this.start_nanos, this.fired_count.sum(),
+                this.failed_count.sum(), this.cancelled_count.sum(), pending_count, this.busy_time.sum(),
+                Math.max(dispatcher_capacity, 1), this.lateness_histogram.copy(), this.execution_histogram.copy());
+    }
+    
+    /**
+     * 清空统计
+     */
+    public void reset() {
+        /**
+         * @modifies:
+         *          all the fields;
+         * @effects:
+         *          all the statistics will be cleared, and the statistics will start again from now;
+         */
+        this.lateness_histogram.reset();
+        this.execution_histogram.reset();
+        this.fired_count.reset();
+        this.failed_count.reset();
+        this.cancelled_count.reset();
+        this.busy_time.reset();
+        this.start_nanos = System.nanoTime();
+    }
+}
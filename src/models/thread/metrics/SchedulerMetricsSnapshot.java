@@ -0,0 +1,303 @@
+package models.thread.metrics;
+
+import models.application.ApplicationModel;
+import models.structure.histogram.LatencyHistogram;
+
+/**
+ * 调度器运行统计快照
+ * <p>
+ * 生成后不再变化，可以在任意线程中读取（直方图只通过只读的统计方法对外暴露，不会被调用者修改）
+ */
+public class SchedulerMetricsSnapshot extends ApplicationModel {
+    /**
+     * 统计时长（单位：ns）
+     */
+    private final long elapsed_time;
+    
+    /**
+     * 触发次数
+     */
+    private final long fired_count;
+    
+    /**
+     * 失败次数
+     */
+    private final long failed_count;
+    
+    /**
+     * 取消次数
+     */
+    private final long cancelled_count;
+    
+    /**
+     * 等待中的任务数量
+     */
+    private final long pending_count;
+    
+    /**
+     * 忙碌时间总和（单位：ns）
+     */
+    private final long busy_time;
+    
+    /**
+     * 分发线程数
+     */
+    private final int dispatcher_capacity;
+    
+    /**
+     * 触发延迟直方图（单位：ns）
+     */
+    private final LatencyHistogram lateness_histogram;
+    
+    /**
+     * 执行耗时直方图（单位：ns）
+     */
+    private final LatencyHistogram execution_histogram;
+    
+    /**
+     * 构造函数
+     *
+     * @param elapsed_time        统计时长
+     * @param fired_count         触发次数
+     * @param failed_count        失败次数
+     * @param cancelled_count     取消次数
+     * @param pending_count       等待中的任务数量
+     * @param busy_time           忙碌时间总和
+     * @param dispatcher_capacity 分发线程数
+     * @param lateness_histogram  触发延迟直方图
+     * @param execution_histogram 执行耗时直方图
+     */
+    SchedulerMetricsSnapshot(long elapsed_time, long fired_count, long failed_count, long cancelled_count, long pending_count,
+                             long busy_time, int dispatcher_capacity, LatencyHistogram lateness_histogram, LatencyHistogram execution_histogram) {
+        /**
+         * @modifies:
+         *          all the fields;
+         * @effects:
+         *          all the fields will be initialized with the arguments;
+         */
+        this.elapsed_time = elapsed_time;
+        this.fired_count = fired_count;
+        this.failed_count = failed_count;
+        this.cancelled_count = cancelled_count;
+        this.pending_count = pending_count;
+        this.busy_time = busy_time;
+        this.dispatcher_capacity = dispatcher_capacity;
+        this.lateness_histogram = lateness_histogram;
+        this.execution_histogram = execution_histogram;
+    }
+    
+    /**
+     * 获取统计时长（单位：ns）
+     *
+     * @return 统计时长
+     */
+    public long getElapsedTime() {
+        /**
+         * @effects:
+         *          \result == \this.elapsed_time;
+         */
+        return elapsed_time;
+    }
+    
+    /**
+     * 获取触发次数
+     *
+     * @return 触发次数
+     */
+    public long getFiredCount() {
+        /**
+         * @effects:
+         *          \result == \this.fired_count;
+         */
+        return fired_count;
+    }
+    
+    /**
+     * 获取失败次数
+     *
+     * @return 失败次数
+     */
+    public long getFailedCount() {
+        /**
+         * @effects:
+         *          \result == \this.failed_count;
+         */
+        return failed_count;
+    }
+    
+    /**
+     * 获取取消次数
+     *
+     * @return 取消次数
+     */
+    public long getCancelledCount() {
+        /**
+         * @effects:
+         *          \result == \this.cancelled_count;
+         */
+        return cancelled_count;
+    }
+    
+    /**
+     * 获取等待中的任务数量
+     *
+     * @return 等待中的任务数量
+     */
+    public long getPendingCount() {
+        /**
+         * @effects:
+         *          \result == \this.pending_count;
+         */
+        return pending_count;
+    }
+    
+    /**
+     * 获取忙碌时间总和（单位：ns）
+     *
+     * @return 忙碌时间总和
+     */
+    public long getBusyTime() {
+        /**
+         * @effects:
+         *          \result == \this.busy_time;
+         */
+        return busy_time;
+    }
+    
+    /**
+     * 获取分发线程利用率
+     *
+     * @return 利用率（忙碌时间总和 / (统计时长 * 分发线程数)）
+     */
+    public double getDispatcherUtilization() {
+        /**
+         * @effects:
+         *          (\this.elapsed_time <= 0) ==> \result == 0;
+         *          otherwise, \result == \this.busy_time / (\this.elapsed_time * \this.dispatcher_capacity);
+         */
+        if (this.elapsed_time <= 0) return 0;
+        return (double) this.busy_time / ((double) this.elapsed_time * this.dispatcher_capacity);
+    }
+    
+    /**
+     * 获取触发延迟的记录数
+     *
+     * @return 记录数
+     */
+    public long getLatenessCount() {
+        /**
+         * @effects:
+         *          \result == the count of \this.lateness_histogram;
+         */
+        return this.lateness_histogram.getCount();
+    }
+    
+    /**
+     * 获取触发延迟的平均值（单位：ns）
+     *
+     * @return 平均值（无记录时为0）
+     */
+    public double getLatenessMean() {
+        /**
+         * @effects:
+         *          \result == the mean of \this.lateness_histogram;
+         */
+        return this.lateness_histogram.getMean();
+    }
+    
+    /**
+     * 获取触发延迟的最大值（单位：ns）
+     *
+     * @return 最大值
+     */
+    public long getLatenessMax() {
+        /**
+         * @effects:
+         *          \result == the max of \this.lateness_histogram;
+         */
+        return this.lateness_histogram.getMax();
+    }
+    
+    /**
+     * 获取触发延迟的分位数（单位：ns）
+     *
+     * @param percentile 百分位（0-100）
+     * @return 分位数（无记录时为0）
+     */
+    public long getLatenessPercentile(double percentile) {
+        /**
+         * @effects:
+         *          \result == the percentile of \this.lateness_histogram;
+         */
+        return this.lateness_histogram.getPercentile(percentile);
+    }
+    
+    /**
+     * 获取执行耗时的记录数
+     *
+     * @return 记录数
+     */
+    public long getExecutionCount() {
+        /**
+         * @effects:
+         *          \result == the count of \this.execution_histogram;
+         */
+        return this.execution_histogram.getCount();
+    }
+    
+    /**
+     * 获取执行耗时的平均值（单位：ns）
+     *
+     * @return 平均值（无记录时为0）
+     */
+    public double getExecutionMean() {
+        /**
+         * @effects:
+         *          \result == the mean of \this.execution_histogram;
+         */
+        return this.execution_histogram.getMean();
+    }
+    
+    /**
+     * 获取执行耗时的最大值（单位：ns）
+     *
+     * @return 最大值
+     */
+    public long getExecutionMax() {
+        /**
+         * @effects:
+         *          \result == the max of \this.execution_histogram;
+         */
+        return this.execution_histogram.getMax();
+    }
+    
+    /**
+     * 获取执行耗时的分位数（单位：ns）
+     *
+     * @param percentile 百分位（0-100）
+     * @return 分位数（无记录时为0）
+     */
+    public long getExecutionPercentile(double percentile) {
+        /**
+         * @effects:
+         *          \result == the percentile of \this.execution_histogram;
+         */
+        return this.execution_histogram.getPercentile(percentile);
+    }
+    
+    /**
+     * 转为字符串
+     *
+     * @return 字符串
+     */
+    @Override
+    public String toString() {
+        /**
+         * @effects:
+         *          \result will be the summary of the snapshot;
+         */
+        return String.format("fired=%s, failed=%s, cancelled=%s, pending=%s, utilization=%.3f, lateness={%s}, execution={%s}",
+                this.fired_count, this.failed_count, this.cancelled_count, this.pending_count,
+                this.getDispatcherUtilization(), this.lateness_histogram, this.execution_histogram);
+    }
+}
@@ -3,17 +3,46 @@ package models.thread.safe;
 import interfaces.data.translator.Translator;
 import models.thread.ApplicationThreadModel;
 
-import java.util.HashMap;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * 线程安全对象池
  * <p>
  * 特性：
- * 1、从同一个安全对象池内通过同一个索引值获取到的对象可以确保永远为同一对象
+ * 1、从同一个安全对象池内通过同一个索引值获取到的对象可以确保永远为同一对象（只要还有人持有该对象）
+ * 2、索引值 -> 对象的映射基于ConcurrentHashMap，查找不需要全局锁，不同索引值之间互不阻塞
+ * 3、对象以弱引用保存，不再被任何人持有（包括不再被synchronized锁定）后自动回收并从池中删除，索引值无限增长（如请求id）时内存依然有界
+ * 4、可通过getLock、getReadWriteLock获取按索引值互斥的Lock、ReadWriteLock，支持限时、可中断加锁；锁在没有线程持有或等待时自动从池中删除
+ * 5、可通过getLocks同时锁定多个索引值：按统一顺序加锁，遇到冲突时全部释放、随机退避后从冲突的索引值开始重试，不会死锁，也不会活锁
+ * 6、可通过getDeadlockReport诊断当前进程中因嵌套加锁等原因出现的死锁
  * <p>
  * 用途：
  * 1、基于以上的特性，可以用于快速使用同步锁
  * 2、可定制翻译函数，更加灵活（对于文件系统中含有相对路径的情况尤其好用）
+ * <p>
+ * 注：
+ * 1、getLock和getReadWriteLock().writeLock()对同一个索引值互斥，但与getSafeObject获取的对象（synchronized）互不相关
+ * 2、getLock、getReadWriteLock、getLocks返回的锁对象只是索引值的句柄，可以随时重新获取，不支持newCondition
+ * 3、需要同时锁定多个索引值时请使用getLocks，嵌套获取单个索引值的锁（或嵌套synchronized）可能死锁
  *
  * @param <T> 索引值类型
  */
@@ -56,15 +85,454 @@ public class ThreadSafePool<T> extends ApplicationThreadModel {
         }
     }
     
+    /**
+     * 线程安全包裹对象的弱引用（记录索引值，回收后用于从池中删除）
+     */
+    private class ThreadSafeObjectReference extends WeakReference<ThreadSafeObject> {
+        /**
+         * 索引值
+         */
+        private final T key;
+        
+        /**
+         * 构造函数
+         *
+         * @param key    索引值
+         * @param object 包裹对象
+         */
+        private ThreadSafeObjectReference(T key, ThreadSafeObject object) {
+            /**
+             * @modifies:
+             *          \this.key;
+             * @effects:
+             *          it will be initialized as a weak reference of object registered to \this.reference_queue;
+             */
+            super(object, reference_queue);
+            this.key = key;
+        }
+    }
+    
+    /**
+     * 索引值对应的锁（按持有和等待的次数计数，计数归零时从池中删除，删除后不再复用）
+     */
+    private static class KeyLockEntry {
+        /**
+         * 读写锁
+         */
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        
+        /**
+         * 持有和等待的次数（创建者计为1）
+         */
+        private final AtomicInteger holders = new AtomicInteger(1);
+        
+        /**
+         * 尝试增加计数
+         *
+         * @return 是否成功（已归零的锁不能再增加）
+         */
+        private boolean retain() {
+            /**
+             * @modifies:
+             *          \this.holders;
+             * @effects:
+             *          (\this.holders > 0) ==> \this.holders will be increased && \result == true;
+             *          otherwise, \result == false;
+             */
+            while (true) {
+                int count = this.holders.get();
+                if (count <= 0) return false;
+                if (this.holders.compareAndSet(count, count + 1)) return true;
+            }
+        }
+    }
+    
+    /**
+     * 按索引值互斥的锁（句柄）
+     */
+    private class KeyLock implements Lock {
+        /**
+         * 索引值（已翻译）
+         */
+        private final T key;
+        
+        /**
+         * 是否为共享锁（读锁）
+         */
+        private final boolean shared;
+        
+        /**
+         * 构造函数
+         *
+         * @param key    索引值
+         * @param shared 是否为共享锁
+         */
+        private KeyLock(T key, boolean shared) {
+            /**
+             * @modifies:
+             *          \this.key;
+             *          \this.shared;
+             * @effects:
+             *          \this.key == key;
+             *          \this.shared == shared;
+             */
+            this.key = key;
+            this.shared = shared;
+        }
+        
+        /**
+         * 获取实际的锁
+         *
+         * @param entry 索引值对应的锁
+         * @return 实际的锁
+         */
+        private Lock getLock(KeyLockEntry entry) {
+            /**
+             * @effects:
+             *          \result == (\this.shared ? the read lock : the write lock) of entry;
+             */
+            return this.shared ? entry.lock.readLock() : entry.lock.writeLock();
+        }
+        
+        /**
+         * 加锁
+         */
+        @Override
+        public void lock() {
+            /**
+             * @effects:
+             *          the lock of \this.key will be acquired;
+             */
+            this.getLock(acquireEntry(this.key)).lock();
+        }
+        
+        /**
+         * 加锁（可中断）
+         *
+         * @throws InterruptedException 中断异常
+         */
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            /**
+             * @effects:
+             *          the lock of \this.key will be acquired;
+             *          (interrupted while waiting) ==> InterruptedException will be thrown, the lock is not acquired;
+             */
+            KeyLockEntry entry = acquireEntry(this.key);
+            try {
+                this.getLock(entry).lockInterruptibly();
+            } catch (InterruptedException e) {
+                releaseEntry(this.key, entry);
+                throw e;
+            }
+        }
+        
+        /**
+         * 尝试加锁
+         *
+         * @return 是否成功
+         */
+        @Override
+        public boolean tryLock() {
+            /**
+             * @effects:
+             *          \result == whether the lock of \this.key is acquired without waiting;
+             */
+            KeyLockEntry entry = acquireEntry(this.key);
+            if (this.getLock(entry).tryLock()) return true;
+            releaseEntry(this.key, entry);
+            return false;
+        }
+        
+        /**
+         * 尝试加锁（限时）
+         *
+         * @param time 最长等待时间
+         * @param unit 时间单位
+         * @return 是否成功
+         * @throws InterruptedException 中断异常
+         */
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            /**
+             * @effects:
+             *          \result == whether the lock of \this.key is acquired before timeout;
+             *          (interrupted while waiting) ==> InterruptedException will be thrown, the lock is not acquired;
+             */
+            KeyLockEntry entry = acquireEntry(this.key);
+            boolean locked = false;
+            try {
+                locked = this.getLock(entry).tryLock(time, unit);
+                return locked;
+            } finally {
+                if (!locked) releaseEntry(this.key, entry);
+            }
+        }
+        
+        /**
+         * 解锁
+         */
+        @Override
+        public void unlock() {
+            /**
+             * @effects:
+             *          the lock of \this.key will be released;
+             *          (not held by the current thread) ==> IllegalMonitorStateException will be thrown;
+             */
+            KeyLockEntry entry = lock_map.get(this.key);
+            if (entry == null) throw new IllegalMonitorStateException();
+            this.getLock(entry).unlock();
+            releaseEntry(this.key, entry);
+        }
+        
+        /**
+         * 创建条件变量（不支持）
+         *
+         * @return 不返回
+         */
+        @Override
+        public Condition newCondition() {
+            /**
+             * @effects:
+             *          UnsupportedOperationException will be thrown;
+             */
+            throw new UnsupportedOperationException("newCondition is not supported by pooled locks");
+        }
+    }
+    
+    /**
+     * 同时锁定多个索引值的锁（句柄）
+     * <p>
+     * 加锁算法：阻塞等待其中一个索引值的锁，再依次尝试其余的锁；任意一个失败时释放已获得的锁，随机退避后改为先阻塞等待失败的那一个。
+     * 任何时刻都不会在持有锁的同时阻塞等待其他锁，因此不会死锁；退避时间随机且指数增长，高冲突时也不会活锁
+     */
+    private class MultiKeyLock implements Lock {
+        /**
+         * 最短退避时间（单位：ns）
+         */
+        private static final long MIN_BACKOFF_NANOS = 1000;
+        
+        /**
+         * 最长退避时间（单位：ns）
+         */
+        private static final long MAX_BACKOFF_NANOS = 1000000;
+        
+        /**
+         * 各索引值的锁（按统一顺序排列）
+         */
+        private final KeyLock[] locks;
+        
+        /**
+         * 构造函数
+         *
+         * @param keys 索引值（已翻译、去重）
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private MultiKeyLock(Collection<T> keys) {
+            /**
+             * @modifies:
+             *          \this.locks;
+             * @effects:
+             *          \this.locks will be the exclusive locks of keys, sorted by the hash codes of keys;
+             */
+            List<KeyLock> locks = new ArrayList<>(keys.size());
+            for (T key : keys) locks.add(new KeyLock(key, false));
+            locks.sort(new Comparator<KeyLock>() {
+                @Override
+                public int compare(KeyLock lock1, KeyLock lock2) {
+                    return Integer.compare(lock1.key.hashCode(), lock2.key.hashCode());
+                }
+            });
+            this.locks = locks.toArray(new ThreadSafePool.KeyLock[0]);
+        }
+        
+        /**
+         * 释放已获得的锁
+         *
+         * @param first  阻塞获得的锁的下标
+         * @param failed 尝试失败的锁的下标（其前面的锁均已获得）
+         */
+        private void release(int first, int failed) {
+            /**
+             * @effects:
+             *          the lock at first and the locks before failed (except first) will be released in reverse order;
+             */
+            for (int i = failed - 1; i >= 0; i--) {
+                if (i != first) this.locks[i].unlock();
+            }
+            this.locks[first].unlock();
+        }
+        
+        /**
+         * 加锁
+         *
+         * @param interruptible 是否可中断
+         * @param timeout_nanos 最长等待时间（单位：ns；Long.MAX_VALUE表示不限时）
+         * @return 是否成功
+         * @throws InterruptedException 中断异常（仅在可中断时抛出）
+         */
+        private boolean acquire(boolean interruptible, long timeout_nanos) throws InterruptedException {
+            /**
+             * @effects:
+             *          \result == whether all the locks are acquired before timeout;
+             *          (interruptible && interrupted while waiting) ==> InterruptedException will be thrown, no lock is held;
+             *          (!interruptible) ==> the interruption is kept until the acquiring ends;
+             */
+            boolean timed = timeout_nanos != Long.MAX_VALUE;
+            long deadline = timed ? System.nanoTime() + timeout_nanos : 0;
+            long backoff = MIN_BACKOFF_NANOS;
+            boolean interrupted = false;
+            int first = 0;
+            try {
+                while (true) {
+                    if (!timed) {
+                        if (interruptible) {
+                            this.locks[first].lockInterruptibly();
+                        } else {
+                            this.locks[first].lock();
+                        }
+                    } else if (!this.locks[first].tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                        return false;
+                    }
+                    int failed = -1;
+                    for (int i = 0; i < this.locks.length; i++) {
+                        if ((i != first) && !this.locks[i].tryLock()) {
+                            failed = i;
+                            break;
+                        }
+                    }
+                    if (failed < 0) return true;
+                    this.release(first, failed);
+                    first = failed;
+                    LockSupport.parkNanos(this, ThreadLocalRandom.current().nextLong(backoff) + 1);
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_NANOS);
+                    if (Thread.interrupted()) {
+                        if (interruptible) throw new InterruptedException();
+                        interrupted = true;
+                    }
+                    if (timed && (deadline - System.nanoTime() <= 0)) return false;
+                }
+            } finally {
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+        }
+        
+        /**
+         * 加锁
+         */
+        @Override
+        public void lock() {
+            /**
+             * @effects:
+             *          all the locks will be acquired;
+             */
+            try {
+                this.acquire(false, Long.MAX_VALUE);
+            } catch (InterruptedException e) {  // never thrown when not interruptible
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        /**
+         * 加锁（可中断）
+         *
+         * @throws InterruptedException 中断异常
+         */
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            /**
+             * @effects:
+             *          all the locks will be acquired;
+             *          (interrupted while waiting) ==> InterruptedException will be thrown, no lock is held;
+             */
+            this.acquire(true, Long.MAX_VALUE);
+        }
+        
+        /**
+         * 尝试加锁
+         *
+         * @return 是否成功
+         */
+        @Override
+        public boolean tryLock() {
+            /**
+             * @effects:
+             *          \result == whether all the locks are acquired without waiting;
+             *          (failed) ==> no lock is held;
+             */
+            for (int i = 0; i < this.locks.length; i++) {
+                if (!this.locks[i].tryLock()) {
+                    for (int j = i - 1; j >= 0; j--) this.locks[j].unlock();
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * 尝试加锁（限时）
+         *
+         * @param time 最长等待时间
+         * @param unit 时间单位
+         * @return 是否成功
+         * @throws InterruptedException 中断异常
+         */
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            /**
+             * @effects:
+             *          \result == whether all the locks are acquired before timeout;
+             *          (failed or interrupted) ==> no lock is held;
+             */
+            return this.acquire(true, Math.min(Math.max(unit.toNanos(time), 0), Long.MAX_VALUE - 1));
+        }
+        
+        /**
+         * 解锁
+         */
+        @Override
+        public void unlock() {
+            /**
+             * @effects:
+             *          all the locks will be released in reverse order;
+             */
+            for (int i = this.locks.length - 1; i >= 0; i--) this.locks[i].unlock();
+        }
+        
+        /**
+         * 创建条件变量（不支持）
+         *
+         * @return 不返回
+         */
+        @Override
+        public Condition newCondition() {
+            /**
+             * @effects:
+             *          UnsupportedOperationException will be thrown;
+             */
+            throw new UnsupportedOperationException("newCondition is not supported by pooled locks");
+        }
+    }
+    
     /**
      * 内置转译函数
      */
     private final Translator<T, T> translator;
     
     /**
-     * 对象存储
+     * 对象存储（弱引用）
      */
-    private final HashMap<T, ThreadSafeObject> map;
+    private final ConcurrentHashMap<T, ThreadSafeObjectReference> map;
+    
+    /**
+     * 已回收对象的引用队列
+     */
+    private final ReferenceQueue<ThreadSafeObject> reference_queue = new ReferenceQueue<>();
+    
+    /**
+     * 锁存储（仅包含有线程持有或等待的锁）
+     */
+    private final ConcurrentHashMap<T, KeyLockEntry> lock_map = new ConcurrentHashMap<>();
     
     /**
      * 构造函数
@@ -78,10 +546,10 @@ public class ThreadSafePool<T> extends ApplicationThreadModel {
          *          \this.map;
          * @effects:
          *          \this.translator = translator;
-         *          \this.map = new HashMap();
+         *          \this.map = new ConcurrentHashMap();
          */
         this.translator = translator;
-        this.map = new HashMap<>();
+        this.map = new ConcurrentHashMap<>();
     }
     
     /**
@@ -94,7 +562,7 @@ public class ThreadSafePool<T> extends ApplicationThreadModel {
          *          \this.map;
          * @effects:
          *          \this.translator = default translator;
-         *          \this.map = new HashMap();
+         *          \this.map = new ConcurrentHashMap();
          */
         this(new Translator<T, T>() {
             @Override
@@ -104,6 +572,24 @@ public class ThreadSafePool<T> extends ApplicationThreadModel {
         });
     }
     
+    /**
+     * 删除已被回收的对象
+     */
+    @SuppressWarnings("unchecked")
+    private void purgeCollectedObjects() {
+        /**
+         * @modifies:
+         *          \this.map;
+         * @effects:
+         *          the entries whose objects have been collected will be removed from \this.map;
+         */
+        while (true) {
+            ThreadSafeObjectReference reference = (ThreadSafeObjectReference) this.reference_queue.poll();
+            if (reference == null) return;
+            this.map.remove(reference.key, reference);
+        }
+    }
+    
     /**
      * 获取锁定对象
      *
@@ -116,15 +602,175 @@ public class ThreadSafePool<T> extends ApplicationThreadModel {
          *          \this.map;
          * @effects:
          *          \result = \this.map.get(actual_value);
+         *          (there is no alive object for actual_value) ==> a new one will be created and put into \this.map;
+         * @notice:
+         *          actual_value is defined as the value after translated by the translator;
+         */
+        this.purgeCollectedObjects();
+        T actual_value = this.translator.translate(value);
+        while (true) {
+            ThreadSafeObjectReference reference = this.map.get(actual_value);
+            ThreadSafeObject object = (reference == null) ? null : reference.get();
+            if (object != null) return object;
+            object = new ThreadSafeObject(actual_value);
+            ThreadSafeObjectReference created = new ThreadSafeObjectReference(actual_value, object);
+            if ((reference == null) ? (this.map.putIfAbsent(actual_value, created) == null) : this.map.replace(actual_value, reference, created)) {
+                return object;
+            }
+        }
+    }
+    
+    /**
+     * 获取索引值对应的锁，并增加计数
+     *
+     * @param key 索引值（已翻译）
+     * @return 索引值对应的锁
+     */
+    private KeyLockEntry acquireEntry(T key) {
+        /**
+         * @modifies:
+         *          \this.lock_map;
+         * @effects:
+         *          \result == the alive entry of key with its count increased, a new one will be created if absent;
+         */
+        while (true) {
+            KeyLockEntry entry = this.lock_map.get(key);
+            if (entry == null) {
+                entry = new KeyLockEntry();
+                if (this.lock_map.putIfAbsent(key, entry) == null) return entry;
+            } else if (entry.retain()) {
+                return entry;
+            } else {  // retired by the last holder, help to remove it
+                this.lock_map.remove(key, entry);
+            }
+        }
+    }
+    
+    /**
+     * 减少索引值对应的锁的计数，归零时从池中删除
+     *
+     * @param key   索引值（已翻译）
+     * @param entry 索引值对应的锁
+     */
+    private void releaseEntry(T key, KeyLockEntry entry) {
+        /**
+         * @modifies:
+         *          \this.lock_map;
+         * @effects:
+         *          the count of entry will be decreased;
+         *          (the count becomes 0) ==> entry will be removed from \this.lock_map;
+         */
+        if (entry.holders.decrementAndGet() == 0) this.lock_map.remove(key, entry);
+    }
+    
+    /**
+     * 获取按索引值互斥的锁
+     *
+     * @param value 索引值
+     * @return 锁
+     */
+    public Lock getLock(T value) {
+        /**
+         * @effects:
+         *          \result == the exclusive lock of actual_value;
+         * @notice:
+         *          actual_value is defined as the value after translated by the translator;
+         */
+        return new KeyLock(this.translator.translate(value), false);
+    }
+    
+    /**
+     * 获取按索引值互斥的读写锁
+     *
+     * @param value 索引值
+     * @return 读写锁
+     */
+    public ReadWriteLock getReadWriteLock(T value) {
+        /**
+         * @effects:
+         *          \result == the read-write lock of actual_value, whose write lock is the same as getLock(value);
          * @notice:
          *          actual_value is defined as the value after translated by the translator;
          */
-        synchronized (this.map) {
-            T actual_value = this.translator.translate(value);
-            if (!this.map.containsKey(actual_value)) {
-                this.map.put(actual_value, new ThreadSafeObject(actual_value));
+        final KeyLock read_lock = new KeyLock(this.translator.translate(value), true);
+        final KeyLock write_lock = new KeyLock(read_lock.key, false);
+        return new ReadWriteLock() {
+            @Override
+            public Lock readLock() {
+                return read_lock;
             }
-            return this.map.get(actual_value);
+            
+            @Override
+            public Lock writeLock() {
+                return write_lock;
+            }
+        };
+    }
+    
+    /**
+     * 获取同时锁定多个索引值的锁
+     *
+     * @param values 索引值集合（翻译后相同的索引值只锁定一次）
+     * @return 锁
+     */
+    public Lock getLocks(Collection<? extends T> values) {
+        /**
+         * @effects:
+         *          \result == the lock acquiring the exclusive locks of all the actual values together without deadlock;
+         * @notice:
+         *          actual values are defined as the values after translated by the translator;
+         */
+        LinkedHashSet<T> keys = new LinkedHashSet<>();
+        for (T value : values) keys.add(this.translator.translate(value));
+        return new MultiKeyLock(keys);
+    }
+    
+    /**
+     * 获取同时锁定两个索引值的锁
+     *
+     * @param value1 索引值1
+     * @param value2 索引值2
+     * @return 锁
+     */
+    public Lock getLocks(T value1, T value2) {
+        /**
+         * @effects:
+         *          \result == getLocks([value1, value2]);
+         */
+        return this.getLocks(Arrays.asList(value1, value2));
+    }
+    
+    /**
+     * 获取有线程持有或等待的锁的数量
+     *
+     * @return 锁的数量
+     */
+    public int getActiveLockCount() {
+        /**
+         * @effects:
+         *          \result == the number of the locks being held or waited for;
+         */
+        return this.lock_map.size();
+    }
+    
+    /**
+     * 诊断当前进程中的死锁（包括synchronized和Lock）
+     *
+     * @return 死锁线程及其持有、等待的锁的描述（没有死锁时为null）
+     */
+    public static String getDeadlockReport() {
+        /**
+         * @effects:
+         *          (some threads are deadlocked) ==> \result == the description of those threads with the locks held and waited for;
+         *          otherwise, \result == null;
+         */
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        long[] thread_ids = bean.isSynchronizerUsageSupported() ? bean.findDeadlockedThreads() : bean.findMonitorDeadlockedThreads();
+        if (thread_ids == null) return null;
+        StringBuilder builder = new StringBuilder();
+        for (ThreadInfo info : bean.getThreadInfo(thread_ids, bean.isObjectMonitorUsageSupported(), bean.isSynchronizerUsageSupported())) {
+            if (info != null) builder.append(info);
         }
+        return builder.toString();
     }
 }
@@ -2,18 +2,33 @@ package models.thread.timeline;
 
 import events.thread.ThreadExceptionEvent;
 import events.thread.ThreadTriggerEvent;
-import events.thread.ThreadTriggerWithReturnValueEvent;
+import helpers.thread.ExecutorHelper;
 import interfaces.event.TriggerInterface;
 import models.structure.object.TimeBasedObject;
+import models.structure.wheel.HierarchicalTimingWheel;
+import models.structure.wheel.TimingWheel;
+import models.structure.wheel.TimingWheelEntry;
 import models.thread.circulation.SimpleCirculationThread;
-import models.thread.trigger.DelayUntilThread;
-import models.thread.trigger.TriggerThread;
+import models.thread.metrics.SchedulerMetrics;
+import models.thread.metrics.SchedulerMetricsSnapshot;
 import models.time.Timestamp;
 
-import java.util.PriorityQueue;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 抽象时间线类
+ * <p>
+ * 特性：
+ * 1、触发任务存放于时间轮内（默认为ms/s/min/h四层的多层时间轮），新增为O(1)
+ * 2、轮询线程只在时间轮下一次需要推进时醒来，不会逐毫秒空转
+ * 3、到期的任务统一投递到分发执行器执行，线程数量不随任务数量增长
+ * 4、分发执行器可替换（默认为固定大小的线程池，也可以使用ExecutorHelper提供的有界线程池、虚拟线程执行器或同线程执行器）；分发执行器拒绝执行（如有界线程池已满、已关闭）时任务改为在本线程内执行，句柄依然会完成，周期任务也不会中断
+ * 5、可通过enableMetrics开启运行统计（触发延迟、执行耗时、各类计数、分发线程利用率），通过getMetricsSnapshot获取快照，未开启时几乎没有额外开销
  *
  * @param <T> 传入类型
  * @param <K> 内部交互类型
@@ -67,96 +82,454 @@ public abstract class AbstractTimelineTriggerThread<T, K> extends SimpleCirculat
     /**
      * 时间戳触发器接口
      */
-    protected class TimeBasedTrigger extends TimeBasedObject<TriggerInterface> {
+    protected class TimeBasedTrigger extends TimeBasedObject<TriggerInterface> implements Runnable {
         /**
-         * 触发器线程对象
+         * 附加对象
          */
-        private final TriggerThread thread;
+        private final K attached_object;
+        
+        /**
+         * 所属句柄
+         */
+        private TriggerHandle handle;
         
         /**
          * 构造函数
          *
-         * @param trigger   触发器接口
-         * @param timestamp 时间戳
+         * @param trigger         触发器接口
+         * @param timestamp       时间戳
+         * @param attached_object 附加对象
          */
         public TimeBasedTrigger(TriggerInterface trigger, Timestamp timestamp, K attached_object) {
             /**
              * @modifies:
              *          \this.object;
              *          \this.timestamp;
-             *          \this.event;
+             *          \this.attached_object;
              * @effects:
              *          \this.object = trigger;
              *          \this.timestamp = timestamp;
-             *          \this.event will be set to the DelayUntilThread of the task and the trigger timestamp;
+             *          \this.attached_object = attached_object;
              */
             super(trigger);
             setTimestamp(timestamp);
-            this.thread = new DelayUntilThread(timestamp) {
-                /**
-                 * 触发器
-                 * @param e 触发事件对象
-                 * @throws Throwable 任意异常类
-                 */
-                @Override
-                public void trigger(ThreadTriggerWithReturnValueEvent e) throws Throwable {
-                    /**
-                     * @effects:
-                     *          beforeTrigger, trigger, afterTrigger will be called;
-                     */
-                    ThreadTriggerEvent<K> event = new ThreadTriggerEvent<>(self, timestamp, attached_object);
-                    self.beforeTrigger(event, trigger);
-                    self.trigger(event, trigger);
-                    self.afterTrigger(event, trigger);
+            this.attached_object = attached_object;
+        }
+        
+        /**
+         * 获取触发器接口
+         *
+         * @return 触发器接口
+         */
+        public TriggerInterface getTrigger() {
+            /**
+             * @effects:
+             *          \result == \this.object;
+             */
+            return this.getObject();
+        }
+        
+        /**
+         * 执行触发器（由分发线程池调用）
+         */
+        @Override
+        public void run() {
+            /**
+             * @effects:
+             *          (\this.handle is cancelled) ==> nothing to do;
+             *          otherwise, beforeTrigger, trigger, afterTrigger will be called, and then the task will be scheduled again if necessary;
+             *          (self.metrics != null) ==> the lateness and the execution time will be recorded;
+             *          exceptional behavior(Throwable):
+             *          self.exceptionCaught() will be executed, and the task will not be scheduled again;
+             */
+            if (this.handle.isCancelled()) return;
+            ThreadTriggerEvent<K> event = new ThreadTriggerEvent<>(self, this.getTimestamp(), this.attached_object);
+            TriggerInterface trigger = this.getObject();
+            Timestamp next_timestamp = null;
+            SchedulerMetrics metrics = self.metrics;
+            long lateness = (metrics != null) ? System.currentTimeMillis() - this.getTimestamp().getTimestamp() : 0;
+            long start_nanos = (metrics != null) ? System.nanoTime() : 0;
+            boolean failed = false;
+            try {
+                self.beforeTrigger(event, trigger);
+                self.trigger(event, trigger);
+                self.afterTrigger(event, trigger);
+                next_timestamp = self.getNextTimestamp(event);
+            } catch (Throwable e) {
+                failed = true;
+                self.exceptionCaught(new ThreadExceptionEvent(self, e));
+            }
+            if (metrics != null) metrics.recordFire(TimeUnit.MILLISECONDS.toNanos(lateness), System.nanoTime() - start_nanos, failed);
+            synchronized (self.queue) {
+                if ((next_timestamp == null) || this.handle.isCancelled()) {
+                    this.handle.done = true;
+                } else {
+                    self.schedule(new TimeBasedTrigger(trigger, next_timestamp, this.attached_object), this.handle);
                 }
-                
-                /**
-                 * 异常处理
-                 * @param e 异常被触发事件
-                 */
-                @Override
-                public void exceptionCaught(ThreadExceptionEvent e) {
-                    /**
-                     * @effects:
-                     *          None;
-                     */
+            }
+        }
+    }
+    
+    /**
+     * 定时任务句柄实现
+     */
+    protected class TriggerHandle extends ScheduledHandle {
+        /**
+         * 时间轮条目（不在等待中时为null，受queue保护）
+         */
+        private TimingWheelEntry<TimeBasedTrigger> entry = null;
+        
+        /**
+         * 附加对象
+         */
+        private volatile K attached_object = null;
+        
+        /**
+         * 是否已被取消
+         */
+        private volatile boolean cancelled = false;
+        
+        /**
+         * 是否已执行完毕
+         */
+        private volatile boolean done = false;
+        
+        /**
+         * 获取所属时间线
+         *
+         * @return 所属时间线
+         */
+        private AbstractTimelineTriggerThread<T, K> getHost() {
+            /**
+             * @effects:
+             *          \result == self;
+             */
+            return self;
+        }
+        
+        /**
+         * 取消任务
+         *
+         * @return 是否取消成功
+         */
+        @Override
+        public boolean cancel() {
+            /**
+             * @modifies:
+             *          \this.cancelled;
+             *          \this.entry;
+             *          self.queue;
+             * @effects:
+             *          (\this.isDone()) ==> \result == false;
+             *          otherwise, \this.cancelled = true, \this.entry will be removed from self.queue and \result == true;
+             *          (self.metrics != null && \result == true) ==> the cancellation will be recorded;
+             */
+            synchronized (self.queue) {
+                if (this.isDone()) return false;
+                this.cancelled = true;
+                if (this.entry != null) {
+                    self.queue.remove(this.entry);
+                    this.entry = null;
                 }
-            };
+            }
+            SchedulerMetrics metrics = self.metrics;
+            if (metrics != null) metrics.recordCancel();
+            return true;
         }
         
         /**
-         * 启动内部线程
+         * 是否已被取消
+         *
+         * @return 是否已被取消
          */
-        public void start() {
+        @Override
+        public boolean isCancelled() {
             /**
              * @effects:
-             *          \this.event will be started;
+             *          \result == \this.cancelled;
              */
-            this.thread.start();
+            return this.cancelled;
+        }
+        
+        /**
+         * 是否已结束
+         *
+         * @return 是否已结束
+         */
+        @Override
+        public boolean isDone() {
+            /**
+             * @effects:
+             *          \result == (\this.cancelled || \this.done);
+             */
+            return this.cancelled || this.done;
+        }
+        
+        /**
+         * 重新设定触发时间
+         *
+         * @param timestamp 新的触发时间
+         * @return 是否设定成功
+         */
+        @Override
+        public boolean reschedule(Timestamp timestamp) {
+            /**
+             * @modifies:
+             *          \this.entry;
+             *          self.queue;
+             * @effects:
+             *          (\this.entry is still in self.queue) ==> the task will be moved to the new timestamp && \result == true;
+             *          otherwise, \result == false;
+             */
+            synchronized (self.queue) {
+                if ((this.entry == null) || !self.queue.remove(this.entry)) return false;
+                TimeBasedTrigger trigger = this.entry.getObject();
+                self.schedule(new TimeBasedTrigger(trigger.getTrigger(), timestamp, trigger.attached_object), this);
+                return true;
+            }
+        }
+        
+        /**
+         * 获取下一次触发时间
+         *
+         * @return 下一次触发时间
+         */
+        @Override
+        public Timestamp getTargetTimestamp() {
+            /**
+             * @effects:
+             *          (\this.entry != null) ==> \result == the timestamp of \this.entry;
+             *          (\this.entry == null) ==> \result == null;
+             */
+            synchronized (self.queue) {
+                return (this.entry == null) ? null : this.entry.getObject().getTimestamp();
+            }
         }
     }
     
+    /**
+     * 默认分发线程数
+     */
+    public static final int DEFAULT_DISPATCHER_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors());
+    
     /**
      * 锁定对象
      */
     protected final Object lock_object = new Object();
     
     /**
-     * 事件队列
+     * 是否有未处理的唤醒（受lock_object保护）
+     */
+    private boolean notified = false;
+    
+    /**
+     * 事件时间轮
      */
-    protected final PriorityQueue<TimeBasedTrigger> queue;
+    protected final TimingWheel<TimeBasedTrigger> queue;
+    
+    /**
+     * 分发执行器
+     */
+    private final Executor dispatcher;
+    
+    /**
+     * 分发执行器是否由本线程创建（是则在线程结束时关闭）
+     */
+    private final boolean dispatcher_owned;
+    
+    /**
+     * 分发线程数（外部分发执行器时记为1）
+     */
+    private final int dispatcher_capacity;
+    
+    /**
+     * 运行统计（未开启时为null）
+     */
+    private volatile SchedulerMetrics metrics = null;
     
     /**
      * 构造函数
+     *
+     * @param queue               事件时间轮
+     * @param dispatcher          分发执行器
+     * @param dispatcher_owned    分发执行器是否由本线程创建
+     * @param dispatcher_capacity 分发线程数
+     */
+    private AbstractTimelineTriggerThread(TimingWheel<TimeBasedTrigger> queue, Executor dispatcher, boolean dispatcher_owned, int dispatcher_capacity) {
+        /**
+         * @modifies:
+         *          \this.queue;
+         *          \this.dispatcher;
+         *          \this.dispatcher_owned;
+         *          \this.dispatcher_capacity;
+         * @effects:
+         *          \this.queue == queue;
+         *          \this.dispatcher == dispatcher;
+         *          \this.dispatcher_owned == dispatcher_owned;
+         *          \this.dispatcher_capacity == dispatcher_capacity;
+         */
+        this.queue = queue;
+        this.dispatcher = dispatcher;
+        this.dispatcher_owned = dispatcher_owned;
+        this.dispatcher_capacity = dispatcher_capacity;
+    }
+    
+    /**
+     * 构造函数（使用外部分发执行器，线程结束时不会关闭该执行器）
+     * <p>
+     * 可使用ExecutorHelper获取有界线程池、虚拟线程执行器或同线程执行器
+     *
+     * @param queue      事件时间轮
+     * @param dispatcher 分发执行器
+     */
+    public AbstractTimelineTriggerThread(TimingWheel<TimeBasedTrigger> queue, Executor dispatcher) {
+        /**
+         * @modifies:
+         *          \this.queue;
+         *          \this.dispatcher;
+         *          \this.dispatcher_owned;
+         * @effects:
+         *          \this.queue == queue;
+         *          \this.dispatcher == dispatcher;
+         *          \this.dispatcher_owned == false;
+         */
+        this(queue, dispatcher, false, 1);
+    }
+    
+    /**
+     * 构造函数（使用固定大小的分发线程池）
+     *
+     * @param queue            事件时间轮
+     * @param dispatcher_count 分发线程数
+     */
+    public AbstractTimelineTriggerThread(TimingWheel<TimeBasedTrigger> queue, int dispatcher_count) {
+        /**
+         * @requires:
+         *          dispatcher_count > 0;
+         * @modifies:
+         *          \this.queue;
+         *          \this.dispatcher;
+         *          \this.dispatcher_owned;
+         * @effects:
+         *          \this.queue == queue;
+         *          \this.dispatcher will be initialized to a fixed thread pool with dispatcher_count threads;
+         *          \this.dispatcher_owned == true;
+         */
+        this(queue, Executors.newFixedThreadPool(dispatcher_count, ExecutorHelper.getNamedThreadFactory("timeline-dispatcher")), true, dispatcher_count);
+    }
+    
+    /**
+     * 构造函数（使用默认多层时间轮及外部分发执行器）
+     *
+     * @param dispatcher 分发执行器
+     */
+    public AbstractTimelineTriggerThread(Executor dispatcher) {
+        /**
+         * @modifies:
+         *          \this.queue;
+         *          \this.dispatcher;
+         *          \this.dispatcher_owned;
+         * @effects:
+         *          \this.queue will be initialized to a new HierarchicalTimingWheel;
+         *          \this.dispatcher == dispatcher;
+         *          \this.dispatcher_owned == false;
+         */
+        this(new HierarchicalTimingWheel<>(), dispatcher);
+    }
+    
+    /**
+     * 构造函数（使用默认多层时间轮及默认分发线程数）
      */
     public AbstractTimelineTriggerThread() {
         /**
          * @modifies:
          *          \this.queue;
+         *          \this.dispatcher;
+         *          \this.dispatcher_owned;
+         * @effects:
+         *          \this.queue will be initialized to a new HierarchicalTimingWheel;
+         *          \this.dispatcher will be initialized to a fixed thread pool with DEFAULT_DISPATCHER_COUNT threads;
+         *          \this.dispatcher_owned == true;
+         */
+        this(new HierarchicalTimingWheel<>(), DEFAULT_DISPATCHER_COUNT);
+    }
+    
+    /**
+     * 唤醒轮询线程
+     */
+    protected void notifyQueueChanged() {
+        /**
+         * @modifies:
+         *          \this.notified;
+         * @effects:
+         *          \this.notified = true;
+         *          \this.lock_object will be notified to all;
+         */
+        synchronized (this.lock_object) {
+            this.notified = true;
+            this.lock_object.notifyAll();
+        }
+    }
+    
+    /**
+     * 获取下一次触发时间（用于周期性任务）
+     *
+     * @param e 本次触发的事件
+     * @return 下一次触发时间（null表示不再触发）
+     */
+    protected Timestamp getNextTimestamp(ThreadTriggerEvent<K> e) {
+        /**
+         * @effects:
+         *          \result == null;
+         */
+        return null;
+    }
+    
+    /**
+     * 获取任务句柄对应的附加对象
+     *
+     * @param handle 任务句柄
+     * @return 附加对象（非本线程的句柄时为null）
+     */
+    @SuppressWarnings("unchecked")
+    protected K getAttachedObject(ScheduledHandle handle) {
+        /**
+         * @effects:
+         *          (handle is created by \this) ==> \result == the attached object of the task;
+         *          otherwise, \result == null;
+         */
+        if (!(handle instanceof AbstractTimelineTriggerThread.TriggerHandle)) return null;
+        TriggerHandle trigger_handle = (TriggerHandle) handle;
+        return (trigger_handle.getHost() == this) ? trigger_handle.attached_object : null;
+    }
+    
+    /**
+     * 将触发任务放入时间轮
+     *
+     * @param trigger 触发任务
+     * @param handle  所属句柄（null表示新建句柄）
+     * @return 所属句柄
+     */
+    protected TriggerHandle schedule(TimeBasedTrigger trigger, TriggerHandle handle) {
+        /**
+         * @modifies:
+         *          \this.queue;
+         *          handle;
          * @effects:
-         *          \this.queue will be initialized to a new PriorityQueue;
+         *          (handle == null) ==> a new handle will be created;
+         *          (handle is not cancelled) ==> add the new trigger task into \this.queue, and bind it with the handle;
+         *          \this.lock_object will be notified to all;
+         *          \result == the handle;
          */
-        this.queue = new PriorityQueue<>();
+        synchronized (this.queue) {
+            if (handle == null) handle = new TriggerHandle();
+            if (handle.isCancelled()) return handle;
+            trigger.handle = handle;
+            handle.attached_object = trigger.attached_object;
+            handle.entry = this.queue.add(trigger.getTimestamp().getTimestamp(), trigger);
+        }
+        this.notifyQueueChanged();
+        return handle;
     }
     
     /**
@@ -165,24 +538,20 @@ public abstract class AbstractTimelineTriggerThread<T, K> extends SimpleCirculat
      * @param timestamp       时间戳
      * @param trigger         触发器
      * @param attached_object 附加对象
+     * @return 任务句柄
      */
-    protected void add(Timestamp timestamp, TriggerInterface trigger, T attached_object) {
+    protected ScheduledHandle add(Timestamp timestamp, TriggerInterface trigger, T attached_object) {
         /**
          * @modifies:
          *          \this.queue;
          * @effects:
-         *          addTimer the new trigger task into \this.queue;
+         *          add the new trigger task into \this.queue;
          *          \this.lock_object will be notified to all;
+         *          \result == the handle of the new task;
          */
-        synchronized (this.queue) {
-            this.queue.add(new TimeBasedTrigger(trigger, timestamp, this.getDataCompress(trigger, attached_object)));
-            synchronized (this.lock_object) {
-                this.lock_object.notifyAll();
-            }
-        }
+        return this.schedule(new TimeBasedTrigger(trigger, timestamp, this.getDataCompress(trigger, attached_object)), null);
     }
     
-    
     /**
      * 清空触发器
      */
@@ -192,14 +561,69 @@ public abstract class AbstractTimelineTriggerThread<T, K> extends SimpleCirculat
          *          \this.queue;
          * @effects:
          *          \this.queue will be cleared;
+         *          the handles of all the tasks cleared will be cancelled;
+         *          (\this.metrics != null) ==> the cancellations will be recorded;
          *          \this.lock_object will be notified to all;
          */
+        List<TimeBasedTrigger> cleared;
         synchronized (this.queue) {
-            this.queue.clear();
-            synchronized (this.lock_object) {
-                this.lock_object.notifyAll();
+            cleared = this.queue.drain();
+            for (TimeBasedTrigger trigger : cleared) {
+                trigger.handle.cancelled = true;
+                trigger.handle.entry = null;
             }
         }
+        SchedulerMetrics metrics = this.metrics;
+        if (metrics != null) metrics.recordCancel(cleared.size());
+        this.notifyQueueChanged();
+    }
+    
+    /**
+     * 开启运行统计
+     */
+    public void enableMetrics() {
+        /**
+         * @modifies:
+         *          \this.metrics;
+         * @effects:
+         *          (\this.metrics == null) ==> \this.metrics will be initialized to a new SchedulerMetrics;
+         */
+        synchronized (this.lock_object) {
+            if (this.metrics == null) this.metrics = new SchedulerMetrics();
+        }
+    }
+    
+    /**
+     * 关闭运行统计（已有的统计数据将被丢弃）
+     */
+    public void disableMetrics() {
+        /**
+         * @modifies:
+         *          \this.metrics;
+         * @effects:
+         *          \this.metrics = null;
+         */
+        this.metrics = null;
+    }
+    
+    /**
+     * 获取运行统计快照
+     *
+     * @return 快照（未开启统计时为null）
+     */
+    public SchedulerMetricsSnapshot getMetricsSnapshot() {
+        /**
+         * @effects:
+         *          (\this.metrics == null) ==> \result == null;
+         *          otherwise, \result == the snapshot of \this.metrics with the current size of \this.queue;
+         */
+        SchedulerMetrics metrics = this.metrics;
+        if (metrics == null) return null;
+        int pending_count;
+        synchronized (this.queue) {
+            pending_count = this.queue.size();
+        }
+        return metrics.getSnapshot(pending_count, this.dispatcher_capacity);
     }
     
     /**
@@ -238,10 +662,23 @@ public abstract class AbstractTimelineTriggerThread<T, K> extends SimpleCirculat
     }
     
     /**
-     * 提前检测时间
-     * 用于提前引发DelayUntilTrigger，尽量不要低于15，且出于性能考虑不要过高
+     * 执行线程（轮询结束后关闭自行创建的分发线程池）
+     *
+     * @throws Throwable 任意异常类
      */
-    private static final int PRE_OFFSET_TIME = 25;
+    @Override
+    public void execute() throws Throwable {
+        /**
+         * @effects:
+         *          \super.execute() will be executed;
+         *          (\this.dispatcher_owned) ==> \this.dispatcher will be shut down after that, the triggers already dispatched will still be executed;
+         */
+        try {
+            super.execute();
+        } finally {
+            if (this.dispatcher_owned) ((ExecutorService) this.dispatcher).shutdown();
+        }
+    }
     
     /**
      * 轮询
@@ -254,26 +691,35 @@ public abstract class AbstractTimelineTriggerThread<T, K> extends SimpleCirculat
          * @modifies:
          *          \this.queue;
          * @effects:
-         *          calculate the valid offset time;
-         *          (\this.queue is empty) ==> \this.lock_object start wait;
-         *          put all the trigger task that will be trigger in this round into the waiting mode and put them out of \this.queue;
-         */
-        Timestamp timestamp = new Timestamp().getOffseted(PRE_OFFSET_TIME);
-        if (this.queue.isEmpty()) {
-            synchronized (this.lock_object) {
-                this.lock_object.wait();
+         *          advance \this.queue to the present time and dispatch all the expired triggers into \this.dispatcher;
+         *          (\this.dispatcher rejects a trigger) ==> it will be executed in \this thread instead;
+         *          wait until the next advance time of \this.queue, or until \this.queue changed;
+         */
+        List<TimeBasedTrigger> expired;
+        long next_time;
+        synchronized (this.queue) {
+            expired = this.queue.advance(System.currentTimeMillis());
+            next_time = this.queue.getNextAdvanceTime();
+            for (TimeBasedTrigger trigger : expired) trigger.handle.entry = null;
+        }
+        for (TimeBasedTrigger trigger : expired) {
+            try {
+                this.dispatcher.execute(trigger);
+            } catch (RejectedExecutionException e) {
+                trigger.run();  // the trigger is already out of the queue, run it here so that its handle completes and periodic tasks go on
             }
         }
-        synchronized (this.queue) {
-            while (!this.queue.isEmpty()) {
-                TimeBasedTrigger trigger = this.queue.peek();
-                if (trigger == null) continue;
-                if (trigger.getTimestamp().compareTo(timestamp) > 0) break;
-                trigger.start();
-                this.queue.poll();
+        synchronized (this.lock_object) {
+            if (!this.notified && this.permitContinue()) {
+                if (next_time == Long.MAX_VALUE) {
+                    this.lock_object.wait();
+                } else {
+                    long wait_time = next_time - System.currentTimeMillis();
+                    if (wait_time > 0) this.lock_object.wait(wait_time);
+                }
             }
+            this.notified = false;
         }
-        sleepUntil(new Timestamp().getOffseted(1));
     }
     
     /**
@@ -287,9 +733,7 @@ public abstract class AbstractTimelineTriggerThread<T, K> extends SimpleCirculat
          *          Then, the lock will be notified to all;
          */
         super.exitGracefully();
-        synchronized (this.lock_object) {
-            this.lock_object.notifyAll();
-        }
+        this.notifyQueueChanged();
     }
     
     /**
@@ -5,10 +5,13 @@ import models.application.ApplicationModel;
 
 /**
  * 多重定时器信息类
+ * <p>
+ * 除定时器的设定外，还记录该定时器的触发次数、错过次数及延迟（实际开始执行时间与目标时间之差，单位：ms）
+ * 同一定时器不会并发执行，统计数据只由当前执行该定时器的线程写入
  *
  * @param <T> 附加数据类型
  */
-class MultipleTimerInformation<T> extends ApplicationModel {
+public class MultipleTimerInformation<T> extends ApplicationModel {
     /**
      * 附加数据
      */
@@ -24,12 +27,75 @@ class MultipleTimerInformation<T> extends ApplicationModel {
      */
     private final long interval;
     
+    /**
+     * 调度方式
+     */
+    private final MultipleTimerThread.ScheduleMode schedule_mode;
+    
+    /**
+     * 追赶策略
+     */
+    private final MultipleTimerThread.CatchUpPolicy catch_up_policy;
+    
+    /**
+     * 触发次数
+     */
+    private volatile long fire_count = 0;
+    
+    /**
+     * 错过（未触发）的次数
+     */
+    private volatile long missed_count = 0;
+    
+    /**
+     * 最近一次延迟
+     */
+    private volatile long last_lateness = 0;
+    
+    /**
+     * 最大延迟
+     */
+    private volatile long max_lateness = 0;
+    
+    /**
+     * 延迟总和
+     */
+    private volatile long total_lateness = 0;
+    
     /**
      * 构造函数
      *
      * @param trigger         触发器
      * @param attached_object 附加对象
      * @param interval        时间间隔
+     * @param schedule_mode   调度方式
+     * @param catch_up_policy 追赶策略
+     */
+    MultipleTimerInformation(TriggerInterface trigger, T attached_object, long interval,
+                             MultipleTimerThread.ScheduleMode schedule_mode, MultipleTimerThread.CatchUpPolicy catch_up_policy) {
+        /**
+         * @modifies:
+         *          \this.trigger;
+         *          \this.attached_object;
+         *          \this.interval;
+         *          \this.schedule_mode;
+         *          \this.catch_up_policy;
+         * @effects:
+         *          all the fields will be initialized with the arguments;
+         */
+        this.trigger = trigger;
+        this.attached_object = attached_object;
+        this.interval = interval;
+        this.schedule_mode = schedule_mode;
+        this.catch_up_policy = catch_up_policy;
+    }
+    
+    /**
+     * 构造函数（固定频率，补齐所有错过的触发）
+     *
+     * @param trigger         触发器
+     * @param attached_object 附加对象
+     * @param interval        时间间隔
      */
     public MultipleTimerInformation(TriggerInterface trigger, T attached_object, long interval) {
         /**
@@ -41,10 +107,47 @@ class MultipleTimerInformation<T> extends ApplicationModel {
          *          \this.trigger == trigger;
          *          \this.attached_object == attached_object;
          *          \this.interval == interval;
+         *          \this.schedule_mode == FIXED_RATE;
+         *          \this.catch_up_policy == FIRE_ALL;
          */
-        this.trigger = trigger;
-        this.attached_object = attached_object;
-        this.interval = interval;
+        this(trigger, attached_object, interval, MultipleTimerThread.ScheduleMode.FIXED_RATE, MultipleTimerThread.CatchUpPolicy.FIRE_ALL);
+    }
+    
+    /**
+     * 记录一次触发
+     *
+     * @param lateness 延迟
+     */
+    void recordFire(long lateness) {
+        /**
+         * @modifies:
+         *          \this.fire_count;
+         *          \this.last_lateness;
+         *          \this.max_lateness;
+         *          \this.total_lateness;
+         * @effects:
+         *          the statistics will be updated with max(lateness, 0);
+         */
+        if (lateness < 0) lateness = 0;
+        this.fire_count = this.fire_count + 1;
+        this.last_lateness = lateness;
+        if (lateness > this.max_lateness) this.max_lateness = lateness;
+        this.total_lateness = this.total_lateness + lateness;
+    }
+    
+    /**
+     * 记录错过的触发
+     *
+     * @param count 错过的次数
+     */
+    void recordMissed(long count) {
+        /**
+         * @modifies:
+         *          \this.missed_count;
+         * @effects:
+         *          \this.missed_count will be increased by count;
+         */
+        this.missed_count = this.missed_count + count;
     }
     
     /**
@@ -85,4 +188,97 @@ class MultipleTimerInformation<T> extends ApplicationModel {
          */
         return interval;
     }
+    
+    /**
+     * 获取调度方式
+     *
+     * @return 调度方式
+     */
+    public MultipleTimerThread.ScheduleMode getScheduleMode() {
+        /**
+         * @effects:
+         *          \result == \this.schedule_mode;
+         */
+        return schedule_mode;
+    }
+    
+    /**
+     * 获取追赶策略
+     *
+     * @return 追赶策略
+     */
+    public MultipleTimerThread.CatchUpPolicy getCatchUpPolicy() {
+        /**
+         * @effects:
+         *          \result == \this.catch_up_policy;
+         */
+        return catch_up_policy;
+    }
+    
+    /**
+     * 获取触发次数
+     *
+     * @return 触发次数
+     */
+    public long getFireCount() {
+        /**
+         * @effects:
+         *          \result == \this.fire_count;
+         */
+        return fire_count;
+    }
+    
+    /**
+     * 获取错过（未触发）的次数
+     *
+     * @return 错过的次数
+     */
+    public long getMissedCount() {
+        /**
+         * @effects:
+         *          \result == \this.missed_count;
+         */
+        return missed_count;
+    }
+    
+    /**
+     * 获取最近一次延迟
+     *
+     * @return 最近一次延迟
+     */
+    public long getLastLateness() {
+        /**
+         * @effects:
+         *          \result == \this.last_lateness;
+         */
+        return last_lateness;
+    }
+    
+    /**
+     * 获取最大延迟
+     *
+     * @return 最大延迟
+     */
+    public long getMaxLateness() {
+        /**
+         * @effects:
+         *          \result == \this.max_lateness;
+         */
+        return max_lateness;
+    }
+    
+    /**
+     * 获取平均延迟
+     *
+     * @return 平均延迟（未触发时为0）
+     */
+    public double getMeanLateness() {
+        /**
+         * @effects:
+         *          (\this.fire_count == 0) ==> \result == 0;
+         *          otherwise, \result == \this.total_lateness / \this.fire_count;
+         */
+        long count = this.fire_count;
+        return (count == 0) ? 0 : (double) this.total_lateness / count;
+    }
 }
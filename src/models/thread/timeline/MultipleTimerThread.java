@@ -4,10 +4,85 @@ import events.thread.ThreadTriggerEvent;
 import interfaces.event.TriggerInterface;
 import models.time.Timestamp;
 
+import java.util.concurrent.Executor;
+
 /**
  * 多重定时线程
+ * <p>
+ * 特性：
+ * 1、每个定时器可分别指定调度方式：固定频率（按原定节拍触发，不累积误差）或固定延迟（上一次执行完后再等待一个间隔）
+ * 2、固定频率的定时器因执行过慢、GC停顿等原因错过节拍时，按追赶策略处理：补齐所有错过的触发、只补触发一次或直接跳到下一个节拍
+ * 3、每个定时器分别统计触发次数、错过次数及延迟，可通过getTimerInformation获取
  */
 public class MultipleTimerThread<T> extends AbstractTimelineTriggerThread<T, MultipleTimerInformation<T>> {
+    /**
+     * 调度方式
+     */
+    public enum ScheduleMode {
+        /**
+         * 固定频率（下一次目标时间 = 本次目标时间 + 间隔）
+         */
+        FIXED_RATE,
+        
+        /**
+         * 固定延迟（下一次目标时间 = 本次执行完毕的时间 + 间隔）
+         */
+        FIXED_DELAY
+    }
+    
+    /**
+     * 追赶策略（仅用于固定频率）
+     */
+    public enum CatchUpPolicy {
+        /**
+         * 补齐所有错过的触发（连续触发直到追上节拍）
+         */
+        FIRE_ALL,
+        
+        /**
+         * 所有错过的触发合并为立即触发一次，之后回到原有节拍
+         */
+        FIRE_ONCE,
+        
+        /**
+         * 跳过所有错过的触发，直接在下一个节拍触发
+         */
+        SKIP_TO_NEXT
+    }
+    
+    /**
+     * 默认调度方式
+     */
+    public static final ScheduleMode DEFAULT_SCHEDULE_MODE = ScheduleMode.FIXED_RATE;
+    
+    /**
+     * 默认追赶策略
+     */
+    public static final CatchUpPolicy DEFAULT_CATCH_UP_POLICY = CatchUpPolicy.FIRE_ALL;
+    
+    /**
+     * 构造函数（使用默认分发线程池）
+     */
+    public MultipleTimerThread() {
+        /**
+         * @effects:
+         *          it will be initialized by super class, using the default dispatcher pool;
+         */
+        super();
+    }
+    
+    /**
+     * 构造函数（使用外部分发执行器）
+     *
+     * @param dispatcher 分发执行器
+     */
+    public MultipleTimerThread(Executor dispatcher) {
+        /**
+         * @effects:
+         *          it will be initialized by super class, using the given dispatcher;
+         */
+        super(dispatcher);
+    }
     
     /**
      * 数据解压
@@ -41,20 +116,72 @@ public class MultipleTimerThread<T> extends AbstractTimelineTriggerThread<T, Mul
     }
     
     /**
-     * 触发器任务
+     * 触发器触发前执行
      *
      * @param e       事件
      * @param trigger 触发器
      */
     @Override
-    protected void trigger(ThreadTriggerEvent<MultipleTimerInformation<T>> e, TriggerInterface trigger) {
+    protected void beforeTrigger(ThreadTriggerEvent<MultipleTimerInformation<T>> e, TriggerInterface trigger) {
+        /**
+         * @modifies:
+         *          e.attached_object;
+         * @effects:
+         *          the lateness of this fire will be recorded into e.attached_object;
+         */
+        e.getAttachedObject().recordFire(System.currentTimeMillis() - e.getTargetTimestamp().getTimestamp());
+    }
+    
+    /**
+     * 获取下一次触发时间
+     *
+     * @param e 本次触发的事件
+     * @return 下一次触发时间
+     */
+    @Override
+    protected Timestamp getNextTimestamp(ThreadTriggerEvent<MultipleTimerInformation<T>> e) {
+        /**
+         * @modifies:
+         *          e.attached_object;
+         * @effects:
+         *          (FIXED_DELAY) ==> \result == present + interval;
+         *          (FIXED_RATE && e.target_timestamp + interval > present) ==> \result == e.target_timestamp + interval;
+         *          (FIXED_RATE && some beats are missed) ==> \result will be decided by the catch-up policy:
+         *              FIRE_ALL ==> \result == e.target_timestamp + interval (which is already expired);
+         *              FIRE_ONCE ==> \result == the latest expired beat, the beats before it will be recorded as missed;
+         *              SKIP_TO_NEXT ==> \result == the first beat after present, all the expired beats will be recorded as missed;
+         */
+        MultipleTimerInformation<T> information = e.getAttachedObject();
+        long interval = information.getInterval();
+        long present = System.currentTimeMillis();
+        if (information.getScheduleMode() == ScheduleMode.FIXED_DELAY) return new Timestamp(present + interval);
+        long target = e.getTargetTimestamp().getTimestamp();
+        if ((target + interval > present) || (interval <= 0)) return new Timestamp(target + interval);
+        long expired = (present - target) / interval;
+        switch (information.getCatchUpPolicy()) {
+            case FIRE_ONCE:
+                information.recordMissed(expired - 1);
+                return new Timestamp(target + expired * interval);
+            case SKIP_TO_NEXT:
+                information.recordMissed(expired);
+                return new Timestamp(target + (expired + 1) * interval);
+            default:
+                return new Timestamp(target + interval);
+        }
+    }
+    
+    /**
+     * 获取定时器信息（含触发次数、错过次数及延迟统计）
+     *
+     * @param handle 定时器句柄
+     * @return 定时器信息（非本线程的句柄时为null）
+     */
+    public MultipleTimerInformation<T> getTimerInformation(ScheduledHandle handle) {
         /**
          * @effects:
-         *          \super.trigger will be called;
-         *          this task will be added into \this.queue next time;
+         *          \result == the information of the timer;
          */
-        super.trigger(e, trigger);
-        this.addTimer(e.getTargetTimestamp(), e.getAttachedObject().getInterval(), trigger, e.getAttachedObject().getAttachedObject());
+        return this.getAttachedObject(handle);
     }
     
     /**
@@ -63,16 +190,41 @@ public class MultipleTimerThread<T> extends AbstractTimelineTriggerThread<T, Mul
      * @param interval        时间间隔
      * @param trigger         触发器
      * @param attached_object 附加数据
+     * @return 定时器句柄
      */
-    public void addTimer(long interval, TriggerInterface trigger, T attached_object) {
+    public ScheduledHandle addTimer(long interval, TriggerInterface trigger, T attached_object) {
         /**
          * @modifies:
          *          \this.queue;
          * @effects:
-         *          add the new trigger task into \this.queue;
+         *          add the new trigger task into \this.queue, using DEFAULT_SCHEDULE_MODE and DEFAULT_CATCH_UP_POLICY;
          *          \this.lock_object will be notified to all;
+         *          \result == the handle of the new timer;
          */
-        this.addTimer(new Timestamp(), interval, trigger, attached_object);
+        return this.addTimer(interval, DEFAULT_SCHEDULE_MODE, DEFAULT_CATCH_UP_POLICY, trigger, attached_object);
+    }
+    
+    /**
+     * 新增定时器
+     *
+     * @param interval        时间间隔
+     * @param schedule_mode   调度方式
+     * @param catch_up_policy 追赶策略（仅用于固定频率）
+     * @param trigger         触发器
+     * @param attached_object 附加数据
+     * @return 定时器句柄
+     */
+    public ScheduledHandle addTimer(long interval, ScheduleMode schedule_mode, CatchUpPolicy catch_up_policy, TriggerInterface trigger, T attached_object) {
+        /**
+         * @modifies:
+         *          \this.queue;
+         * @effects:
+         *          add the new trigger task into \this.queue, the first fire will be after interval;
+         *          \this.lock_object will be notified to all;
+         *          \result == the handle of the new timer;
+         */
+        return this.schedule(new TimeBasedTrigger(trigger, new Timestamp().getOffseted(interval),
+                new MultipleTimerInformation<>(trigger, attached_object, interval, schedule_mode, catch_up_policy)), null);
     }
     
     /**
@@ -82,8 +234,9 @@ public class MultipleTimerThread<T> extends AbstractTimelineTriggerThread<T, Mul
      * @param interval        时间间隔
      * @param trigger         触发器
      * @param attached_object 附加数据
+     * @return 定时器句柄
      */
-    protected void addTimer(Timestamp timestamp, long interval, TriggerInterface trigger, T attached_object) {
+    protected ScheduledHandle addTimer(Timestamp timestamp, long interval, TriggerInterface trigger, T attached_object) {
         /**
          * @requires:
          *          timestamp != null;
@@ -92,12 +245,8 @@ public class MultipleTimerThread<T> extends AbstractTimelineTriggerThread<T, Mul
          * @effects:
          *          add the new trigger task into \this.queue;
          *          \this.lock_object will be notified to all;
+         *          \result == the handle of the new timer;
          */
-        synchronized (this.queue) {
-            this.queue.add(new TimeBasedTrigger(trigger, timestamp.getOffseted(interval), new MultipleTimerInformation<>(trigger, attached_object, interval)));
-            synchronized (this.lock_object) {
-                this.lock_object.notifyAll();
-            }
-        }
+        return this.schedule(new TimeBasedTrigger(trigger, timestamp.getOffseted(interval), new MultipleTimerInformation<>(trigger, attached_object, interval)), null);
     }
 }
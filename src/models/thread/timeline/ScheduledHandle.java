@@ -0,0 +1,53 @@
+package models.thread.timeline;
+
+import models.thread.ApplicationThreadModel;
+import models.time.Timestamp;
+
+/**
+ * 定时任务句柄
+ * <p>
+ * 功能：
+ * 1、由TimelineTriggerThread.add和MultipleTimerThread.addTimer返回，用于单独管理某一个定时任务
+ * 2、支持取消（O(1)，直接从时间轮中摘除）、查询状态以及重新设定触发时间
+ * <p>
+ * 注：
+ * 1、已经投递到分发线程池但尚未执行的任务被取消后将不再执行
+ * 2、对于多重定时器，取消后将不再继续下一轮的定时
+ */
+public abstract class ScheduledHandle extends ApplicationThreadModel {
+    /**
+     * 取消任务
+     *
+     * @return 是否取消成功（任务已完成或已被取消时为false）
+     */
+    public abstract boolean cancel();
+    
+    /**
+     * 是否已被取消
+     *
+     * @return 是否已被取消
+     */
+    public abstract boolean isCancelled();
+    
+    /**
+     * 是否已结束（已执行完毕或已被取消）
+     *
+     * @return 是否已结束
+     */
+    public abstract boolean isDone();
+    
+    /**
+     * 重新设定触发时间
+     *
+     * @param timestamp 新的触发时间
+     * @return 是否设定成功（任务已投递执行、已完成或已被取消时为false）
+     */
+    public abstract boolean reschedule(Timestamp timestamp);
+    
+    /**
+     * 获取下一次触发时间
+     *
+     * @return 下一次触发时间（不在等待中时为null）
+     */
+    public abstract Timestamp getTargetTimestamp();
+}
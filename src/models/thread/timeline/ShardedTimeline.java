@@ -0,0 +1,747 @@
+package models.thread.timeline;
+
+import events.thread.ThreadExceptionEvent;
+import events.thread.ThreadTriggerEvent;
+import helpers.thread.ExecutorHelper;
+import interfaces.event.TriggerInterface;
+import models.structure.queue.MpscLinkedQueue;
+import models.structure.wheel.HierarchicalTimingWheel;
+import models.structure.wheel.TimingWheel;
+import models.structure.wheel.TimingWheelEntry;
+import models.thread.ApplicationThreadModel;
+import models.thread.circulation.SimpleCirculationThread;
+import models.time.Timestamp;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 分片时间线
+ * <p>
+ * 功能：
+ * 1、与TimelineTriggerThread相同，可以设置大量定时触发任务，并通过ScheduledHandle单独取消或重新设定
+ * <p>
+ * 特性：
+ * 1、由N个分片组成，每个分片有独立的轮询线程和时间轮，时间轮只由分片线程访问，不需要加锁
+ * 2、新增、取消、重新设定均投递到分片的无锁多生产者单消费者收件箱，生产者之间不竞争同一把锁，吞吐量随生产者数量扩展
+ * 3、指定key时按key路由到固定分片，未指定key时按当前线程路由（线程亲和）
+ * 4、默认每个分片使用独立的单线程分发执行器，同一分片内的任务按触发时间依次执行，因此同一key（或同一生产者线程）的任务保持顺序
+ * <p>
+ * 注：
+ * 1、使用外部分发执行器时，只有同线程执行器能保证顺序，多线程执行器下同一key的任务可能并发执行
+ * 2、精度与TimelineTriggerThread相同（取决于时间轮的tick时长）
+ *
+ * @param <T> 附加类型
+ */
+public class ShardedTimeline<T> extends ApplicationThreadModel {
+    /**
+     * 默认分片数量
+     */
+    public static final int DEFAULT_SHARD_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+    
+    /**
+     * 句柄状态：等待触发
+     */
+    private static final int STATE_PENDING = 0;
+    
+    /**
+     * 句柄状态：已投递到分发执行器
+     */
+    private static final int STATE_DISPATCHED = 1;
+    
+    /**
+     * 句柄状态：执行中
+     */
+    private static final int STATE_RUNNING = 2;
+    
+    /**
+     * 句柄状态：已执行完毕
+     */
+    private static final int STATE_DONE = 3;
+    
+    /**
+     * 句柄状态：已取消
+     */
+    private static final int STATE_CANCELLED = 4;
+    
+    /**
+     * 句柄状态所占的位数（其余高位为版本号，每次重新设定时间加一）
+     */
+    private static final int STATE_BITS = 3;
+    
+    /**
+     * 句柄状态掩码
+     */
+    private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+    
+    /**
+     * 分片任务句柄
+     */
+    private class ShardHandle extends ScheduledHandle {
+        /**
+         * 所属分片
+         */
+        private final TimelineShard shard;
+        
+        /**
+         * 触发器
+         */
+        private final TriggerInterface trigger;
+        
+        /**
+         * 附加对象
+         */
+        private final T attached_object;
+        
+        /**
+         * 版本号与状态
+         */
+        private final AtomicLong state = new AtomicLong(STATE_PENDING);
+        
+        /**
+         * 目标触发时间
+         */
+        private volatile Timestamp target_timestamp;
+        
+        /**
+         * 时间轮条目（仅分片线程访问）
+         */
+        private TimingWheelEntry<ShardHandle> entry = null;
+        
+        /**
+         * 时间轮条目对应的版本号（仅分片线程访问）
+         */
+        private long entry_version = 0;
+        
+        /**
+         * 构造函数
+         *
+         * @param shard            所属分片
+         * @param trigger          触发器
+         * @param target_timestamp 目标触发时间
+         * @param attached_object  附加对象
+         */
+        private ShardHandle(TimelineShard shard, TriggerInterface trigger, Timestamp target_timestamp, T attached_object) {
+            /**
+             * @modifies:
+             *          \this.shard;
+             *          \this.trigger;
+             *          \this.target_timestamp;
+             *          \this.attached_object;
+             * @effects:
+             *          all the fields will be initialized with the arguments;
+             */
+            this.shard = shard;
+            this.trigger = trigger;
+            this.target_timestamp = target_timestamp;
+            this.attached_object = attached_object;
+        }
+        
+        /**
+         * 取消任务
+         *
+         * @return 是否取消成功
+         */
+        @Override
+        public boolean cancel() {
+            /**
+             * @modifies:
+             *          \this.state;
+             * @effects:
+             *          (\this is pending or dispatched) ==> \this will be cancelled, the entry will be removed by the shard later && \result == true;
+             *          otherwise, \result == false;
+             */
+            while (true) {
+                long current = this.state.get();
+                int status = (int) (current & STATE_MASK);
+                if ((status != STATE_PENDING) && (status != STATE_DISPATCHED)) return false;
+                if (this.state.compareAndSet(current, (current & ~STATE_MASK) | STATE_CANCELLED)) {
+                    if (status == STATE_PENDING) this.shard.post(this);
+                    return true;
+                }
+            }
+        }
+        
+        /**
+         * 是否已被取消
+         *
+         * @return 是否已被取消
+         */
+        @Override
+        public boolean isCancelled() {
+            /**
+             * @effects:
+             *          \result == (the state of \this is cancelled);
+             */
+            return (this.state.get() & STATE_MASK) == STATE_CANCELLED;
+        }
+        
+        /**
+         * 是否已结束
+         *
+         * @return 是否已结束
+         */
+        @Override
+        public boolean isDone() {
+            /**
+             * @effects:
+             *          \result == (the state of \this is done or cancelled);
+             */
+            return (this.state.get() & STATE_MASK) >= STATE_DONE;
+        }
+        
+        /**
+         * 重新设定触发时间
+         *
+         * @param timestamp 新的触发时间
+         * @return 是否设定成功
+         */
+        @Override
+        public boolean reschedule(Timestamp timestamp) {
+            /**
+             * @modifies:
+             *          \this.state;
+             *          \this.target_timestamp;
+             * @effects:
+             *          (\this is pending) ==> the version will be increased, and the shard will move the entry to the new timestamp later && \result == true;
+             *          otherwise, \result == false;
+             *          the version and the target timestamp will be changed together under the monitor of \this;
+             */
+            synchronized (this) {
+                while (true) {
+                    long current = this.state.get();
+                    if ((current & STATE_MASK) != STATE_PENDING) return false;
+                    if (this.state.compareAndSet(current, current + (1L << STATE_BITS))) {
+                        this.target_timestamp = timestamp;
+                        break;
+                    }
+                }
+            }
+            this.shard.post(this);
+            return true;
+        }
+        
+        /**
+         * 获取下一次触发时间
+         *
+         * @return 下一次触发时间
+         */
+        @Override
+        public Timestamp getTargetTimestamp() {
+            /**
+             * @effects:
+             *          (\this is pending) ==> \result == \this.target_timestamp;
+             *          otherwise, \result == null;
+             */
+            return ((this.state.get() & STATE_MASK) == STATE_PENDING) ? this.target_timestamp : null;
+        }
+        
+        /**
+         * 执行触发器（由分发执行器调用）
+         *
+         * @param version 投递时的版本号
+         */
+        private void run(long version) {
+            /**
+             * @modifies:
+             *          \this.state;
+             * @effects:
+             *          (\this is still dispatched with the version) ==> the trigger will be called, and \this will be done;
+             *          otherwise, nothing to do;
+             *          exceptional behavior(Throwable):
+             *          exceptionCaught() will be executed;
+             */
+            long dispatched = (version << STATE_BITS) | STATE_DISPATCHED;
+            if (!this.state.compareAndSet(dispatched, (version << STATE_BITS) | STATE_RUNNING)) return;
+            try {
+                this.trigger.trigger(new ThreadTriggerEvent<>(this.shard, this.target_timestamp, this.attached_object));
+            } catch (Throwable e) {
+                exceptionCaught(new ThreadExceptionEvent(this.shard, e));
+            } finally {
+                this.state.set((version << STATE_BITS) | STATE_DONE);
+            }
+        }
+    }
+    
+    /**
+     * 时间线分片
+     */
+    private class TimelineShard extends SimpleCirculationThread {
+        /**
+         * 收件箱（新增、取消、重新设定的句柄）
+         */
+        private final MpscLinkedQueue<ShardHandle> inbox = new MpscLinkedQueue<>();
+        
+        /**
+         * 时间轮（仅分片线程访问）
+         */
+        private final TimingWheel<ShardHandle> wheel = new HierarchicalTimingWheel<>();
+        
+        /**
+         * 分发执行器
+         */
+        private final Executor dispatcher;
+        
+        /**
+         * 是否处于等待状态
+         */
+        private volatile boolean parked = false;
+        
+        /**
+         * 是否正在退出
+         */
+        private volatile boolean quitting = false;
+        
+        /**
+         * 时间轮中的任务数量
+         */
+        private volatile int pending_count = 0;
+        
+        /**
+         * 构造函数
+         *
+         * @param dispatcher 分发执行器
+         * @param name       线程名
+         */
+        private TimelineShard(Executor dispatcher, String name) {
+            /**
+             * @modifies:
+             *          \this.dispatcher;
+             * @effects:
+             *          \this.dispatcher == dispatcher;
+             *          the name of the thread will be set to name;
+             */
+            super();
+            this.dispatcher = dispatcher;
+            this.setName(name);
+        }
+        
+        /**
+         * 投递句柄到收件箱（任意线程）
+         *
+         * @param handle 句柄
+         */
+        private void post(ShardHandle handle) {
+            /**
+             * @modifies:
+             *          \this.inbox;
+             * @effects:
+             *          handle will be offered into \this.inbox;
+             *          (the shard is parked) ==> the shard will be woken up;
+             */
+            this.inbox.offer(handle);
+            if (this.parked) LockSupport.unpark(this);
+        }
+        
+        /**
+         * 同步句柄在时间轮中的位置（仅分片线程）
+         *
+         * @param handle 句柄
+         */
+        private void synchronize(ShardHandle handle) {
+            /**
+             * @modifies:
+             *          \this.wheel;
+             *          handle;
+             * @effects:
+             *          the old entry of handle will be removed from \this.wheel;
+             *          (handle is pending) ==> a new entry will be added at the target timestamp of handle;
+             */
+            if (handle.entry != null) {
+                this.wheel.remove(handle.entry);
+                handle.entry = null;
+            }
+            long current;
+            Timestamp timestamp;
+            synchronized (handle) {
+                current = handle.state.get();
+                timestamp = handle.target_timestamp;
+            }
+            if ((current & STATE_MASK) != STATE_PENDING) return;
+            handle.entry_version = current >>> STATE_BITS;
+            handle.entry = this.wheel.add(timestamp.getTimestamp(), handle);
+        }
+        
+        /**
+         * 投递到期的句柄（仅分片线程）
+         *
+         * @param handle 句柄
+         */
+        private void dispatch(ShardHandle handle) {
+            /**
+             * @modifies:
+             *          handle;
+             * @effects:
+             *          (handle is still pending with the same version) ==> handle will be marked as dispatched, and run in \this.dispatcher;
+             *          otherwise, nothing to do;
+             */
+            handle.entry = null;
+            long version = handle.entry_version;
+            long pending = version << STATE_BITS;
+            if (!handle.state.compareAndSet(pending, pending | STATE_DISPATCHED)) return;
+            try {
+                this.dispatcher.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle.run(version);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                handle.state.set(pending | STATE_CANCELLED);
+                exceptionCaught(new ThreadExceptionEvent(this, e));
+            }
+        }
+        
+        /**
+         * 轮询开始前
+         */
+        @Override
+        public void beforeCirculation() {
+            /**
+             * @effects:
+             *          nothing to do before the circulation;
+             */
+        }
+        
+        /**
+         * 轮询
+         */
+        @Override
+        public void circulation() {
+            /**
+             * @modifies:
+             *          \this.wheel;
+             *          \this.parked;
+             * @effects:
+             *          all the handles in \this.inbox will be synchronized into \this.wheel;
+             *          \this.wheel will be advanced to the present time, and the expired handles will be dispatched;
+             *          park until the next advance time of \this.wheel, or until a new handle is posted;
+             */
+            ShardHandle handle;
+            while ((handle = this.inbox.poll()) != null) this.synchronize(handle);
+            List<ShardHandle> expired = this.wheel.advance(System.currentTimeMillis());
+            for (ShardHandle item : expired) this.dispatch(item);
+            this.pending_count = this.wheel.size();
+            long next_time = this.wheel.getNextAdvanceTime();
+            this.parked = true;
+            if (this.inbox.isEmpty() && !this.quitting) {
+                if (next_time == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    long wait_time = next_time - System.currentTimeMillis();
+                    if (wait_time > 0) LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wait_time));
+                }
+            }
+            this.parked = false;
+        }
+        
+        /**
+         * 轮询结束后
+         */
+        @Override
+        public void afterCirculation() {
+            /**
+             * @modifies:
+             *          \this.wheel;
+             * @effects:
+             *          all the handles left in \this.wheel will be cancelled;
+             */
+            ShardHandle handle;
+            while ((handle = this.inbox.poll()) != null) this.synchronize(handle);
+            for (ShardHandle item : this.wheel.drain()) {
+                item.entry = null;
+                item.cancel();
+            }
+            this.pending_count = 0;
+        }
+        
+        /**
+         * 是否继续轮询
+         *
+         * @return 是否继续轮询
+         */
+        @Override
+        public boolean permitContinue() {
+            /**
+             * @effects:
+             *          \result == !\this.quitting;
+             */
+            return !this.quitting;
+        }
+        
+        /**
+         * 退出线程
+         */
+        @Override
+        public void exitGracefully() {
+            /**
+             * @modifies:
+             *          \this.quitting;
+             * @effects:
+             *          \super.exitGracefully will be executed;
+             *          \this.quitting = true and the shard will be woken up;
+             */
+            super.exitGracefully();
+            this.quitting = true;
+            LockSupport.unpark(this);
+        }
+        
+        /**
+         * 异常处理
+         *
+         * @param e 异常被触发事件
+         */
+        @Override
+        public void exceptionCaught(ThreadExceptionEvent e) {
+            /**
+             * @effects:
+             *          the exception will be handled by the outer class;
+             */
+            ShardedTimeline.this.exceptionCaught(e);
+        }
+    }
+    
+    /**
+     * 分片
+     */
+    private final TimelineShard[] shards;
+    
+    /**
+     * 分发执行器是否由本对象创建（是则在退出时关闭）
+     */
+    private final boolean dispatcher_owned;
+    
+    /**
+     * 构造函数（每个分片使用外部分发执行器，退出时不会关闭该执行器）
+     *
+     * @param shard_count 分片数量
+     * @param dispatcher  分发执行器
+     */
+    public ShardedTimeline(int shard_count, Executor dispatcher) {
+        /**
+         * @requires:
+         *          shard_count > 0;
+         * @modifies:
+         *          \this.shards;
+         *          \this.dispatcher_owned;
+         * @effects:
+         *          shard_count shards will be created, all of them use dispatcher;
+         *          \this.dispatcher_owned == false;
+         */
+        this.shards = this.createShards(shard_count, dispatcher);
+        this.dispatcher_owned = false;
+    }
+    
+    /**
+     * 构造函数（每个分片使用独立的单线程分发执行器）
+     *
+     * @param shard_count 分片数量
+     */
+    public ShardedTimeline(int shard_count) {
+        /**
+         * @requires:
+         *          shard_count > 0;
+         * @modifies:
+         *          \this.shards;
+         *          \this.dispatcher_owned;
+         * @effects:
+         *          shard_count shards will be created, each of them uses its own single thread executor;
+         *          \this.dispatcher_owned == true;
+         */
+        this.shards = this.createShards(shard_count, null);
+        this.dispatcher_owned = true;
+    }
+    
+    /**
+     * 构造函数（使用默认分片数量）
+     */
+    public ShardedTimeline() {
+        /**
+         * @effects:
+         *          it will be initialized with DEFAULT_SHARD_COUNT shards;
+         */
+        this(DEFAULT_SHARD_COUNT);
+    }
+    
+    /**
+     * 创建分片
+     *
+     * @param shard_count 分片数量
+     * @param dispatcher  分发执行器（null表示每个分片新建单线程执行器）
+     * @return 分片
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private TimelineShard[] createShards(int shard_count, Executor dispatcher) {
+        /**
+         * @effects:
+         *          \result == shard_count new shards;
+         */
+        TimelineShard[] shards = (TimelineShard[]) new ShardedTimeline.TimelineShard[shard_count];
+        for (int i = 0; i < shard_count; i++) {
+            Executor executor = (dispatcher != null) ? dispatcher
+                    : Executors.newSingleThreadExecutor(ExecutorHelper.getNamedThreadFactory(String.format("timeline-shard-%s-dispatcher", i)));
+            shards[i] = new TimelineShard(executor, String.format("timeline-shard-%s", i));
+        }
+        return shards;
+    }
+    
+    /**
+     * 根据路由值选择分片
+     *
+     * @param route 路由值
+     * @return 分片
+     */
+    private TimelineShard getShard(long route) {
+        /**
+         * @effects:
+         *          \result == the shard which the route value belongs to;
+         */
+        long hash = route * 0x9E3779B97F4A7C15L;
+        return this.shards[(int) ((hash >>> 32) % this.shards.length)];
+    }
+    
+    /**
+     * 新增触发器（按key路由，同一key的任务进入同一分片）
+     *
+     * @param key             路由key
+     * @param timestamp       时间戳
+     * @param trigger         触发器
+     * @param attached_object 附加对象
+     * @return 任务句柄
+     */
+    public ScheduledHandle add(Object key, Timestamp timestamp, TriggerInterface trigger, T attached_object) {
+        /**
+         * @requires:
+         *          key != null;
+         * @effects:
+         *          a new task will be posted into the shard which key belongs to;
+         *          \result == the handle of the new task;
+         */
+        return this.add(this.getShard(key.hashCode()), timestamp, trigger, attached_object);
+    }
+    
+    /**
+     * 新增触发器（按当前线程路由）
+     *
+     * @param timestamp       时间戳
+     * @param trigger         触发器
+     * @param attached_object 附加对象
+     * @return 任务句柄
+     */
+    public ScheduledHandle add(Timestamp timestamp, TriggerInterface trigger, T attached_object) {
+        /**
+         * @effects:
+         *          a new task will be posted into the shard which the current thread belongs to;
+         *          \result == the handle of the new task;
+         */
+        return this.add(this.getShard(Thread.currentThread().getId()), timestamp, trigger, attached_object);
+    }
+    
+    /**
+     * 新增触发器
+     *
+     * @param shard           分片
+     * @param timestamp       时间戳
+     * @param trigger         触发器
+     * @param attached_object 附加对象
+     * @return 任务句柄
+     */
+    private ScheduledHandle add(TimelineShard shard, Timestamp timestamp, TriggerInterface trigger, T attached_object) {
+        /**
+         * @modifies:
+         *          shard.inbox;
+         * @effects:
+         *          a new handle will be posted into shard;
+         *          \result == the new handle;
+         */
+        ShardHandle handle = new ShardHandle(shard, trigger, timestamp, attached_object);
+        shard.post(handle);
+        return handle;
+    }
+    
+    /**
+     * 获取分片数量
+     *
+     * @return 分片数量
+     */
+    public int getShardCount() {
+        /**
+         * @effects:
+         *          \result == \this.shards.length;
+         */
+        return this.shards.length;
+    }
+    
+    /**
+     * 获取等待中的任务数量（近似值，收件箱中尚未处理的任务不计入）
+     *
+     * @return 等待中的任务数量
+     */
+    public int getPendingCount() {
+        /**
+         * @effects:
+         *          \result == the sum of the pending count of all the shards;
+         */
+        int count = 0;
+        for (TimelineShard shard : this.shards) count += shard.pending_count;
+        return count;
+    }
+    
+    /**
+     * 启动所有分片
+     */
+    public void start() {
+        /**
+         * @effects:
+         *          all the shards will be started;
+         */
+        for (TimelineShard shard : this.shards) shard.start();
+    }
+    
+    /**
+     * 退出所有分片
+     */
+    public void exitGracefully() {
+        /**
+         * @effects:
+         *          all the shards will exit, and the tasks not yet dispatched will be cancelled;
+         *          (\this.dispatcher_owned) ==> the dispatchers will be shut down, the triggers already dispatched will still be executed;
+         */
+        for (TimelineShard shard : this.shards) shard.exitGracefully();
+        if (!this.dispatcher_owned) return;
+        for (TimelineShard shard : this.shards) ((ExecutorService) shard.dispatcher).shutdown();
+    }
+    
+    /**
+     * 等待所有分片退出
+     *
+     * @throws InterruptedException 中断异常
+     */
+    public void join() throws InterruptedException {
+        /**
+         * @effects:
+         *          wait until all the shards exit;
+         *          exceptional behavior(InterruptedException):
+         *          the thread is interrupted while waiting;
+         */
+        for (TimelineShard shard : this.shards) shard.join();
+    }
+    
+    /**
+     * 异常处理
+     *
+     * @param e 异常被触发事件
+     */
+    public void exceptionCaught(ThreadExceptionEvent e) {
+        /**
+         * @effects:
+         *          nothing to do when exception caught;
+         */
+    }
+}
@@ -3,6 +3,8 @@ package models.thread.timeline;
 import interfaces.event.TriggerInterface;
 import models.time.Timestamp;
 
+import java.util.concurrent.Executor;
+
 /**
  * 时间线触发器线程
  * <p>
@@ -10,18 +12,42 @@ import models.time.Timestamp;
  * 1、可以设置多条定时触发任务
  * <p>
  * 特性：
- * 1、由消息队列统一管理，在即将到时间时启动DelayUntilTrigger
- * 2、消息队列为优先队列，性能有保证
- * 3、由于所有任务均为单独线程，故任务内执行时间较长也不会导致后面的任务触发事件受影响，任务执行完毕后该线程自动销毁
+ * 1、由多层时间轮统一管理，新增任务为O(1)，短至数毫秒、长至数天的任务可以混合使用
+ * 2、到期任务投递到固定大小的分发线程池执行，任务数量再多也不会新增线程
+ * 3、任务执行时间较长时只会占用一个分发线程，分发线程全部占满时后续任务会排队等待
  * <p>
  * 注：
- * 1、该模块精度低于DelayThread和DelayUntilThread（精度误差大约在0-10ms之间，不过没有累积误差）
+ * 1、该模块精度低于DelayThread和DelayUntilThread（精度取决于时间轮的tick时长，默认误差在0-2ms之间，没有累积误差）
  * 2、该模块适用于大量定时任务排队且精度要求不是很高的情况，可以有效节省资源占用
  * 3、如果为单一且等间隔的任务，推荐使用TimerThread
+ * 4、add返回的ScheduledHandle可用于单独取消或重新设定某一任务，无需清空整个时间线
  *
  * @param <T> 附加类型
  */
 public class TimelineTriggerThread<T> extends AbstractTimelineTriggerThread<T, T> {
+    /**
+     * 构造函数（使用默认分发线程池）
+     */
+    public TimelineTriggerThread() {
+        /**
+         * @effects:
+         *          it will be initialized by super class, using the default dispatcher pool;
+         */
+        super();
+    }
+    
+    /**
+     * 构造函数（使用外部分发执行器）
+     *
+     * @param dispatcher 分发执行器
+     */
+    public TimelineTriggerThread(Executor dispatcher) {
+        /**
+         * @effects:
+         *          it will be initialized by super class, using the given dispatcher;
+         */
+        super(dispatcher);
+    }
     
     /**
      * 父类继承
@@ -29,17 +55,19 @@ public class TimelineTriggerThread<T> extends AbstractTimelineTriggerThread<T, T
      * @param timestamp       时间戳
      * @param trigger         触发器
      * @param attached_object 附加对象
+     * @return 任务句柄
      */
     @Override
-    public void add(Timestamp timestamp, TriggerInterface trigger, T attached_object) {
+    public ScheduledHandle add(Timestamp timestamp, TriggerInterface trigger, T attached_object) {
         /**
          * @modifies:
          *          \this.queue;
          * @effects:
          *          addTimer the new trigger task into \this.queue;
          *          \this.lock_object will be notified to all;
+         *          \result == the handle of the new task;
          */
-        super.add(timestamp, trigger, attached_object);
+        return super.add(timestamp, trigger, attached_object);
     }
     
     /**
@@ -78,9 +106,10 @@ public class TimelineTriggerThread<T> extends AbstractTimelineTriggerThread<T, T
      *
      * @param timestamp 时间戳
      * @param trigger   触发器
+     * @return 任务句柄
      */
-    public void add(Timestamp timestamp, TriggerInterface trigger) {
-        add(timestamp, trigger, null);
+    public ScheduledHandle add(Timestamp timestamp, TriggerInterface trigger) {
+        return add(timestamp, trigger, null);
     }
     
     /**
@@ -89,8 +118,9 @@ public class TimelineTriggerThread<T> extends AbstractTimelineTriggerThread<T, T
      * @param time_after      时间间隔
      * @param trigger         触发器
      * @param attached_object 附加对象
+     * @return 任务句柄
      */
-    public void add(long time_after, TriggerInterface trigger, T attached_object) {
+    public ScheduledHandle add(long time_after, TriggerInterface trigger, T attached_object) {
         /**
          * @modifies:
          *          \this.queue;
@@ -98,11 +128,10 @@ public class TimelineTriggerThread<T> extends AbstractTimelineTriggerThread<T, T
          *          calculate a new time based on current time;
          *          addTimer the new trigger task into \this.queue;
          *          \this.lock_object will be notified to all;
+         *          \result == the handle of the new task;
          */
-        synchronized (this.queue) {
-            Timestamp timestamp = new Timestamp().getOffseted(time_after);
-            this.add(timestamp, trigger, attached_object);
-        }
+        Timestamp timestamp = new Timestamp().getOffseted(time_after);
+        return this.add(timestamp, trigger, attached_object);
     }
     
     /**
@@ -110,8 +139,9 @@ public class TimelineTriggerThread<T> extends AbstractTimelineTriggerThread<T, T
      *
      * @param time_after 时间间隔
      * @param trigger    触发器
+     * @return 任务句柄
      */
-    public void add(long time_after, TriggerInterface trigger) {
+    public ScheduledHandle add(long time_after, TriggerInterface trigger) {
         /**
          * @modifies:
          *          \this.queue;
@@ -119,7 +149,8 @@ public class TimelineTriggerThread<T> extends AbstractTimelineTriggerThread<T, T
          *          calculate a new time based on current time;
          *          addTimer the new trigger task into \this.queue;
          *          \this.lock_object will be notified to all;
+         *          \result == the handle of the new task;
          */
-        this.add(time_after, trigger, null);
+        return this.add(time_after, trigger, null);
     }
 }
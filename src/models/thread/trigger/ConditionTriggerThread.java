@@ -2,6 +2,7 @@ package models.thread.trigger;
 
 import events.thread.ThreadBeforeTriggerEvent;
 import interfaces.application.ConditionCheckInterface;
+import models.thread.condition.ConditionRegistry;
 
 /**
  * 情况等待线程
@@ -10,14 +11,103 @@ import interfaces.application.ConditionCheckInterface;
  * 1、自定义条件等待
  * <p>
  * 特性：
- * 1、等待采用轮询模式（1ms为单位）
- * 2、因为是轮序模式，故如果一次checkCondition速度过慢将会影响后面的判定
+ * 1、等待基于ConditionRegistry，状态持有者在状态改变后调用registry.signal(key)（或本线程的signalCondition）时才重新检查条件
+ * 2、可选的兜底轮询，轮询间隔从1ms开始指数退避，直到设定的最大间隔（仅在使用注册中心的构造函数中指定时开启）
+ * 3、使用无参构造函数时没有信号来源，与原有行为一致，固定每1ms轮询一次（收到信号时也会立即检查）
  * <p>
  * 建议：
  * 1、等待函数尽量简单
- * 2、尽量避免过高并发使用此类
+ * 2、大量条件同时等待时，推荐使用ConditionWatcherThread，由一个线程统一托管
  */
 public abstract class ConditionTriggerThread extends TriggerThread implements ConditionCheckInterface {
+    /**
+     * 推荐的兜底轮询最大间隔（单位：ms）
+     */
+    public static final long DEFAULT_MAX_POLL_INTERVAL = 32;
+    
+    /**
+     * 兜底轮询初始间隔（单位：ms，也是无参构造函数的固定轮询间隔）
+     */
+    private static final long MIN_POLL_INTERVAL = 1;
+    
+    /**
+     * 注册中心
+     */
+    private final ConditionRegistry registry;
+    
+    /**
+     * 等待的key
+     */
+    private final Object key;
+    
+    /**
+     * 兜底轮询最大间隔（单位：ms，不超过0表示不轮询）
+     */
+    private final long max_poll_interval;
+    
+    /**
+     * 构造函数
+     *
+     * @param registry          注册中心
+     * @param key               等待的key（null表示使用线程自身作为key）
+     * @param max_poll_interval 兜底轮询最大间隔（单位：ms，不超过0表示不轮询）
+     */
+    public ConditionTriggerThread(ConditionRegistry registry, Object key, long max_poll_interval) {
+        /**
+         * @modifies:
+         *          \this.registry;
+         *          \this.key;
+         *          \this.max_poll_interval;
+         * @effects:
+         *          \this.registry == registry;
+         *          \this.key == ((key == null) ? \this : key);
+         *          \this.max_poll_interval == max_poll_interval;
+         */
+        this.registry = registry;
+        this.key = (key == null) ? this : key;
+        this.max_poll_interval = max_poll_interval;
+    }
+    
+    /**
+     * 构造函数（不轮询，完全依靠信号）
+     *
+     * @param registry 注册中心
+     * @param key      等待的key
+     */
+    public ConditionTriggerThread(ConditionRegistry registry, Object key) {
+        /**
+         * @effects:
+         *          \this.registry == registry;
+         *          \this.key == key;
+         *          \this.max_poll_interval == 0;
+         */
+        this(registry, key, 0);
+    }
+    
+    /**
+     * 构造函数（使用全局默认注册中心，以线程自身为key，固定每1ms轮询一次）
+     */
+    public ConditionTriggerThread() {
+        /**
+         * @effects:
+         *          \this.registry == ConditionRegistry.getDefault();
+         *          \this.key == \this;
+         *          \this.max_poll_interval == MIN_POLL_INTERVAL, so it polls every MIN_POLL_INTERVAL ms without backoff;
+         */
+        this(ConditionRegistry.getDefault(), null, MIN_POLL_INTERVAL);
+    }
+    
+    /**
+     * 通知本线程状态已改变
+     */
+    public void signalCondition() {
+        /**
+         * @effects:
+         *          \this.registry.signal(\this.key) will be called;
+         */
+        this.registry.signal(this.key);
+    }
+    
     /**
      * 情况等待
      *
@@ -28,8 +118,13 @@ public abstract class ConditionTriggerThread extends TriggerThread implements Co
     public void beforeTrigger(ThreadBeforeTriggerEvent e) throws InterruptedException {
         /**
          * @effects:
-         *          sleep until \this.checkCondition == true;
+         *          sleep until \this.checkCondition == true, the condition will be checked when \this.key is signaled;
+         *          (\this.max_poll_interval > 0) ==> the condition will also be checked by polling with exponential backoff;
          */
-        sleepUntilCondition(this);
+        if (this.max_poll_interval > 0) {
+            this.registry.await(this.key, this, MIN_POLL_INTERVAL, this.max_poll_interval, 0);
+        } else {
+            this.registry.await(this.key, this);
+        }
     }
 }